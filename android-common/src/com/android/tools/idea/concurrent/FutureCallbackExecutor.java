@@ -227,6 +227,79 @@ public class FutureCallbackExecutor implements Executor {
     }
   }
 
+  /**
+   * Same as {@link #executeFuturesInSequence(Iterator, Function)}, but keeps up to {@code maxConcurrency} tasks running at
+   * the same time, starting a new task as soon as one completes.
+   *
+   * <p>Returns a {@link ListenableFuture} that completes when all tasks have completed. As with
+   * {@link #executeFuturesInSequence(Iterator, Function)}, a task that fails (or whose factory throws) does not prevent the
+   * other tasks from running.
+   *
+   * @param iterator       The source of elements to process
+   * @param taskFactory    A factory {@link Function} that returns a {@link ListenableFuture} for a given element
+   * @param maxConcurrency The maximum number of tasks whose {@link ListenableFuture} has not completed yet
+   * @param <T>            The type of the elements to process
+   */
+  @NotNull
+  public <T> ListenableFuture<Void> executeFuturesInParallel(@NotNull Iterator<T> iterator,
+                                                             @NotNull Function<T, ListenableFuture<Void>> taskFactory,
+                                                             int maxConcurrency) {
+    if (maxConcurrency <= 1) {
+      return executeFuturesInSequence(iterator, taskFactory);
+    }
+
+    SettableFuture<Void> finalResult = SettableFuture.create();
+    ParallelTasks<T> tasks = new ParallelTasks<>(iterator, taskFactory, finalResult);
+    for (int i = 0; i < maxConcurrency; i++) {
+      tasks.startNext();
+    }
+    return finalResult;
+  }
+
+  private final class ParallelTasks<T> {
+    @NotNull private final Iterator<T> myIterator;
+    @NotNull private final Function<T, ListenableFuture<Void>> myTaskFactory;
+    @NotNull private final SettableFuture<Void> myFinalResult;
+    private int myRunningCount;
+
+    ParallelTasks(@NotNull Iterator<T> iterator,
+                  @NotNull Function<T, ListenableFuture<Void>> taskFactory,
+                  @NotNull SettableFuture<Void> finalResult) {
+      myIterator = iterator;
+      myTaskFactory = taskFactory;
+      myFinalResult = finalResult;
+    }
+
+    void startNext() {
+      T element;
+      synchronized (this) {
+        if (!myIterator.hasNext()) {
+          if (myRunningCount == 0) {
+            myFinalResult.set(null);
+          }
+          return;
+        }
+        element = myIterator.next();
+        myRunningCount++;
+      }
+
+      ListenableFuture<Void> future;
+      try {
+        future = myTaskFactory.apply(element);
+      }
+      catch (Throwable t) {
+        // Treat it as a failed task, so that the running count is decremented and the other elements are still processed.
+        future = Futures.immediateFailedFuture(t);
+      }
+      addConsumer(future, (aVoid, throwable) -> {
+        synchronized (this) {
+          myRunningCount--;
+        }
+        startNext();
+      });
+    }
+  }
+
   /**
    * Wrap a {@link ThrowableFunction} into a {@link Function} using a {@link UndeclaredThrowableException}.
    *
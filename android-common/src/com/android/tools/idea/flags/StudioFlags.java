@@ -258,6 +258,59 @@ public final class StudioFlags {
     "If enabled, the surface displays some debug information to diagnose performance",
     false);
 
+  public static final Flag<Boolean> NELE_RENDER_RESULT_CACHE = Flag.create(
+    NELE, "render.result.cache", "Reuse identical render results",
+    "If enabled, render results are cached by layout content and configuration and reused instead of calling layoutlib again",
+    false);
+
+  public static final Flag<Boolean> NELE_IMAGE_POOL_BUDGET = Flag.create(
+    NELE, "image.pool.budget", "Bound the render image pool with a global budget",
+    "If enabled, the images of all sizes in the render image pool share a single memory budget and the least recently used ones " +
+    "are evicted first",
+    false);
+
+  public static final Flag<Boolean> NELE_CLASS_CONVERTER_CACHE = Flag.create(
+    NELE, "class.converter.cache", "Cache rewritten classes for rendering",
+    "If enabled, the classes rewritten for the render class loaders are cached on disk by content and custom view classes are " +
+    "pre-loaded in the background after every build",
+    false);
+
+  public static final Flag<Boolean> NELE_INCREMENTAL_TAG_SNAPSHOT = Flag.create(
+    NELE, "incremental.tag.snapshot", "Update layout snapshots incrementally",
+    "If enabled, the layout snapshots used for rendering are updated from PSI changes instead of being read again for every render",
+    false);
+
+  public static final Flag<Boolean> NELE_RETAINED_DISPLAY_LIST = Flag.create(
+    NELE, "retained.display.list", "Retain the display list of the scene components",
+    "If enabled, every scene component keeps its draw commands until it changes and only the changed area of the surface is repainted",
+    false);
+
+  public static final Flag<Boolean> NELE_SCENE_PICKER_INDEX = Flag.create(
+    NELE, "scene.picker.index", "Index the hit-testing shapes of the scene",
+    "If enabled, the shapes used for hover and click detection are kept while the scene does not change and only the ones near the mouse are tested",
+    false);
+
+  public static final Flag<Boolean> NELE_PALETTE_PREVIEW_CACHE = Flag.create(
+    NELE, "palette.preview.cache", "Pre-render and cache the palette drag previews",
+    "If enabled, the drag previews of the selected palette category are rendered in the background and kept in memory and on disk",
+    false);
+
+  public static final Flag<Boolean> NELE_PARALLEL_RENDER_PREPARATION = Flag.create(
+    NELE, "parallel.render.preparation", "Prepare layout renders outside of the render thread",
+    "If enabled, the resources, parser and manifest of a layout render are computed on a pooled thread so that several configurations " +
+    "are prepared in parallel and only the layoutlib calls are serialized on the render thread",
+    false);
+
+  public static final Flag<Boolean> NELE_INCREMENTAL_MODEL_SYNC = Flag.create(
+    NELE, "incremental.model.sync", "Update the component tree incrementally",
+    "If enabled, the component tree is only rebuilt when components are added, removed or moved, and is repainted otherwise",
+    false);
+
+  public static final Flag<Boolean> NELE_MOTION_SCENE_MODEL_CACHE = Flag.create(
+    NELE, "animated.motion.model.cache", "Update the motion scene model incrementally",
+    "If enabled, the timeline keeps its motion scene model and only parses again the ConstraintSets and Transitions that changed",
+    false);
+
   public static final Flag<Boolean> NELE_SHOW_ONLY_SELECTION = Flag.create(
     NELE, "show.only.selection", "Show only selection boundaries when mouse is not hovered in layout",
     "Enable this flag to show selection boundaries without other decoration when mouse is not hovered in layout",
@@ -335,6 +388,27 @@ public final class StudioFlags {
     "When running or debugging an Android process, output the logcat output of the process in the console window.",
     true);
 
+  public static final Flag<Boolean> RUNDEBUG_LOGCAT_INDEXED_FILTERING = Flag.create(
+    RUNDEBUG, "logcat.indexed.filtering", "Filter old logcat messages in the logcat store",
+    "When the logcat filter or log level changes, replay only the stored messages matching them instead of re-filtering the whole console.",
+    false);
+
+  public static final Flag<Boolean> RUNDEBUG_LOGCAT_BATCHED_INGESTION = Flag.create(
+    RUNDEBUG, "logcat.batched.ingestion", "Batch logcat output",
+    "Dispatch the logcat output of a device in batches and add it to the logcat console every few milliseconds instead of line by line.",
+    false);
+
+  public static final Flag<Boolean> RUNDEBUG_CONCURRENT_DEVICE_LAUNCH = Flag.create(
+    RUNDEBUG, "concurrent.device.launch", "Launch on multiple devices concurrently",
+    "When running on more than one device, install and launch the app on the devices in parallel instead of one device at a time.",
+    false);
+
+  public static final Flag<Boolean> RUNDEBUG_APK_HASH_MEMO = Flag.create(
+    RUNDEBUG, "apk.hash.memo", "Remember APK hashes across launches",
+    "Reuse the hash of an APK that has not changed since it was last hashed, instead of reading the whole APK every time the IDE " +
+    "decides whether it needs to be installed. Hashes are kept on disk so they survive restarts.",
+    false);
+
   public static final Flag<Boolean> RUNDEBUG_ANDROID_BUILD_BUNDLE_ENABLED = Flag.create(
     RUNDEBUG, "android.bundle.build.enabled", "Enable the Build Bundle action",
     "If enabled, the \"Build Bundle(s)\" menu item is enabled. " +
@@ -348,6 +422,14 @@ public final class StudioFlags {
     "Upon installing, if application is already on device, only send parts of the apks which have changed (the delta).",
     true);
 
+  public static final Flag<Boolean> DEPLOY_CONCURRENT_PACKAGES = Flag.create(
+    RUNDEBUG,
+    "deploy.concurrent.packages",
+    "Deploy packages concurrently",
+    "When deploying more than one package (for example an app and its test APK, or instant app features), push and install " +
+    "the packages in parallel instead of one package at a time.",
+    false);
+
   public static final Flag<Boolean> SELECT_DEVICE_SNAPSHOT_COMBO_BOX_VISIBLE = Flag.create(
     RUNDEBUG,
     "select.device.snapshot.combo.box.visible",
@@ -398,6 +480,15 @@ public final class StudioFlags {
   public static final Flag<Boolean> L4_DEPENDENCY_MODEL = Flag.create(
     GRADLE_IDE, "level4.dependency.model", "Use L4 DependencyGraph Model",
     "Use level4 DependencyGraph model.", false);
+  public static final Flag<Boolean> GRADLE_DSL_PARALLEL_PSI_LOADING = Flag.create(
+    GRADLE_IDE, "dsl.parallel.psi.loading", "Load the PSI of build files in parallel",
+    "Builds the PSI of all the included build files of a project concurrently before they are parsed into the Gradle DSL model.",
+    false);
+  public static final Flag<Boolean> GRADLE_BINARY_MODELS_CACHE = Flag.create(
+    GRADLE_IDE, "binary.models.cache", "Save the Gradle models cache in a binary format",
+    "Saves the Gradle models cached between sessions in a format that allows the models of each module to be loaded lazily, in " +
+    "parallel.",
+    false);
 
   private static final FlagGroup SQLITE_VIEWER = new FlagGroup(FLAGS, "sqlite.viewer", "SQLite Viewer");
   public static final Flag<Boolean> SQLITE_VIEWER_ENABLED = Flag.create(
@@ -405,6 +496,19 @@ public final class StudioFlags {
     "If enabled, SQLite files downloaded from Android devices or emulators are open in a custom SQLite editor window",
     false);
 
+  private static final FlagGroup DEVICE_EXPLORER = new FlagGroup(FLAGS, "device.explorer", "Device File Explorer");
+  public static final Flag<Boolean> DEVICE_EXPLORER_PARALLEL_TRANSFERS = Flag.create(
+    DEVICE_EXPLORER, "parallel.transfers", "Transfer multiple files in parallel",
+    "If enabled, the Device File Explorer transfers several files at the same time and combines the shell commands used " +
+    "to copy and delete temporary files of \"run-as\" transfers",
+    false);
+
+  public static final Flag<Boolean> DEVICE_EXPLORER_LISTING_CACHE = Flag.create(
+    DEVICE_EXPLORER, "listing.cache", "Cache directory listings",
+    "If enabled, the Device File Explorer lists whole directory trees with a single command before transferring them, " +
+    "and reuses recent directory listings instead of listing directories again",
+    false);
+
   private static final FlagGroup RESOURCES_MANAGEMENT = new FlagGroup(FLAGS, "res.manag", "Resource Management");
   public static final Flag<Boolean> RESOURCE_MANAGER_ENABLED = Flag.create(
     RESOURCES_MANAGEMENT, "enabled", "Enable the new resources management tools",
@@ -499,6 +603,13 @@ public final class StudioFlags {
     "Enable gutter icon annotator to be run after all other annotators and in the background.",
     true);
 
+  public static final Flag<Boolean> GUTTER_ICON_ASYNC_DECODING_ENABLED = Flag.create(
+    EDITOR,
+    "gutter.icon.async.decoding.enabled",
+    "Decode gutter icons in background.",
+    "Show a placeholder for gutter icons that are not cached yet and decode them in a background pool, prefetching the visible ones.",
+    false);
+
   private static final FlagGroup ANALYZER = new FlagGroup(FLAGS, "analyzer", "Apk/Bundle Analyzer");
   public static final Flag<Boolean> ENABLE_APP_SIZE_OPTIMIZER = Flag.create(
     ANALYZER, "enable.app.size.optimizer", "Enable size optimization suggestions in apk analyzer",
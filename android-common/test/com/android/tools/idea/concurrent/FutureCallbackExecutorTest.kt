@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.concurrent
+
+import com.google.common.truth.Truth.assertThat
+import com.google.common.util.concurrent.Futures
+import com.google.common.util.concurrent.ListenableFuture
+import com.google.common.util.concurrent.MoreExecutors
+import com.google.common.util.concurrent.SettableFuture
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tests for [FutureCallbackExecutor].
+ */
+class FutureCallbackExecutorTest {
+  private val executor = FutureCallbackExecutor(MoreExecutors.directExecutor())
+
+  @Test
+  fun testExecuteFuturesInParallelStartsTasksInOrder() {
+    val started = mutableListOf<Int>()
+    val result = executor.executeFuturesInParallel((1..10).iterator(), { i ->
+      started.add(i)
+      Futures.immediateFuture<Void>(null)
+    }, 3)
+
+    assertThat(result.get(10, TimeUnit.SECONDS)).isNull()
+    assertThat(started).containsExactlyElementsIn(1..10).inOrder()
+  }
+
+  @Test
+  fun testExecuteFuturesInParallelLimitsConcurrency() {
+    val running = mutableListOf<SettableFuture<Void>>()
+    var startedCount = 0
+    val result = executor.executeFuturesInParallel((1..10).iterator(), {
+      startedCount++
+      SettableFuture.create<Void>().also { running.add(it) }
+    }, 3)
+
+    assertThat(startedCount).isEqualTo(3)
+    // Completing a task starts exactly one more
+    running[0].set(null)
+    assertThat(startedCount).isEqualTo(4)
+    assertThat(result.isDone).isFalse()
+
+    var next = 1
+    while (next < running.size) {
+      running[next++].set(null)
+    }
+    assertThat(startedCount).isEqualTo(10)
+    assertThat(result.get(10, TimeUnit.SECONDS)).isNull()
+  }
+
+  @Test
+  fun testExecuteFuturesInParallelContinuesAfterFailures() {
+    val completed = mutableListOf<Int>()
+    val result = executor.executeFuturesInParallel((1..6).iterator(), { i ->
+      when (i % 3) {
+        0 -> throw IllegalStateException("Factory failed for $i")
+        1 -> Futures.immediateFailedFuture<Void>(IllegalStateException("Task failed for $i"))
+        else -> {
+          completed.add(i)
+          Futures.immediateFuture<Void>(null)
+        }
+      }
+    }, 2)
+
+    // A task whose factory throws is counted as a failed task, which must not leave the combined future pending
+    assertThat(result.get(10, TimeUnit.SECONDS)).isNull()
+    assertThat(completed).containsExactly(2, 5).inOrder()
+  }
+
+  @Test
+  fun testExecuteFuturesInParallelWithAllFactoriesFailing() {
+    val result: ListenableFuture<Void> = executor.executeFuturesInParallel((1..5).iterator(), {
+      throw IllegalStateException("Factory failed")
+    }, 4)
+
+    assertThat(result.get(10, TimeUnit.SECONDS)).isNull()
+  }
+}
@@ -30,6 +30,7 @@ import com.android.ide.common.util.DisjointUnionMap;
 import com.android.resources.ResourceType;
 import com.android.resources.ResourceUrl;
 import com.android.sdklib.IAndroidTarget;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.rendering.Locale;
 import com.android.tools.idea.rendering.multi.CompatibilityRenderTarget;
 import com.android.tools.idea.res.LocalResourceRepository;
@@ -77,7 +78,7 @@ public class ResourceResolverCache {
   private long myCachedGeneration;
 
   /** Map from API level to framework resources */
-  private SparseArray<AndroidTargetData> myFrameworkResources = new SparseArray<>();
+  private final SparseArray<AndroidTargetData> myFrameworkResources = new SparseArray<>();
 
   /**
    * Store map keys for the latest custom configuration cached, so that they can be removed from the cache
@@ -90,10 +91,73 @@ public class ResourceResolverCache {
     myManager = manager;
   }
 
+  /**
+   * Returns the resolver of the given target, theme and configuration.
+   * <p>
+   * When {@link StudioFlags#NELE_PARALLEL_RENDER_PREPARATION} is enabled, the cache can be used from several threads, for example by
+   * render tasks preparing their sessions in parallel. The read lock is then only taken for the accesses to the app resources, and never
+   * while holding the cache lock, so a thread holding the cache lock never waits for a write action.
+   */
   @NotNull
   public ResourceResolver getResourceResolver(@Nullable IAndroidTarget target,
                                               @NotNull String themeStyle,
                                               @NotNull FolderConfiguration fullConfiguration) {
+    if (!StudioFlags.NELE_PARALLEL_RENDER_PREPARATION.get()) {
+      return computeResourceResolver(target, themeStyle, fullConfiguration);
+    }
+
+    ResourceRepositoryManager repositoryManager = ResourceRepositoryManager.getInstance(myManager.getModule());
+    if (repositoryManager == null) {
+      return ResourceResolver.create(Collections.emptyMap(), null);
+    }
+    LocalResourceRepository resources = repositoryManager.getAppResources();
+    String qualifierString = fullConfiguration.getQualifierString();
+    String resolverKey = getResolverKey(themeStyle, qualifierString);
+
+    long generation;
+    Table<ResourceNamespace, ResourceType, ResourceValueMap> configuredAppRes;
+    synchronized (this) {
+      generation = resources.getModificationCount();
+      if (myCachedGeneration != generation) {
+        myResolverMap.clear();
+        myAppResourceMap.clear();
+        myCachedGeneration = generation;
+      }
+      ResourceResolver resolver = myResolverMap.get(resolverKey);
+      if (resolver != null) {
+        return resolver;
+      }
+      configuredAppRes = myAppResourceMap.get(qualifierString);
+    }
+
+    // The resolver is created outside of the cache lock, so that several configurations are resolved in parallel.
+    if (target == null) {
+      target = myManager.getTarget();
+    }
+    Map<ResourceType, ResourceValueMap> frameworkResources =
+        target == null ? Collections.emptyMap() : getConfiguredFrameworkResources(target, fullConfiguration);
+    if (configuredAppRes == null) {
+      configuredAppRes = ReadAction.compute(() -> ResourceRepositoryUtil.getConfiguredResources(resources, fullConfiguration));
+    }
+    ResourceResolver resolver = createResourceResolver(target, themeStyle, frameworkResources, configuredAppRes, repositoryManager);
+
+    synchronized (this) {
+      // Resolvers created from resources that changed in the meantime are not cached.
+      if (myCachedGeneration == generation) {
+        myAppResourceMap.putIfAbsent(qualifierString, configuredAppRes);
+        ResourceResolver cached = myResolverMap.putIfAbsent(resolverKey, resolver);
+        if (cached != null) {
+          return cached;
+        }
+      }
+    }
+    return resolver;
+  }
+
+  @NotNull
+  private ResourceResolver computeResourceResolver(@Nullable IAndroidTarget target,
+                                                   @NotNull String themeStyle,
+                                                   @NotNull FolderConfiguration fullConfiguration) {
     // Are caches up to date?
     ResourceRepositoryManager repositoryManager = ResourceRepositoryManager.getInstance(myManager.getModule());
     if (repositoryManager == null) {
@@ -137,42 +201,63 @@ public class ResourceResolverCache {
         myAppResourceMap.put(qualifierString, configuredAppRes);
       }
 
-      // Resource Resolver
-      Map<ResourceNamespace, Map<ResourceType, ResourceValueMap>> allResources =
-          new DisjointUnionMap<>(Collections.singletonMap(ResourceNamespace.ANDROID, frameworkResources), configuredAppRes.rowMap());
+      resolver = createResourceResolver(target, themeStyle, frameworkResources, configuredAppRes, repositoryManager);
+      myResolverMap.put(resolverKey, resolver);
+    }
 
-      assert themeStyle.startsWith(PREFIX_RESOURCE_REF) : themeStyle;
+    return resolver;
+  }
 
-      // TODO(namespaces): the ResourceReference needs to be created by the caller, by resolving prefixes in the Manifest.
-      ResourceReference theme = null;
-      ResourceUrl themeUrl = ResourceUrl.parse(themeStyle);
-      if (themeUrl != null) {
-        ResourceNamespace contextNamespace = ReadAction.compute(() -> repositoryManager.getNamespace());
-        theme = themeUrl.resolve(contextNamespace, ResourceNamespace.Resolver.EMPTY_RESOLVER);
-      }
+  @NotNull
+  private ResourceResolver createResourceResolver(@Nullable IAndroidTarget target,
+                                                  @NotNull String themeStyle,
+                                                  @NotNull Map<ResourceType, ResourceValueMap> frameworkResources,
+                                                  @NotNull Table<ResourceNamespace, ResourceType, ResourceValueMap> configuredAppRes,
+                                                  @NotNull ResourceRepositoryManager repositoryManager) {
+    // Resource Resolver
+    Map<ResourceNamespace, Map<ResourceType, ResourceValueMap>> allResources =
+        new DisjointUnionMap<>(Collections.singletonMap(ResourceNamespace.ANDROID, frameworkResources), configuredAppRes.rowMap());
+
+    assert themeStyle.startsWith(PREFIX_RESOURCE_REF) : themeStyle;
+
+    // TODO(namespaces): the ResourceReference needs to be created by the caller, by resolving prefixes in the Manifest.
+    ResourceReference theme = null;
+    ResourceUrl themeUrl = ResourceUrl.parse(themeStyle);
+    if (themeUrl != null) {
+      ResourceNamespace contextNamespace = ReadAction.compute(() -> repositoryManager.getNamespace());
+      theme = themeUrl.resolve(contextNamespace, ResourceNamespace.Resolver.EMPTY_RESOLVER);
+    }
 
-      resolver = ResourceResolver.create(allResources, theme);
-      resolver.setProjectIdChecker(ResourceIdManager.get(myManager.getModule())::isIdDefinedInRTxt);
-
-      if (target instanceof CompatibilityRenderTarget) {
-        int apiLevel = target.getVersion().getFeatureLevel();
-        if (apiLevel >= 21) {
-          resolver.setDeviceDefaults("Material");
-        } else if (apiLevel >= 14) {
-          resolver.setDeviceDefaults("Holo");
-        } else {
-          resolver.setDeviceDefaults(ResourceResolver.LEGACY_THEME);
-        }
+    ResourceResolver resolver = ResourceResolver.create(allResources, theme);
+    resolver.setProjectIdChecker(ResourceIdManager.get(myManager.getModule())::isIdDefinedInRTxt);
+
+    if (target instanceof CompatibilityRenderTarget) {
+      int apiLevel = target.getVersion().getFeatureLevel();
+      if (apiLevel >= 21) {
+        resolver.setDeviceDefaults("Material");
+      } else if (apiLevel >= 14) {
+        resolver.setDeviceDefaults("Holo");
+      } else {
+        resolver.setDeviceDefaults(ResourceResolver.LEGACY_THEME);
       }
-
-      myResolverMap.put(resolverKey, resolver);
     }
-
     return resolver;
   }
 
   public Map<ResourceType, ResourceValueMap> getConfiguredFrameworkResources(@NotNull IAndroidTarget target,
                                                                              @NotNull FolderConfiguration fullConfiguration) {
+    if (!StudioFlags.NELE_PARALLEL_RENDER_PREPARATION.get()) {
+      return computeConfiguredFrameworkResources(target, fullConfiguration);
+    }
+    // Loading the framework resources the first time takes a while, do it before taking the cache lock.
+    getFrameworkResources(fullConfiguration, target);
+    synchronized (this) {
+      return computeConfiguredFrameworkResources(target, fullConfiguration);
+    }
+  }
+
+  private Map<ResourceType, ResourceValueMap> computeConfiguredFrameworkResources(@NotNull IAndroidTarget target,
+                                                                                  @NotNull FolderConfiguration fullConfiguration) {
     ResourceRepository resourceRepository = getFrameworkResources(fullConfiguration, target);
     if (resourceRepository == null) {
       return Collections.emptyMap();
@@ -202,14 +287,17 @@ public class ResourceResolverCache {
   public ResourceRepository getFrameworkResources(@NotNull FolderConfiguration configuration, @NotNull IAndroidTarget target) {
     int apiLevel = target.getVersion().getFeatureLevel();
 
-    AndroidTargetData targetData = myFrameworkResources.get(apiLevel);
-    if (targetData == null) {
-      AndroidPlatform platform = AndroidPlatform.getInstance(myManager.getModule());
-      if (platform == null) {
-        return null;
+    AndroidTargetData targetData;
+    synchronized (myFrameworkResources) {
+      targetData = myFrameworkResources.get(apiLevel);
+      if (targetData == null) {
+        AndroidPlatform platform = AndroidPlatform.getInstance(myManager.getModule());
+        if (platform == null) {
+          return null;
+        }
+        targetData = platform.getSdkData().getTargetData(target); // Uses soft reference.
+        myFrameworkResources.put(apiLevel, targetData);
       }
-      targetData = platform.getSdkData().getTargetData(target); // Uses soft reference.
-      myFrameworkResources.put(apiLevel, targetData);
     }
 
     // TODO: Michal Bendowski wrote:
@@ -226,7 +314,7 @@ public class ResourceResolverCache {
     return targetData.getFrameworkResources(needLocales);
   }
 
-  public void reset() {
+  public synchronized void reset() {
     myCachedGeneration = 0;
     myAppResourceMap.clear();
     myResolverMap.clear();
@@ -239,7 +327,7 @@ public class ResourceResolverCache {
    * @param themeStyle new theme
    * @param fullConfiguration new full configuration
    */
-  public void replaceCustomConfig(@NotNull String themeStyle, @NotNull FolderConfiguration fullConfiguration) {
+  public synchronized void replaceCustomConfig(@NotNull String themeStyle, @NotNull FolderConfiguration fullConfiguration) {
     String qualifierString = fullConfiguration.getQualifierString();
     String newCustomResolverKey = getResolverKey(themeStyle, qualifierString);
 
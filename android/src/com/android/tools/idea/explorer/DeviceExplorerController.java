@@ -18,6 +18,8 @@ package com.android.tools.idea.explorer;
 import com.android.tools.idea.concurrent.FutureCallbackExecutor;
 import com.android.tools.idea.explorer.adbimpl.AdbPathUtil;
 import com.android.tools.idea.explorer.fs.*;
+import com.android.tools.idea.explorer.options.DeviceFileExplorerSettings;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.explorer.ui.TreeUtil;
 import com.android.utils.FileUtils;
 import com.google.common.primitives.Ints;
@@ -58,6 +60,7 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 
@@ -86,6 +89,8 @@ public class DeviceExplorerController {
   @NotNull private final FileTransferWorkEstimator myWorkEstimator;
   @NotNull private final Set<DeviceFileEntryNode> myTransferringNodes = new HashSet<>();
   @NotNull private final Set<DeviceFileEntryNode> myLoadingChildren = new HashSet<>();
+  @NotNull private final TransferLimiter myFileTransferLimiter = new TransferLimiter();
+  @NotNull private final TransferLimiter myDirectoryListingLimiter = new TransferLimiter();
   @NotNull private final Alarm myLoadingNodesAlarms;
   @NotNull private final Alarm myTransferringNodesAlarms;
   @NotNull private final Alarm myLoadingChildrenAlarms;
@@ -275,6 +280,24 @@ public class DeviceExplorerController {
     return myEdtExecutor.executeFuturesInSequence(iterator, taskFactory);
   }
 
+  /**
+   * Same as {@link #executeFuturesInSequence(Iterator, Function)}, but runs up to {@link #getTransferConcurrency()}
+   * tasks at the same time. Used for the files and directories of a transfer operation. Since directories are traversed
+   * recursively, the device operations themselves go through {@link #myFileTransferLimiter} and
+   * {@link #myDirectoryListingLimiter}, which bound them across all the directories of the operation.
+   */
+  private <T> ListenableFuture<Void> executeTransfersInParallel(@NotNull Iterator<T> iterator,
+                                                                @NotNull Function<T, ListenableFuture<Void>> taskFactory) {
+    return myEdtExecutor.executeFuturesInParallel(iterator, taskFactory, getTransferConcurrency());
+  }
+
+  private static int getTransferConcurrency() {
+    if (!StudioFlags.DEVICE_EXPLORER_PARALLEL_TRANSFERS.get()) {
+      return 1;
+    }
+    return Math.max(1, DeviceFileExplorerSettings.getInstance().getTransferConcurrency());
+  }
+
   private void startNodeDownload(@NotNull DeviceFileEntryNode node) {
     startNodeTransfer(node, true);
   }
@@ -554,7 +577,7 @@ public class DeviceExplorerController {
 
       return wrapFileTransfer(
         tracker -> addDownloadOperationWork(tracker, treeNodes),
-        tracker -> executeFuturesInSequence(treeNodes.iterator(), treeNode -> {
+        tracker -> executeTransfersInParallel(treeNodes.iterator(), treeNode -> {
           Path nodePath = localDirectory.resolve(treeNode.getEntry().getName());
           return downloadSingleNode(treeNode, nodePath, tracker);
         }));
@@ -661,7 +684,7 @@ public class DeviceExplorerController {
         return downloadSingleDirectory(node, localPath, tracker);
       }
       else {
-        return downloadSingleFile(node, localPath, tracker);
+        return myFileTransferLimiter.execute(() -> downloadSingleFile(node, localPath, tracker));
       }
     }
 
@@ -714,11 +737,11 @@ public class DeviceExplorerController {
 
       SettableFuture<Void> futureResult = SettableFuture.create();
 
-      ListenableFuture<Void> futureLoadChildren = loadNodeChildren(treeNode);
+      ListenableFuture<Void> futureLoadChildren = loadNodeChildrenForTransfer(treeNode);
       myEdtExecutor.addCallback(futureLoadChildren, new FutureCallback<Void>() {
         @Override
         public void onSuccess(@Nullable Void result) {
-          ListenableFuture<Void> futureDownloadChildren = executeFuturesInSequence(treeNode.getChildEntryNodes().iterator(), node -> {
+          ListenableFuture<Void> futureDownloadChildren = executeTransfersInParallel(treeNode.getChildEntryNodes().iterator(), node -> {
             Path nodePath = localDirectoryPath.resolve(node.getEntry().getName());
             return downloadSingleNode(node, nodePath, tracker);
           });
@@ -792,6 +815,12 @@ public class DeviceExplorerController {
         })
         .collect(Collectors.toSet());
 
+      // Make sure the listings come from the device, not from directory listings cached by the file system
+      DeviceFileSystem device = myModel.getActiveDevice();
+      if (device != null) {
+        device.invalidateCachedEntries();
+      }
+
       myView.startTreeBusyIndicator();
       ListenableFuture<Void> futuresRefresh = executeFuturesInSequence(directoryNodes.iterator(), treeNode -> {
         treeNode.setLoaded(false);
@@ -1032,12 +1061,12 @@ public class DeviceExplorerController {
                                                       @NotNull FileTransferOperationTracker tracker) {
       // Upload each file
       ListenableFuture<Void> futureUploadFiles =
-        executeFuturesInSequence(files.iterator(), file -> uploadVirtualFile(parentNode, file, tracker));
+        executeTransfersInParallel(files.iterator(), file -> uploadVirtualFile(parentNode, file, tracker));
 
       // Refresh children nodes
       return myEdtExecutor.transformAsync(futureUploadFiles, aVoid -> {
         parentNode.setLoaded(false);
-        return loadNodeChildren(parentNode);
+        return loadNodeChildrenForTransfer(parentNode);
       });
     }
 
@@ -1049,7 +1078,7 @@ public class DeviceExplorerController {
         return uploadDirectory(treeNode, file, tracker);
       }
       else {
-        return uploadFile(treeNode, file, tracker);
+        return myFileTransferLimiter.execute(() -> uploadFile(treeNode, file, tracker));
       }
     }
 
@@ -1072,7 +1101,7 @@ public class DeviceExplorerController {
       myEdtExecutor.addConsumer(futureDirectory, (aVoid, createDirectoryError) -> {
         // Refresh node entries
         parentNode.setLoaded(false);
-        ListenableFuture<Void> futureLoadChildren = loadNodeChildren(parentNode);
+        ListenableFuture<Void> futureLoadChildren = loadNodeChildrenForTransfer(parentNode);
         myEdtExecutor.addCallback(futureLoadChildren, new FutureCallback<Void>() {
           @Override
           public void onSuccess(@Nullable Void result) {
@@ -1396,6 +1425,15 @@ public class DeviceExplorerController {
       loadNodeChildren(node);
     }
 
+    /**
+     * Same as {@link #loadNodeChildren(DeviceFileEntryNode)}, but waits for other directory listings of transfer operations
+     * to complete if {@link #getTransferConcurrency()} of them are already running.
+     */
+    @NotNull
+    private ListenableFuture<Void> loadNodeChildrenForTransfer(@NotNull DeviceFileEntryNode node) {
+      return myDirectoryListingLimiter.execute(() -> loadNodeChildren(node));
+    }
+
     private ListenableFuture<Void> loadNodeChildren(@NotNull final DeviceFileEntryNode node) {
       // Ensure node is expanded only once
       if (node.isLoaded()) {
@@ -1614,6 +1652,47 @@ public class DeviceExplorerController {
     }
   }
 
+  /**
+   * Limits the number of device operations of a kind (single file transfers or directory listings) running at the same
+   * time to {@link #getTransferConcurrency()}, across all the directories of a transfer operation. Only used from the EDT.
+   */
+  private class TransferLimiter {
+    @NotNull private final ArrayDeque<Runnable> myPendingTransfers = new ArrayDeque<>();
+    private int myRunningCount;
+
+    @NotNull
+    public ListenableFuture<Void> execute(@NotNull Supplier<ListenableFuture<Void>> transfer) {
+      SettableFuture<Void> futureResult = SettableFuture.create();
+      Runnable startTransfer = () -> {
+        myRunningCount++;
+        ListenableFuture<Void> futureTransfer;
+        try {
+          futureTransfer = transfer.get();
+        }
+        catch (Throwable t) {
+          // Fail this transfer only: the running count is still decremented below, so that the pending transfers can start.
+          futureTransfer = Futures.immediateFailedFuture(t);
+        }
+        futureResult.setFuture(futureTransfer);
+        myEdtExecutor.addListener(futureTransfer, () -> {
+          myRunningCount--;
+          Runnable next = myPendingTransfers.poll();
+          if (next != null) {
+            next.run();
+          }
+        });
+      };
+
+      if (myRunningCount < getTransferConcurrency()) {
+        startTransfer.run();
+      }
+      else {
+        myPendingTransfers.add(startTransfer);
+      }
+      return futureResult;
+    }
+  }
+
   private static class ShowLoadingNodeRequest implements Runnable {
     @NotNull private DefaultTreeModel myTreeModel;
     @NotNull private DeviceFileEntryNode myNode;
@@ -38,6 +38,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
   @NotNull private final FileTransferSummary mySummary;
   private long myFinishedWorkUnits;
   private long myTotalWorkUnits;
+  private long myTransferredBytes;
   private int myCurrentFileCount;
   private int myTotalFileCount;
   @SuppressWarnings("unused") private int myCurrentDirectoryCount;
@@ -89,6 +90,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
 
   public void processFileBytes(long byteCount) {
     myFinishedWorkUnits += FileTransferWorkEstimator.getFileContentsWorkUnits(byteCount);
+    myTransferredBytes += byteCount;
     showProgress();
   }
 
@@ -108,7 +110,7 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
                             ApkViewPanel.getHumanizedSize(currentBytes),
                             ApkViewPanel.getHumanizedSize(totalBytes));
     }
-    setStatusText(text);
+    setStatusText(text + getThroughputText());
   }
 
   public void setDownloadFileText(@NotNull DeviceFileEntry entry, long currentBytes, long totalBytes) {
@@ -126,7 +128,20 @@ public class FileTransferOperationTracker extends LongRunningOperationTracker {
                             ApkViewPanel.getHumanizedSize(currentBytes),
                             ApkViewPanel.getHumanizedSize(totalBytes));
     }
-    setStatusText(text);
+    setStatusText(text + getThroughputText());
+  }
+
+  /**
+   * Returns the average transfer rate of the whole operation, which is more meaningful than the progress of
+   * a single file when several files are transferred at the same time.
+   */
+  @NotNull
+  private String getThroughputText() {
+    long durationMillis = getDurationMillis();
+    if (myTotalFileCount <= 1 || durationMillis < 1000) {
+      return "";
+    }
+    return String.format(" - %s/s", ApkViewPanel.getHumanizedSize(myTransferredBytes * 1000 / durationMillis));
   }
 
   public void addWorkEstimate(FileTransferWorkEstimate estimate) {
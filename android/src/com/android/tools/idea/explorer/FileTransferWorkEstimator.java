@@ -96,7 +96,15 @@ public class FileTransferWorkEstimator {
                                                                          boolean isLinkToDirectory,
                                                                          @NotNull FileTransferWorkEstimatorProgress progress) {
     FileTransferWorkEstimate workEstimate = new FileTransferWorkEstimate();
-    ListenableFuture<Void> future = estimateDownloadWorkWorker(entry, isLinkToDirectory, workEstimate, progress);
+
+    // List the whole tree at once (if supported by the file system), so that walking the tree below
+    // does not need a round-trip to the device per directory. Errors are ignored, as the walk
+    // lists the directories that could not be prefetched.
+    ListenableFuture<Void> futurePrefetch = entry.isDirectory() ? entry.prefetchDescendants() : Futures.immediateFuture(null);
+    ListenableFuture<Void> futurePrefetchDone = myEdtExecutor.catching(futurePrefetch, Throwable.class, t -> null);
+
+    ListenableFuture<Void> future = myEdtExecutor.transformAsync(
+      futurePrefetchDone, aVoid -> estimateDownloadWorkWorker(entry, isLinkToDirectory, workEstimate, progress));
     return myEdtExecutor.transform(future, aVoid -> workEstimate);
   }
 
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import com.android.tools.idea.concurrent.FutureCallbackExecutor;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import net.jcip.annotations.GuardedBy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Coalesces small shell operations (copy to a temporary location, delete of a temporary file, etc.)
+ * issued by concurrent file transfers into a single shell command, so that transferring many
+ * small files does not cost one "adb shell" round trip per operation.
+ * <p>
+ * At most one batch is executing at any time: requests submitted while a batch is running are
+ * queued and sent together in the next batch, as long as they fit in the size and command length
+ * limits. If a batch fails, each request of the batch is retried on its own so that the error is
+ * reported for the file that caused it.
+ */
+final class AdbCommandBatcher<T, R> {
+  @NotNull private final FutureCallbackExecutor myExecutor;
+  @NotNull private final Function<List<T>, ListenableFuture<List<R>>> myBatchOperation;
+  @NotNull private final Function<T, ListenableFuture<R>> mySingleOperation;
+  @NotNull private final ToIntFunction<T> myRequestLength;
+  private final int myMaxBatchSize;
+  private final int myMaxBatchLength;
+
+  @NotNull private final Object myLock = new Object();
+  @GuardedBy("myLock")
+  @NotNull private final ArrayDeque<PendingRequest<T, R>> myPendingRequests = new ArrayDeque<>();
+  @GuardedBy("myLock")
+  private boolean myBatchRunning;
+
+  /**
+   * @param batchOperation  executes a list of requests with a single shell command, the resulting list must have
+   *                        one entry per request, in the same order
+   * @param singleOperation executes a single request, used when a batch fails
+   * @param requestLength   the number of characters a request adds to the shell command
+   */
+  AdbCommandBatcher(@NotNull FutureCallbackExecutor executor,
+                    @NotNull Function<List<T>, ListenableFuture<List<R>>> batchOperation,
+                    @NotNull Function<T, ListenableFuture<R>> singleOperation,
+                    @NotNull ToIntFunction<T> requestLength,
+                    int maxBatchSize,
+                    int maxBatchLength) {
+    myExecutor = executor;
+    myBatchOperation = batchOperation;
+    mySingleOperation = singleOperation;
+    myRequestLength = requestLength;
+    myMaxBatchSize = maxBatchSize;
+    myMaxBatchLength = maxBatchLength;
+  }
+
+  @NotNull
+  public ListenableFuture<R> submit(@NotNull T request) {
+    SettableFuture<R> result = SettableFuture.create();
+    synchronized (myLock) {
+      myPendingRequests.add(new PendingRequest<>(request, result));
+    }
+    startNextBatch();
+    return result;
+  }
+
+  private void startNextBatch() {
+    List<PendingRequest<T, R>> batch = new ArrayList<>();
+    synchronized (myLock) {
+      if (myBatchRunning || myPendingRequests.isEmpty()) {
+        return;
+      }
+      int length = 0;
+      while (!myPendingRequests.isEmpty() && batch.size() < myMaxBatchSize) {
+        int requestLength = myRequestLength.applyAsInt(myPendingRequests.peek().myRequest);
+        if (!batch.isEmpty() && length + requestLength > myMaxBatchLength) {
+          break;
+        }
+        length += requestLength;
+        batch.add(myPendingRequests.poll());
+      }
+      myBatchRunning = true;
+    }
+
+    ListenableFuture<Void> futureBatch = batch.size() == 1 ? executeSingle(batch.get(0)) : executeBatch(batch);
+    myExecutor.addConsumer(futureBatch, (aVoid, throwable) -> {
+      synchronized (myLock) {
+        myBatchRunning = false;
+      }
+      startNextBatch();
+    });
+  }
+
+  @NotNull
+  private ListenableFuture<Void> executeBatch(@NotNull List<PendingRequest<T, R>> batch) {
+    List<T> requests = new ArrayList<>(batch.size());
+    batch.forEach(pending -> requests.add(pending.myRequest));
+    ListenableFuture<List<R>> futureResults = myBatchOperation.apply(requests);
+    ListenableFuture<Void> futureDone = myExecutor.transform(futureResults, results -> {
+      assert results != null && results.size() == batch.size();
+      for (int i = 0; i < batch.size(); i++) {
+        batch.get(i).myResult.set(results.get(i));
+      }
+      return null;
+    });
+    return myExecutor.catchingAsync(futureDone, Throwable.class, t -> {
+      // Retry each request on its own, so that each one gets its own error (or success)
+      return myExecutor.executeFuturesInSequence(batch.iterator(), this::executeSingle);
+    });
+  }
+
+  @NotNull
+  private ListenableFuture<Void> executeSingle(@NotNull PendingRequest<T, R> pending) {
+    SettableFuture<Void> done = SettableFuture.create();
+    myExecutor.addCallback(mySingleOperation.apply(pending.myRequest), new FutureCallback<R>() {
+      @Override
+      public void onSuccess(@Nullable R result) {
+        pending.myResult.set(result);
+        done.set(null);
+      }
+
+      @Override
+      public void onFailure(@NotNull Throwable t) {
+        pending.myResult.setException(t);
+        done.set(null);
+      }
+    });
+    return done;
+  }
+
+  private static class PendingRequest<T, R> {
+    @NotNull private final T myRequest;
+    @NotNull private final SettableFuture<R> myResult;
+
+    PendingRequest(@NotNull T request, @NotNull SettableFuture<R> result) {
+      myRequest = request;
+      myResult = result;
+    }
+  }
+}
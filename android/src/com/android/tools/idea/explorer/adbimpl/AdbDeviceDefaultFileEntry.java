@@ -43,6 +43,13 @@ public class AdbDeviceDefaultFileEntry extends AdbDeviceFileEntry {
     return myDevice.getTaskExecutor().transformAsync(futureMountPoint, AdbDeviceFileEntry::getEntries);
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Void> prefetchDescendants() {
+    ListenableFuture<AdbDeviceFileEntry> futureMountPoint = myDevice.resolveMountPoint(this);
+    return myDevice.getTaskExecutor().transformAsync(futureMountPoint, AdbDeviceFileEntry::prefetchDescendants);
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> delete() {
@@ -60,27 +60,37 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
     });
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Void> prefetchDescendants() {
+    return myDevice.getAdbFileListing().prefetchDescendantsRunAs(myEntry, myRunAs);
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> delete() {
+    ListenableFuture<Void> futureDelete;
     if (isDirectory()) {
-      return myDevice.getAdbFileOperations().deleteRecursiveRunAs(getFullPath(), myRunAs);
+      futureDelete = myDevice.getAdbFileOperations().deleteRecursiveRunAs(getFullPath(), myRunAs);
     }
     else {
-      return myDevice.getAdbFileOperations().deleteFileRunAs(getFullPath(), myRunAs);
+      futureDelete = myDevice.getAdbFileOperations().deleteFileRunAs(getFullPath(), myRunAs);
     }
+    return invalidateListingWhenDone(futureDelete, AdbPathUtil.getParentPath(getFullPath()));
   }
 
   @NotNull
   @Override
   public ListenableFuture<Void> createNewFile(@NotNull String fileName) {
-    return myDevice.getAdbFileOperations().createNewFileRunAs(getFullPath(), fileName, myRunAs);
+    return invalidateListingWhenDone(myDevice.getAdbFileOperations().createNewFileRunAs(getFullPath(), fileName, myRunAs),
+                                     getFullPath());
   }
 
   @NotNull
   @Override
   public ListenableFuture<Void> createNewDirectory(@NotNull String directoryName) {
-    return myDevice.getAdbFileOperations().createNewDirectoryRunAs(getFullPath(), directoryName, myRunAs);
+    return invalidateListingWhenDone(myDevice.getAdbFileOperations().createNewDirectoryRunAs(getFullPath(), directoryName, myRunAs),
+                                     getFullPath());
   }
 
   @NotNull
@@ -112,6 +122,13 @@ public class AdbDeviceDirectFileEntry extends AdbDeviceFileEntry {
   public ListenableFuture<Void> uploadFile(@NotNull Path localPath,
                                            @NotNull String fileName,
                                            @NotNull FileTransferProgress progress) {
+    return invalidateListingWhenDone(uploadFileWorker(localPath, fileName, progress), getFullPath());
+  }
+
+  @NotNull
+  private ListenableFuture<Void> uploadFileWorker(@NotNull Path localPath,
+                                                  @NotNull String fileName,
+                                                  @NotNull FileTransferProgress progress) {
     String remotePath = AdbPathUtil.resolve(myEntry.getFullPath(), fileName);
 
     // If the device is *not* root, but supports "su 0", the ADB Sync service may not have the
@@ -17,6 +17,7 @@ package com.android.tools.idea.explorer.adbimpl;
 
 import com.android.tools.idea.explorer.fs.DeviceFileEntry;
 import com.android.tools.idea.explorer.fs.DeviceFileSystem;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -101,6 +102,17 @@ public abstract class AdbDeviceFileEntry implements DeviceFileEntry {
     return myEntry.isSymbolicLink();
   }
 
+  /**
+   * Forgets the cached directory listings of {@code path}, see {@link AdbFileListing#invalidate(String)}, both now and
+   * when {@code future} completes, since the operation {@code future} represents modifies {@code path}.
+   */
+  @NotNull
+  protected <V> ListenableFuture<V> invalidateListingWhenDone(@NotNull ListenableFuture<V> future, @NotNull String path) {
+    myDevice.getAdbFileListing().invalidate(path);
+    myDevice.getTaskExecutor().addListener(future, () -> myDevice.getAdbFileListing().invalidate(path));
+    return future;
+  }
+
   @Nullable
   @Override
   public String getSymbolicLinkTarget() {
@@ -127,6 +127,11 @@ public class AdbDeviceFileSystem implements DeviceFileSystem {
     });
   }
 
+  @Override
+  public void invalidateCachedEntries() {
+    myFileListing.invalidateAll();
+  }
+
   @NotNull
   @Override
   public ListenableFuture<DeviceFileEntry> getEntry(@NotNull String path) {
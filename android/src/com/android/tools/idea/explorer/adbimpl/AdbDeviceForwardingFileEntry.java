@@ -49,6 +49,12 @@ public abstract class AdbDeviceForwardingFileEntry extends AdbDeviceFileEntry {
     return getForwardedFileEntry().getEntries();
   }
 
+  @NotNull
+  @Override
+  public ListenableFuture<Void> prefetchDescendants() {
+    return getForwardedFileEntry().prefetchDescendants();
+  }
+
   @NotNull
   @Override
   public ListenableFuture<Void> delete() {
@@ -15,11 +15,14 @@
  */
 package com.android.tools.idea.explorer.adbimpl;
 
+import com.android.annotations.VisibleForTesting;
 import com.android.ddmlib.AdbCommandRejectedException;
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.MultiLineReceiver;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
 import com.android.tools.idea.concurrent.FutureCallbackExecutor;
+import com.android.tools.idea.flags.StudioFlags;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.openapi.diagnostic.Logger;
@@ -27,9 +30,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -41,11 +46,17 @@ import static com.android.ddmlib.FileListingService.LS_L_PATTERN;
 public class AdbFileListing {
   @NotNull public static final Logger LOGGER = Logger.getInstance(AdbFileListing.class);
   @NotNull private static final Pattern BACKSLASH = Pattern.compile("\\", Pattern.LITERAL);
+  @NotNull private static final Pattern MULTIPLE_SEPARATORS = Pattern.compile("/{2,}");
+  /**
+   * Prefetched listings older than this are listed again.
+   */
+  private static final long MAX_CACHED_LISTING_AGE_MILLIS = 60_000;
 
   @NotNull private final IDevice myDevice;
   @NotNull private AdbDeviceCapabilities myDeviceCapabilities;
   @NotNull private final FutureCallbackExecutor myExecutor;
   @NotNull private final AdbFileListingEntry myRoot;
+  @NotNull private final AdbFileListingCache myCache = new AdbFileListingCache();
 
   public AdbFileListing(@NotNull IDevice device, @NotNull AdbDeviceCapabilities deviceCapabilities, @NotNull Executor taskExecutor) {
     myDevice = device;
@@ -64,9 +75,25 @@ public class AdbFileListing {
     return getChildrenRunAs(parentEntry, null);
   }
 
+  /**
+   * Returns the entries of {@code parentEntry}. They are listed with a "ls" command, unless they were recently
+   * prefetched by {@link #prefetchDescendantsRunAs}.
+   */
   @NotNull
   public ListenableFuture<List<AdbFileListingEntry>> getChildrenRunAs(@NotNull AdbFileListingEntry parentEntry,
                                                                       @Nullable String runAs) {
+    if (isCacheEnabled()) {
+      AdbFileListingCache.Listing listing = myCache.get(parentEntry.getFullPath(), runAs);
+      if (listing != null && myCache.getAgeMillis(listing) < MAX_CACHED_LISTING_AGE_MILLIS) {
+        return Futures.immediateFuture(listing.getEntries());
+      }
+    }
+    return listChildrenRunAs(parentEntry, runAs);
+  }
+
+  @NotNull
+  private ListenableFuture<List<AdbFileListingEntry>> listChildrenRunAs(@NotNull AdbFileListingEntry parentEntry,
+                                                                        @Nullable String runAs) {
     return myExecutor.executeAsync(() -> {
       // Run "ls -l" command and process matching output lines
       String command = getCommand(runAs, "ls -l ").withDirectoryEscapedPath(parentEntry.getFullPath()).build(); //$NON-NLS-1$
@@ -76,7 +103,7 @@ public class AdbFileListing {
 
       List<AdbFileListingEntry> entries = commandResult.getOutput()
         .stream()
-        .map(line -> processLsOutputLine(line, escaping, parentEntry))
+        .map(line -> processLsOutputLine(line, escaping, parentEntry.getFullPath()))
         .filter(Objects::nonNull)
         .collect(Collectors.toList());
       if (entries.isEmpty() && commandResult.isError()) {
@@ -86,6 +113,49 @@ public class AdbFileListing {
     });
   }
 
+  /**
+   * Lists {@code entry} and all the directories it contains with a single (recursive) "ls" command, so that
+   * {@link #getChildrenRunAs} can return the entries of these directories without running a command for each
+   * of them. The output is processed as it is received, so the listings of the first directories are
+   * available before the whole tree is listed.
+   *
+   * <p>This is only an optimization: directories that could not be listed (for example because of
+   * permissions) are simply not cached. Does nothing if the listing cache is disabled.
+   */
+  @NotNull
+  public ListenableFuture<Void> prefetchDescendantsRunAs(@NotNull AdbFileListingEntry entry, @Nullable String runAs) {
+    if (!isCacheEnabled() || !entry.isDirectory()) {
+      return Futures.immediateFuture(null);
+    }
+
+    return myExecutor.executeAsync(() -> {
+      long generation = myCache.getGeneration();
+      String command = getCommand(runAs, "ls -l -R ").withDirectoryEscapedPath(entry.getFullPath()).build(); //$NON-NLS-1$
+      RecursiveListingReceiver receiver =
+        new RecursiveListingReceiver(entry.getFullPath(),
+                                     myDeviceCapabilities.hasEscapingLs(),
+                                     (directoryPath, entries) -> myCache.put(directoryPath, runAs, entries, generation));
+      AdbShellCommandsUtil.executeRawCommand(myDevice, command, receiver);
+      return null;
+    });
+  }
+
+  /**
+   * Forgets the cached listings of {@code path} and of the directories it contains, typically because
+   * {@code path} was modified.
+   */
+  public void invalidate(@NotNull String path) {
+    myCache.invalidate(path);
+  }
+
+  public void invalidateAll() {
+    myCache.invalidateAll();
+  }
+
+  private static boolean isCacheEnabled() {
+    return StudioFlags.DEVICE_EXPLORER_LISTING_CACHE.get();
+  }
+
   /**
    * Determine if a symlink entry points to a directory. This is a best effort process,
    * as the target of the symlink might not be accessible, in which case the future value
@@ -131,7 +201,7 @@ public class AdbFileListing {
   }
 
   @Nullable
-  private static AdbFileListingEntry processLsOutputLine(@NotNull String line, boolean escaping, @NotNull AdbFileListingEntry parentEntry) {
+  private static AdbFileListingEntry processLsOutputLine(@NotNull String line, boolean escaping, @NotNull String parentPath) {
     // no need to handle empty lines.
     if (line.isEmpty()) {
       return null;
@@ -197,7 +267,7 @@ public class AdbFileListing {
       info = "-> " + info; //$NON-NLS-1$;
     }
 
-    String path = AdbPathUtil.resolve(parentEntry.getFullPath(), name);
+    String path = AdbPathUtil.resolve(parentPath, name);
 
     // Create entry and add it to result
     return new AdbFileListingEntry(path,
@@ -217,6 +287,92 @@ public class AdbFileListing {
     return escaping ? BACKSLASH.matcher(name).replaceAll("") : name;
   }
 
+  /**
+   * Processes the output of "ls -l -R" as it is received. The listing of each directory starts with a
+   * "/path/to/directory:" line, except for the top directory with older versions of "ls", and ends with
+   * an empty line. Each directory listing is reported as soon as it is complete.
+   */
+  @VisibleForTesting
+  static class RecursiveListingReceiver extends MultiLineReceiver {
+    private final boolean myEscaping;
+    @NotNull private final BiConsumer<String, List<AdbFileListingEntry>> myConsumer;
+    @NotNull private String myDirectoryPath;
+    @NotNull private List<AdbFileListingEntry> myEntries = new ArrayList<>();
+    private boolean myHasTotalLine;
+    private boolean myHasError;
+
+    RecursiveListingReceiver(@NotNull String path, boolean escaping, @NotNull BiConsumer<String, List<AdbFileListingEntry>> consumer) {
+      myDirectoryPath = normalizeDirectoryPath(path);
+      myEscaping = escaping;
+      myConsumer = consumer;
+    }
+
+    @Override
+    public void processNewLines(@NotNull String[] lines) {
+      for (String line : lines) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (line.startsWith(AdbPathUtil.FILE_SEPARATOR) && line.endsWith(":") && !LS_L_PATTERN.matcher(line).matches()) {
+          String directoryPath = line.substring(0, line.length() - 1);
+          if (myEscaping) {
+            directoryPath = BACKSLASH.matcher(directoryPath).replaceAll("");
+          }
+          startDirectory(normalizeDirectoryPath(directoryPath));
+        }
+        else if (line.startsWith("total ")) {
+          myHasTotalLine = true;
+        }
+        else if (line.startsWith("ls:")) {
+          // Errors are reported in the listing of the directory they relate to
+          myHasError = true;
+        }
+        else {
+          AdbFileListingEntry entry = processLsOutputLine(line, myEscaping, myDirectoryPath);
+          if (entry != null) {
+            myEntries.add(entry);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void done() {
+      endDirectory();
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    private void startDirectory(@NotNull String directoryPath) {
+      if (!directoryPath.equals(myDirectoryPath)) {
+        endDirectory();
+        myDirectoryPath = directoryPath;
+      }
+    }
+
+    private void endDirectory() {
+      // An empty listing without a "total" line is likely a directory that could not be read
+      if (!myHasError && (myHasTotalLine || !myEntries.isEmpty())) {
+        myConsumer.accept(myDirectoryPath, myEntries);
+      }
+      myEntries = new ArrayList<>();
+      myHasTotalLine = false;
+      myHasError = false;
+    }
+
+    @NotNull
+    private static String normalizeDirectoryPath(@NotNull String path) {
+      String result = MULTIPLE_SEPARATORS.matcher(path).replaceAll(AdbPathUtil.FILE_SEPARATOR);
+      if (result.length() > 1 && result.endsWith(AdbPathUtil.FILE_SEPARATOR)) {
+        result = result.substring(0, result.length() - 1);
+      }
+      return result;
+    }
+  }
+
   @NotNull
   private AdbShellCommandBuilder getCommand(@Nullable String runAs, @NotNull String text)
     throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
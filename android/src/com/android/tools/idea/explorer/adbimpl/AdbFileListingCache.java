@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The directory listings of a device prefetched by {@link AdbFileListing#prefetchDescendantsRunAs}, indexed by
+ * directory path and "run-as" package name. Each listing is timestamped, so that callers can decide whether a
+ * listing is recent enough to be used as is, or should be listed again.
+ * <p>
+ * Listings are removed when the corresponding directory is modified through the Device File Explorer
+ * (see {@link #invalidate(String)}), but changes made on the device by other processes are only noticed
+ * once the listings expire.
+ */
+final class AdbFileListingCache {
+  /**
+   * Maximum number of entries kept in the cache, so that listing a very large tree does not use an
+   * unbounded amount of memory.
+   */
+  private static final int MAX_ENTRY_COUNT = 200_000;
+
+  @NotNull private final Map<Key, Listing> myListings = new ConcurrentHashMap<>();
+  @NotNull private final LongSupplier myNanoTime;
+  @NotNull private final AtomicInteger myEntryCount = new AtomicInteger();
+  @NotNull private final AtomicLong myGeneration = new AtomicLong();
+
+  AdbFileListingCache() {
+    this(System::nanoTime);
+  }
+
+  AdbFileListingCache(@NotNull LongSupplier nanoTime) {
+    myNanoTime = nanoTime;
+  }
+
+  /**
+   * Returns the cached listing of {@code directoryPath}, or {@code null} if there is none.
+   */
+  @Nullable
+  public Listing get(@NotNull String directoryPath, @Nullable String runAs) {
+    return myListings.get(new Key(directoryPath, runAs));
+  }
+
+  /**
+   * Returns a value that changes every time listings are invalidated. Callers get the generation before
+   * running a listing command and pass it to {@link #put}, so that a listing started before a directory
+   * was modified is not added to the cache after the modification.
+   */
+  public long getGeneration() {
+    return myGeneration.get();
+  }
+
+  public synchronized void put(@NotNull String directoryPath,
+                               @Nullable String runAs,
+                               @NotNull List<AdbFileListingEntry> entries,
+                               long generation) {
+    if (generation != myGeneration.get() || myEntryCount.get() + entries.size() > MAX_ENTRY_COUNT) {
+      return;
+    }
+    Listing previous = myListings.put(new Key(directoryPath, runAs), new Listing(entries, myNanoTime.getAsLong()));
+    myEntryCount.addAndGet(entries.size() - (previous == null ? 0 : previous.getEntries().size()));
+  }
+
+  /**
+   * Removes the listings of {@code path} and of all the directories it contains, for all "run-as" packages.
+   */
+  public synchronized void invalidate(@NotNull String path) {
+    myGeneration.incrementAndGet();
+    String prefix = path.endsWith(AdbPathUtil.FILE_SEPARATOR) ? path : path + AdbPathUtil.FILE_SEPARATOR;
+    myListings.entrySet().removeIf(entry -> {
+      String directoryPath = entry.getKey().myDirectoryPath;
+      if (directoryPath.equals(path) || directoryPath.startsWith(prefix)) {
+        myEntryCount.addAndGet(-entry.getValue().getEntries().size());
+        return true;
+      }
+      return false;
+    });
+  }
+
+  public synchronized void invalidateAll() {
+    myGeneration.incrementAndGet();
+    myListings.clear();
+    myEntryCount.set(0);
+  }
+
+  /**
+   * Returns how long ago {@code listing} was retrieved from the device, in milliseconds.
+   */
+  public long getAgeMillis(@NotNull Listing listing) {
+    return TimeUnit.NANOSECONDS.toMillis(myNanoTime.getAsLong() - listing.myTimestampNanos);
+  }
+
+  public static final class Listing {
+    @NotNull private final List<AdbFileListingEntry> myEntries;
+    private final long myTimestampNanos;
+
+    private Listing(@NotNull List<AdbFileListingEntry> entries, long timestampNanos) {
+      myEntries = ImmutableList.copyOf(entries);
+      myTimestampNanos = timestampNanos;
+    }
+
+    @NotNull
+    public List<AdbFileListingEntry> getEntries() {
+      return myEntries;
+    }
+  }
+
+  private static final class Key {
+    @NotNull private final String myDirectoryPath;
+    @NotNull private final String myRunAs;
+
+    private Key(@NotNull String directoryPath, @Nullable String runAs) {
+      myDirectoryPath = directoryPath;
+      myRunAs = Strings.nullToEmpty(runAs);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key)o;
+      return myDirectoryPath.equals(key.myDirectoryPath) && myRunAs.equals(key.myRunAs);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myDirectoryPath, myRunAs);
+    }
+  }
+}
@@ -18,17 +18,20 @@ package com.android.tools.idea.explorer.adbimpl;
 import com.android.ddmlib.*;
 import com.android.tools.idea.concurrent.FutureCallbackExecutor;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 public class AdbFileOperations {
+  @NotNull private static final Logger LOGGER = Logger.getInstance(AdbFileOperations.class);
   @NotNull private final IDevice myDevice;
   @NotNull private final FutureCallbackExecutor myExecutor;
   @NotNull private final AdbDeviceCapabilities myDeviceCapabilities;
@@ -199,6 +202,24 @@ public class AdbFileOperations {
     });
   }
 
+  /**
+   * Same as {@link #deleteFile(String)}, but also succeeds if the file does not exist, e.g. because a batched "rm" command
+   * deleted it before failing on another file. Devices whose "rm" does not support "-f" would otherwise fail.
+   */
+  @NotNull
+  public ListenableFuture<Void> deleteFileIfExists(@NotNull String path) {
+    return myExecutor.executeAsync(() -> {
+      String command = getCommand(null, "test ! -e ").withEscapedPath(path)
+        .withText(myDeviceCapabilities.supportsRmForceFlag() ? " || rm -f " : " || rm ").withEscapedPath(path)
+        .build();
+      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command);
+      commandResult.throwIfError();
+
+      // All done
+      return null;
+    });
+  }
+
   @NotNull
   public ListenableFuture<Void> deleteRecursive(@NotNull String path) {
     return deleteRecursiveRunAs(path, null);
@@ -237,6 +258,100 @@ public class AdbFileOperations {
     });
   }
 
+  /**
+   * Same as calling {@link #copyFileRunAs(String, String, String)} for each source and destination, but using a single
+   * shell command. The command stops at the first copy that fails.
+   */
+  @NotNull
+  public ListenableFuture<Void> copyFilesRunAs(@NotNull List<String> sources, @NotNull List<String> destinations, @Nullable String runAs) {
+    assert sources.size() == destinations.size();
+    return myExecutor.executeAsync(() -> {
+      boolean supportsCp = myDeviceCapabilities.supportsCpCommand();
+      AdbShellCommandBuilder command = getCommand(runAs, "");
+      for (int i = 0; i < sources.size(); i++) {
+        if (i > 0) {
+          command.withText(" && ");
+        }
+        if (supportsCp) {
+          command.withText("cp ").withEscapedPath(sources.get(i)).withText(" ").withEscapedPath(destinations.get(i));
+        }
+        else {
+          command.withText("cat ").withEscapedPath(sources.get(i)).withText(" >").withEscapedPath(destinations.get(i));
+        }
+      }
+      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command.build());
+      commandResult.throwIfError();
+      return null;
+    });
+  }
+
+  /**
+   * Same as calling {@link #createTempFile(String)} {@code count} times, but using a single shell command.
+   */
+  @NotNull
+  public ListenableFuture<List<String>> createTempFiles(@NotNull String tempDirectory, int count) {
+    return myExecutor.executeAsync(() -> {
+      List<String> remotePaths = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String tempFileName = UniqueFileNameGenerator.getInstance().getUniqueFileName("temp", "");
+        remotePaths.add(AdbPathUtil.resolve(tempDirectory, tempFileName));
+      }
+
+      AdbShellCommandBuilder command = new AdbShellCommandBuilder();
+      if (myDeviceCapabilities.supportsTouchCommand()) {
+        command.withText("touch");
+        remotePaths.forEach(path -> command.withText(" ").withEscapedPath(path));
+      }
+      else {
+        for (int i = 0; i < remotePaths.size(); i++) {
+          command.withText(i == 0 ? "echo -n >" : " && echo -n >").withEscapedPath(remotePaths.get(i));
+        }
+      }
+      AdbShellCommandResult commandResult;
+      try {
+        commandResult = AdbShellCommandsUtil.executeCommand(myDevice, command.build());
+      }
+      catch (Exception e) {
+        deleteCreatedTempFiles(remotePaths);
+        throw e;
+      }
+      if (commandResult.isError()) {
+        // The files created before the command failed would leak, since the callers create the files again one at a time
+        deleteCreatedTempFiles(remotePaths);
+      }
+      commandResult.throwIfError();
+      return remotePaths;
+    });
+  }
+
+  private void deleteCreatedTempFiles(@NotNull List<String> remotePaths) {
+    try {
+      AdbShellCommandsUtil.executeCommand(myDevice, getDeleteFilesCommand(remotePaths));
+    }
+    catch (Exception e) {
+      LOGGER.warn("Error deleting temporary files after a failed batch", e);
+    }
+  }
+
+  /**
+   * Same as calling {@link #deleteFile(String)} for each path, but using a single shell command.
+   */
+  @NotNull
+  public ListenableFuture<Void> deleteFiles(@NotNull List<String> paths) {
+    return myExecutor.executeAsync(() -> {
+      AdbShellCommandResult commandResult = AdbShellCommandsUtil.executeCommand(myDevice, getDeleteFilesCommand(paths));
+      commandResult.throwIfError();
+      return null;
+    });
+  }
+
+  @NotNull
+  private String getDeleteFilesCommand(@NotNull List<String> paths) {
+    AdbShellCommandBuilder command = getCommand(null, myDeviceCapabilities.supportsRmForceFlag() ? "rm -f" : "rm");
+    paths.forEach(path -> command.withText(" ").withEscapedPath(path));
+    return command.build();
+  }
+
   @NotNull
   public ListenableFuture<String> createTempFile(@NotNull String tempPath) {
     return createTempFileRunAs(tempPath, null);
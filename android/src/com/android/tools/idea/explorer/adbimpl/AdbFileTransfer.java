@@ -24,23 +24,37 @@ import com.android.tools.idea.concurrent.EdtExecutor;
 import com.android.tools.idea.concurrent.FutureCallbackExecutor;
 import com.android.tools.idea.explorer.fs.FileTransferProgress;
 import com.android.tools.idea.explorer.fs.ThrottledProgress;
+import com.android.tools.idea.flags.StudioFlags;
+import com.google.common.base.Strings;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class AdbFileTransfer {
   @NotNull private static Logger LOGGER = Logger.getInstance(AdbFileTransfer.class);
+  private static final int MAX_BATCH_SIZE = 32;
+  private static final int MAX_BATCH_LENGTH = 1500;
 
   @NotNull private final IDevice myDevice;
   @NotNull private final AdbFileOperations myFileOperations;
   @NotNull private final FutureCallbackExecutor myProgressExecutor;
   @NotNull private final FutureCallbackExecutor myTaskExecutor;
+  /** The temporary file batchers, indexed by the directory of the temporary files */
+  @NotNull private final Map<String, AdbCommandBatcher<String, String>> myCreateTempFileBatchers = new ConcurrentHashMap<>();
+  @NotNull private final AdbCommandBatcher<String, Void> myDeleteFileBatcher;
+  /** The "run-as" copy batchers, indexed by package name ("" when not using "run-as") */
+  @NotNull private final Map<String, AdbCommandBatcher<CopyRequest, Void>> myCopyFileBatchers = new ConcurrentHashMap<>();
 
   public AdbFileTransfer(@NotNull IDevice device,
                          @NotNull AdbFileOperations fileOperations,
@@ -50,6 +64,14 @@ public class AdbFileTransfer {
     myFileOperations = fileOperations;
     myProgressExecutor = FutureCallbackExecutor.wrap(progressExecutor);
     myTaskExecutor = FutureCallbackExecutor.wrap(taskExecutor);
+    myDeleteFileBatcher = new AdbCommandBatcher<>(myTaskExecutor,
+                                                  paths -> myTaskExecutor.transform(myFileOperations.deleteFiles(paths),
+                                                                                    aVoid -> Collections.nCopies(paths.size(), null)),
+                                                  // The failed batch may have deleted some of the files already
+                                                  myFileOperations::deleteFileIfExists,
+                                                  String::length,
+                                                  MAX_BATCH_SIZE,
+                                                  MAX_BATCH_LENGTH);
   }
 
   @NotNull
@@ -76,12 +98,12 @@ public class AdbFileTransfer {
     // Note: We should reach this code only if the device is not root, in which case
     // trying a "pullFile" would fail because of permission error (reading from the /data/data/
     // directory), so we copy the file to a temp. location, then pull from that temp location.
-    ListenableFuture<String> futureTempFile = myFileOperations.createTempFile(DEVICE_TEMP_DIRECTORY);
+    ListenableFuture<String> futureTempFile = createTempFile(DEVICE_TEMP_DIRECTORY);
     return myTaskExecutor.transformAsync(futureTempFile, tempFile -> {
       assert tempFile != null;
 
       // Copy the remote file to the temporary remote location
-      ListenableFuture<Void> futureCopy = myFileOperations.copyFileRunAs(remotePath, tempFile, runAs);
+      ListenableFuture<Void> futureCopy = copyFileRunAs(remotePath, tempFile, runAs);
       ListenableFuture<Void> futureDownload = myTaskExecutor.transformAsync(futureCopy, aVoid -> {
         // Download the temporary remote file to local disk
         return downloadFile(tempFile, remotePathSize, localPath, progress);
@@ -89,7 +111,7 @@ public class AdbFileTransfer {
 
       // Ensure temporary remote file is deleted in all cases (after download success *or* error)
       return myTaskExecutor.finallyAsync(futureDownload,
-                                         () -> myFileOperations.deleteFile(tempFile));
+                                         () -> deleteFile(tempFile));
     });
   }
 
@@ -105,7 +127,7 @@ public class AdbFileTransfer {
                                                           @NotNull String remotePath,
                                                           @NotNull FileTransferProgress progress,
                                                           @Nullable String runAs) {
-    ListenableFuture<String> futureTempFile = myFileOperations.createTempFile(DEVICE_TEMP_DIRECTORY);
+    ListenableFuture<String> futureTempFile = createTempFile(DEVICE_TEMP_DIRECTORY);
     return myTaskExecutor.transformAsync(futureTempFile, tempFile -> {
       assert tempFile != null;
 
@@ -113,15 +135,71 @@ public class AdbFileTransfer {
       ListenableFuture<Void> futureUpload = uploadFile(localPath, tempFile, progress);
       ListenableFuture<Void> futureCopy = myTaskExecutor.transformAsync(futureUpload, aVoid -> {
         // Copy file from temporary location to package location (using "run-as")
-        return myFileOperations.copyFileRunAs(tempFile, remotePath, runAs);
+        return copyFileRunAs(tempFile, remotePath, runAs);
       });
 
       // Ensure temporary remote file is deleted in all cases (after upload success *or* error)
       return myTaskExecutor.finallyAsync(futureCopy,
-                                         () -> myFileOperations.deleteFile(tempFile));
+                                         () -> deleteFile(tempFile));
     });
   }
 
+  /**
+   * When transferring files in parallel, the shell commands for temporary files of concurrent transfers are
+   * combined, see {@link AdbCommandBatcher}.
+   */
+  private static boolean useBatchedCommands() {
+    return StudioFlags.DEVICE_EXPLORER_PARALLEL_TRANSFERS.get();
+  }
+
+  @NotNull
+  private ListenableFuture<String> createTempFile(@NotNull String tempDirectory) {
+    if (!useBatchedCommands()) {
+      return myFileOperations.createTempFile(tempDirectory);
+    }
+
+    // Each batch creates all its files in the same directory, so requests for different directories use different batchers
+    AdbCommandBatcher<String, String> batcher = myCreateTempFileBatchers.computeIfAbsent(tempDirectory, directory ->
+      new AdbCommandBatcher<>(myTaskExecutor,
+                              requests -> myFileOperations.createTempFiles(directory, requests.size()),
+                              myFileOperations::createTempFile,
+                              // Temporary file names are short and generated
+                              request -> directory.length() + 16,
+                              MAX_BATCH_SIZE,
+                              MAX_BATCH_LENGTH));
+    return batcher.submit(tempDirectory);
+  }
+
+  @NotNull
+  private ListenableFuture<Void> deleteFile(@NotNull String path) {
+    return useBatchedCommands() ? myDeleteFileBatcher.submit(path) : myFileOperations.deleteFile(path);
+  }
+
+  @NotNull
+  private ListenableFuture<Void> copyFileRunAs(@NotNull String source, @NotNull String destination, @Nullable String runAs) {
+    if (!useBatchedCommands()) {
+      return myFileOperations.copyFileRunAs(source, destination, runAs);
+    }
+
+    // Each batch is a single "run-as" shell command, so requests for different packages use different batchers
+    AdbCommandBatcher<CopyRequest, Void> batcher = myCopyFileBatchers.computeIfAbsent(Strings.nullToEmpty(runAs), key -> {
+      String packageName = Strings.emptyToNull(key);
+      return new AdbCommandBatcher<>(
+        myTaskExecutor,
+        requests -> {
+          List<String> sources = requests.stream().map(request -> request.mySource).collect(Collectors.toList());
+          List<String> destinations = requests.stream().map(request -> request.myDestination).collect(Collectors.toList());
+          return myTaskExecutor.transform(myFileOperations.copyFilesRunAs(sources, destinations, packageName),
+                                          aVoid -> Collections.nCopies(requests.size(), null));
+        },
+        request -> myFileOperations.copyFileRunAs(request.mySource, request.myDestination, packageName),
+        request -> request.mySource.length() + request.myDestination.length(),
+        MAX_BATCH_SIZE,
+        MAX_BATCH_LENGTH);
+    });
+    return batcher.submit(new CopyRequest(source, destination));
+  }
+
   @NotNull
   private ListenableFuture<Void> downloadFileWorker(@NotNull String remotePath,
                                                     long remotePathSize,
@@ -206,6 +284,16 @@ public class AdbFileTransfer {
     });
   }
 
+  private static class CopyRequest {
+    @NotNull private final String mySource;
+    @NotNull private final String myDestination;
+
+    CopyRequest(@NotNull String source, @NotNull String destination) {
+      mySource = source;
+      myDestination = destination;
+    }
+  }
+
   /**
    * Forward callbacks from a {@link SyncService.ISyncProgressMonitor}, running on a pooled thread,
    * to a {@link FileTransferProgress}, using the provided {@link Executor}, typically the
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.explorer.fs;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -56,6 +57,16 @@ public interface DeviceFileEntry {
   @NotNull
   ListenableFuture<List<DeviceFileEntry>> getEntries();
 
+  /**
+   * Loads the entries of this directory and of all its sub-directories ahead of time, so that the
+   * {@link #getEntries()} calls that follow (e.g. when downloading the whole directory) do not need
+   * a round-trip to the device for each directory. The default implementation does nothing.
+   */
+  @NotNull
+  default ListenableFuture<Void> prefetchDescendants() {
+    return Futures.immediateFuture(null);
+  }
+
   /**
    * Deletes the entry from the device file system.
    */
@@ -48,4 +48,11 @@ public interface DeviceFileSystem {
    */
   @NotNull
   ListenableFuture<DeviceFileEntry> getEntry(@NotNull String path);
+
+  /**
+   * Forgets the directory entries cached by this file system, if any, so that the {@link DeviceFileEntry#getEntries()}
+   * calls that follow reflect the current state of the device.
+   */
+  default void invalidateCachedEntries() {
+  }
 }
\ No newline at end of file
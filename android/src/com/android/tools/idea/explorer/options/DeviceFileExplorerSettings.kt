@@ -33,6 +33,9 @@ import javax.swing.filechooser.FileSystemView
 class DeviceFileExplorerSettings : PersistentStateComponent<DeviceFileExplorerSettings> {
   var downloadLocation: String = getDefaultDownloadLocation()
 
+  /** Maximum number of files transferred at the same time, see StudioFlags.DEVICE_EXPLORER_PARALLEL_TRANSFERS */
+  var transferConcurrency: Int = 4
+
   companion object {
     @JvmStatic
     fun getInstance(): DeviceFileExplorerSettings {
@@ -21,6 +21,7 @@ import static com.android.tools.idea.gradle.dsl.model.GradleBuildModelImpl.popul
 import static com.android.tools.idea.gradle.util.GradleUtil.getGradleBuildFile;
 import static com.android.tools.idea.gradle.util.GradleUtil.getGradleSettingsFile;
 
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.gradle.dsl.api.GradleBuildModel;
 import com.android.tools.idea.gradle.dsl.api.GradleSettingsModel;
 import com.android.tools.idea.gradle.dsl.api.ProjectBuildModel;
@@ -28,22 +29,34 @@ import com.android.tools.idea.gradle.dsl.parser.BuildModelContext;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleBuildFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleDslFile;
 import com.android.tools.idea.gradle.dsl.parser.files.GradleSettingsFile;
+import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class ProjectBuildModelImpl implements ProjectBuildModel {
+  /** Scaling does not improve much past a few threads, since the build files of a project are usually small. */
+  private static final int MAX_PSI_LOADING_THREADS = 4;
+
   @NotNull private final BuildModelContext myBuildModelContext;
   @Nullable private final GradleBuildFile myProjectBuildFile;
 
@@ -175,7 +188,7 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
       return allModels;
     }
 
-    allModels.addAll(settingsModel.modulePaths().stream().map((modulePath) -> {
+    List<VirtualFile> moduleBuildFiles = settingsModel.modulePaths().stream().map((modulePath) -> {
       // This should have already been added above
       if (modulePath.equals(":")) {
         return null;
@@ -186,16 +199,65 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
         return null;
       }
 
-      VirtualFile file = getGradleBuildFile(moduleDir);
-      if (file == null) {
-        return null;
-      }
+      return getGradleBuildFile(moduleDir);
+    }).filter(Objects::nonNull).collect(Collectors.toList());
+
+    if (StudioFlags.GRADLE_DSL_PARALLEL_PSI_LOADING.get()) {
+      loadPsiInParallel(moduleBuildFiles);
+    }
 
-      return getModuleBuildModel(file);
-    }).filter(Objects::nonNull).collect(Collectors.toList()));
+    // The DSL trees are built one file at a time since parsing a file resolves references into the files it depends on, which are
+    // shared through the BuildModelContext.
+    allModels.addAll(moduleBuildFiles.stream().map(this::getModuleBuildModel).collect(Collectors.toList()));
     return allModels;
   }
 
+  /**
+   * Builds the PSI trees of the given build files concurrently, so that the sequential parsing of the files into the Gradle DSL model
+   * does not have to lex and parse them. This is only a performance optimization: files that could not be loaded are simply parsed
+   * later, on the calling thread.
+   */
+  private void loadPsiInParallel(@NotNull List<VirtualFile> files) {
+    Application application = ApplicationManager.getApplication();
+    // Helper threads would wait for the write lock to be released, while the current thread waits for them.
+    if (files.size() < 2 || application.isWriteAccessAllowed()) {
+      return;
+    }
+
+    PsiManager psiManager = PsiManager.getInstance(myBuildModelContext.getProject());
+    int maxThreads = Math.min(MAX_PSI_LOADING_THREADS, Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("ProjectBuildModel PSI loading", maxThreads);
+    try {
+      List<Future<?>> jobs = new ArrayList<>();
+      for (VirtualFile file : files) {
+        // Don't wait for the read lock: if a write action is pending, it may be waiting for a read action of the current thread.
+        jobs.add(executor.submit(() -> ApplicationManagerEx.getApplicationEx().tryRunReadAction(() -> {
+          PsiFile psiFile = file.isValid() ? psiManager.findFile(file) : null;
+          if (psiFile != null) {
+            // Walking the tree also parses the lazily parsed elements, such as closures.
+            psiFile.accept(new PsiRecursiveElementWalkingVisitor() {});
+          }
+        })));
+      }
+
+      for (Future<?> job : jobs) {
+        try {
+          job.get();
+        }
+        catch (ExecutionException e) {
+          // Not a problem, the file is loaded again when it is parsed.
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
   private void runOverProjectTree(@NotNull Consumer<GradleDslFile> func) {
     myBuildModelContext.getAllRequestedFiles().forEach(func);
   }
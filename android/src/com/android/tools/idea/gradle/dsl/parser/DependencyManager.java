@@ -16,17 +16,34 @@
 package com.android.tools.idea.gradle.dsl.parser;
 
 import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslElement;
+import com.android.tools.idea.gradle.dsl.parser.elements.GradlePropertiesDslElement;
+import com.android.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Class to manage unresolved dependencies.
+ * <p>
+ * Unresolved references are indexed by each of the names that appear in their reference text, e.g. "rootProject.ext.deps['lib']" is
+ * indexed by "rootProject", "ext", "deps" and "lib". A reference can only be resolved to an element (or through an element) whose
+ * name is one of these, so when elements are added or renamed only the references indexed by their names need to be resolved again.
  */
 public final class DependencyManager {
-  @NotNull private final List<GradleReferenceInjection> myUnresolvedReferences = new ArrayList<>();
+  /** Characters separating the names in a reference text, including the brackets and quotes of indexed map and list accesses. */
+  private static final Pattern NAME_SEPARATORS = Pattern.compile("[.\\[\\]()'\"\\s]+");
+
+  @NotNull private final Set<GradleReferenceInjection> myUnresolvedReferences = new LinkedHashSet<>();
+  @NotNull private final Map<String, Set<GradleReferenceInjection>> myUnresolvedReferencesByName = new HashMap<>();
 
   public static DependencyManager create() {
     return new DependencyManager();
@@ -41,7 +58,11 @@ public final class DependencyManager {
   public void registerUnresolvedReference(@NotNull GradleReferenceInjection injection) {
     // Make sure the reference is not resolved.
     assert !injection.isResolved();
-    myUnresolvedReferences.add(injection);
+    if (myUnresolvedReferences.add(injection)) {
+      for (String name : splitReferenceText(injection.getName())) {
+        myUnresolvedReferencesByName.computeIfAbsent(name, k -> new LinkedHashSet<>()).add(injection);
+      }
+    }
   }
 
   /**
@@ -50,32 +71,83 @@ public final class DependencyManager {
   public void unregisterUnresolvedReference(@NotNull GradleReferenceInjection injection) {
     // Make sure the reference is not resolved.
     assert !injection.isResolved();
-    myUnresolvedReferences.remove(injection);
+    removeUnresolvedReference(injection);
+  }
+
+  private void removeUnresolvedReference(@NotNull GradleReferenceInjection injection) {
+    if (!myUnresolvedReferences.remove(injection)) {
+      return;
+    }
+    for (String name : splitReferenceText(injection.getName())) {
+      Set<GradleReferenceInjection> injections = myUnresolvedReferencesByName.get(name);
+      if (injections != null) {
+        injections.remove(injection);
+        if (injections.isEmpty()) {
+          myUnresolvedReferencesByName.remove(name);
+        }
+      }
+    }
   }
 
   /**
-   * Attempt to resolve dependencies related to a change in a given element.
-   * This currently just delegates to {@link #resolveAll()}
+   * Attempt to resolve dependencies related to a change in a given element. Only the references that contain the name of the element,
+   * or the name of one of its nested elements, are resolved again.
    *
-   * @param element the element that has triggered the attempted resolve. This is currently unused.
+   * @param element the element that has been added or renamed.
    */
   public void resolveWith(@NotNull GradleDslElement element) {
-    resolveAll();
+    Set<String> names = new HashSet<>();
+    collectNames(element, names);
+
+    Set<GradleReferenceInjection> candidates = new LinkedHashSet<>();
+    for (String name : names) {
+      Set<GradleReferenceInjection> injections = myUnresolvedReferencesByName.get(name);
+      if (injections != null) {
+        candidates.addAll(injections);
+      }
+    }
+    resolve(candidates);
   }
 
   /**
    * Attempt to resolve all of the current unresolved dependencies.
    */
   public void resolveAll() {
-    for (Iterator<GradleReferenceInjection> it = myUnresolvedReferences.iterator(); it.hasNext();) {
-      GradleReferenceInjection injection = it.next();
+    resolve(new ArrayList<>(myUnresolvedReferences));
+  }
+
+  private void resolve(@NotNull Collection<GradleReferenceInjection> injections) {
+    for (GradleReferenceInjection injection : injections) {
       // Attempt to re-resolve any references.
       GradleDslElement newElement = injection.getOriginElement().resolveReference(injection.getName(), true);
       if (newElement != null) {
+        removeUnresolvedReference(injection);
         injection.resolveWith(newElement);
         newElement.registerDependent(injection);
-        it.remove();
       }
     }
   }
+
+  @VisibleForTesting
+  int getUnresolvedReferenceCount() {
+    return myUnresolvedReferences.size();
+  }
+
+  /**
+   * Adds to {@code names} the names of {@code element} and of all the elements it contains. Qualifying parts (e.g. "ext" in
+   * "ext.foo") are not included: they name the parents of the element, which are not affected by the change.
+   */
+  private static void collectNames(@NotNull GradleDslElement element, @NotNull Set<String> names) {
+    names.addAll(splitReferenceText(element.getNameElement().name()));
+    if (element instanceof GradlePropertiesDslElement) {
+      for (GradleDslElement child : ((GradlePropertiesDslElement)element).getCurrentElements()) {
+        collectNames(child, names);
+      }
+    }
+  }
+
+  @NotNull
+  private static List<String> splitReferenceText(@NotNull String referenceText) {
+    return Splitter.on(NAME_SEPARATORS).omitEmptyStrings().splitToList(referenceText);
+  }
 }
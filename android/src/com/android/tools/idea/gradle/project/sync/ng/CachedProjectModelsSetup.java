@@ -42,6 +42,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.intellij.openapi.util.text.StringUtil.isNotEmpty;
 
@@ -101,6 +102,9 @@ class CachedProjectModelsSetup extends ModuleSetup<CachedProjectModels> {
       }
     }
 
+    // Models saved in the binary format are decoded lazily, decode all the ones needed in parallel.
+    projectModels.decodeModules(gradleFacets.stream().map(facet -> facet.getModule().getName()).collect(Collectors.toList()));
+
     SetupContextByModuleModel setupContextByModuleModel = new SetupContextByModuleModel();
 
     for (GradleFacet gradleFacet : gradleFacets) {
@@ -109,6 +113,10 @@ class CachedProjectModelsSetup extends ModuleSetup<CachedProjectModels> {
       if (moduleModelsCache != null) {
         getModuleModelFromCache(gradleFacet, moduleModelsCache, moduleFinder, setupContextByModuleModel);
       }
+      else if (projectModels.isUndecodable(moduleName)) {
+        // Setting up the project without this module would leave it half set up, sync instead.
+        throw new ModelNotFoundInCacheException(moduleName);
+      }
     }
     setupModuleModels(setupContextByModuleModel, myGradleModuleSetup, myNdkModuleSetup, myAndroidModuleSetup, myJavaModuleSetup,
                       myExtraModelsManager, true /* sync skipped*/);
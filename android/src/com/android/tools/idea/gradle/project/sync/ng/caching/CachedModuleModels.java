@@ -17,7 +17,6 @@ package com.android.tools.idea.gradle.project.sync.ng.caching;
 
 import com.android.tools.idea.gradle.project.sync.GradleModuleModels;
 import com.google.common.collect.ImmutableList;
-import com.intellij.openapi.module.Module;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -34,8 +33,8 @@ public class CachedModuleModels implements GradleModuleModels {
   @NotNull private final String myModuleName;
   @NotNull private final Map<Class<?>, Serializable> myGradleModelsByType = new HashMap<>();
 
-  CachedModuleModels(@NotNull Module module) {
-    myModuleName = module.getName();
+  CachedModuleModels(@NotNull String moduleName) {
+    myModuleName = moduleName;
   }
 
   public void addModel(@NotNull Serializable model) {
@@ -15,17 +15,23 @@
  */
 package com.android.tools.idea.gradle.project.sync.ng.caching;
 
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.tools.idea.flags.StudioFlags;
 import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.gradle.model.data.BuildParticipant;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 import static com.android.tools.idea.gradle.util.GradleUtil.getCacheFolderRootPath;
@@ -34,6 +40,8 @@ import static com.intellij.openapi.util.io.FileUtil.ensureExists;
 public class CachedProjectModels implements Serializable {
   // Increase the value when adding/removing fields or when changing the serialization/deserialization mechanism.
   private static final long serialVersionUID = 2L;
+  // Decoding is mostly allocation bound, so it doesn't scale much past a few threads.
+  private static final int MAX_DECODING_THREADS = 4;
 
   public static class Factory {
     @NotNull
@@ -45,18 +53,38 @@ public class CachedProjectModels implements Serializable {
   public static class Loader {
     @Nullable
     public CachedProjectModels loadFromDisk(@NotNull Project project) {
-      File cacheFilePath = getCacheFilePath(project);
+      return loadFromDisk(getCacheFilePath(project));
+    }
+
+    /**
+     * Loads the models saved in either format. When the binary format is used, the models of the modules are only decoded when they are
+     * requested (see {@link CachedProjectModels#findCacheForModule(String)} and
+     * {@link CachedProjectModels#decodeModules(Collection)}).
+     */
+    @VisibleForTesting
+    @Nullable
+    CachedProjectModels loadFromDisk(@NotNull File cacheFilePath) {
       if (cacheFilePath.isFile()) {
-        try (FileInputStream fis = new FileInputStream(cacheFilePath)) {
-          try (ObjectInputStream ois = new ObjectInputStream(fis)) {
-            return (CachedProjectModels)ois.readObject();
+        byte[] data;
+        try {
+          data = Files.readAllBytes(cacheFilePath.toPath());
+        }
+        catch (Throwable e) {
+          getLog().warn(String.format("Failed to access '%1$s' while loading Gradle models", cacheFilePath.getPath()), e);
+          return null;
+        }
+        try {
+          if (CachedProjectModelsFormat.isBinaryFormat(data)) {
+            CachedProjectModels models = new CachedProjectModels();
+            CachedProjectModelsFormat.read(data, models);
+            return models;
           }
-          catch (Throwable e) {
-            getLog().warn(String.format("Failed to load Gradle models from '%1$s'", cacheFilePath.getPath()), e);
+          try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (CachedProjectModels)ois.readObject();
           }
         }
         catch (Throwable e) {
-          getLog().warn(String.format("Failed to access '%1$s' while loading Gradle models", cacheFilePath.getPath()), e);
+          getLog().warn(String.format("Failed to load Gradle models from '%1$s'", cacheFilePath.getPath()), e);
         }
       }
       return null;
@@ -64,8 +92,18 @@ public class CachedProjectModels implements Serializable {
   }
 
   // Key: module name.
+  @GuardedBy("this")
   @NotNull private final Map<String, CachedModuleModels> myModelsByModuleName = new HashMap<>();
   @NotNull private final List<BuildParticipant> myBuildParticipants = new ArrayList<>();
+  // The modules loaded from disk that have not been decoded yet, in the form of their section in the binary cache. Key: module name.
+  @GuardedBy("this")
+  @NotNull private transient Map<String, byte[]> myEncodedModelsByModuleName = new HashMap<>();
+  // The modules loaded from disk whose section could not be decoded (e.g. because a model class changed since it was saved).
+  @GuardedBy("this")
+  @NotNull private transient Set<String> myUndecodableModuleNames = new HashSet<>();
+  // The libraries the encoded modules refer to, or null if the models were not loaded from the binary cache.
+  @GuardedBy("this")
+  @Nullable private transient CachedProjectModelsFormat.LibraryTable myLibraryTable;
 
   @VisibleForTesting
   CachedProjectModels() {
@@ -82,14 +120,136 @@ public class CachedProjectModels implements Serializable {
 
   @NotNull
   public CachedModuleModels addModule(@NotNull Module module) {
-    CachedModuleModels cache = new CachedModuleModels(module);
-    myModelsByModuleName.put(module.getName(), cache);
+    return addModule(module.getName());
+  }
+
+  @VisibleForTesting
+  @NotNull
+  synchronized CachedModuleModels addModule(@NotNull String moduleName) {
+    CachedModuleModels cache = new CachedModuleModels(moduleName);
+    myModelsByModuleName.put(moduleName, cache);
+    myEncodedModelsByModuleName.remove(moduleName);
+    myUndecodableModuleNames.remove(moduleName);
     return cache;
   }
 
+  /**
+   * Returns the models of the given module, or null if there are none. This is also the case if the models were saved but cannot be
+   * decoded, which {@link #isUndecodable(String)} tells apart.
+   */
   @Nullable
   public CachedModuleModels findCacheForModule(@NotNull String moduleName) {
-    return myModelsByModuleName.get(moduleName);
+    byte[] encoded;
+    CachedProjectModelsFormat.LibraryTable libraryTable;
+    synchronized (this) {
+      CachedModuleModels cache = myModelsByModuleName.get(moduleName);
+      if (cache != null || myUndecodableModuleNames.contains(moduleName)) {
+        return cache;
+      }
+      encoded = myEncodedModelsByModuleName.get(moduleName);
+      libraryTable = myLibraryTable;
+    }
+    if (encoded == null || libraryTable == null) {
+      return null;
+    }
+
+    // Decode outside of the lock, so that modules can be decoded in parallel.
+    CachedModuleModels decoded = null;
+    try {
+      decoded = CachedProjectModelsFormat.decodeModule(encoded, libraryTable);
+    }
+    catch (Throwable e) {
+      getLog().warn(String.format("Failed to load Gradle models of module '%1$s'", moduleName), e);
+    }
+
+    synchronized (this) {
+      if (myEncodedModelsByModuleName.get(moduleName) != encoded) {
+        // Decoded (or replaced) by another thread in the meantime.
+        return myModelsByModuleName.get(moduleName);
+      }
+      if (decoded == null) {
+        // Keep the section, so that the cache is saved again as it was and still fails to load instead of missing the module.
+        myUndecodableModuleNames.add(moduleName);
+        return null;
+      }
+      myEncodedModelsByModuleName.remove(moduleName);
+      myModelsByModuleName.put(moduleName, decoded);
+      return decoded;
+    }
+  }
+
+  /**
+   * Returns true if the models of the given module were loaded from disk but could not be decoded. The cache is then out of date, and
+   * cannot be used to set up the project.
+   */
+  public synchronized boolean isUndecodable(@NotNull String moduleName) {
+    return myUndecodableModuleNames.contains(moduleName);
+  }
+
+  /**
+   * Decodes the models of the given modules in parallel, if they were loaded from disk and have not been decoded yet, so that subsequent
+   * calls to {@link #findCacheForModule(String)} return immediately.
+   */
+  public void decodeModules(@NotNull Collection<String> moduleNames) {
+    List<String> encodedModuleNames = new ArrayList<>();
+    synchronized (this) {
+      for (String moduleName : moduleNames) {
+        if (myEncodedModelsByModuleName.containsKey(moduleName)) {
+          encodedModuleNames.add(moduleName);
+        }
+      }
+    }
+    if (encodedModuleNames.size() < 2) {
+      return;
+    }
+
+    int maxThreads = Math.min(MAX_DECODING_THREADS, Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("CachedProjectModels", maxThreads);
+    try {
+      List<Future<?>> jobs = new ArrayList<>();
+      for (String moduleName : encodedModuleNames) {
+        jobs.add(executor.submit(() -> findCacheForModule(moduleName)));
+      }
+      for (Future<?> job : jobs) {
+        try {
+          job.get();
+        }
+        catch (ExecutionException e) {
+          // Not a problem, the module is decoded again when it is requested.
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  private void decodeAllModules() {
+    List<String> moduleNames;
+    synchronized (this) {
+      moduleNames = new ArrayList<>(myEncodedModelsByModuleName.keySet());
+      moduleNames.removeAll(myUndecodableModuleNames);
+    }
+    moduleNames.forEach(this::findCacheForModule);
+  }
+
+  @VisibleForTesting
+  synchronized int getEncodedModuleCount() {
+    return myEncodedModelsByModuleName.size();
+  }
+
+  synchronized void setContentsFromDisk(@NotNull List<?> buildParticipants,
+                                        @NotNull CachedProjectModelsFormat.LibraryTable libraryTable,
+                                        @NotNull Map<String, byte[]> encodedModelsByModuleName) {
+    for (Object buildParticipant : buildParticipants) {
+      myBuildParticipants.add((BuildParticipant)buildParticipant);
+    }
+    myEncodedModelsByModuleName.putAll(encodedModelsByModuleName);
+    myLibraryTable = libraryTable;
   }
 
   @NotNull
@@ -112,6 +272,10 @@ public class CachedProjectModels implements Serializable {
       catch (IOException e) {
         getLog().warn(String.format("Failed to create folders for path '%1$s'", path.getPath()), e);
       }
+      if (StudioFlags.GRADLE_BINARY_MODELS_CACHE.get()) {
+        saveInBinaryFormat(path);
+        return;
+      }
       try (FileOutputStream fos = new FileOutputStream(path)) {
         try (ObjectOutputStream oos = new ObjectOutputStream(fos)) {
           oos.writeObject(this);
@@ -126,6 +290,37 @@ public class CachedProjectModels implements Serializable {
     });
   }
 
+  @VisibleForTesting
+  void saveInBinaryFormat(@NotNull File path) {
+    // Modules that were never decoded are saved again without decoding them.
+    Map<String, Object> modulesByName = new LinkedHashMap<>();
+    CachedProjectModelsFormat.LibraryTable libraryTable;
+    synchronized (this) {
+      modulesByName.putAll(myEncodedModelsByModuleName);
+      modulesByName.putAll(myModelsByModuleName);
+      libraryTable = myLibraryTable;
+    }
+    try {
+      CachedProjectModelsFormat.write(path, new ArrayList<>(myBuildParticipants), modulesByName, libraryTable);
+    }
+    catch (Throwable e) {
+      getLog().warn(String.format("Failed to save Gradle models to path '%1$s'", path.getPath()), e);
+    }
+  }
+
+  private void writeObject(@NotNull ObjectOutputStream out) throws IOException {
+    decodeAllModules();
+    synchronized (this) {
+      out.defaultWriteObject();
+    }
+  }
+
+  private void readObject(@NotNull ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    myEncodedModelsByModuleName = new HashMap<>();
+    myUndecodableModuleNames = new HashSet<>();
+  }
+
   public static void eraseDiskCache(@NotNull Project project) {
     File cache = getCacheFilePath(project);
     if (cache.exists()) {
@@ -147,17 +342,25 @@ public class CachedProjectModels implements Serializable {
       return false;
     }
     CachedProjectModels cache = (CachedProjectModels)o;
-    return Objects.equals(myModelsByModuleName, cache.myModelsByModuleName)
+    return Objects.equals(getAllModules(), cache.getAllModules())
            && Objects.equals(myBuildParticipants, cache.myBuildParticipants);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(myModelsByModuleName, myBuildParticipants);
+    return Objects.hash(getAllModules(), myBuildParticipants);
+  }
+
+  @NotNull
+  private Map<String, CachedModuleModels> getAllModules() {
+    decodeAllModules();
+    synchronized (this) {
+      return new HashMap<>(myModelsByModuleName);
+    }
   }
 
   @Override
-  public String toString() {
+  public synchronized String toString() {
     return "CachedProjectModels{" +
            "myModelsByModuleName=" + myModelsByModuleName +
            "myBuildParticipants=" + myBuildParticipants +
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.ng.caching;
+
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.builder.model.level2.Library;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The binary format of the Gradle models cache, which allows the models of each module to be decoded independently, and only when
+ * they are requested.
+ * <p>
+ * The file is laid out as follows:
+ * <pre>
+ *   int          magic number ({@link #MAGIC})
+ *   int          format version ({@link #FORMAT_VERSION})
+ *   int, byte[]  build participants section
+ *   long         library table id
+ *   int, byte[]  library table section
+ *   int          module count
+ *   (UTF, int, int) * module count
+ *                offset table: module name, offset and length of the module section, relative to the end of the table
+ *   byte[]       module sections
+ * </pre>
+ * Each section contains the Java serialized form of its object (a {@link CachedModuleModels} for a module section), since the Gradle
+ * models define how they are serialized. Module sections start with the id of the library table they were written with.
+ * <p>
+ * Modules share most of their libraries, so libraries are only written once, in the library table, and module sections refer to them by
+ * index. The libraries are decoded once, and the decoded modules share them like the models created by sync do.
+ */
+final class CachedProjectModelsFormat {
+  /** "GMC" followed by a 0 byte, which can't start a Java serialization stream (0xACED). */
+  private static final int MAGIC = 0x474D4300;
+  // Increase the value when changing the layout described above.
+  private static final int FORMAT_VERSION = 2;
+
+  private CachedProjectModelsFormat() {
+  }
+
+  static boolean isBinaryFormat(@NotNull byte[] data) {
+    return data.length >= Integer.BYTES && readInt(data) == MAGIC;
+  }
+
+  /**
+   * Writes the given build participants and modules to {@code path}. Modules are given either as a {@link CachedModuleModels}, or as a
+   * {@code byte[]} containing the module section they were read from, which is written again as is. Such sections refer to the libraries
+   * of {@code previousLibraries}, the table they were read with, which are then written again as well.
+   */
+  static void write(@NotNull File path,
+                    @NotNull Serializable buildParticipants,
+                    @NotNull Map<String, Object> modulesByName,
+                    @Nullable LibraryTable previousLibraries) throws IOException {
+    List<Object> libraries = new ArrayList<>();
+    long libraryTableId = ThreadLocalRandom.current().nextLong();
+    if (previousLibraries != null && modulesByName.values().stream().anyMatch(module -> module instanceof byte[])) {
+      try {
+        libraries.addAll(previousLibraries.getLibraries());
+        libraryTableId = previousLibraries.myId;
+      }
+      catch (IOException e) {
+        // The sections that refer to the previous table can't be decoded anyway, and fail the table id check from now on.
+      }
+    }
+
+    Map<Object, Integer> libraryIndices = new HashMap<>();
+    for (int i = 0; i < libraries.size(); i++) {
+      libraryIndices.putIfAbsent(libraries.get(i), i);
+    }
+    List<String> moduleNames = new ArrayList<>(modulesByName.size());
+    List<byte[]> moduleSections = new ArrayList<>(modulesByName.size());
+    for (Map.Entry<String, Object> entry : modulesByName.entrySet()) {
+      Object module = entry.getValue();
+      moduleNames.add(entry.getKey());
+      moduleSections.add(
+        module instanceof byte[] ? (byte[])module : serializeModule((CachedModuleModels)module, libraryTableId, libraries, libraryIndices));
+    }
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      byte[] buildParticipantsSection = serialize(buildParticipants);
+      out.writeInt(buildParticipantsSection.length);
+      out.write(buildParticipantsSection);
+
+      out.writeLong(libraryTableId);
+      byte[] librariesSection = serialize(new ArrayList<>(libraries));
+      out.writeInt(librariesSection.length);
+      out.write(librariesSection);
+
+      out.writeInt(moduleNames.size());
+      int offset = 0;
+      for (int i = 0; i < moduleNames.size(); i++) {
+        out.writeUTF(moduleNames.get(i));
+        out.writeInt(offset);
+        out.writeInt(moduleSections.get(i).length);
+        offset += moduleSections.get(i).length;
+      }
+      for (byte[] section : moduleSections) {
+        out.write(section);
+      }
+    }
+  }
+
+  /**
+   * Reads the build participants section and the offset table of {@code data}, and adds them to {@code models}. The library table and
+   * the module sections are only copied, they are decoded by {@link #decodeModule(byte[], LibraryTable)}.
+   */
+  static void read(@NotNull byte[] data, @NotNull CachedProjectModels models) throws IOException, ClassNotFoundException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a Gradle models cache");
+    }
+    int version = in.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported Gradle models cache version: " + version);
+    }
+
+    byte[] buildParticipantsSection = new byte[checkLength(in.readInt(), data.length)];
+    in.readFully(buildParticipantsSection);
+    List<?> buildParticipants = (List<?>)deserialize(buildParticipantsSection);
+
+    long libraryTableId = in.readLong();
+    byte[] librariesSection = new byte[checkLength(in.readInt(), data.length)];
+    in.readFully(librariesSection);
+
+    int moduleCount = checkLength(in.readInt(), data.length);
+    Map<String, byte[]> moduleSections = new LinkedHashMap<>();
+    List<String> moduleNames = new ArrayList<>(moduleCount);
+    int[] offsets = new int[moduleCount];
+    int[] lengths = new int[moduleCount];
+    for (int i = 0; i < moduleCount; i++) {
+      moduleNames.add(in.readUTF());
+      offsets[i] = checkLength(in.readInt(), data.length);
+      lengths[i] = checkLength(in.readInt(), data.length);
+    }
+
+    int sectionsStart = data.length - in.available();
+    for (int i = 0; i < moduleCount; i++) {
+      long start = (long)sectionsStart + offsets[i];
+      long end = start + lengths[i];
+      if (end > data.length) {
+        throw new IOException("Truncated Gradle models cache");
+      }
+      moduleSections.put(moduleNames.get(i), Arrays.copyOfRange(data, (int)start, (int)end));
+    }
+
+    models.setContentsFromDisk(buildParticipants, new LibraryTable(libraryTableId, librariesSection), moduleSections);
+  }
+
+  @NotNull
+  static CachedModuleModels decodeModule(@NotNull byte[] section, @NotNull LibraryTable libraries)
+    throws IOException, ClassNotFoundException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(section));
+    if (in.readLong() != libraries.myId) {
+      throw new IOException("Module section written with another library table");
+    }
+    try (ObjectInputStream objects = new ObjectInputStream(in) {
+      {
+        enableResolveObject(true);
+      }
+
+      @Override
+      protected Object resolveObject(Object object) throws IOException {
+        if (object instanceof LibraryReference) {
+          List<Object> decoded = libraries.getLibraries();
+          int index = ((LibraryReference)object).myIndex;
+          if (index < 0 || index >= decoded.size()) {
+            throw new IOException("Corrupted Gradle models cache");
+          }
+          return decoded.get(index);
+        }
+        return object;
+      }
+    }) {
+      return (CachedModuleModels)objects.readObject();
+    }
+  }
+
+  @NotNull
+  private static byte[] serializeModule(@NotNull CachedModuleModels module,
+                                        long libraryTableId,
+                                        @NotNull List<Object> libraries,
+                                        @NotNull Map<Object, Integer> libraryIndices) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new DataOutputStream(bytes).writeLong(libraryTableId);
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes) {
+      {
+        enableReplaceObject(true);
+      }
+
+      @Override
+      protected Object replaceObject(Object object) {
+        if (object instanceof Library) {
+          return new LibraryReference(libraryIndices.computeIfAbsent(object, library -> {
+            libraries.add(library);
+            return libraries.size() - 1;
+          }));
+        }
+        return object;
+      }
+    }) {
+      out.writeObject(module);
+    }
+    return bytes.toByteArray();
+  }
+
+  @NotNull
+  private static byte[] serialize(@NotNull Serializable object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    return bytes.toByteArray();
+  }
+
+  @NotNull
+  private static Object deserialize(@NotNull byte[] section) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(section))) {
+      return in.readObject();
+    }
+  }
+
+  /**
+   * The libraries shared by the module sections of a cache file, which are decoded once, when the first module section is decoded.
+   */
+  static final class LibraryTable {
+    private final long myId;
+    @GuardedBy("this")
+    @Nullable private byte[] myEncoded;
+    @GuardedBy("this")
+    @Nullable private List<Object> myDecoded;
+    @GuardedBy("this")
+    @Nullable private Exception myDecodingFailure;
+
+    private LibraryTable(long id, @NotNull byte[] encoded) {
+      myId = id;
+      myEncoded = encoded;
+    }
+
+    @NotNull
+    synchronized List<Object> getLibraries() throws IOException {
+      if (myDecoded == null && myDecodingFailure == null) {
+        try {
+          myDecoded = new ArrayList<>((List<?>)deserialize(myEncoded));
+        }
+        catch (IOException | ClassNotFoundException | RuntimeException e) {
+          myDecodingFailure = e;
+        }
+        myEncoded = null;
+      }
+      if (myDecodingFailure != null) {
+        throw new IOException("Failed to decode the libraries of the Gradle models cache", myDecodingFailure);
+      }
+      return myDecoded;
+    }
+  }
+
+  private static final class LibraryReference implements Serializable {
+    private final int myIndex;
+
+    private LibraryReference(int index) {
+      myIndex = index;
+    }
+  }
+
+  private static int checkLength(int length, int dataLength) throws IOException {
+    if (length < 0 || length > dataLength) {
+      throw new IOException("Corrupted Gradle models cache");
+    }
+    return length;
+  }
+
+  private static int readInt(@NotNull byte[] data) {
+    return ((data[0] & 0xFF) << 24) | ((data[1] & 0xFF) << 16) | ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+  }
+}
@@ -120,9 +120,12 @@ class PsAnalyzerDaemon(
     }, parentDisposable)
   }
 
+  /**
+   * Queues the analysis of [model]. The issues previously found in the module are kept until the analysis completes, and then only the
+   * ones which changed are updated.
+   */
   @UiThread
   fun queueCheck(model: PsModule) {
-    removeIssues(PROJECT_ANALYSIS, byPath = model.path, now = false)
     mainQueue.queue(AnalyzeModuleStructure(model))
     notifyRunning()
   }
@@ -133,7 +136,7 @@ class PsAnalyzerDaemon(
   fun validate(model: PsModel): Sequence<PsIssue> =
     modelAnalyzers[model.javaClass]?.cast<PsModelAnalyzer<PsModel>>()?.analyze(model) ?: sequenceOf()
 
-  private fun doAnalyzeStructure(model: PsModel) {
+  private fun doAnalyzeStructure(model: PsModule) {
     val analyzer = modelAnalyzers[model.javaClass]?.cast<PsModelAnalyzer<PsModel>>()
     if (analyzer == null) {
       LOG.info("Failed to find analyzer for model of type " + model.javaClass.name)
@@ -144,7 +147,8 @@ class PsAnalyzerDaemon(
       invokeAndWaitIfNeeded(ModalityState.any()) {
         val newIssues =
           if (!isStopped && !analyzer.disposed) analyzer.analyze(analyzer.supportedModelType.cast(model)).toList() else emptyList()
-        addAll(newIssues, now = false)
+        issues.replace(PROJECT_ANALYSIS, model.path, newIssues)
+        notifyUpdated(now = false)
       }
     }
     resultsUpdaterQueue.queue(IssuesComputed())
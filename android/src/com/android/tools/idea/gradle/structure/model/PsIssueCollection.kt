@@ -54,12 +54,8 @@ class PsIssueCollection {
   }
 
   fun add(issue: PsIssue) {
-    val path = issue.path
     synchronized(lock) {
-      myIssues.put(path, issue)
-      for (parent in path.parents) {
-        myIssues.put(parent, issue)
-      }
+      addIssue(issue)
     }
   }
 
@@ -70,10 +66,39 @@ class PsIssueCollection {
           .filter { it.type == type }
           .toCollection(HashSet())
 
-      myIssues
-        .entries()
-        .filter { issuesToRemove.contains(it.value)}
-        .forEach { (path, issue) -> myIssues.remove(path, issue) }
+      issuesToRemove.forEach { removeIssue(it) }
+    }
+  }
+
+  /**
+   * Replaces the issues of the given [type] found at [byPath] with [newIssues]. Issues which are still reported are left in place, so
+   * that re-analyzing a model only updates the issues which actually changed.
+   */
+  fun replace(type: PsIssueType, byPath: PsPath, newIssues: Collection<PsIssue>) {
+    synchronized(lock) {
+      val newIssueSet = newIssues.toHashSet()
+      val oldIssueSet = myIssues[byPath].filter { it.type == type }.toHashSet()
+      oldIssueSet.filter { !newIssueSet.contains(it) }.forEach { removeIssue(it) }
+      newIssueSet.filter { !oldIssueSet.contains(it) }.forEach { addIssue(it) }
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun addIssue(issue: PsIssue) {
+    val path = issue.path
+    myIssues.put(path, issue)
+    for (parent in path.parents) {
+      myIssues.put(parent, issue)
+    }
+  }
+
+  // Issues are only registered under their path and its parents, so there is no need to look for them under any other path.
+  @GuardedBy("lock")
+  private fun removeIssue(issue: PsIssue) {
+    val path = issue.path
+    myIssues.remove(path, issue)
+    for (parent in path.parents) {
+      myIssues.remove(parent, issue)
     }
   }
 }
@@ -21,9 +21,11 @@ import com.android.tools.idea.ddms.DeviceContext;
 import com.android.tools.idea.ddms.actions.ScreenRecorderAction;
 import com.android.tools.idea.ddms.actions.ScreenshotAction;
 import com.android.tools.idea.ddms.actions.TerminateVMAction;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyConfigureLogcatHeaderAction;
 import com.android.tools.idea.logcat.AndroidLogcatView.MyRestartAction;
 import com.intellij.diagnostic.logging.LogConsoleBase;
+import com.intellij.diagnostic.logging.LogFilter;
 import com.intellij.diagnostic.logging.LogFormatter;
 import com.intellij.execution.impl.ConsoleViewImpl;
 import com.intellij.execution.ui.ConsoleView;
@@ -109,6 +111,22 @@ public final class AndroidLogConsole extends LogConsoleBase {
     super.addMessage(line);
   }
 
+  @Override
+  public void onFilterStateChange(@NotNull LogFilter filter) {
+    if (StudioFlags.RUNDEBUG_LOGCAT_INDEXED_FILTERING.get() && myView.replayFilteredLogs()) {
+      return;
+    }
+    super.onFilterStateChange(filter);
+  }
+
+  @Override
+  public void onTextFilterChange() {
+    if (StudioFlags.RUNDEBUG_LOGCAT_INDEXED_FILTERING.get() && myView.replayFilteredLogs()) {
+      return;
+    }
+    super.onTextFilterChange();
+  }
+
   /**
    * Clear the current logs and replay all old messages. This is useful to do if the display
    * format of the logs have changed, for example.
@@ -220,6 +220,27 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
     }
   }
 
+  @Nullable
+  AndroidLogcatFilter getConfiguredFilter() {
+    return myConfiguredFilter;
+  }
+
+  @NotNull
+  Log.LogLevel getSelectedLogLevel() {
+    LogFilter filter = getSelectedLogLevelFilter();
+    return filter instanceof AndroidLogLevelFilter ? ((AndroidLogLevelFilter)filter).myLogLevel : Log.LogLevel.VERBOSE;
+  }
+
+  /**
+   * Same as {@link #processingStarted()}, but keeps rejecting the messages older than the last call to
+   * {@link #beginRejectingOldMessages()}. This is used when the old messages are replayed after a filter change.
+   */
+  void replayStarted() {
+    LogCatHeader rejectBeforeHeader = myRejectBeforeHeader;
+    processingStarted();
+    myRejectBeforeHeader = rejectBeforeHeader;
+  }
+
   @Override
   public void processingStarted() {
     myPrevHeader = null;
@@ -33,4 +33,12 @@ public interface AndroidLogcatFilter {
    * Returns {@code true} if the current logcat message should be accepted, {@code false} otherwise.
    */
   boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel);
+
+  /**
+   * Returns {@code false} if no logcat message with this header can be accepted, regardless of its text. This lets the messages
+   * be rejected before their text is read, see {@link LogcatStore}.
+   */
+  default boolean isApplicableHeader(@NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel) {
+    return true;
+  }
 }
@@ -22,6 +22,7 @@ import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatLongEpochMessageParser;
 import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.ddmlib.logcat.LogCatMessageParser;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.logcat.AndroidLogcatService.LogcatListener;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.text.StringUtil;
@@ -29,6 +30,9 @@ import org.jetbrains.android.util.AndroidOutputReceiver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -69,12 +73,51 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
   private int myLineIndex;
   private volatile boolean myCanceled;
 
+  /**
+   * The parser which recognized the last header. The device doesn't change its format, so this is tried first.
+   */
+  @NotNull private LogCatMessageParser myLastParser;
+
+  /**
+   * The messages of the lines being processed by {@link #processNewLines(String[])}, sent to the listener all at once.
+   */
+  @Nullable private List<LogCatMessage> myBatch;
+
+  // Only written by the thread receiving the output of logcat
+  private volatile long myLineCount;
+  private volatile long myHeaderCount;
+  private volatile long myDroppedLineCount;
+  private volatile long myBatchCount;
+
   AndroidLogcatReceiver(@NotNull IDevice device, @NotNull LogcatListener listener) {
     myLongEpochParser = new LogCatLongEpochMessageParser();
     myLongParser = new LogCatMessageParser();
     myDevice = device;
     myStackTraceExpander = new StackTraceExpander(STACK_TRACE_LINE_PREFIX, STACK_TRACE_CAUSE_LINE_PREFIX);
     myLogcatListener = listener;
+    myLastParser = myLongEpochParser;
+  }
+
+  @Override
+  public void processNewLines(@NotNull String[] lines) {
+    if (!StudioFlags.RUNDEBUG_LOGCAT_BATCHED_INGESTION.get()) {
+      super.processNewLines(lines);
+      return;
+    }
+
+    List<LogCatMessage> batch = new ArrayList<>(lines.length);
+    myBatch = batch;
+    try {
+      super.processNewLines(lines);
+    }
+    finally {
+      myBatch = null;
+    }
+
+    if (!batch.isEmpty()) {
+      myBatchCount++;
+      myLogcatListener.onLogLinesReceived(Collections.unmodifiableList(batch));
+    }
   }
 
   @Override
@@ -90,20 +133,20 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
     // both external to Android Studio. In fact, the latest adb/logcat versions have already fixed
     // this issue! But we still need to run properly with older versions. Also, putting this fix in
     // MultiLineReceiver isn't right either because it is used for more than just receiving logcat.
-    line = CARRIAGE_RETURN.matcher(line).replaceAll("");
+    if (line.indexOf('\r') != -1) {
+      line = CARRIAGE_RETURN.matcher(line).replaceAll("");
+    }
 
+    myLineCount++;
     if (line.isEmpty()) {
       myDelayedNewlineCount++;
       return;
     }
 
-    LogCatHeader header = myLongEpochParser.processLogHeader(line, myDevice);
-
-    if (header == null) {
-      header = myLongParser.processLogHeader(line, myDevice);
-    }
+    LogCatHeader header = parseHeader(line);
 
     if (header != null) {
+      myHeaderCount++;
       myStackTraceExpander.reset();
       myActiveHeader = header;
       myLineIndex = 0;
@@ -125,11 +168,41 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
         notifyLine(myActiveHeader, processedLine);
       }
     }
+    else {
+      // Output of logcat before its first header, there is no message to attach this to
+      myDroppedLineCount++;
+    }
+  }
+
+  @Nullable
+  private LogCatHeader parseHeader(@NotNull String line) {
+    // Both parsers only accept lines like "[ ... ]", so don't run their regular expressions on the lines of the messages
+    if (line.charAt(0) != '[' || line.charAt(line.length() - 1) != ']') {
+      return null;
+    }
+
+    LogCatHeader header = myLastParser.processLogHeader(line, myDevice);
+    if (header != null) {
+      return header;
+    }
+
+    LogCatMessageParser otherParser = myLastParser == myLongEpochParser ? myLongParser : myLongEpochParser;
+    header = otherParser.processLogHeader(line, myDevice);
+    if (header != null) {
+      myLastParser = otherParser;
+    }
+    return header;
   }
 
   // This method is package protected so other Logcat components can feed receiver processed log lines if they need to
   void notifyLine(@NotNull LogCatHeader header, @NotNull String line) {
-    myLogcatListener.onLogLineReceived(new LogCatMessage(header, line));
+    LogCatMessage message = new LogCatMessage(header, line);
+    if (myBatch != null) {
+      myBatch.add(message);
+    }
+    else {
+      myLogcatListener.onLogLineReceived(message);
+    }
     myLineIndex++;
   }
 
@@ -157,6 +230,30 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
     myCanceled = true;
   }
 
+  /**
+   * Returns a summary of the output received so far, for the diagnostics of slow logcat consoles.
+   */
+  @NotNull
+  String getStatistics() {
+    return String.format("%d lines, %d messages in %d batches, %d lines dropped", myLineCount, myHeaderCount, myBatchCount,
+                         myDroppedLineCount);
+  }
+
+  @VisibleForTesting
+  long getLineCount() {
+    return myLineCount;
+  }
+
+  @VisibleForTesting
+  long getDroppedLineCount() {
+    return myDroppedLineCount;
+  }
+
+  @VisibleForTesting
+  long getBatchCount() {
+    return myBatchCount;
+  }
+
   @VisibleForTesting
   int getDelayedNewlineCount() {
     return myDelayedNewlineCount;
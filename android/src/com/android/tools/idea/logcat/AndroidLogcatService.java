@@ -61,38 +61,20 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     return Logger.getInstance(AndroidLogcatService.class);
   }
 
-  private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
-
-    public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
-      if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
-      }
-    }
-
-    @NotNull
-    public List<LogCatMessage> getMessages() {
-      return myMessages;
-    }
-  }
-
   private static class ListenerConnector implements LogcatListener {
     @GuardedBy("myListenerLock")
     @Nullable private LogcatListener myListener; // Initially not null, set to null when disconnected.
     @GuardedBy("myBacklogLock")
-    @Nullable private Queue<LogCatMessage> myBacklog; // myBacklog is either null or not empty.
+    @Nullable private Iterable<LogCatMessage> myBacklogSource; // Only iterated when the backlog is first processed.
+    @GuardedBy("myBacklogLock")
+    @Nullable private Iterator<LogCatMessage> myBacklog;
     // The two locks bellow should never be held simultaneously or for a prolonged period of time.
     @NotNull private final Object myListenerLock = new Object();
     @NotNull private final Object myBacklogLock = new Object();
 
-    ListenerConnector(@NotNull LogcatListener listener, @NotNull Collection<LogCatMessage> messageBacklog) {
+    ListenerConnector(@NotNull LogcatListener listener, @NotNull Iterable<LogCatMessage> messageBacklog) {
       myListener = listener;
-      myBacklog = messageBacklog.isEmpty() ? null : new ArrayDeque<>(messageBacklog);
+      myBacklogSource = messageBacklog;
     }
 
     @Override
@@ -101,9 +83,20 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
       dispatchMessage(message);
     }
 
+    @Override
+    public void onLogLinesReceived(@NotNull List<LogCatMessage> messages) {
+      processBacklog(); // Make sure that the backlog is processed before the new messages.
+      synchronized (myListenerLock) {
+        if (myListener != null) {
+          myListener.onLogLinesReceived(messages);
+        }
+      }
+    }
+
     @Override
     public void onCleared() {
       synchronized (myBacklogLock) {
+        myBacklogSource = null;
         myBacklog = null;
       }
       synchronized (myListenerLock) {
@@ -124,6 +117,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
         myListener = null;
       }
       synchronized (myBacklogLock) {
+        myBacklogSource = null;
         myBacklog = null;
       }
     }
@@ -146,14 +140,15 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     @Nullable
     private LogCatMessage getMessageFromBacklog() {
       synchronized (myBacklogLock) {
-        if (myBacklog == null) {
-          return null;
+        if (myBacklogSource != null) {
+          myBacklog = myBacklogSource.iterator();
+          myBacklogSource = null;
         }
-        LogCatMessage message = myBacklog.remove();
-        if (myBacklog.isEmpty()) {
+        if (myBacklog == null || !myBacklog.hasNext()) {
           myBacklog = null;
+          return null;
         }
-        return message;
+        return myBacklog.next();
       }
     }
   }
@@ -162,6 +157,13 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     default void onLogLineReceived(@NotNull LogCatMessage line) {
     }
 
+    /**
+     * Called instead of {@link #onLogLineReceived(LogCatMessage)} with the lines logcat printed at once, in order.
+     */
+    default void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+      lines.forEach(this::onLogLineReceived);
+    }
+
     default void onCleared() {
     }
   }
@@ -174,7 +176,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   private final Map<IDevice, AndroidLogcatReceiver> myLogReceivers;
 
   @GuardedBy("myLock")
-  private final Map<IDevice, LogcatBuffer> myLogBuffers;
+  private final Map<IDevice, LogcatStore> myLogBuffers;
 
   /**
    * This is a list of commands to execute per device. We use a newSingleThreadExecutor
@@ -213,7 +215,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
       AndroidLogcatReceiver receiver = newAndroidLogcatReceiver(device);
       myLogReceivers.put(device, receiver);
-      myLogBuffers.put(device, new LogcatBuffer());
+      myLogBuffers.put(device, new LogcatStore(ConsoleBuffer.useCycleBuffer() ? ConsoleBuffer.getCycleBufferSize() : 0));
       myExecutors.get(device).execute(() -> executeLogcat(device, receiver));
     }
   }
@@ -226,7 +228,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
         Iterable<ListenerConnector> connectors;
         synchronized (myLock) {
           connectors = ImmutableList.copyOf(myDeviceToListenerMultimap.get(device));
-          LogcatBuffer buffer = myLogBuffers.get(device);
+          LogcatStore buffer = myLogBuffers.get(device);
 
           if (buffer != null) {
             buffer.addMessage(line);
@@ -235,6 +237,21 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
         connectors.forEach(connector -> connector.onLogLineReceived(line));
       }
+
+      @Override
+      public void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+        Iterable<ListenerConnector> connectors;
+        synchronized (myLock) {
+          connectors = ImmutableList.copyOf(myDeviceToListenerMultimap.get(device));
+          LogcatStore buffer = myLogBuffers.get(device);
+
+          if (buffer != null) {
+            lines.forEach(buffer::addMessage);
+          }
+        }
+
+        connectors.forEach(connector -> connector.onLogLinesReceived(lines));
+      }
     });
   }
 
@@ -300,8 +317,9 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
   private void stopReceiving(@NotNull IDevice device) {
     synchronized (myLock) {
       if (myLogReceivers.containsKey(device)) {
-        myLogReceivers.get(device).cancel();
-        myLogReceivers.remove(device);
+        AndroidLogcatReceiver receiver = myLogReceivers.remove(device);
+        receiver.cancel();
+        getLog().debug("Stopped receiving logcat from " + device + ": " + receiver.getStatistics());
         myLogBuffers.remove(device);
       }
     }
@@ -366,9 +384,47 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
    */
   public void addListener(@NotNull IDevice device, @NotNull LogcatListener listener, boolean addOldLogs) {
     synchronized (myLock) {
-      List<LogCatMessage> oldMessages =
-          addOldLogs && myLogBuffers.containsKey(device) ? myLogBuffers.get(device).getMessages() : ImmutableList.of();
+      LogcatStore buffer = myLogBuffers.get(device);
+      addListenerWithBacklog(device, listener, addOldLogs && buffer != null ? buffer.snapshot() : ImmutableList.of());
+    }
+  }
+
+  /**
+   * Same as {@link #addListener(IDevice, LogcatListener, boolean)} with {@code addOldLogs} set, but only notifies the listener of the
+   * old log messages whose level is at least {@code minLevel} and which are accepted by {@code oldLogsFilter}. The old messages are
+   * searched on the thread of the device, so this is cheap to call from the UI thread even if the device has a large backlog.
+   */
+  public void addListener(@NotNull IDevice device,
+                          @NotNull LogcatListener listener,
+                          @NotNull AndroidLogcatFilter oldLogsFilter,
+                          @NotNull LogLevel minLevel) {
+    synchronized (myLock) {
+      LogcatStore buffer = myLogBuffers.get(device);
+      if (buffer == null) {
+        addListenerWithBacklog(device, listener, ImmutableList.of());
+        return;
+      }
+      LogcatStore.Snapshot snapshot = buffer.snapshot();
+      addListenerWithBacklog(device, listener, () -> snapshot.getMessages(oldLogsFilter, minLevel).iterator());
+    }
+  }
+
+  /**
+   * Notifies a listener already added for the device of the old log messages again, as if it was removed and added back with
+   * {@link #addListener(IDevice, LogcatListener, AndroidLogcatFilter, LogLevel)}, but without restarting logcat on the device.
+   */
+  public void replayOldLogs(@NotNull IDevice device,
+                            @NotNull LogcatListener listener,
+                            @NotNull AndroidLogcatFilter oldLogsFilter,
+                            @NotNull LogLevel minLevel) {
+    synchronized (myLock) {
+      disconnectListener(device, listener);
+      addListener(device, listener, oldLogsFilter, minLevel);
+    }
+  }
 
+  private void addListenerWithBacklog(@NotNull IDevice device, @NotNull LogcatListener listener, @NotNull Iterable<LogCatMessage> oldMessages) {
+    synchronized (myLock) {
       ListenerConnector listenerConnector = new ListenerConnector(listener, oldMessages);
       myDeviceToListenerMultimap.put(device, listenerConnector);
 
@@ -376,9 +432,8 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
         startReceiving(device);
       }
 
-      if (!oldMessages.isEmpty()) {
-        ExecutorService executor = myExecutors.get(device);
-        assert executor != null;
+      ExecutorService executor = myExecutors.get(device);
+      if (executor != null) {
         executor.execute(() -> listenerConnector.processBacklog());
       }
     }
@@ -399,7 +454,17 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
         return;
       }
 
-      for (Iterator<ListenerConnector> iter = connectors.iterator(); iter.hasNext();) {
+      disconnectListener(device, listener);
+
+      if (connectors.isEmpty()) {
+        stopReceiving(device);
+      }
+    }
+  }
+
+  private void disconnectListener(@NotNull IDevice device, @NotNull LogcatListener listener) {
+    synchronized (myLock) {
+      for (Iterator<ListenerConnector> iter = myDeviceToListenerMultimap.get(device).iterator(); iter.hasNext();) {
         ListenerConnector connector = iter.next();
         if (connector.isConnectedTo(listener)) {
           connector.disconnectListener();
@@ -407,10 +472,6 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
           break;
         }
       }
-
-      if (connectors.isEmpty()) {
-        stopReceiving(device);
-      }
     }
   }
 
@@ -53,7 +53,7 @@ public class AndroidLogcatView {
 
   private final Project myProject;
   final Disposable parentDisposable;
-  private final FormattedLogcatReceiver myLogcatReceiver;
+  private final ViewListener myLogcatReceiver;
   private final AndroidLogConsole myLogConsole;
   private final DeviceContext myDeviceContext;
   private final AndroidLogFilterModel myLogFilterModel;
@@ -294,6 +294,7 @@ public class AndroidLogcatView {
       if (myDevice != null) {
         androidLogcatService.removeListener(myDevice, myLogcatReceiver);
       }
+      myLogcatReceiver.discardPendingLines();
       // We check for null, because myLogConsole.clear() depends on myLogConsole.getConsole() not being null
       if (myLogConsole.getConsole() != null) {
         myLogConsole.clear();
@@ -306,6 +307,33 @@ public class AndroidLogcatView {
     }
   }
 
+  /**
+   * Clears the console and replays the old messages of the device that can pass the configured filter and log level, instead of
+   * having the console filter all the lines it received. Returns false if there is no device to replay the messages of.
+   */
+  boolean replayFilteredLogs() {
+    IDevice device = myDevice;
+    if (device == null) {
+      return false;
+    }
+
+    UIUtil.invokeLaterIfNeeded(() -> {
+      if (myProject.isDisposed() || device != myDevice || myLogConsole.getConsole() == null) {
+        return;
+      }
+      myLogcatReceiver.discardPendingLines();
+      myLogConsole.clear();
+      myLogFilterModel.replayStarted();
+
+      AndroidLogcatFilter filter = myLogFilterModel.getConfiguredFilter();
+      if (filter == null) {
+        filter = new MatchAllFilter(getNoFilters());
+      }
+      AndroidLogcatService.getInstance().replayOldLogs(device, myLogcatReceiver, filter, myLogFilterModel.getSelectedLogLevel());
+    });
+    return true;
+  }
+
   @Nullable
   IDevice getSelectedDevice() {
     if (myDeviceContext != null) {
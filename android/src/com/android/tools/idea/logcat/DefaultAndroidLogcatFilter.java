@@ -99,11 +99,16 @@ public final class DefaultAndroidLogcatFilter implements AndroidLogcatFilter {
 
   @Override
   public boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel) {
-    if (myLogLevel != null && (logLevel.getPriority() < myLogLevel.getPriority())) {
+    if (!isApplicableHeader(tag, pkg, pid, logLevel)) {
       return false;
     }
 
-    if (myMessagePattern != null && !myMessagePattern.matcher(message).find()) {
+    return myMessagePattern == null || myMessagePattern.matcher(message).find();
+  }
+
+  @Override
+  public boolean isApplicableHeader(@NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel) {
+    if (myLogLevel != null && (logLevel.getPriority() < myLogLevel.getPriority())) {
       return false;
     }
 
@@ -19,6 +19,9 @@ import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatMessage;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 abstract class FormattedLogcatReceiver implements AndroidLogcatService.LogcatListener {
   private final AndroidLogcatFormatter myFormatter;
   private LogCatHeader myActiveHeader;
@@ -29,19 +32,36 @@ abstract class FormattedLogcatReceiver implements AndroidLogcatService.LogcatLis
 
   @Override
   public final void onLogLineReceived(@NotNull LogCatMessage line) {
+    receiveFormattedLogLine(format(line));
+  }
+
+  @Override
+  public final void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+    List<String> formattedLines = new ArrayList<>(lines.size());
+    for (LogCatMessage line : lines) {
+      formattedLines.add(format(line));
+    }
+    receiveFormattedLogLines(formattedLines);
+  }
+
+  @NotNull
+  private String format(@NotNull LogCatMessage line) {
     LogCatHeader header = line.getHeader();
 
     // We want the if branch whenever logcat prints a header, even if it has the same value as the previous one. Check the reference values
     // (with !=) and not the object values (with equals) here because we get a new instance every time logcat prints a header.
     if (myActiveHeader != header) {
       myActiveHeader = header;
-      receiveFormattedLogLine(myFormatter.formatMessageFull(header, line.getMessage()));
+      return myFormatter.formatMessageFull(header, line.getMessage());
     }
     else {
-      String message = AndroidLogcatFormatter.formatContinuation(line.getMessage());
-      receiveFormattedLogLine(message);
+      return AndroidLogcatFormatter.formatContinuation(line.getMessage());
     }
   }
 
   abstract void receiveFormattedLogLine(@NotNull String line);
+
+  void receiveFormattedLogLines(@NotNull List<String> lines) {
+    lines.forEach(this::receiveFormattedLogLine);
+  }
 }
@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import com.google.common.collect.ImmutableList;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The log messages received from a device, see {@link AndroidLogcatService}.
+ * <p>
+ * The messages are kept in segments holding their text as UTF-8 and their headers as columns of primitive arrays, with the tags
+ * and application names interned. When the text exceeds the budget, the oldest segments are dropped. Every segment also keeps
+ * the distinct combinations of pid, tag, application name and log level of its messages, which lets
+ * {@link Snapshot#getMessages(AndroidLogcatFilter, LogLevel)} skip the segments and messages a filter cannot accept without
+ * looking at their text.
+ * <p>
+ * A store is only modified by the thread receiving the messages, with the lock of {@link AndroidLogcatService} held. The
+ * {@link Snapshot}s it returns are immutable and can be read from any thread.
+ */
+final class LogcatStore {
+  @VisibleForTesting
+  static final int SEGMENT_SIZE = 64 * 1024;
+  private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+
+  private final int myBudget;
+  private final ArrayDeque<Segment> mySegments = new ArrayDeque<>();
+  private final Map<String, String> myInternedStrings = new HashMap<>();
+  private Segment myCurrentSegment;
+  private long mySize;
+  private LogCatHeader myLastHeader;
+
+  /**
+   * @param budget the maximum size in bytes of the text of the messages kept, or 0 to keep all the messages
+   */
+  LogcatStore(int budget) {
+    myBudget = budget;
+    myCurrentSegment = new Segment();
+  }
+
+  void addMessage(@NotNull LogCatMessage message) {
+    LogCatHeader header = message.getHeader();
+    // The receiver uses the same header instance for all the lines of a message
+    boolean continuation = header == myLastHeader;
+    myLastHeader = header;
+    // Only start a segment with a new message, so that the lines of a message always are in the same segment
+    if (!continuation && myCurrentSegment.myTextSize >= SEGMENT_SIZE) {
+      mySegments.add(myCurrentSegment.trim());
+      myCurrentSegment = new Segment();
+    }
+    byte[] text = message.getMessage().getBytes(StandardCharsets.UTF_8);
+    myCurrentSegment.add(header, text, continuation, this::intern);
+    mySize += text.length;
+    boolean evicted = false;
+    while (myBudget > 0 && mySize > myBudget && !mySegments.isEmpty()) {
+      mySize -= mySegments.removeFirst().myTextSize;
+      evicted = true;
+    }
+    if (evicted) {
+      pruneInternedStrings();
+    }
+  }
+
+  /**
+   * Returns the messages received so far.
+   */
+  @NotNull
+  Snapshot snapshot() {
+    List<Segment> segments = new ArrayList<>(mySegments.size() + 1);
+    segments.addAll(mySegments);
+    if (myCurrentSegment.myCount > 0) {
+      segments.add(myCurrentSegment.trim());
+    }
+    return new Snapshot(segments);
+  }
+
+  @NotNull
+  private String intern(@NotNull String string) {
+    return myInternedStrings.computeIfAbsent(string, s -> s);
+  }
+
+  /**
+   * Forgets the interned strings which are only used by the dropped segments. The strings still used keep their instances, so
+   * that the segments added later share them with the ones kept.
+   */
+  private void pruneInternedStrings() {
+    myInternedStrings.clear();
+    for (Segment segment : mySegments) {
+      segment.addStrings(myInternedStrings);
+    }
+    myCurrentSegment.addStrings(myInternedStrings);
+  }
+
+  @VisibleForTesting
+  int getInternedStringCount() {
+    return myInternedStrings.size();
+  }
+
+  /**
+   * The messages of a {@link LogcatStore} at some point in time.
+   */
+  static final class Snapshot implements Iterable<LogCatMessage> {
+    private final List<Segment> mySegments;
+
+    private Snapshot(@NotNull List<Segment> segments) {
+      mySegments = segments;
+    }
+
+    boolean isEmpty() {
+      return mySegments.isEmpty();
+    }
+
+    @NotNull
+    @Override
+    public Iterator<LogCatMessage> iterator() {
+      return new Iterator<LogCatMessage>() {
+        private int mySegment;
+        private int myIndex;
+        private LogCatHeader myHeader;
+
+        @Override
+        public boolean hasNext() {
+          return mySegment < mySegments.size();
+        }
+
+        @Override
+        public LogCatMessage next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          Segment segment = mySegments.get(mySegment);
+          if (myHeader == null || !segment.isContinuation(myIndex)) {
+            myHeader = segment.getHeader(myIndex);
+          }
+          LogCatMessage message = new LogCatMessage(myHeader, segment.getText(myIndex));
+          if (++myIndex == segment.myCount) {
+            mySegment++;
+            myIndex = 0;
+            myHeader = null;
+          }
+          return message;
+        }
+      };
+    }
+
+    /**
+     * Returns the messages whose log level is at least {@code minLevel} and which are accepted by the filter. If a line of a
+     * multi-line message is accepted, all the lines of the message are returned, like {@link AndroidLogFilterModel} displays them.
+     * The segments are searched in parallel.
+     */
+    @NotNull
+    List<LogCatMessage> getMessages(@NotNull AndroidLogcatFilter filter, @NotNull LogLevel minLevel) {
+      return mySegments.parallelStream()
+        .map(segment -> segment.getMessages(filter, minLevel))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Messages stored as columns. The arrays grow while the segment is the current one of the store and are never modified once
+   * it has been trimmed.
+   */
+  private static final class Segment {
+    private byte[] myText;
+    private int myTextSize;
+    private int myCount;
+    // Per message: end of its text in myText, header, timestamp and whether it has the header of the previous message
+    private int[] myEnds;
+    private int[] myHeaderKinds;
+    private int[] myTids;
+    private long[] mySeconds;
+    private int[] myNanos;
+    // Only allocated for the devices without epoch timestamps, see AndroidLogcatService#executeLogcat
+    @Nullable private LogCatTimestamp[] myLegacyTimestamps;
+    private BitSet myContinuations;
+    // Per distinct combination of pid, tag, application name and log level in this segment
+    private int myKindCount;
+    private int[] myKindPids;
+    private String[] myKindTags;
+    private String[] myKindAppNames;
+    private byte[] myKindLevels;
+    private Map<HeaderKind, Integer> myKindIds;
+
+    Segment() {
+      myText = new byte[1024];
+      myEnds = new int[64];
+      myHeaderKinds = new int[64];
+      myTids = new int[64];
+      mySeconds = new long[64];
+      myNanos = new int[64];
+      myContinuations = new BitSet();
+      myKindPids = new int[8];
+      myKindTags = new String[8];
+      myKindAppNames = new String[8];
+      myKindLevels = new byte[8];
+      myKindIds = new HashMap<>();
+    }
+
+    private Segment(@NotNull Segment segment) {
+      myText = Arrays.copyOf(segment.myText, segment.myTextSize);
+      myTextSize = segment.myTextSize;
+      myCount = segment.myCount;
+      myEnds = Arrays.copyOf(segment.myEnds, myCount);
+      myHeaderKinds = Arrays.copyOf(segment.myHeaderKinds, myCount);
+      myTids = Arrays.copyOf(segment.myTids, myCount);
+      mySeconds = Arrays.copyOf(segment.mySeconds, myCount);
+      myNanos = Arrays.copyOf(segment.myNanos, myCount);
+      myLegacyTimestamps = segment.myLegacyTimestamps == null ? null : Arrays.copyOf(segment.myLegacyTimestamps, myCount);
+      myContinuations = (BitSet)segment.myContinuations.clone();
+      myKindCount = segment.myKindCount;
+      myKindPids = Arrays.copyOf(segment.myKindPids, myKindCount);
+      myKindTags = Arrays.copyOf(segment.myKindTags, myKindCount);
+      myKindAppNames = Arrays.copyOf(segment.myKindAppNames, myKindCount);
+      myKindLevels = Arrays.copyOf(segment.myKindLevels, myKindCount);
+      myKindIds = Collections.emptyMap();
+    }
+
+    /**
+     * Returns an immutable copy of this segment without spare capacity.
+     */
+    @NotNull
+    Segment trim() {
+      return new Segment(this);
+    }
+
+    void add(@NotNull LogCatHeader header, @NotNull byte[] text, boolean continuation, @NotNull Interner interner) {
+      if (myCount == myEnds.length) {
+        int capacity = myCount * 2;
+        myEnds = Arrays.copyOf(myEnds, capacity);
+        myHeaderKinds = Arrays.copyOf(myHeaderKinds, capacity);
+        myTids = Arrays.copyOf(myTids, capacity);
+        mySeconds = Arrays.copyOf(mySeconds, capacity);
+        myNanos = Arrays.copyOf(myNanos, capacity);
+        if (myLegacyTimestamps != null) {
+          myLegacyTimestamps = Arrays.copyOf(myLegacyTimestamps, capacity);
+        }
+      }
+      if (myTextSize + text.length > myText.length) {
+        myText = Arrays.copyOf(myText, Math.max(myText.length * 2, myTextSize + text.length));
+      }
+      System.arraycopy(text, 0, myText, myTextSize, text.length);
+      myTextSize += text.length;
+
+      myEnds[myCount] = myTextSize;
+      myHeaderKinds[myCount] = getKind(header, interner);
+      myTids[myCount] = header.getTid();
+      Instant timestamp = header.getTimestampInstant();
+      if (timestamp != null) {
+        mySeconds[myCount] = timestamp.getEpochSecond();
+        myNanos[myCount] = timestamp.getNano();
+      }
+      else {
+        if (myLegacyTimestamps == null) {
+          myLegacyTimestamps = new LogCatTimestamp[myEnds.length];
+        }
+        @SuppressWarnings("deprecation")
+        LogCatTimestamp legacyTimestamp = header.getTimestamp();
+        myLegacyTimestamps[myCount] = legacyTimestamp;
+      }
+      // The first message of a segment is never a continuation, so that its header can be read without the previous segment
+      myContinuations.set(myCount, continuation && myCount > 0);
+      myCount++;
+    }
+
+    private int getKind(@NotNull LogCatHeader header, @NotNull Interner interner) {
+      HeaderKind kind = new HeaderKind(header.getPid(), header.getTag(), header.getAppName(), header.getLogLevel());
+      Integer id = myKindIds.get(kind);
+      if (id != null) {
+        return id;
+      }
+      if (myKindCount == myKindPids.length) {
+        int capacity = myKindCount * 2;
+        myKindPids = Arrays.copyOf(myKindPids, capacity);
+        myKindTags = Arrays.copyOf(myKindTags, capacity);
+        myKindAppNames = Arrays.copyOf(myKindAppNames, capacity);
+        myKindLevels = Arrays.copyOf(myKindLevels, capacity);
+      }
+      myKindPids[myKindCount] = header.getPid();
+      myKindTags[myKindCount] = interner.intern(header.getTag());
+      myKindAppNames[myKindCount] = interner.intern(header.getAppName());
+      myKindLevels[myKindCount] = (byte)header.getLogLevel().ordinal();
+      myKindIds.put(kind, myKindCount);
+      return myKindCount++;
+    }
+
+    void addStrings(@NotNull Map<String, String> strings) {
+      for (int kind = 0; kind < myKindCount; kind++) {
+        strings.put(myKindTags[kind], myKindTags[kind]);
+        strings.put(myKindAppNames[kind], myKindAppNames[kind]);
+      }
+    }
+
+    boolean isContinuation(int index) {
+      return myContinuations.get(index);
+    }
+
+    @NotNull
+    LogCatHeader getHeader(int index) {
+      int kind = myHeaderKinds[index];
+      LogLevel level = LOG_LEVELS[myKindLevels[kind]];
+      if (myLegacyTimestamps != null && myLegacyTimestamps[index] != null) {
+        @SuppressWarnings("deprecation")
+        LogCatHeader header =
+          new LogCatHeader(level, myKindPids[kind], myTids[index], myKindAppNames[kind], myKindTags[kind], myLegacyTimestamps[index]);
+        return header;
+      }
+      return new LogCatHeader(level, myKindPids[kind], myTids[index], myKindAppNames[kind], myKindTags[kind],
+                              Instant.ofEpochSecond(mySeconds[index], myNanos[index]));
+    }
+
+    @NotNull
+    String getText(int index) {
+      int start = index == 0 ? 0 : myEnds[index - 1];
+      return new String(myText, start, myEnds[index] - start, StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    List<LogCatMessage> getMessages(@NotNull AndroidLogcatFilter filter, @NotNull LogLevel minLevel) {
+      boolean[] acceptedKinds = new boolean[myKindCount];
+      boolean anyAccepted = false;
+      for (int kind = 0; kind < myKindCount; kind++) {
+        LogLevel level = LOG_LEVELS[myKindLevels[kind]];
+        acceptedKinds[kind] = level.getPriority() >= minLevel.getPriority() &&
+                              filter.isApplicableHeader(myKindTags[kind], myKindAppNames[kind], myKindPids[kind], level);
+        anyAccepted |= acceptedKinds[kind];
+      }
+      if (!anyAccepted) {
+        return ImmutableList.of();
+      }
+
+      List<LogCatMessage> messages = new ArrayList<>();
+      int start = 0;
+      while (start < myCount) {
+        int end = start + 1;
+        while (end < myCount && isContinuation(end)) {
+          end++;
+        }
+        int kind = myHeaderKinds[start];
+        if (acceptedKinds[kind]) {
+          String[] lines = new String[end - start];
+          boolean accepted = false;
+          for (int i = start; i < end; i++) {
+            lines[i - start] = getText(i);
+            accepted = accepted ||
+                       filter.isApplicable(lines[i - start], myKindTags[kind], myKindAppNames[kind], myKindPids[kind],
+                                           LOG_LEVELS[myKindLevels[kind]]);
+          }
+          if (accepted) {
+            LogCatHeader header = getHeader(start);
+            for (String line : lines) {
+              messages.add(new LogCatMessage(header, line));
+            }
+          }
+        }
+        start = end;
+      }
+      return messages;
+    }
+  }
+
+  private interface Interner {
+    @NotNull
+    String intern(@NotNull String string);
+  }
+
+  private static final class HeaderKind {
+    private final int myPid;
+    private final String myTag;
+    private final String myAppName;
+    private final LogLevel myLevel;
+
+    HeaderKind(int pid, @NotNull String tag, @NotNull String appName, @NotNull LogLevel level) {
+      myPid = pid;
+      myTag = tag;
+      myAppName = appName;
+      myLevel = level;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof HeaderKind)) {
+        return false;
+      }
+      HeaderKind kind = (HeaderKind)other;
+      return myPid == kind.myPid && myTag.equals(kind.myTag) && myAppName.equals(kind.myAppName) && myLevel == kind.myLevel;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myPid, myTag, myAppName, myLevel);
+    }
+  }
+}
@@ -138,6 +138,10 @@ class StackTraceExpander {
   @VisibleForTesting(visibility = VisibleForTesting.Visibility.PRIVATE)
   @Nullable
   static String getStackLine(@NotNull String line) {
+    // Most lines are not part of a stack trace, avoid matching them against the pattern
+    if (!line.endsWith(")")) {
+      return null;
+    }
     Matcher matcher = EXCEPTION_LINE_PATTERN.matcher(line);
     return matcher.matches() ? matcher.group(1) : null;
   }
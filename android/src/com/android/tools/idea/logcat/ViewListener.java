@@ -15,31 +15,94 @@
  */
 package com.android.tools.idea.logcat;
 
+import com.android.tools.idea.flags.StudioFlags;
 import com.intellij.diagnostic.logging.LogConsoleBase;
 import com.intellij.util.Alarm;
+import net.jcip.annotations.GuardedBy;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 final class ViewListener extends FormattedLogcatReceiver {
+  /**
+   * How long the lines are accumulated before they are added to the console when {@link StudioFlags#RUNDEBUG_LOGCAT_BATCHED_INGESTION}
+   * is enabled, so that a log storm results in a few large console updates instead of one per line.
+   */
+  private static final int BATCH_INTERVAL_MS = 25;
+
   private final AndroidLogcatView myView;
   private final Alarm myAlarm;
+  private final Alarm myBatchAlarm;
+  private final Object myPendingLinesLock = new Object();
+
+  @GuardedBy("myPendingLinesLock")
+  private List<String> myPendingLines = new ArrayList<>();
 
   ViewListener(@NotNull AndroidLogcatFormatter formatter, @NotNull AndroidLogcatView view) {
     super(formatter);
 
     myView = view;
     myAlarm = new Alarm(view.parentDisposable);
+    myBatchAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, view.parentDisposable);
   }
 
   @Override
   void receiveFormattedLogLine(@NotNull String line) {
-    myView.getLogConsole().addLogLine(line);
+    receiveFormattedLogLines(Collections.singletonList(line));
+  }
+
+  @Override
+  void receiveFormattedLogLines(@NotNull List<String> lines) {
+    if (!StudioFlags.RUNDEBUG_LOGCAT_BATCHED_INGESTION.get()) {
+      addLogLines(lines);
+      return;
+    }
+
+    boolean firstPendingLines;
+    synchronized (myPendingLinesLock) {
+      firstPendingLines = myPendingLines.isEmpty();
+      myPendingLines.addAll(lines);
+    }
+
+    if (firstPendingLines) {
+      myBatchAlarm.addRequest(this::addPendingLines, BATCH_INTERVAL_MS);
+    }
+  }
+
+  private void addPendingLines() {
+    List<String> lines;
+    synchronized (myPendingLinesLock) {
+      lines = myPendingLines;
+      myPendingLines = new ArrayList<>();
+    }
+
+    if (!lines.isEmpty()) {
+      addLogLines(lines);
+    }
+  }
+
+  private void addLogLines(@NotNull List<String> lines) {
+    AndroidLogConsole console = myView.getLogConsole();
+    lines.forEach(console::addLogLine);
 
     myAlarm.cancelAllRequests();
     myAlarm.addRequest(myView.getToolbar()::updateActionsImmediately, 50);
   }
 
+  /**
+   * Drops the lines received but not added to the console yet, before the console is cleared.
+   */
+  void discardPendingLines() {
+    synchronized (myPendingLinesLock) {
+      myPendingLines = new ArrayList<>();
+    }
+  }
+
   @Override
   public void onCleared() {
+    discardPendingLines();
     myView.getLogFilterModel().beginRejectingOldMessages();
     LogConsoleBase console = myView.getLogConsole();
 
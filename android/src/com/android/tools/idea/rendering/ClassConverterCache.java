@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.tools.idea.flags.StudioFlags;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.intellij.openapi.application.ApplicationInfo;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of the classes rewritten by {@link ClassConverter#rewriteClass(byte[])}, shared by all the render class loaders.
+ * <p>
+ * Entries are keyed by a hash of the original class bytes and of the converter (see {@link #computeConverterFingerprint()}) so a class
+ * only needs to be rewritten again when its contents or the converter change. The
+ * most recently used classes are kept in memory and every rewritten class is also stored on disk so it survives restarts. The disk
+ * cache is trimmed in the background, least recently used first, when it grows over {@link #DEFAULT_MAX_DISK_BYTES}.
+ */
+public class ClassConverterCache {
+  private static final Logger LOG = Logger.getInstance(ClassConverterCache.class);
+
+  /**
+   * Version of the rewritten output. It must be increased every time {@link ClassConverter} changes the rewritten bytes so stale
+   * entries are not reused.
+   */
+  private static final int CACHE_VERSION = 1;
+  private static final String CACHE_DIRECTORY = "render-class-cache";
+  private static final String CACHE_FILE_EXTENSION = ".class";
+
+  /** Maximum number of bytes of rewritten classes kept in memory. */
+  private static final long DEFAULT_MAX_MEMORY_BYTES = Long.getLong("layoutlib.class.cache.memory.bytes", 32_000_000L);
+  /** Maximum number of bytes of rewritten classes kept on disk. 0 disables the disk cache. */
+  private static final long DEFAULT_MAX_DISK_BYTES = Long.getLong("layoutlib.class.cache.disk.bytes", 256_000_000L);
+
+  private static class InstanceHolder {
+    private static final ClassConverterCache INSTANCE =
+      new ClassConverterCache(DEFAULT_MAX_MEMORY_BYTES, DEFAULT_MAX_DISK_BYTES, new File(PathManager.getSystemPath(), CACHE_DIRECTORY));
+
+    static {
+      // Trim any leftovers from previous sessions
+      INSTANCE.scheduleDiskTrim();
+    }
+  }
+
+  private final Object myLock = new Object();
+  @GuardedBy("myLock")
+  private final LinkedHashMap<String, byte[]> myMemoryCache = new LinkedHashMap<>(16, 0.75f, true);
+  @GuardedBy("myLock")
+  private long myMemoryBytes;
+  private final long myMaxMemoryBytes;
+
+  @Nullable private final File myDirectory;
+  private final long myMaxDiskBytes;
+  /** Number of bytes written to disk since the last time the disk cache was trimmed */
+  private final AtomicLong myWrittenBytes = new AtomicLong();
+  private final AtomicBoolean myTrimScheduled = new AtomicBoolean();
+
+  private final LongAdder myMemoryHits = new LongAdder();
+  private final LongAdder myDiskHits = new LongAdder();
+  private final LongAdder myMisses = new LongAdder();
+  @NotNull private final String myConverterFingerprint;
+
+  @VisibleForTesting
+  ClassConverterCache(long maxMemoryBytes, long maxDiskBytes, @Nullable File directory) {
+    this(maxMemoryBytes, maxDiskBytes, directory, computeConverterFingerprint());
+  }
+
+  @VisibleForTesting
+  ClassConverterCache(long maxMemoryBytes, long maxDiskBytes, @Nullable File directory, @NotNull String converterFingerprint) {
+    myConverterFingerprint = converterFingerprint;
+    myMaxMemoryBytes = maxMemoryBytes;
+    myMaxDiskBytes = maxDiskBytes;
+    myDirectory = maxDiskBytes > 0 ? directory : null;
+  }
+
+  @NotNull
+  public static ClassConverterCache getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Returns whether the render class loaders should use the shared cache to rewrite the classes.
+   */
+  public static boolean isEnabled() {
+    return StudioFlags.NELE_CLASS_CONVERTER_CACHE.get();
+  }
+
+  /**
+   * Returns the class rewritten by {@link ClassConverter#rewriteClass(byte[])}, reusing a previous result if the same class has already
+   * been rewritten. The returned array is shared and must not be modified.
+   */
+  @NotNull
+  public byte[] rewriteClass(@NotNull byte[] classData) {
+    String key = computeKey(classData);
+
+    byte[] rewritten;
+    synchronized (myLock) {
+      rewritten = myMemoryCache.get(key);
+    }
+    if (rewritten != null) {
+      myMemoryHits.increment();
+      return rewritten;
+    }
+
+    rewritten = readFromDisk(key);
+    if (rewritten != null) {
+      myDiskHits.increment();
+    }
+    else {
+      myMisses.increment();
+      rewritten = ClassConverter.rewriteClass(classData);
+      writeToDisk(key, rewritten);
+    }
+
+    synchronized (myLock) {
+      if (myMemoryCache.put(key, rewritten) == null) {
+        myMemoryBytes += rewritten.length;
+      }
+      Iterator<byte[]> iterator = myMemoryCache.values().iterator();
+      while (myMemoryBytes > myMaxMemoryBytes && iterator.hasNext()) {
+        myMemoryBytes -= iterator.next().length;
+        iterator.remove();
+      }
+    }
+    return rewritten;
+  }
+
+  /**
+   * Returns a fingerprint of the code that rewrites the classes: the build number of the IDE, and the bytecode of {@link ClassConverter}
+   * and its inner classes. Entries written by another version of the converter, e.g. by a development build or by another IDE sharing the
+   * disk cache, are then not reused even if {@link #CACHE_VERSION} was not increased.
+   */
+  @NotNull
+  private static String computeConverterFingerprint() {
+    Hasher hasher = Hashing.sha256().newHasher();
+    if (ApplicationManager.getApplication() != null) {
+      hasher.putUnencodedChars(ApplicationInfo.getInstance().getBuild().asString());
+    }
+    String converterName = ClassConverter.class.getSimpleName();
+    for (int i = 0; ; i++) {
+      // The anonymous inner classes hold most of the rewriting logic
+      String resourceName = converterName + (i == 0 ? "" : "$" + i) + CACHE_FILE_EXTENSION;
+      try (InputStream stream = ClassConverter.class.getResourceAsStream(resourceName)) {
+        if (stream == null) {
+          break;
+        }
+        hasher.putBytes(ByteStreams.toByteArray(stream));
+      }
+      catch (IOException e) {
+        LOG.warn("Unable to read " + resourceName, e);
+        break;
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  @NotNull
+  private String computeKey(@NotNull byte[] classData) {
+    return Hashing.sha256().newHasher()
+      .putInt(CACHE_VERSION)
+      .putUnencodedChars(myConverterFingerprint)
+      .putInt(ClassConverter.getCurrentClassVersion())
+      .putBytes(classData)
+      .hash()
+      .toString();
+  }
+
+  @Nullable
+  private File getCacheFile(@NotNull String key) {
+    return myDirectory != null ? new File(myDirectory, key + CACHE_FILE_EXTENSION) : null;
+  }
+
+  @Nullable
+  private byte[] readFromDisk(@NotNull String key) {
+    File file = getCacheFile(key);
+    if (file == null || !file.isFile()) {
+      return null;
+    }
+
+    try {
+      byte[] data = Files.readAllBytes(file.toPath());
+      if (!ClassConverter.isValidClassFile(data)) {
+        LOG.debug("Discarding invalid cached class " + file);
+        Files.deleteIfExists(file.toPath());
+        return null;
+      }
+      // Used as the access time when trimming the disk cache
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(System.currentTimeMillis());
+      return data;
+    }
+    catch (IOException e) {
+      LOG.debug("Unable to read cached class " + file, e);
+      return null;
+    }
+  }
+
+  private void writeToDisk(@NotNull String key, @NotNull byte[] rewritten) {
+    File file = getCacheFile(key);
+    if (file == null) {
+      return;
+    }
+
+    try {
+      Files.createDirectories(myDirectory.toPath());
+      // Write to a temporary file first so other instances never read a partially written class
+      File tempFile = File.createTempFile(key, null, myDirectory);
+      try {
+        Files.write(tempFile.toPath(), rewritten);
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(tempFile.toPath());
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Unable to write cached class " + file, e);
+      return;
+    }
+
+    if (myWrittenBytes.addAndGet(rewritten.length) > myMaxDiskBytes / 4) {
+      scheduleDiskTrim();
+    }
+  }
+
+  private void scheduleDiskTrim() {
+    if (myDirectory != null && myTrimScheduled.compareAndSet(false, true)) {
+      AppExecutorUtil.getAppExecutorService().execute(() -> {
+        try {
+          trimDiskCache();
+        }
+        finally {
+          myTrimScheduled.set(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * Deletes the least recently used classes from the disk cache until it is within its budget.
+   */
+  @VisibleForTesting
+  void trimDiskCache() {
+    myWrittenBytes.set(0);
+    File[] files = myDirectory != null ? myDirectory.listFiles() : null;
+    if (files == null) {
+      return;
+    }
+
+    long totalBytes = 0;
+    for (File file : files) {
+      totalBytes += file.length();
+    }
+    if (totalBytes <= myMaxDiskBytes) {
+      return;
+    }
+
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (File file : files) {
+      if (totalBytes <= myMaxDiskBytes) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        totalBytes -= length;
+      }
+    }
+  }
+
+  /**
+   * Removes all the entries kept in memory. The disk cache is not modified.
+   */
+  @VisibleForTesting
+  void clearMemoryCache() {
+    synchronized (myLock) {
+      myMemoryCache.clear();
+      myMemoryBytes = 0;
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (myLock) {
+      return String.format("ClassConverterCache{entries=%d, memory=%d, memoryHits=%d, diskHits=%d, misses=%d}",
+                           myMemoryCache.size(), myMemoryBytes, myMemoryHits.sum(), myDiskHits.sum(), myMisses.sum());
+    }
+  }
+
+  @VisibleForTesting
+  long getMisses() {
+    return myMisses.sum();
+  }
+
+  @VisibleForTesting
+  long getDiskHits() {
+    return myDiskHits.sum();
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import static com.android.SdkConstants.ATTR_CLASS;
+import static com.android.SdkConstants.VIEW_TAG;
+
+import com.android.resources.ResourceFolderType;
+import com.android.sdklib.IAndroidTarget;
+import com.android.tools.idea.configurations.ConfigurationManager;
+import com.android.tools.idea.layoutlib.LayoutLibrary;
+import com.android.tools.idea.project.AndroidProjectBuildNotifications;
+import com.android.tools.idea.res.ResourceHelper;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.uipreview.ModuleClassLoader;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Loads in the background the custom view classes used by the open layouts after every build, so the first render after the build
+ * does not need to read and rewrite them. The classes are loaded without being initialized so no user code runs outside of a render.
+ */
+public class CustomViewClassPrewarmer implements AndroidProjectBuildNotifications.AndroidProjectBuildListener {
+  private static final Logger LOG = Logger.getInstance(CustomViewClassPrewarmer.class);
+
+  @NotNull private final Project myProject;
+  private final ExecutorService myExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("CustomViewClassPrewarmer", 1);
+
+  private CustomViewClassPrewarmer(@NotNull Project project) {
+    myProject = project;
+  }
+
+  /**
+   * Starts pre-loading custom view classes after every build of the given project until {@code parent} is disposed.
+   */
+  public static void subscribe(@NotNull Project project, @NotNull Disposable parent) {
+    AndroidProjectBuildNotifications.subscribe(project, parent, new CustomViewClassPrewarmer(project));
+  }
+
+  @Override
+  public void buildComplete(@NotNull AndroidProjectBuildNotifications.BuildContext context) {
+    List<VirtualFile> openFiles = Arrays.asList(FileEditorManager.getInstance(myProject).getOpenFiles());
+    if (!openFiles.isEmpty()) {
+      myExecutor.execute(() -> prewarm(openFiles));
+    }
+  }
+
+  private void prewarm(@NotNull List<VirtualFile> files) {
+    Map<Module, Set<String>> classNames = ReadAction.compute(() -> findCustomViewClasses(files));
+    for (Map.Entry<Module, Set<String>> entry : classNames.entrySet()) {
+      Module module = entry.getKey();
+      if (myProject.isDisposed() || module.isDisposed()) {
+        return;
+      }
+      IAndroidTarget target = ConfigurationManager.getOrCreateInstance(module).getHighestApiTarget();
+      LayoutLibrary library = RenderService.getLayoutLibrary(module, target);
+      if (library == null) {
+        continue;
+      }
+
+      ModuleClassLoader classLoader = ModuleClassLoader.get(library, module);
+      for (String className : entry.getValue()) {
+        try {
+          Class.forName(className, false, classLoader);
+        }
+        catch (Throwable t) {
+          // The render will report the problem if the class is really needed
+          LOG.debug("Unable to pre-load " + className, t);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the fully qualified names of the custom views used in the given layout files, grouped by the module of the layout.
+   */
+  @NotNull
+  private Map<Module, Set<String>> findCustomViewClasses(@NotNull List<VirtualFile> files) {
+    Map<Module, Set<String>> classNames = new HashMap<>();
+    PsiManager psiManager = PsiManager.getInstance(myProject);
+    for (VirtualFile file : files) {
+      if (!file.isValid()) {
+        continue;
+      }
+      PsiFile psiFile = psiManager.findFile(file);
+      if (!(psiFile instanceof XmlFile) || ResourceHelper.getFolderType(psiFile) != ResourceFolderType.LAYOUT) {
+        continue;
+      }
+      Module module = ModuleUtilCore.findModuleForPsiElement(psiFile);
+      XmlTag rootTag = ((XmlFile)psiFile).getRootTag();
+      if (module == null || rootTag == null || AndroidFacet.getInstance(module) == null) {
+        continue;
+      }
+      collectCustomViewClasses(rootTag, classNames.computeIfAbsent(module, k -> new LinkedHashSet<>()));
+    }
+    return classNames;
+  }
+
+  private static void collectCustomViewClasses(@NotNull XmlTag tag, @NotNull Set<String> classNames) {
+    String className = VIEW_TAG.equals(tag.getName()) ? tag.getAttributeValue(ATTR_CLASS) : tag.getName();
+    if (className != null && className.indexOf('.') > 0) {
+      classNames.add(className);
+    }
+    for (XmlTag subTag : tag.getSubTags()) {
+      collectCustomViewClasses(subTag, classNames);
+    }
+  }
+}
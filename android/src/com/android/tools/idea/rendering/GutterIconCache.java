@@ -16,41 +16,92 @@
 package com.android.tools.idea.rendering;
 
 import com.android.annotations.VisibleForTesting;
+import com.android.annotations.concurrency.GuardedBy;
 import com.android.ide.common.rendering.api.RenderResources;
-import com.google.common.collect.Maps;
+import com.android.tools.idea.flags.StudioFlags;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.LogicalPosition;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
-import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.scale.JBUIScale;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.EmptyIcon;
 import com.intellij.util.ui.UIUtil;
 import icons.AndroidIcons;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import javax.swing.Icon;
+import javax.swing.JComponent;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.swing.*;
-import java.util.Map;
-
 public class GutterIconCache {
   private static final Logger LOG = Logger.getInstance(GutterIconCache.class);
   private static final Icon NONE = AndroidIcons.Android; // placeholder
 
   @VisibleForTesting static final int MAX_WIDTH = JBUIScale.scale(16);
   @VisibleForTesting static final int MAX_HEIGHT = JBUIScale.scale(16);
+  /** Icon returned while the real icon is being decoded in the background */
+  @VisibleForTesting static final Icon LOADING = EmptyIcon.create(MAX_WIDTH, MAX_HEIGHT);
+  /** Maximum number of icons kept in the cache */
+  @VisibleForTesting static final int MAX_ENTRIES = Integer.getInteger("android.gutter.icon.cache.size", 512);
+
+  /** Executor decoding the icons of all the caches, so that the number of decoding threads does not grow with the number of caches */
+  private static final ExecutorService ourDecodingExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("GutterIconCache", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
 
   private static final GutterIconCache ourInstance = new GutterIconCache();
 
-  private Map<String, Icon> myThumbnailCache = Maps.newHashMap();
+  private final Object myLock = new Object();
 
   /**
-   * Stores timestamps for the last modification time of image files using the
-   * path as a key.
+   * Cached icons using the path as a key. Every entry also stores the modification stamp of the image file at the time the icon was
+   * created.
    */
-  private Map<String, Long> myModificationStampCache = Maps.newHashMap();
+  @GuardedBy("myLock")
+  private final Map<String, CachedIcon> myThumbnailCache;
+  /** Paths of the icons currently scheduled for decoding in the background */
+  @GuardedBy("myLock")
+  private final Set<String> myPendingPaths = new HashSet<>();
+  @GuardedBy("myLock")
   private boolean myRetina;
 
+  private static final class CachedIcon {
+    @NotNull final Icon icon;
+    final long modificationStamp;
+
+    CachedIcon(@NotNull Icon icon, long modificationStamp) {
+      this.icon = icon;
+      this.modificationStamp = modificationStamp;
+    }
+  }
+
   public GutterIconCache() {
+    this(MAX_ENTRIES);
+  }
+
+  @VisibleForTesting
+  GutterIconCache(int maxEntries) {
+    myThumbnailCache = new LinkedHashMap<String, CachedIcon>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedIcon> eldest) {
+        return size() > maxEntries;
+      }
+    };
   }
 
   @NotNull
@@ -58,40 +109,199 @@ public class GutterIconCache {
     return ourInstance;
   }
 
+  /**
+   * Returns whether gutter icons should be decoded in the background, see {@link #getIconOrPlaceholder}.
+   */
+  public static boolean isAsyncDecodingEnabled() {
+    return StudioFlags.GUTTER_ICON_ASYNC_DECODING_ENABLED.get();
+  }
+
   @VisibleForTesting
   boolean isIconUpToDate(@NotNull VirtualFile file) {
-    String path = file.getPath();
-    if (myModificationStampCache.containsKey(path)) {
-      // Entry is valid if image resource has not been modified since the entry was cached
-      return myModificationStampCache.get(path) == file.getModificationStamp() && !FileDocumentManager.getInstance().isFileModified(file);
+    CachedIcon cachedIcon;
+    synchronized (myLock) {
+      cachedIcon = myThumbnailCache.get(file.getPath());
     }
+    return cachedIcon != null && isUpToDate(cachedIcon, file);
+  }
 
-    return false;
+  private static boolean isUpToDate(@NotNull CachedIcon cachedIcon, @NotNull VirtualFile file) {
+    // Entry is valid if image resource has not been modified since the entry was cached
+    return cachedIcon.modificationStamp == file.getModificationStamp() && !FileDocumentManager.getInstance().isFileModified(file);
   }
 
+  /**
+   * Returns the cached icon for the given path or null if there is none. The cache is cleared if the retina state has changed.
+   */
   @Nullable
-  public Icon getIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+  private CachedIcon getCachedIcon(@NotNull String path) {
     boolean isRetina = UIUtil.isRetina();
-    if (myRetina != isRetina) {
-      myRetina = isRetina;
-      myThumbnailCache.clear();
+    synchronized (myLock) {
+      if (myRetina != isRetina) {
+        myRetina = isRetina;
+        myThumbnailCache.clear();
+      }
+      return myThumbnailCache.get(path);
     }
-    String path = file.getPath();
-    Icon myIcon = myThumbnailCache.get(path);
-    if (myIcon == null || !isIconUpToDate(file)) {
-      myIcon = GutterIconFactory.createIcon(file, resolver, MAX_WIDTH, MAX_HEIGHT, facet);
+  }
+
+  /**
+   * Returns the icon for the given file, decoding it in the calling thread if it is not cached or the cached version is out of date.
+   */
+  @Nullable
+  public Icon getIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+    CachedIcon cachedIcon = getCachedIcon(file.getPath());
+    Icon icon = cachedIcon != null && isUpToDate(cachedIcon, file) ? cachedIcon.icon : decodeIcon(file, resolver, facet);
+    return icon != NONE ? icon : null;
+  }
 
-      if (myIcon == null) {
-        myIcon = NONE;
+  /**
+   * Returns the icon for the given file without blocking. If the icon is not cached or the cached version is out of date, the previous
+   * version of the icon (or a placeholder if there is none) is returned and the icon is decoded in the background. Once decoded, the
+   * gutter of the given editor, or of all the editors in the project if null, is repainted.
+   */
+  @Nullable
+  public Icon getIconOrPlaceholder(@NotNull VirtualFile file,
+                                   @Nullable RenderResources resolver,
+                                   @NotNull AndroidFacet facet,
+                                   @Nullable Editor editor) {
+    CachedIcon cachedIcon = getCachedIcon(file.getPath());
+    if (cachedIcon != null && isUpToDate(cachedIcon, file)) {
+      return cachedIcon.icon != NONE ? cachedIcon.icon : null;
+    }
+
+    scheduleDecoding(file, resolver, facet, editor);
+    if (cachedIcon != null) {
+      return cachedIcon.icon != NONE ? cachedIcon.icon : null;
+    }
+    return LOADING;
+  }
+
+  /**
+   * Decodes in the background the icons for the given files that are not cached yet. The {@code files} are pairs of the offset in the
+   * editor document where the icon is displayed and the image file. The icons in the visible area of the editor are scheduled first.
+   */
+  public void prefetch(@NotNull Editor editor,
+                       @NotNull List<Pair<Integer, VirtualFile>> files,
+                       @Nullable RenderResources resolver,
+                       @NotNull AndroidFacet facet) {
+    if (files.isEmpty()) {
+      return;
+    }
+
+    // The visible area can only be queried from the UI thread
+    ApplicationManager.getApplication().invokeLater(() -> {
+      if (editor.isDisposed()) {
+        return;
       }
+      Rectangle visibleArea = editor.getScrollingModel().getVisibleArea();
+      int startOffset = editor.logicalPositionToOffset(editor.xyToLogicalPosition(visibleArea.getLocation()));
+      LogicalPosition end = editor.xyToLogicalPosition(new Point(visibleArea.x + visibleArea.width, visibleArea.y + visibleArea.height));
+      int endOffset = editor.logicalPositionToOffset(end);
 
-      myThumbnailCache.put(path, myIcon);
+      List<VirtualFile> visible = new ArrayList<>();
+      List<VirtualFile> hidden = new ArrayList<>();
+      for (Pair<Integer, VirtualFile> file : files) {
+        if (file.first >= startOffset && file.first <= endOffset) {
+          visible.add(file.second);
+        }
+        else {
+          hidden.add(file.second);
+        }
+      }
+      scheduleDecoding(visible, resolver, facet, editor);
+      scheduleDecoding(hidden, resolver, facet, editor);
+    }, facet.getModule().getDisposed());
+  }
+
+  private void scheduleDecoding(@NotNull VirtualFile file,
+                                @Nullable RenderResources resolver,
+                                @NotNull AndroidFacet facet,
+                                @Nullable Editor editor) {
+    scheduleDecoding(Collections.singletonList(file), resolver, facet, editor);
+  }
 
-      // Record timestamp of image resource at the time of caching
-      myModificationStampCache.put(path, file.getModificationStamp());
+  /**
+   * Schedules a single background task that decodes all the given icons that are not up to date and not already being decoded. The
+   * gutter is repainted once, after the whole batch has been decoded.
+   */
+  private void scheduleDecoding(@NotNull List<VirtualFile> files,
+                                @Nullable RenderResources resolver,
+                                @NotNull AndroidFacet facet,
+                                @Nullable Editor editor) {
+    List<VirtualFile> batch = new ArrayList<>(files.size());
+    synchronized (myLock) {
+      for (VirtualFile file : files) {
+        CachedIcon cachedIcon = myThumbnailCache.get(file.getPath());
+        if ((cachedIcon == null || !isUpToDate(cachedIcon, file)) && myPendingPaths.add(file.getPath())) {
+          batch.add(file);
+        }
+      }
+    }
+    if (batch.isEmpty()) {
+      return;
     }
 
-    return myIcon != NONE ? myIcon : null;
+    ourDecodingExecutor.execute(() -> {
+      try {
+        for (VirtualFile file : batch) {
+          if (facet.isDisposed()) {
+            return;
+          }
+          try {
+            decodeIcon(file, resolver, facet);
+          }
+          catch (Throwable t) {
+            LOG.warn("Unable to decode gutter icon for " + file.getPath(), t);
+          }
+        }
+      }
+      finally {
+        synchronized (myLock) {
+          for (VirtualFile file : batch) {
+            myPendingPaths.remove(file.getPath());
+          }
+        }
+      }
+      repaintGutters(facet.getModule().getProject(), editor);
+    });
+  }
+
+  @NotNull
+  private Icon decodeIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+    // Record timestamp of image resource at the time of caching
+    long modificationStamp = file.getModificationStamp();
+    Icon icon = GutterIconFactory.createIcon(file, resolver, MAX_WIDTH, MAX_HEIGHT, facet);
+    if (icon == null) {
+      icon = NONE;
+    }
+
+    synchronized (myLock) {
+      myThumbnailCache.put(file.getPath(), new CachedIcon(icon, modificationStamp));
+    }
+    return icon;
   }
 
+  private static void repaintGutters(@NotNull Project project, @Nullable Editor editor) {
+    ApplicationManager.getApplication().invokeLater(() -> {
+      if (project.isDisposed()) {
+        return;
+      }
+      if (editor != null) {
+        repaintGutter(editor);
+        return;
+      }
+      for (Editor projectEditor : EditorFactory.getInstance().getAllEditors()) {
+        if (project.equals(projectEditor.getProject())) {
+          repaintGutter(projectEditor);
+        }
+      }
+    });
+  }
+
+  private static void repaintGutter(@NotNull Editor editor) {
+    if (!editor.isDisposed() && editor.getGutter() instanceof JComponent) {
+      ((JComponent)editor.getGutter()).repaint();
+    }
+  }
 }
@@ -45,19 +45,30 @@ public class GutterIconRenderer extends com.intellij.openapi.editor.markup.Gutte
   @NotNull private final AndroidFacet myFacet;
   @NotNull private final VirtualFile myFile;
   @NotNull private final Configuration myConfiguration;
+  /** The editor displaying the icon, used to repaint the gutter when the icon is decoded in the background */
+  @Nullable private final Editor myEditor;
 
   public GutterIconRenderer(@NotNull ResourceResolver resourceResolver, @NotNull AndroidFacet facet, @NotNull VirtualFile file,
                             @NotNull Configuration configuration) {
+    this(resourceResolver, facet, file, configuration, null);
+  }
+
+  public GutterIconRenderer(@NotNull ResourceResolver resourceResolver, @NotNull AndroidFacet facet, @NotNull VirtualFile file,
+                            @NotNull Configuration configuration, @Nullable Editor editor) {
     myResourceResolver = resourceResolver;
     myFacet = facet;
     myFile = file;
     myConfiguration = configuration;
+    myEditor = editor;
   }
 
   @Override
   @NotNull
   public Icon getIcon() {
-    Icon icon = GutterIconCache.getInstance().getIcon(myFile, myResourceResolver, myFacet);
+    GutterIconCache cache = GutterIconCache.getInstance();
+    Icon icon = GutterIconCache.isAsyncDecodingEnabled()
+                ? cache.getIconOrPlaceholder(myFile, myResourceResolver, myFacet, myEditor)
+                : cache.getIcon(myFile, myResourceResolver, myFacet);
     return icon == null ? EmptyIcon.ICON_0 : icon;
   }
 
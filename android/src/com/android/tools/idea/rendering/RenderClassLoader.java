@@ -181,6 +181,9 @@ public abstract class RenderClassLoader extends ClassLoader {
 
   @NotNull
   protected byte[] convertClass(@NotNull byte[] data) {
+    if (ClassConverterCache.isEnabled()) {
+      return ClassConverterCache.getInstance().rewriteClass(data);
+    }
     return ClassConverter.rewriteClass(data);
   }
 
@@ -95,6 +95,31 @@ public class RenderResult {
       defaultStyles != null ? ImmutableMap.copyOf(defaultStyles) : ImmutableMap.of());
   }
 
+  /**
+   * Creates a new successful {@link RenderResult} from previously rendered data, without a {@link RenderTask} or layoutlib session
+   * backing it. Used by {@link RenderResultCache} to serve renders that are identical to an earlier one.
+   */
+  @NotNull
+  static RenderResult createFromCache(@NotNull PsiFile file,
+                                      @NotNull Module module,
+                                      @NotNull ImmutableList<ViewInfo> rootViews,
+                                      @NotNull ImmutableList<ViewInfo> systemRootViews,
+                                      @NotNull ImagePool.Image image,
+                                      @NotNull Map<Object, Map<ResourceReference, ResourceValue>> defaultProperties,
+                                      @NotNull Map<Object, String> defaultStyles) {
+    return new RenderResult(
+      file,
+      module,
+      new RenderLogger(null, module),
+      null,
+      Result.Status.SUCCESS.createResult(),
+      rootViews,
+      systemRootViews,
+      image,
+      defaultProperties,
+      defaultStyles);
+  }
+
   /**
    * Creates a new session initialization error {@link RenderResult} from a given RenderTask
    */
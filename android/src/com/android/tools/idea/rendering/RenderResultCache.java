@@ -0,0 +1,562 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.ide.common.rendering.api.ResourceReference;
+import com.android.ide.common.rendering.api.ResourceValue;
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.sdklib.IAndroidTarget;
+import com.android.sdklib.devices.Device;
+import com.android.sdklib.devices.State;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.rendering.imagepool.ImagePoolFactory;
+import com.android.tools.idea.rendering.parsers.TagSnapshot;
+import com.android.tools.idea.rendering.parsers.TagSnapshotCache;
+import com.android.tools.idea.res.ResourceRepositoryManager;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.jetbrains.android.facet.AndroidFacet;
+import org.jetbrains.android.uipreview.ModuleClassLoader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+/**
+ * Content addressed cache of {@link RenderResult}s.
+ * <p>
+ * Results are keyed by a hash of the layout {@link TagSnapshot} tree, the {@link Configuration} used to render it and the generations
+ * of the app resources and the project class loader. Two renders with the same {@link CacheKey} are expected to produce the same image,
+ * so a hit can be served without calling layoutlib.
+ * <p>
+ * The rendered images are kept in memory in an LRU bounded by {@link #getMaxMemoryBytes()} bytes. When disk spill is enabled, images
+ * evicted from memory are written to disk and read back on the next hit. The view hierarchy always stays in memory since it contains
+ * references to the layout {@link TagSnapshot}s.
+ * <p>
+ * The view hierarchy and the default properties refer to the view objects created by the {@link ModuleClassLoader}, so all the entries
+ * are evicted when the class loaders are discarded, see {@link ModuleClassLoader#getGeneration()}.
+ */
+public class RenderResultCache implements Disposable {
+  private static final Logger LOG = Logger.getInstance(RenderResultCache.class);
+  private static final Key<RenderResultCache> KEY = Key.create(RenderResultCache.class.getName());
+
+  /** Maximum number of bytes used by the in-memory images */
+  private static final long DEFAULT_MAX_MEMORY_BYTES = Long.getLong("layoutlib.render.cache.memory.bytes", 64_000_000L);
+  /** Maximum number of bytes used by the images spilled to disk. 0 disables the disk spill. */
+  private static final long DEFAULT_MAX_DISK_BYTES = Long.getLong("layoutlib.render.cache.disk.bytes", 0L);
+  private static final String SPILL_DIRECTORY = "render-result-cache";
+
+  private final Object myLock = new Object();
+  @GuardedBy("myLock")
+  private final LinkedHashMap<CacheKey, Entry> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+  @GuardedBy("myLock")
+  private long myMemoryBytes;
+  @GuardedBy("myLock")
+  private long myDiskBytes;
+  @GuardedBy("myLock")
+  private int mySpillCounter;
+  @GuardedBy("myLock")
+  private long myHits;
+  @GuardedBy("myLock")
+  private long myMisses;
+  /** The {@link ModuleClassLoader#getGeneration()} of the cached entries */
+  @GuardedBy("myLock")
+  private long myClassLoaderGeneration = ModuleClassLoader.getGeneration();
+
+  private final long myMaxMemoryBytes;
+  private final long myMaxDiskBytes;
+  @Nullable private final File mySpillDirectory;
+
+  /**
+   * Key for a render result. Two keys are equal if they were computed for the same file, with the same layout content and the same
+   * rendering environment.
+   */
+  public static final class CacheKey {
+    @NotNull private final String myPath;
+    private final long myHash;
+    private final long myClassLoaderGeneration;
+
+    @VisibleForTesting
+    CacheKey(@NotNull String path, long hash, long classLoaderGeneration) {
+      myPath = path;
+      myHash = hash;
+      myClassLoaderGeneration = classLoaderGeneration;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      CacheKey key = (CacheKey)o;
+      return myHash == key.myHash && myClassLoaderGeneration == key.myClassLoaderGeneration && myPath.equals(key.myPath);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * myPath.hashCode() + Long.hashCode(myHash);
+    }
+
+    @Override
+    public String toString() {
+      return "CacheKey{" + myPath + ", " + Long.toHexString(myHash) + '}';
+    }
+  }
+
+  private static final class Entry {
+    @NotNull final ImmutableList<ViewInfo> rootViews;
+    @NotNull final ImmutableList<ViewInfo> systemRootViews;
+    @NotNull final Map<Object, Map<ResourceReference, ResourceValue>> defaultProperties;
+    @NotNull final Map<Object, String> defaultStyles;
+    final long imageBytes;
+    /** The rendered image or null if the image has been spilled to disk */
+    @Nullable BufferedImage image;
+    @Nullable File spillFile;
+
+    Entry(@NotNull RenderResult result, @NotNull BufferedImage image) {
+      rootViews = result.getRootViews();
+      systemRootViews = result.getSystemRootViews();
+      defaultProperties = result.getDefaultProperties();
+      defaultStyles = result.getDefaultStyles();
+      this.image = image;
+      imageBytes = (long)image.getWidth() * image.getHeight() * 4;
+    }
+  }
+
+  @VisibleForTesting
+  RenderResultCache(long maxMemoryBytes, long maxDiskBytes, @Nullable File spillDirectory) {
+    myMaxMemoryBytes = maxMemoryBytes;
+    myMaxDiskBytes = spillDirectory != null ? maxDiskBytes : 0;
+    mySpillDirectory = spillDirectory;
+  }
+
+  private RenderResultCache(@NotNull Project project) {
+    this(DEFAULT_MAX_MEMORY_BYTES,
+         DEFAULT_MAX_DISK_BYTES,
+         DEFAULT_MAX_DISK_BYTES > 0 ? new File(PathManager.getSystemPath(), SPILL_DIRECTORY + File.separator + project.getLocationHash())
+                                    : null);
+    Disposer.register(project, this);
+  }
+
+  @NotNull
+  public static RenderResultCache getInstance(@NotNull Project project) {
+    synchronized (KEY) {
+      RenderResultCache cache = project.getUserData(KEY);
+      if (cache == null) {
+        cache = new RenderResultCache(project);
+        project.putUserData(KEY, cache);
+      }
+      return cache;
+    }
+  }
+
+  @TestOnly
+  public static void setForTesting(@NotNull Project project, @Nullable RenderResultCache cache) {
+    project.putUserData(KEY, cache);
+  }
+
+  /**
+   * Returns whether the render result cache should be used.
+   */
+  public static boolean isEnabled() {
+    return StudioFlags.NELE_RENDER_RESULT_CACHE.get();
+  }
+
+  /**
+   * Computes the {@link CacheKey} for rendering the given file with the given {@link Configuration}. Returns null if the file can not be
+   * cached, for example if it does not have a root tag.
+   *
+   * @param showDecorations whether the render will include the system decorations
+   * @param quality the quality factor used by the render, see {@link RenderTask#setQuality(float)}
+   * @param adaptiveIconMaskPath the path description of the adaptive icon shape set on the {@link LayoutlibCallbackImpl} of the render
+   *                             or null if it is not set
+   */
+  @Nullable
+  public static CacheKey computeKey(@NotNull AndroidFacet facet,
+                                    @NotNull XmlFile file,
+                                    @NotNull Configuration configuration,
+                                    boolean showDecorations,
+                                    float quality,
+                                    @Nullable String adaptiveIconMaskPath) {
+    VirtualFile virtualFile = file.getVirtualFile();
+    if (virtualFile == null) {
+      return null;
+    }
+
+    Hasher hasher = Hashing.goodFastHash(64).newHasher();
+    boolean hasRoot = ApplicationManager.getApplication().runReadAction((Computable<Boolean>)() -> {
+      XmlTag rootTag = file.isValid() ? file.getRootTag() : null;
+      if (rootTag == null) {
+        return false;
+      }
+      if (TagSnapshotCache.isEnabled()) {
+        // Only the tags that changed since the last render are read from PSI, and the tree is not copied
+        TagSnapshotCache.getInstance(file.getProject()).putTreeSignature(rootTag, hasher);
+      }
+      else {
+        TagSnapshot.createTagSnapshot(rootTag, null).putTreeSignature(hasher);
+      }
+      return true;
+    });
+    if (!hasRoot) {
+      return null;
+    }
+
+    putConfiguration(hasher, configuration);
+    hasher.putBoolean(showDecorations);
+    hasher.putFloat(quality);
+    hasher.putString(Strings.nullToEmpty(adaptiveIconMaskPath), UTF_8);
+    hasher.putLong(ResourceRepositoryManager.getAppResources(facet).getModificationCount());
+    return new CacheKey(virtualFile.getPath(), hasher.hash().asLong(), ModuleClassLoader.getGeneration());
+  }
+
+  private static void putConfiguration(@NotNull Hasher hasher, @NotNull Configuration configuration) {
+    hasher.putString(configuration.getFullConfig().getQualifierString(), UTF_8);
+    Device device = configuration.getDevice();
+    if (device != null) {
+      hasher.putString(device.getId(), UTF_8);
+      // Custom devices all have the same id
+      State state = configuration.getDeviceState();
+      Dimension screenSize = state != null ? device.getScreenSize(state.getOrientation()) : null;
+      if (screenSize != null) {
+        hasher.putInt(screenSize.width);
+        hasher.putInt(screenSize.height);
+      }
+    }
+    IAndroidTarget target = configuration.getTarget();
+    if (target != null) {
+      hasher.putString(target.hashString(), UTF_8);
+    }
+    String theme = configuration.getTheme();
+    if (theme != null) {
+      hasher.putString(theme, UTF_8);
+    }
+    String activity = configuration.getActivity();
+    if (activity != null) {
+      hasher.putString(activity, UTF_8);
+    }
+    hasher.putString(configuration.getLocale().toString(), UTF_8);
+    hasher.putInt(configuration.getUiMode().ordinal());
+    hasher.putInt(configuration.getNightMode().ordinal());
+  }
+
+  /**
+   * Returns a new {@link RenderResult} with the contents of the cached entry for the given key or null if there is no cached entry or
+   * the entry is no longer usable. The returned result is owned by the caller and can be disposed.
+   */
+  @Nullable
+  public RenderResult get(@NotNull CacheKey key, @NotNull PsiFile file, @NotNull Module module) {
+    Entry entry;
+    BufferedImage image;
+    synchronized (myLock) {
+      evictIfClassLoadersChanged();
+      entry = myEntries.get(key);
+      if (entry == null) {
+        myMisses++;
+        return null;
+      }
+      image = entry.image;
+    }
+
+    if (!areCookiesValid(entry.rootViews) || !areCookiesValid(entry.systemRootViews)) {
+      // The PSI the hierarchy refers to is gone, the hierarchy can not be used to map views back to tags anymore.
+      remove(key);
+      synchronized (myLock) {
+        myMisses++;
+      }
+      return null;
+    }
+
+    if (image == null) {
+      image = restore(key, entry);
+      if (image == null) {
+        synchronized (myLock) {
+          myMisses++;
+        }
+        return null;
+      }
+    }
+
+    synchronized (myLock) {
+      myHits++;
+    }
+    return RenderResult.createFromCache(file,
+                                        module,
+                                        entry.rootViews,
+                                        entry.systemRootViews,
+                                        ImagePoolFactory.getNonPooledPool().copyOf(image),
+                                        entry.defaultProperties,
+                                        entry.defaultStyles);
+  }
+
+  /**
+   * Adds the given result to the cache. Only successful results with an image and no render problems are cached.
+   */
+  public void put(@NotNull CacheKey key, @Nullable RenderResult result) {
+    if (result == null || !result.getRenderResult().isSuccess() || !result.hasImage() || result.getLogger().hasProblems()) {
+      return;
+    }
+    ImagePool.Image renderedImage = result.getRenderedImage();
+    BufferedImage image = renderedImage.getCopy();
+    if (image == null) {
+      return;
+    }
+
+    Entry entry = new Entry(result, image);
+    if (entry.imageBytes > myMaxMemoryBytes) {
+      return;
+    }
+    synchronized (myLock) {
+      evictIfClassLoadersChanged();
+      if (key.myClassLoaderGeneration != myClassLoaderGeneration) {
+        // Rendered with class loaders that have been discarded since
+        return;
+      }
+      Entry previous = myEntries.put(key, entry);
+      if (previous != null) {
+        release(previous);
+      }
+      myMemoryBytes += entry.imageBytes;
+      trimToSize();
+    }
+  }
+
+  /**
+   * Removes all the entries from the cache.
+   */
+  public void clear() {
+    synchronized (myLock) {
+      clearEntries();
+    }
+  }
+
+  @GuardedBy("myLock")
+  private void clearEntries() {
+    for (Entry entry : myEntries.values()) {
+      release(entry);
+    }
+    myEntries.clear();
+  }
+
+  /**
+   * Drops all the entries if the class loaders have been discarded since they were cached, so that the cache does not keep the view
+   * objects, and through them the discarded class loaders, alive.
+   */
+  @GuardedBy("myLock")
+  private void evictIfClassLoadersChanged() {
+    long generation = ModuleClassLoader.getGeneration();
+    if (generation != myClassLoaderGeneration) {
+      clearEntries();
+      myClassLoaderGeneration = generation;
+    }
+  }
+
+  public long getMaxMemoryBytes() {
+    return myMaxMemoryBytes;
+  }
+
+  @Override
+  public void dispose() {
+    clear();
+    if (mySpillDirectory != null) {
+      FileUtil.delete(mySpillDirectory);
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (myLock) {
+      return String.format("RenderResultCache{entries=%d, memory=%d, disk=%d, hits=%d, misses=%d}",
+                           myEntries.size(), myMemoryBytes, myDiskBytes, myHits, myMisses);
+    }
+  }
+
+  private void remove(@NotNull CacheKey key) {
+    synchronized (myLock) {
+      Entry entry = myEntries.remove(key);
+      if (entry != null) {
+        release(entry);
+      }
+    }
+  }
+
+  @GuardedBy("myLock")
+  private void release(@NotNull Entry entry) {
+    if (entry.image != null) {
+      myMemoryBytes -= entry.imageBytes;
+      entry.image = null;
+    }
+    if (entry.spillFile != null) {
+      myDiskBytes -= entry.imageBytes;
+      FileUtil.delete(entry.spillFile);
+      entry.spillFile = null;
+    }
+  }
+
+  /**
+   * Evicts the least recently used images until the cache is within its memory budget. Evicted images are spilled to disk if there
+   * is disk budget left, otherwise the whole entry is dropped.
+   */
+  @GuardedBy("myLock")
+  private void trimToSize() {
+    Iterator<Map.Entry<CacheKey, Entry>> iterator = myEntries.entrySet().iterator();
+    while (myMemoryBytes > myMaxMemoryBytes && iterator.hasNext()) {
+      Entry entry = iterator.next().getValue();
+      if (entry.image == null) {
+        continue;
+      }
+      if (!spill(entry)) {
+        release(entry);
+        iterator.remove();
+      }
+    }
+
+    iterator = myEntries.entrySet().iterator();
+    while (myDiskBytes > myMaxDiskBytes && iterator.hasNext()) {
+      Entry entry = iterator.next().getValue();
+      if (entry.spillFile != null && entry.image == null) {
+        release(entry);
+        iterator.remove();
+      }
+    }
+  }
+
+  @GuardedBy("myLock")
+  private boolean spill(@NotNull Entry entry) {
+    BufferedImage image = entry.image;
+    if (mySpillDirectory == null || image == null || myDiskBytes + entry.imageBytes > myMaxDiskBytes) {
+      return false;
+    }
+
+    File spillFile = new File(mySpillDirectory, "render" + (mySpillCounter++) + ".png");
+    try {
+      FileUtil.createParentDirs(spillFile);
+      if (!ImageIO.write(image, "png", spillFile)) {
+        return false;
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Unable to spill render result to disk", e);
+      FileUtil.delete(spillFile);
+      return false;
+    }
+
+    entry.image = null;
+    entry.spillFile = spillFile;
+    myMemoryBytes -= entry.imageBytes;
+    myDiskBytes += entry.imageBytes;
+    return true;
+  }
+
+  @Nullable
+  private BufferedImage restore(@NotNull CacheKey key, @NotNull Entry entry) {
+    File spillFile;
+    synchronized (myLock) {
+      spillFile = entry.spillFile;
+    }
+    if (spillFile == null) {
+      return null;
+    }
+
+    BufferedImage image;
+    try {
+      image = ImageIO.read(spillFile);
+    }
+    catch (IOException e) {
+      LOG.debug("Unable to restore render result from disk", e);
+      image = null;
+    }
+
+    synchronized (myLock) {
+      if (image == null) {
+        if (myEntries.get(key) == entry) {
+          myEntries.remove(key);
+        }
+        release(entry);
+        return null;
+      }
+      if (entry.spillFile == spillFile && entry.image == null) {
+        // Promote the entry back to memory
+        FileUtil.delete(spillFile);
+        entry.spillFile = null;
+        entry.image = image;
+        myDiskBytes -= entry.imageBytes;
+        myMemoryBytes += entry.imageBytes;
+        trimToSize();
+      }
+    }
+    return image;
+  }
+
+  /**
+   * Returns false if any of the {@link TagSnapshot} cookies in the given hierarchy refers to a tag that is no longer valid.
+   */
+  private static boolean areCookiesValid(@NotNull List<ViewInfo> views) {
+    return ApplicationManager.getApplication().runReadAction((Computable<Boolean>)() -> {
+      for (ViewInfo view : views) {
+        if (!isCookieValid(view)) {
+          return false;
+        }
+      }
+      return true;
+    });
+  }
+
+  private static boolean isCookieValid(@NotNull ViewInfo view) {
+    Object cookie = view.getCookie();
+    if (cookie instanceof TagSnapshot) {
+      XmlTag tag = ((TagSnapshot)cookie).tag;
+      if (tag != null && !tag.isValid()) {
+        return false;
+      }
+    }
+    for (ViewInfo child : view.getChildren()) {
+      if (!isCookieValid(child)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
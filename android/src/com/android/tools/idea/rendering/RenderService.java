@@ -154,7 +154,14 @@ public class RenderService implements Disposable {
 
   private final Object myCredential = new Object();
 
-  private final ImagePool myImagePool = ImagePoolFactory.createImagePool();
+  /**
+   * Maximum number of bytes allocated by the shared image pool when {@link StudioFlags#NELE_IMAGE_POOL_BUDGET} is enabled.
+   */
+  private static final long IMAGE_POOL_BUDGET_BYTES = Long.getLong("layoutlib.image.pool.budget.bytes", 256L * 1024 * 1024);
+
+  private final ImagePool myImagePool = StudioFlags.NELE_IMAGE_POOL_BUDGET.get()
+                                        ? ImagePoolFactory.createBudgetedImagePool(IMAGE_POOL_BUDGET_BYTES)
+                                        : ImagePoolFactory.createImagePool();
 
   /**
    * @return the {@linkplain RenderService} for the given facet.
@@ -178,6 +185,9 @@ public class RenderService implements Disposable {
   protected RenderService(@NotNull Project project) {
     myProject = project;
     Disposer.register(project, this);
+    if (ClassConverterCache.isEnabled()) {
+      CustomViewClassPrewarmer.subscribe(project, this);
+    }
   }
 
   @Nullable
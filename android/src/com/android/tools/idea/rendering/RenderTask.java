@@ -44,6 +44,7 @@ import com.android.tools.analytics.crash.CrashReporter;
 import com.android.tools.idea.AndroidPsiUtils;
 import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.diagnostics.crash.StudioExceptionReport;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.layoutlib.LayoutLibrary;
 import com.android.tools.idea.layoutlib.RenderParamsFlags;
 import com.android.tools.idea.model.ActivityAttributesSnapshot;
@@ -73,6 +74,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.awt.image.BufferedImage;
 import java.util.Collections;
 import java.util.HashMap;
@@ -436,6 +438,16 @@ public class RenderTask {
    */
   @Nullable
   private RenderResult createRenderSession(@NotNull IImageFactory factory) {
+    return createRenderSession(factory, prepareSession());
+  }
+
+  /**
+   * Computes the inputs of a new {@link RenderSession} that do not need layoutlib: the resources, the layout parser and the
+   * manifest. This does not modify the {@link LayoutlibCallbackImpl}, so for layouts it can run outside of the render thread
+   * while a previous session is still rendering, see {@link #inflate()}.
+   */
+  @Nullable
+  private SessionInputs prepareSession() {
     PsiFile psiFile = getXmlFile();
     if (psiFile == null) {
       throw new IllegalStateException("createRenderSession shouldn't be called on RenderTask without PsiFile");
@@ -455,13 +467,29 @@ public class RenderTask {
       return null;
     }
 
-    myLayoutlibCallback.reset();
-
     if (modelParser instanceof LayoutPsiPullParser) {
       // For regular layouts, if we use appcompat, we have to emulat the app:srcCompat attribute behaviour.
       boolean useSrcCompat = DependencyManagementUtil.dependsOn(getContext().getModule(), GoogleMavenArtifactId.APP_COMPAT_V7) ||
                              DependencyManagementUtil.dependsOn(getContext().getModule(), GoogleMavenArtifactId.ANDROIDX_APP_COMPAT_V7);
       ((LayoutPsiPullParser)modelParser).setUseSrcCompat(useSrcCompat);
+    }
+
+    MergedManifestSnapshot manifestInfo = MergedManifestManager.getSnapshot(getContext().getModule());
+    return new SessionInputs(psiFile, resolver, modelParser, manifestInfo);
+  }
+
+  @Nullable
+  private RenderResult createRenderSession(@NotNull IImageFactory factory, @Nullable SessionInputs inputs) {
+    if (inputs == null || isDisposed.get()) {
+      return null;
+    }
+    PsiFile psiFile = inputs.psiFile;
+    ResourceResolver resolver = inputs.resolver;
+    ILayoutPullParser modelParser = inputs.modelParser;
+
+    myLayoutlibCallback.reset();
+
+    if (modelParser instanceof LayoutPsiPullParser) {
       myLayoutlibCallback.setAaptDeclaredResources(((LayoutPsiPullParser)modelParser).getAaptDeclaredAttrs());
     }
 
@@ -499,7 +527,7 @@ public class RenderTask {
     // same session.
     params.setExtendedViewInfoMode(true);
 
-    MergedManifestSnapshot manifestInfo = MergedManifestManager.getSnapshot(module);
+    MergedManifestSnapshot manifestInfo = inputs.manifestInfo;
 
     Configuration configuration = context.getConfiguration();
     LayoutDirectionQualifier qualifier = configuration.getFullConfig().getLayoutDirectionQualifier();
@@ -694,14 +722,22 @@ public class RenderTask {
       return CompletableFuture.completedFuture(null);
     }
 
-    try {
-      return runAsyncRenderAction(() -> createRenderSession((width, height) -> {
-        if (myImageFactoryDelegate != null) {
-          return myImageFactoryDelegate.getImage(width, height);
-        }
+    IImageFactory factory = (width, height) -> {
+      if (myImageFactoryDelegate != null) {
+        return myImageFactoryDelegate.getImage(width, height);
+      }
 
-        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-      }));
+      return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    };
+    try {
+      if (StudioFlags.NELE_PARALLEL_RENDER_PREPARATION.get() && getContext().getFolderType() == ResourceFolderType.LAYOUT) {
+        // Layoutlib has global state so only one session can be created at a time. The inputs of the session are computed on a pooled
+        // thread instead, so that the tasks of several configurations inflating at the same time prepare their sessions in parallel and
+        // only wait for each other on the render thread. The render action is still queued now to keep the order of the task actions.
+        CompletableFuture<SessionInputs> inputs = CompletableFuture.supplyAsync(this::prepareSession, AppExecutorUtil.getAppExecutorService());
+        return runAsyncRenderAction(() -> createRenderSession(factory, inputs.join()));
+      }
+      return runAsyncRenderAction(() -> createRenderSession(factory));
     }
     catch (Exception e) {
       String message = e.getMessage();
@@ -1120,4 +1156,24 @@ public class RenderTask {
     @Nullable
     String getAttribute(@NotNull XmlTag node, @Nullable String namespace, @NotNull String localName);
   }
+
+  /**
+   * The inputs of a {@link RenderSession} computed by {@link #prepareSession()}.
+   */
+  private static class SessionInputs {
+    @NotNull final PsiFile psiFile;
+    @NotNull final ResourceResolver resolver;
+    @NotNull final ILayoutPullParser modelParser;
+    @NotNull final MergedManifestSnapshot manifestInfo;
+
+    SessionInputs(@NotNull PsiFile psiFile,
+                  @NotNull ResourceResolver resolver,
+                  @NotNull ILayoutPullParser modelParser,
+                  @NotNull MergedManifestSnapshot manifestInfo) {
+      this.psiFile = psiFile;
+      this.resolver = resolver;
+      this.modelParser = modelParser;
+      this.manifestInfo = manifestInfo;
+    }
+  }
 }
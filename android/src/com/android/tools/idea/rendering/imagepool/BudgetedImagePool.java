@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.imagepool;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.annotations.concurrency.GuardedBy;
+import com.google.common.collect.Sets;
+import gnu.trove.TLongObjectHashMap;
+import java.awt.image.BufferedImage;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link ImagePool} that bounds the memory used by all its images with a single byte budget.
+ * <p>
+ * Images are distributed in buckets of the same sizes as {@link ImagePoolImpl} but, instead of bounding every bucket independently,
+ * the free images of all the buckets are kept in a single LRU list. When the total allocated size goes over the budget, the least
+ * recently released free images are evicted, regardless of the bucket they belong to.
+ * <p>
+ * Images are returned to the pool when {@link Image#dispose()} is called. Images that are never disposed are reclaimed the next time
+ * the pool is used, once they have been garbage collected. This does not require a finalizer thread.
+ */
+class BudgetedImagePool implements ImagePool {
+  private static final int NOT_POOLED = -1;
+
+  private final int[] myBucketSizes;
+  private final int myMinPooledPixels;
+  private final long myBudgetBytes;
+
+  private final Object myLock = new Object();
+  /**
+   * Free images indexed by bucket, see {@link #getBucketKey(int, int, int)}. Every bucket is sorted from the least to the most
+   * recently released image.
+   */
+  @GuardedBy("myLock")
+  private final TLongObjectHashMap<ArrayDeque<FreeImage>> myBuckets = new TLongObjectHashMap<>();
+  /**
+   * All the free images, sorted from the least to the most recently released.
+   */
+  @GuardedBy("myLock")
+  private final LinkedHashSet<FreeImage> myLru = new LinkedHashSet<>();
+  @GuardedBy("myLock")
+  private long myAllocatedBytes;
+  @GuardedBy("myLock")
+  private long myFreeBytes;
+  @GuardedBy("myLock")
+  private boolean isDisposed;
+
+  private final ReferenceQueue<ImagePool.Image> myReferenceQueue = new ReferenceQueue<>();
+  private final Set<ImageReference> myReferences = Sets.newConcurrentHashSet();
+
+  private final LongAdder myHits = new LongAdder();
+  private final LongAdder myMisses = new LongAdder();
+  private final LongAdder myEvictedBytes = new LongAdder();
+
+  private final Stats myStats = new Stats() {
+    @Override
+    public long totalBytesAllocated() {
+      synchronized (myLock) {
+        return myAllocatedBytes;
+      }
+    }
+
+    @Override
+    public long totalBytesInUse() {
+      synchronized (myLock) {
+        return myAllocatedBytes - myFreeBytes;
+      }
+    }
+
+    @Override
+    public long budgetBytes() {
+      return myBudgetBytes;
+    }
+
+    @Override
+    public long hits() {
+      return myHits.sum();
+    }
+
+    @Override
+    public long misses() {
+      return myMisses.sum();
+    }
+
+    @Override
+    public long totalBytesEvicted() {
+      return myEvictedBytes.sum();
+    }
+  };
+
+  /**
+   * A free image waiting in the pool to be re-used.
+   */
+  private static class FreeImage {
+    final long myKey;
+    @NotNull final BufferedImage myImage;
+    final long mySize;
+
+    FreeImage(long key, @NotNull BufferedImage image, long size) {
+      myKey = key;
+      myImage = image;
+      mySize = size;
+    }
+  }
+
+  /**
+   * Reference to an image in use. The reference keeps the underlying {@link BufferedImage} so it can be returned to the pool once
+   * the image is disposed or garbage collected.
+   */
+  private static class ImageReference extends PhantomReference<ImagePool.Image> {
+    final long myKey;
+    @NotNull final BufferedImage myImage;
+    final long mySize;
+    @Nullable final Consumer<BufferedImage> myFreedCallback;
+
+    ImageReference(@NotNull ImagePool.Image referent,
+                   @NotNull ReferenceQueue<ImagePool.Image> queue,
+                   long key,
+                   @NotNull BufferedImage image,
+                   long size,
+                   @Nullable Consumer<BufferedImage> freedCallback) {
+      super(referent, queue);
+      myKey = key;
+      myImage = image;
+      mySize = size;
+      myFreedCallback = freedCallback;
+    }
+  }
+
+  /**
+   * Constructs a new {@link BudgetedImagePool}.
+   *
+   * @param bucketSizes     Array containing a list of the allowed bucket sizes. The images will be allocated into a bucket that fits its two
+   *                        dimensions. If an image contains one dimension bigger than the biggest given bucket size, the image won't be
+   *                        pooled.
+   * @param minPooledPixels Images with fewer pixels than this are not pooled.
+   * @param budgetBytes     Maximum number of bytes allocated by the pool. Images in use are never evicted so the budget can temporarily be
+   *                        exceeded if the clients hold more images than it allows.
+   */
+  BudgetedImagePool(@NotNull int[] bucketSizes, int minPooledPixels, long budgetBytes) {
+    myBucketSizes = bucketSizes.clone();
+    Arrays.sort(myBucketSizes);
+    myMinPooledPixels = minPooledPixels;
+    myBudgetBytes = budgetBytes;
+  }
+
+  /**
+   * Returns the key of the bucket with the given dimensions and type. The dimensions must fit in 24 bits and the type in 16 bits.
+   */
+  @VisibleForTesting
+  static long getBucketKey(int w, int h, int type) {
+    return ((long)(w & 0xFFFFFF) << 40) | ((long)(h & 0xFFFFFF) << 16) | (type & 0xFFFF);
+  }
+
+  private static int getBucketWidth(long key) {
+    return (int)(key >>> 40) & 0xFFFFFF;
+  }
+
+  private static int getBucketHeight(long key) {
+    return (int)(key >>> 16) & 0xFFFFFF;
+  }
+
+  /**
+   * Returns the smallest bucket size strictly bigger than the given dimension or {@link #NOT_POOLED} if there is none.
+   */
+  private int getBucketSize(int dimension) {
+    for (int bucketSize : myBucketSizes) {
+      if (dimension < bucketSize) {
+        return bucketSize;
+      }
+    }
+    return NOT_POOLED;
+  }
+
+  private static long estimateSize(@NotNull BufferedImage image) {
+    return (long)image.getWidth() * image.getHeight() * 4;
+  }
+
+  @VisibleForTesting
+  @NotNull
+  ImagePoolImpl.ImageImpl create(int w, int h, int type, @Nullable Consumer<BufferedImage> freedCallback) {
+    reclaimCollectedImages();
+
+    int bucketWidth = w * h < myMinPooledPixels ? NOT_POOLED : getBucketSize(w);
+    int bucketHeight = bucketWidth == NOT_POOLED ? NOT_POOLED : getBucketSize(h);
+    long key = bucketHeight == NOT_POOLED ? NOT_POOLED : getBucketKey(bucketWidth, bucketHeight, type);
+
+    BufferedImage image = null;
+    boolean reused = false;
+    synchronized (myLock) {
+      assert !isDisposed : "ImagePool already disposed";
+
+      if (key != NOT_POOLED) {
+        ArrayDeque<FreeImage> bucket = myBuckets.get(key);
+        // Take the most recently released image, it is the most likely to be still in the CPU caches
+        FreeImage free = bucket != null ? bucket.pollLast() : null;
+        if (free != null) {
+          myLru.remove(free);
+          myFreeBytes -= free.mySize;
+          image = free.myImage;
+          reused = true;
+        }
+      }
+
+      if (!reused) {
+        int newImageWidth = key != NOT_POOLED ? getBucketWidth(key) : w;
+        int newImageHeight = key != NOT_POOLED ? getBucketHeight(key) : h;
+        long size = (long)newImageWidth * newImageHeight * 4;
+        // Make room for the new image before allocating it
+        evict(myBudgetBytes - size);
+        myAllocatedBytes += size;
+        //noinspection UndesirableClassUsage
+        image = new BufferedImage(newImageWidth, newImageHeight, type);
+        // Set acceleration priority to 0.9 out of 1.0. We reserve 1.0 for the shared buffers
+        // that we paint to screen.
+        image.setAccelerationPriority(0.9f);
+        myMisses.increment();
+      }
+      else {
+        myHits.increment();
+      }
+    }
+
+    if (reused) {
+      ImagePoolImpl.clearImage(image, w, h);
+    }
+
+    ImagePoolImpl.ImageImpl pooledImage = new ImagePoolImpl.ImageImpl(w, h, image);
+    ImageReference reference = new ImageReference(pooledImage, myReferenceQueue, key, image, estimateSize(image), freedCallback);
+    myReferences.add(reference);
+    pooledImage.myDisposeCallback = () -> release(reference);
+    return pooledImage;
+  }
+
+  /**
+   * Returns the image held by the given reference to the pool. This method might be called twice for the same reference if the
+   * image was manually disposed before being collected, the second call has no effect.
+   */
+  private void release(@NotNull ImageReference reference) {
+    if (!myReferences.remove(reference)) {
+      return;
+    }
+    reference.clear();
+
+    synchronized (myLock) {
+      if (isDisposed) {
+        return;
+      }
+      if (reference.myKey == NOT_POOLED) {
+        myAllocatedBytes -= reference.mySize;
+      }
+      else {
+        FreeImage free = new FreeImage(reference.myKey, reference.myImage, reference.mySize);
+        ArrayDeque<FreeImage> bucket = myBuckets.get(reference.myKey);
+        if (bucket == null) {
+          bucket = new ArrayDeque<>();
+          myBuckets.put(reference.myKey, bucket);
+        }
+        bucket.addLast(free);
+        myLru.add(free);
+        myFreeBytes += free.mySize;
+        evict(myBudgetBytes);
+      }
+    }
+
+    if (reference.myFreedCallback != null) {
+      reference.myFreedCallback.accept(reference.myImage);
+    }
+  }
+
+  /**
+   * Evicts the least recently released free images until the allocated size is not bigger than {@code maxAllocatedBytes} or there are
+   * no free images left.
+   */
+  @GuardedBy("myLock")
+  private void evict(long maxAllocatedBytes) {
+    Iterator<FreeImage> iterator = myLru.iterator();
+    while (myAllocatedBytes > maxAllocatedBytes && iterator.hasNext()) {
+      FreeImage free = iterator.next();
+      iterator.remove();
+
+      // The least recently released image overall is also the least recently released of its bucket
+      ArrayDeque<FreeImage> bucket = myBuckets.get(free.myKey);
+      FreeImage first = bucket.pollFirst();
+      assert first == free;
+      if (bucket.isEmpty()) {
+        myBuckets.remove(free.myKey);
+      }
+
+      myFreeBytes -= free.mySize;
+      myAllocatedBytes -= free.mySize;
+      myEvictedBytes.add(free.mySize);
+    }
+  }
+
+  /**
+   * Returns to the pool the images that have been garbage collected without being disposed.
+   */
+  private void reclaimCollectedImages() {
+    Reference<? extends ImagePool.Image> reference;
+    while ((reference = myReferenceQueue.poll()) != null) {
+      release((ImageReference)reference);
+    }
+  }
+
+  @NotNull
+  @Override
+  public ImagePool.Image create(int w, int h, int type) {
+    return create(w, h, type, null);
+  }
+
+  @NotNull
+  @Override
+  public ImagePool.Image copyOf(@Nullable BufferedImage origin) {
+    if (origin == null) {
+      return ImagePool.NULL_POOLED_IMAGE;
+    }
+
+    ImagePoolImpl.ImageImpl image = create(origin.getWidth(), origin.getHeight(), origin.getType(), null);
+    image.drawFrom(origin);
+    return image;
+  }
+
+  @NotNull
+  @Override
+  public Stats getStats() {
+    reclaimCollectedImages();
+    return myStats;
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (myLock) {
+      isDisposed = true;
+      myBuckets.clear();
+      myLru.clear();
+      myAllocatedBytes = 0;
+      myFreeBytes = 0;
+    }
+    myReferences.clear();
+  }
+}
@@ -82,6 +82,34 @@ public interface ImagePool {
     long totalBytesAllocated();
 
     long totalBytesInUse();
+
+    /**
+     * Returns the maximum number of bytes the pool is allowed to allocate or -1 if the pool does not have a global budget.
+     */
+    default long budgetBytes() {
+      return -1;
+    }
+
+    /**
+     * Returns the number of images served from the pool or -1 if not tracked.
+     */
+    default long hits() {
+      return -1;
+    }
+
+    /**
+     * Returns the number of images that had to be allocated or -1 if not tracked.
+     */
+    default long misses() {
+      return -1;
+    }
+
+    /**
+     * Returns the number of bytes released by the pool to stay within its budget or -1 if not tracked.
+     */
+    default long totalBytesEvicted() {
+      return -1;
+    }
   }
 
   /**
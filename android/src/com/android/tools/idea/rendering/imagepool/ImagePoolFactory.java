@@ -49,6 +49,8 @@ public class ImagePoolFactory {
     }
   };
 
+  private static final int[] DEFAULT_BUCKET_SIZES = {50, 500, 1000, 1500, 2000, 5000};
+
   private ImagePoolFactory() {
   }
 
@@ -57,7 +59,7 @@ public class ImagePoolFactory {
    */
   @NotNull
   public static ImagePool createImagePool() {
-    return new ImagePoolImpl(new int[]{50, 500, 1000, 1500, 2000, 5000}, (w, h) -> (type) -> {
+    return new ImagePoolImpl(DEFAULT_BUCKET_SIZES.clone(), (w, h) -> (type) -> {
       // Images below 1k, do not pool
       if (w * h < 1000) {
         return 0;
@@ -67,6 +69,16 @@ public class ImagePoolFactory {
     });
   }
 
+  /**
+   * Creates a new {@link ImagePool} that keeps the memory allocated by all its images within the given budget, evicting the least
+   * recently released images first.
+   */
+  @NotNull
+  public static ImagePool createBudgetedImagePool(long budgetBytes) {
+    // Images below 1k, do not pool
+    return new BudgetedImagePool(DEFAULT_BUCKET_SIZES, 1000, budgetBytes);
+  }
+
   /**
    * Returns an {@link ImagePool} instance that does not do image pooling
    */
@@ -191,16 +191,7 @@ class ImagePoolImpl implements ImagePool {
                           (int)((wasted / totalSize) * 100));
       }
       myTotalInUseBytes.add(totalSize * 4);
-      // Clear the image
-      if (image.getRaster().getDataBuffer().getDataType() == java.awt.image.DataBuffer.TYPE_INT) {
-        Arrays.fill(((DataBufferInt)image.getRaster().getDataBuffer()).getData(), 0);
-      }
-      else {
-        Graphics2D g = image.createGraphics();
-        g.setComposite(AlphaComposite.Clear);
-        g.fillRect(0, 0, w, h);
-        g.dispose();
-      }
+      clearImage(image, w, h);
     }
     catch (NoSuchElementException e) {
       if (DEBUG) {
@@ -248,12 +239,27 @@ class ImagePoolImpl implements ImagePool {
         }
       }
     };
-    pooledImage.myOwnReference = reference;
+    pooledImage.myDisposeCallback = reference::finalizeReferent;
     myReferences.add(reference);
 
     return pooledImage;
   }
 
+  /**
+   * Clears the (0, 0, w, h) area of an image that is about to be re-used.
+   */
+  static void clearImage(@NotNull BufferedImage image, int w, int h) {
+    if (image.getRaster().getDataBuffer().getDataType() == java.awt.image.DataBuffer.TYPE_INT) {
+      Arrays.fill(((DataBufferInt)image.getRaster().getDataBuffer()).getData(), 0);
+    }
+    else {
+      Graphics2D g = image.createGraphics();
+      g.setComposite(AlphaComposite.Clear);
+      g.fillRect(0, 0, w, h);
+      g.dispose();
+    }
+  }
+
   private static class Bucket extends ForwardingQueue<SoftReference<BufferedImage>> {
     private final Queue<SoftReference<BufferedImage>> myDelegate;
     private final AtomicLong myLastAccess = new AtomicLong(System.currentTimeMillis());
@@ -322,7 +328,10 @@ class ImagePoolImpl implements ImagePool {
     // Track dispose call when assertions are enabled
     private static boolean ourTrackDisposeCall = ImageImpl.class.desiredAssertionStatus();
 
-    private FinalizablePhantomReference<ImagePool.Image> myOwnReference = null;
+    /**
+     * Called when the image is manually disposed to return the buffer to the pool
+     */
+    Runnable myDisposeCallback = null;
     private ReadWriteLock myLock = new ReentrantReadWriteLock();
     /**
      * If we are tracking the dispose calls, this will contain the stack trace of the first caller to dispose
@@ -336,7 +345,7 @@ class ImagePoolImpl implements ImagePool {
     final int myWidth;
     final int myHeight;
 
-    private ImageImpl(int w, int h, @NotNull BufferedImage image) {
+    ImageImpl(int w, int h, @NotNull BufferedImage image) {
       assert w <= image.getWidth() && h <= image.getHeight();
 
       myWidth = w;
@@ -471,8 +480,8 @@ class ImagePoolImpl implements ImagePool {
       }
       try {
         myBuffer = null;
-        if (myOwnReference != null) {
-          myOwnReference.finalizeReferent();
+        if (myDisposeCallback != null) {
+          myDisposeCallback.run();
         }
       }
       finally {
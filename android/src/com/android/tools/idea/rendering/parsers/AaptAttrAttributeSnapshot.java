@@ -77,6 +77,13 @@ class AaptAttrAttributeSnapshot extends AttributeSnapshot {
       TagSnapshot.createTagSnapshot(bundledTag, null));
   }
 
+  @NotNull
+  @Override
+  AaptAttrAttributeSnapshot copy() {
+    // The id is kept so the copy still references the same bundled tag
+    return new AaptAttrAttributeSnapshot(namespace, prefix, name, myId, myBundledTag);
+  }
+
   @NotNull
   public String getId() {
     return myId;
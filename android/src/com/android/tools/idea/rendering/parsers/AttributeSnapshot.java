@@ -78,6 +78,14 @@ public class AttributeSnapshot {
     return attributes;
   }
 
+  /**
+   * Returns a copy of this attribute that can be modified without affecting this one.
+   */
+  @NotNull
+  AttributeSnapshot copy() {
+    return new AttributeSnapshot(namespace, prefix, name, value);
+  }
+
   @Override
   public String toString() {
     return "AttributeSnapshot{" + name + "=\"" + value + "\"}";
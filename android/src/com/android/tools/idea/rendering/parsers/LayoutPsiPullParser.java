@@ -918,6 +918,9 @@ public class LayoutPsiPullParser extends LayoutPullParser implements AaptAttrPar
         return createSnapshotForMerge(tag, honorMergeParentTag, tagDecorator);
 
       default:
+        if (TagSnapshotCache.isEnabled()) {
+          return TagSnapshotCache.getInstance(tag.getProject()).getSnapshot(tag, tagDecorator);
+        }
         return TagSnapshot.createTagSnapshot(tag, tagDecorator);
     }
   }
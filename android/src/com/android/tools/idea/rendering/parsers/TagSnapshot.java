@@ -55,6 +55,13 @@ public class TagSnapshot {
 
   private TagSnapshot(@Nullable XmlTag tag, @Nullable String tagName, @Nullable String prefix, @Nullable String namespace,
                       @NotNull List<AttributeSnapshot> attributes, @NotNull List<TagSnapshot> children, boolean hasDeclaredAaptAttrs) {
+    this(tag, tagName, prefix, namespace, attributes, children, hasDeclaredAaptAttrs,
+         tag != null ? tag.getLocalNamespaceDeclarations() : Collections.emptyMap());
+  }
+
+  private TagSnapshot(@Nullable XmlTag tag, @Nullable String tagName, @Nullable String prefix, @Nullable String namespace,
+                      @NotNull List<AttributeSnapshot> attributes, @NotNull List<TagSnapshot> children, boolean hasDeclaredAaptAttrs,
+                      @NotNull Map<String, String> namespaceDeclarations) {
     this.tagName = tagName != null ? tagName : "?";
     this.prefix = prefix == null || prefix.isEmpty() ? null : prefix;
     this.namespace = namespace;
@@ -62,7 +69,7 @@ public class TagSnapshot {
     this.attributes = attributes;
     this.children = children;
     this.hasDeclaredAaptAttrs = hasDeclaredAaptAttrs;
-    this.namespaceDeclarations = tag != null ? tag.getLocalNamespaceDeclarations() : Collections.emptyMap();
+    this.namespaceDeclarations = namespaceDeclarations;
   }
 
   /**
@@ -157,6 +164,70 @@ public class TagSnapshot {
       hasDeclaredAaptAttrs);
   }
 
+  /**
+   * Returns a deep copy of this snapshot and all its children that can be modified without affecting this snapshot. The copy does not
+   * read the PSI again. The bundled tags of aapt:attr attributes are shared with this snapshot.
+   * @param afterCreate If not null, this will be called for every new {@link TagSnapshot} created by this call, in the same order as
+   *                    {@link #createTagSnapshot(XmlTag, Consumer)}
+   */
+  @NotNull
+  public TagSnapshot copy(@Nullable Consumer<TagSnapshot> afterCreate) {
+    List<AttributeSnapshot> attributesCopy = Lists.newArrayListWithCapacity(attributes.size());
+    for (AttributeSnapshot attribute : attributes) {
+      attributesCopy.add(attribute.copy());
+    }
+
+    List<TagSnapshot> childrenCopy;
+    if (!children.isEmpty()) {
+      TagSnapshot last = null;
+      childrenCopy = Lists.newArrayListWithCapacity(children.size());
+      for (TagSnapshot child : children) {
+        TagSnapshot childCopy = child.copy(afterCreate);
+        childrenCopy.add(childCopy);
+        if (last != null) {
+          last.myNext = childCopy;
+        }
+        last = childCopy;
+      }
+    }
+    else {
+      childrenCopy = Collections.emptyList();
+    }
+
+    TagSnapshot newSnapshot =
+      new TagSnapshot(tag, tagName, prefix, namespace, attributesCopy, childrenCopy, hasDeclaredAaptAttrs, namespaceDeclarations);
+    if (afterCreate != null) {
+      afterCreate.accept(newSnapshot);
+    }
+    return newSnapshot;
+  }
+
+  /**
+   * Replaces the child at the given position, keeping the sibling links and {@link #hasDeclaredAaptAttrs} of this snapshot up to date.
+   */
+  void replaceChild(int index, @NotNull TagSnapshot newChild) {
+    TagSnapshot oldChild = children.set(index, newChild);
+    newChild.myNext = oldChild.myNext;
+    if (index > 0) {
+      children.get(index - 1).myNext = newChild;
+    }
+    updateHasDeclaredAaptAttrs();
+  }
+
+  /**
+   * Recomputes {@link #hasDeclaredAaptAttrs} from the attributes of this snapshot and the value of its children.
+   */
+  void updateHasDeclaredAaptAttrs() {
+    boolean hasAaptAttrs = false;
+    for (AttributeSnapshot attribute : attributes) {
+      hasAaptAttrs |= attribute instanceof AaptAttrAttributeSnapshot;
+    }
+    for (TagSnapshot child : children) {
+      hasAaptAttrs |= child.hasDeclaredAaptAttrs;
+    }
+    hasDeclaredAaptAttrs = hasAaptAttrs;
+  }
+
   @Nullable
   public String getAttribute(@NotNull String name) {
     return getAttribute(name, null);
@@ -234,17 +305,38 @@ public class TagSnapshot {
   public long getSignature() {
     HashFunction hashFunction = Hashing.goodFastHash(64);
     Hasher hasher = hashFunction.newHasher();
+    putAttributes(hasher, false);
+    return hasher.hash().asLong();
+  }
+
+  /**
+   * Adds the signature of this tag snapshot and all its descendants to the given {@link Hasher}. Unlike {@link #getSignature()},
+   * two trees will only produce the same values if they have the same structure, tag names and attributes.
+   */
+  public void putTreeSignature(@NotNull Hasher hasher) {
+    putAttributes(hasher, true);
+    hasher.putInt(children.size());
+    for (TagSnapshot child : children) {
+      child.putTreeSignature(hasher);
+    }
+  }
+
+  private void putAttributes(@NotNull Hasher hasher, boolean includeBundledTags) {
     hasher.putString(tagName, UTF_8);
     for (AttributeSnapshot attribute : attributes) {
       if (attribute.prefix != null) {
         hasher.putString(attribute.prefix, UTF_8);
       }
       hasher.putString(attribute.name, UTF_8);
-      if (attribute.value != null) {
+      if (includeBundledTags && attribute instanceof AaptAttrAttributeSnapshot) {
+        // The value of an aapt:attr is a synthetic reference that is unique for every snapshot, the actual content lives in the
+        // bundled tag
+        ((AaptAttrAttributeSnapshot)attribute).getBundledTag().putTreeSignature(hasher);
+      }
+      else if (attribute.value != null) {
         hasher.putString(attribute.value, UTF_8);
       }
       // Note that we're not bothering with namespaces here; the prefix will identify it uniquely
     }
-    return hasher.hash().asLong();
   }
 }
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.parsers;
+
+import static com.android.SdkConstants.AAPT_URI;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.tools.idea.flags.StudioFlags;
+import com.google.common.hash.Hasher;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiTreeChangeAdapter;
+import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps an up to date {@link TagSnapshot} tree for every layout file that has been rendered so the whole tree does not need to be
+ * read from PSI before every render.
+ * <p>
+ * PSI changes mark the closest enclosing tag of the change as dirty. On the next request, only the subtrees of the dirty tags are
+ * snapshotted again and spliced into the cached tree. Any change that can not be mapped to a tag, or a modification that was not
+ * notified, causes the whole tree to be snapshotted again. The cached trees are never given to the callers, they always receive a
+ * copy that they can modify.
+ */
+public class TagSnapshotCache implements Disposable {
+  private static final Key<TagSnapshotCache> KEY = Key.create(TagSnapshotCache.class.getName());
+  private static final Key<FileSnapshots> FILE_SNAPSHOTS_KEY = Key.create(FileSnapshots.class.getName());
+
+  /**
+   * Cached snapshot tree of a single file. The snapshots in the tree do not have any decorators applied.
+   */
+  private static final class FileSnapshots {
+    @GuardedBy("this")
+    @Nullable private XmlTag myRootTag;
+    @GuardedBy("this")
+    @Nullable private TagSnapshot myRoot;
+    /** PSI modification stamp of the file when {@link #myRoot} was last updated */
+    @GuardedBy("this")
+    private long myModificationStamp = -1;
+    /** Index of the snapshot of every tag in the tree, excluding the aapt:attr bundled tags */
+    @GuardedBy("this")
+    private final Map<XmlTag, TagSnapshot> mySnapshots = new HashMap<>();
+    /** Tags modified since the last update */
+    @GuardedBy("this")
+    private final Set<XmlTag> myDirtyTags = new HashSet<>();
+    /** Set when there has been a change that can not be applied incrementally */
+    @GuardedBy("this")
+    private boolean myInvalid;
+    /** Number of tags read from PSI, for testing */
+    @GuardedBy("this")
+    private int mySnapshottedTags;
+
+    synchronized void markDirty(@Nullable XmlTag tag) {
+      if (tag == null) {
+        myInvalid = true;
+      }
+      else {
+        myDirtyTags.add(tag);
+      }
+    }
+
+    @NotNull
+    synchronized TagSnapshot getSnapshot(@NotNull XmlTag rootTag, long modificationStamp, @Nullable Consumer<TagSnapshot> afterCreate) {
+      return update(rootTag, modificationStamp).copy(afterCreate);
+    }
+
+    synchronized void putTreeSignature(@NotNull XmlTag rootTag, long modificationStamp, @NotNull Hasher hasher) {
+      update(rootTag, modificationStamp).putTreeSignature(hasher);
+    }
+
+    /**
+     * Brings the cached tree up to date with the given root tag and returns it.
+     */
+    @GuardedBy("this")
+    @NotNull
+    private TagSnapshot update(@NotNull XmlTag rootTag, long modificationStamp) {
+      boolean upToDate = myRoot != null && rootTag == myRootTag && !myInvalid;
+      if (upToDate && (modificationStamp != myModificationStamp || !myDirtyTags.isEmpty())) {
+        // A modification without any notified change can not be applied incrementally
+        upToDate = !myDirtyTags.isEmpty() && updateDirtyTags();
+      }
+      if (!upToDate) {
+        mySnapshots.clear();
+        myRootTag = rootTag;
+        myRoot = snapshot(rootTag);
+      }
+      myDirtyTags.clear();
+      myInvalid = false;
+      myModificationStamp = modificationStamp;
+      return myRoot;
+    }
+
+    /**
+     * Snapshots again the subtrees of the dirty tags. Returns false if the changes could not be applied incrementally.
+     */
+    @GuardedBy("this")
+    private boolean updateDirtyTags() {
+      List<XmlTag> outermostTags = new ArrayList<>();
+      for (XmlTag tag : myDirtyTags) {
+        if (!tag.isValid()) {
+          return false;
+        }
+        if (!hasDirtyAncestor(tag)) {
+          outermostTags.add(tag);
+        }
+      }
+
+      for (XmlTag tag : outermostTags) {
+        TagSnapshot oldSnapshot = mySnapshots.get(tag);
+        if (oldSnapshot == null) {
+          // The tag is not part of the tree, e.g. it is the root of an aapt:attr bundled tag
+          return false;
+        }
+
+        if (tag == myRootTag) {
+          unindex(oldSnapshot);
+          myRoot = snapshot(tag);
+          continue;
+        }
+
+        XmlTag parentTag = tag.getParentTag();
+        TagSnapshot parentSnapshot = parentTag != null ? mySnapshots.get(parentTag) : null;
+        int index = parentSnapshot != null ? parentSnapshot.children.indexOf(oldSnapshot) : -1;
+        if (index == -1) {
+          return false;
+        }
+        unindex(oldSnapshot);
+        parentSnapshot.replaceChild(index, snapshot(tag));
+
+        // The new subtree might have added or removed aapt:attr declarations
+        for (XmlTag ancestor = parentTag.getParentTag(); ancestor != null; ancestor = ancestor.getParentTag()) {
+          TagSnapshot ancestorSnapshot = mySnapshots.get(ancestor);
+          if (ancestorSnapshot == null) {
+            break;
+          }
+          ancestorSnapshot.updateHasDeclaredAaptAttrs();
+        }
+      }
+      return true;
+    }
+
+    @GuardedBy("this")
+    private boolean hasDirtyAncestor(@NotNull XmlTag tag) {
+      for (XmlTag ancestor = tag.getParentTag(); ancestor != null; ancestor = ancestor.getParentTag()) {
+        if (myDirtyTags.contains(ancestor)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @GuardedBy("this")
+    @NotNull
+    private TagSnapshot snapshot(@NotNull XmlTag tag) {
+      TagSnapshot snapshot = TagSnapshot.createTagSnapshot(tag, null);
+      index(snapshot);
+      return snapshot;
+    }
+
+    @GuardedBy("this")
+    private void index(@NotNull TagSnapshot snapshot) {
+      if (snapshot.tag != null) {
+        mySnapshots.put(snapshot.tag, snapshot);
+        mySnapshottedTags++;
+      }
+      for (TagSnapshot child : snapshot.children) {
+        index(child);
+      }
+    }
+
+    @GuardedBy("this")
+    private void unindex(@NotNull TagSnapshot snapshot) {
+      if (snapshot.tag != null) {
+        mySnapshots.remove(snapshot.tag);
+      }
+      for (TagSnapshot child : snapshot.children) {
+        unindex(child);
+      }
+    }
+  }
+
+  private TagSnapshotCache(@NotNull Project project) {
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiChangeListener(), this);
+    Disposer.register(project, this);
+  }
+
+  @NotNull
+  public static TagSnapshotCache getInstance(@NotNull Project project) {
+    synchronized (KEY) {
+      TagSnapshotCache cache = project.getUserData(KEY);
+      if (cache == null) {
+        cache = new TagSnapshotCache(project);
+        project.putUserData(KEY, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Returns whether the layout parsers should use the incrementally maintained snapshots.
+   */
+  public static boolean isEnabled() {
+    return StudioFlags.NELE_INCREMENTAL_TAG_SNAPSHOT.get();
+  }
+
+  /**
+   * Returns a new snapshot of the given tag and all its children, equivalent to {@link TagSnapshot#createTagSnapshot(XmlTag, Consumer)}
+   * but only reading from PSI the tags that changed since the last call for the same file. Must be called under a read action.
+   *
+   * @param afterCreate If not null, this will be called for every new {@link TagSnapshot} returned by this call
+   */
+  @NotNull
+  public TagSnapshot getSnapshot(@NotNull XmlTag rootTag, @Nullable Consumer<TagSnapshot> afterCreate) {
+    FileSnapshots fileSnapshots = getFileSnapshots(rootTag);
+    if (fileSnapshots == null) {
+      return TagSnapshot.createTagSnapshot(rootTag, afterCreate);
+    }
+    return fileSnapshots.getSnapshot(rootTag, rootTag.getContainingFile().getModificationStamp(), afterCreate);
+  }
+
+  /**
+   * Adds the signature of the snapshot tree of the given tag to the given {@link Hasher}, like {@link TagSnapshot#putTreeSignature(Hasher)}
+   * on the result of {@link #getSnapshot(XmlTag, Consumer)}, but without copying the tree. Must be called under a read action.
+   */
+  public void putTreeSignature(@NotNull XmlTag rootTag, @NotNull Hasher hasher) {
+    FileSnapshots fileSnapshots = getFileSnapshots(rootTag);
+    if (fileSnapshots == null) {
+      TagSnapshot.createTagSnapshot(rootTag, null).putTreeSignature(hasher);
+      return;
+    }
+    fileSnapshots.putTreeSignature(rootTag, rootTag.getContainingFile().getModificationStamp(), hasher);
+  }
+
+  @Nullable
+  private static FileSnapshots getFileSnapshots(@NotNull XmlTag rootTag) {
+    PsiFile file = rootTag.getContainingFile();
+    // Only physical files notify their changes
+    if (!(file instanceof XmlFile) || !file.isPhysical() || !(file instanceof UserDataHolderEx)) {
+      return null;
+    }
+    return ((UserDataHolderEx)file).putUserDataIfAbsent(FILE_SNAPSHOTS_KEY, new FileSnapshots());
+  }
+
+  @VisibleForTesting
+  static int getSnapshottedTags(@NotNull XmlFile file) {
+    FileSnapshots fileSnapshots = file.getUserData(FILE_SNAPSHOTS_KEY);
+    if (fileSnapshots == null) {
+      return 0;
+    }
+    synchronized (fileSnapshots) {
+      return fileSnapshots.mySnapshottedTags;
+    }
+  }
+
+  /**
+   * Returns the tag whose snapshot needs to be updated when the given element changes or null if the change does not belong to any tag.
+   */
+  @Nullable
+  private static XmlTag findSnapshotTag(@Nullable PsiElement element) {
+    XmlTag tag = element != null ? PsiTreeUtil.getParentOfType(element, XmlTag.class, false) : null;
+    // Changes inside an aapt:attr are part of the snapshot of the tag declaring the attribute
+    XmlTag result = tag;
+    for (XmlTag ancestor = tag; ancestor != null; ancestor = ancestor.getParentTag()) {
+      if (AAPT_URI.equals(ancestor.getNamespace())) {
+        result = ancestor.getParentTag();
+      }
+    }
+    return result;
+  }
+
+  private static void markDirty(@Nullable PsiFile file, @Nullable PsiElement element) {
+    FileSnapshots fileSnapshots = file != null ? file.getUserData(FILE_SNAPSHOTS_KEY) : null;
+    if (fileSnapshots != null) {
+      fileSnapshots.markDirty(findSnapshotTag(element));
+    }
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  private static class PsiChangeListener extends PsiTreeChangeAdapter {
+    @Override
+    public void childAdded(@NotNull PsiTreeChangeEvent event) {
+      markDirty(event.getFile(), event.getParent());
+    }
+
+    @Override
+    public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+      markDirty(event.getFile(), event.getParent());
+    }
+
+    @Override
+    public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+      markDirty(event.getFile(), event.getParent());
+    }
+
+    @Override
+    public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+      markDirty(event.getFile(), event.getParent());
+    }
+
+    @Override
+    public void childMoved(@NotNull PsiTreeChangeEvent event) {
+      markDirty(event.getFile(), event.getOldParent());
+      markDirty(event.getFile(), event.getNewParent());
+    }
+
+    @Override
+    public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+      // Property changes are not tied to a tag, e.g. the file was renamed or reloaded
+      PsiElement element = event.getElement();
+      markDirty(element instanceof PsiFile ? (PsiFile)element : event.getFile(), null);
+    }
+  }
+}
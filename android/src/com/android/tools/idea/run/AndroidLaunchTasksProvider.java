@@ -59,6 +59,8 @@ public class AndroidLaunchTasksProvider implements LaunchTasksProvider {
   private final ApkProvider myApkProvider;
   private final LaunchOptions myLaunchOptions;
   private final Project myProject;
+  /** The application id, when it was computed once for a launch on several devices. */
+  @Nullable private volatile String myPreparedPackageName;
 
   public AndroidLaunchTasksProvider(@NotNull AndroidRunConfigurationBase runConfig,
                                     @NotNull ExecutionEnvironment env,
@@ -89,7 +91,8 @@ public class AndroidLaunchTasksProvider implements LaunchTasksProvider {
     String packageName;
     boolean launchApp = true;
     try {
-      packageName = myApplicationIdProvider.getPackageName();
+      String preparedPackageName = myPreparedPackageName;
+      packageName = preparedPackageName != null ? preparedPackageName : myApplicationIdProvider.getPackageName();
       launchTasks.addAll(getDeployTasks(device, packageName));
 
       StringBuilder amStartOptions = new StringBuilder();
@@ -196,6 +199,20 @@ public class AndroidLaunchTasksProvider implements LaunchTasksProvider {
     stats.setApplyCodeChangesFallbackToRun(isApplyCodeChangesFallbackToRun());
   }
 
+  @Override
+  public boolean prepareConcurrentLaunch() {
+    try {
+      // Reading the application id may read the merged manifest, which only needs to be done once for all the devices
+      myPreparedPackageName = myApplicationIdProvider.getPackageName();
+    }
+    catch (ApkProvisionException e) {
+      // getTasks reports the error on each device
+      myPreparedPackageName = null;
+    }
+    // getTasks only reads the state of this provider, and the APKs and launch tasks it creates are per device
+    return true;
+  }
+
   @NotNull
   private static List<File> getFilteredFeatures(ApkInfo apkInfo, List<String> disabledFeatures) {
     if (apkInfo.getFiles().size() > 1) {
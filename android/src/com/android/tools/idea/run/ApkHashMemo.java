@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.annotations.concurrency.GuardedBy;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.SystemInfo;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers the hashes of the APKs computed by {@link InstalledApkCache}, so that an APK that has not changed since it was last
+ * hashed does not have to be read again every time the IDE decides whether it needs to be installed.
+ * <p>
+ * Entries are keyed by the canonical path of the APK, and are only reused if the size, modification time and file key of the APK
+ * are still the same. They are stored in the system directory so they survive restarts.
+ */
+class ApkHashMemo {
+  private static final Logger LOG = Logger.getInstance(ApkHashMemo.class);
+
+  private static final String MEMO_FILE = "apk-hashes.txt";
+  /** Stored in the first line of the memo file. Increment when the format or the hash function changes. */
+  private static final String FORMAT_HEADER = "apk-hashes-v1";
+  private static final int MAX_ENTRY_COUNT = 256;
+  /** APKs are mapped and hashed in chunks of this size, so that very large APKs do not need a single huge mapping. */
+  private static final long MAPPED_CHUNK_SIZE = 64L * 1024 * 1024;
+  /** Unlike {@link Hashing#goodFastHash(int)}, the hash function must not change between sessions since hashes are stored on disk. */
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private static class InstanceHolder {
+    private static final ApkHashMemo INSTANCE = new ApkHashMemo(new File(PathManager.getSystemPath(), MEMO_FILE));
+  }
+
+  @Nullable private final File myFile;
+
+  private final Object myLock = new Object();
+  @GuardedBy("myLock")
+  private final LinkedHashMap<String, Entry> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+  @GuardedBy("myLock")
+  private boolean myLoaded;
+
+  /**
+   * @param file the file the entries are stored in, or null to only keep them in memory
+   */
+  @VisibleForTesting
+  ApkHashMemo(@Nullable File file) {
+    myFile = file;
+  }
+
+  @NotNull
+  public static ApkHashMemo getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Returns the hash of the contents of {@code apk}, reusing the last hash computed for it if it has not changed since.
+   */
+  @NotNull
+  public HashCode hash(@NotNull File apk) throws IOException {
+    Path path = apk.toPath().toRealPath();
+    String key = path.toString();
+    Stamp stamp = Stamp.read(path);
+
+    synchronized (myLock) {
+      loadIfNeeded();
+      Entry memoized = myEntries.get(key);
+      if (memoized != null && memoized.myStamp.equals(stamp)) {
+        return memoized.myHash;
+      }
+    }
+
+    HashCode hash = hashContents(path);
+
+    // Don't remember the hash if the APK was modified while it was being read
+    if (!Stamp.read(path).equals(stamp) || key.indexOf('\n') >= 0) {
+      return hash;
+    }
+
+    List<String> lines;
+    synchronized (myLock) {
+      myEntries.put(key, new Entry(stamp, hash));
+      Iterator<Map.Entry<String, Entry>> iterator = myEntries.entrySet().iterator();
+      while (myEntries.size() > MAX_ENTRY_COUNT && iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+      lines = toLines();
+    }
+    save(lines);
+    return hash;
+  }
+
+  /**
+   * Hashes the contents of the file at {@code path}.
+   * <p>
+   * The file is memory-mapped, except on Windows where a mapped file cannot be deleted until the mapping is garbage collected,
+   * which would make the next build fail to replace the APK.
+   */
+  @VisibleForTesting
+  @NotNull
+  static HashCode hashContents(@NotNull Path path) throws IOException {
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    if (SystemInfo.isWindows) {
+      try (InputStream stream = Files.newInputStream(path)) {
+        byte[] buffer = new byte[64 * 1024];
+        int count;
+        while ((count = stream.read(buffer)) > 0) {
+          hasher.putBytes(buffer, 0, count);
+        }
+      }
+      return hasher.hash();
+    }
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      for (long position = 0; position < size; position += MAPPED_CHUNK_SIZE) {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_CHUNK_SIZE, size - position));
+        hasher.putBytes(buffer);
+      }
+    }
+    return hasher.hash();
+  }
+
+  @GuardedBy("myLock")
+  private void loadIfNeeded() {
+    if (myLoaded) {
+      return;
+    }
+    myLoaded = true;
+    if (myFile == null || !myFile.isFile()) {
+      return;
+    }
+
+    try {
+      List<String> lines = Files.readAllLines(myFile.toPath(), StandardCharsets.UTF_8);
+      if (lines.isEmpty() || !lines.get(0).equals(FORMAT_HEADER)) {
+        return;
+      }
+      for (String line : lines.subList(1, lines.size())) {
+        // hash, size, modification time, file key, path. The path is last since it is the only field that may contain tabs.
+        String[] fields = line.split("\t", 5);
+        if (fields.length != 5) {
+          continue;
+        }
+        try {
+          Stamp stamp = new Stamp(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]);
+          myEntries.put(fields[4], new Entry(stamp, HashCode.fromString(fields[0])));
+        }
+        catch (IllegalArgumentException e) {
+          // Ignore the corrupted entry
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Unable to read APK hashes from " + myFile, e);
+    }
+  }
+
+  @GuardedBy("myLock")
+  @NotNull
+  private List<String> toLines() {
+    List<String> lines = new ArrayList<>(myEntries.size() + 1);
+    lines.add(FORMAT_HEADER);
+    myEntries.forEach((path, entry) -> lines.add(String.join("\t", entry.myHash.toString(),
+                                                             Long.toString(entry.myStamp.mySize),
+                                                             Long.toString(entry.myStamp.myLastModified),
+                                                             entry.myStamp.myFileKey,
+                                                             path)));
+    return lines;
+  }
+
+  private void save(@NotNull List<String> lines) {
+    if (myFile == null) {
+      return;
+    }
+
+    try {
+      File directory = myFile.getParentFile();
+      Files.createDirectories(directory.toPath());
+      // Write to a temporary file first so that a crash never leaves a partially written file behind
+      File tempFile = File.createTempFile(MEMO_FILE, null, directory);
+      try {
+        Files.write(tempFile.toPath(), lines, StandardCharsets.UTF_8);
+        Files.move(tempFile.toPath(), myFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(tempFile.toPath());
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Unable to write APK hashes to " + myFile, e);
+    }
+  }
+
+  private static class Entry {
+    @NotNull private final Stamp myStamp;
+    @NotNull private final HashCode myHash;
+
+    private Entry(@NotNull Stamp stamp, @NotNull HashCode hash) {
+      myStamp = stamp;
+      myHash = hash;
+    }
+  }
+
+  /**
+   * The attributes of an APK that are checked to decide whether it may have changed since it was hashed.
+   */
+  private static class Stamp {
+    private final long mySize;
+    private final long myLastModified;
+    @NotNull private final String myFileKey;
+
+    private Stamp(long size, long lastModified, @NotNull String fileKey) {
+      mySize = size;
+      myLastModified = lastModified;
+      myFileKey = fileKey;
+    }
+
+    @NotNull
+    private static Stamp read(@NotNull Path path) throws IOException {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      return new Stamp(attributes.size(), attributes.lastModifiedTime().toMillis(), String.valueOf(attributes.fileKey()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Stamp)) {
+        return false;
+      }
+      Stamp stamp = (Stamp)o;
+      return mySize == stamp.mySize && myLastModified == stamp.myLastModified && myFileKey.equals(stamp.myFileKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(mySize, myLastModified, myFileKey);
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.android.tools.idea.run;
 
 import com.android.annotations.VisibleForTesting;
 import com.android.ddmlib.*;
+import com.android.tools.idea.flags.StudioFlags;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashCode;
@@ -36,12 +37,22 @@ import java.util.concurrent.TimeUnit;
 
 public class InstalledApkCache implements Disposable {
   private final DeviceStateCache<CacheData> myCache;
+  @Nullable private final ApkHashMemo myHashMemo;
 
   /** Diagnostic output set by {@link #getLastUpdateTime(com.android.ddmlib.IDevice, String)} */
   private String myDiagnosticOutput;
 
   public InstalledApkCache() {
+    this(null);
+  }
+
+  /**
+   * @param hashMemo the memo used to avoid hashing unchanged APKs again, or null to use the shared one
+   */
+  @VisibleForTesting
+  InstalledApkCache(@Nullable ApkHashMemo hashMemo) {
     myCache = new DeviceStateCache<>(this);
+    myHashMemo = hashMemo;
   }
 
   @Override
@@ -84,7 +95,10 @@ public class InstalledApkCache implements Disposable {
   }
 
   @NotNull
-  private static HashCode hash(@NotNull File apk) throws IOException {
+  private HashCode hash(@NotNull File apk) throws IOException {
+    if (StudioFlags.RUNDEBUG_APK_HASH_MEMO.get()) {
+      return (myHashMemo != null ? myHashMemo : ApkHashMemo.getInstance()).hash(apk);
+    }
     return Files.hash(apk, Hashing.goodFastHash(32));
   }
 
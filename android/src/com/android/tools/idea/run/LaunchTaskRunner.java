@@ -17,6 +17,9 @@ package com.android.tools.idea.run;
 
 import com.android.ddmlib.IDevice;
 import com.android.sdklib.AndroidVersion;
+import com.android.tools.deployer.tasks.TaskRunner;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.run.tasks.AbstractDeployTask;
 import com.android.tools.idea.run.tasks.DebugConnectorTask;
 import com.android.tools.idea.run.tasks.LaunchResult;
 import com.android.tools.idea.run.tasks.LaunchTask;
@@ -40,6 +43,7 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.function.BiConsumer;
@@ -50,11 +54,16 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 public class LaunchTaskRunner extends Task.Backgroundable {
+  private static final int MAX_CONCURRENT_DEVICE_LAUNCHES = 8;
+
   @NotNull private final String myConfigName;
   @Nullable private final String myExecutionTargetName; // Change to NotNull once everything is moved over to DeviceAndSnapshot
   @NotNull private final LaunchInfo myLaunchInfo;
@@ -96,7 +105,7 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     indicator.setIndeterminate(false);
     myStats.beginLaunchTasks();
 
-    LaunchStatus launchStatus = new ProcessHandlerLaunchStatus(myProcessHandler);
+    ProcessHandlerLaunchStatus launchStatus = new ProcessHandlerLaunchStatus(myProcessHandler);
     ConsolePrinter consolePrinter = new ProcessHandlerConsolePrinter(myProcessHandler);
     List<ListenableFuture<IDevice>> listenableDeviceFutures = myDeviceFutures.get();
     AndroidVersion androidVersion = myDeviceFutures.getDevices().size() == 1
@@ -125,10 +134,24 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     launchString.append(".");
     consolePrinter.stdout(launchString.toString());
 
+    if (debugSessionTask == null && listenableDeviceFutures.size() > 1 && StudioFlags.RUNDEBUG_CONCURRENT_DEVICE_LAUNCH.get()) {
+      launchConcurrently(listenableDeviceFutures, indicator, launchStatus, consolePrinter);
+    }
+    else {
+      launchSequentially(listenableDeviceFutures, debugSessionTask, indicator, launchStatus, consolePrinter);
+    }
+    myStats.endLaunchTasks();
+  }
+
+  private void launchSequentially(@NotNull List<ListenableFuture<IDevice>> listenableDeviceFutures,
+                                  @Nullable DebugConnectorTask debugSessionTask,
+                                  @NotNull ProgressIndicator indicator,
+                                  @NotNull LaunchStatus launchStatus,
+                                  @NotNull ConsolePrinter consolePrinter) {
     for (ListenableFuture<IDevice> deviceFuture : listenableDeviceFutures) {
       indicator.setText("Waiting for target device to come online");
       myStats.beginWaitForDevice();
-      IDevice device = waitForDevice(deviceFuture, indicator, launchStatus);
+      IDevice device = waitForDevice(deviceFuture, indicator, launchStatus, true);
       myStats.endWaitForDevice(device);
       if (device == null) {
         break;
@@ -211,7 +234,170 @@ public class LaunchTaskRunner extends Task.Backgroundable {
         }
       }
     }
-    myStats.endLaunchTasks();
+  }
+
+  /**
+   * Runs the launch tasks of each device on a bounded pool of threads, instead of one device after the other.
+   *
+   * <p>Each device gets its own {@link LaunchStatus} and console prefix, so that a failure on one device does not
+   * stop the launch on the other devices. The launch as a whole is only terminated if it failed on all devices,
+   * or if it is cancelled. Debugging is not supported in this mode, since it is limited to a single device anyway.
+   */
+  private void launchConcurrently(@NotNull List<ListenableFuture<IDevice>> listenableDeviceFutures,
+                                  @NotNull ProgressIndicator indicator,
+                                  @NotNull ProcessHandlerLaunchStatus launchStatus,
+                                  @NotNull ConsolePrinter consolePrinter) {
+    // Device independent state is computed once for all the devices
+    myLaunchTasksProvider.fillStats(myStats);
+    boolean concurrentTasks = myLaunchTasksProvider.prepareConcurrentLaunch();
+
+    ConcurrentLaunchProgress progress = new ConcurrentLaunchProgress(indicator, listenableDeviceFutures.size());
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+      "LaunchTaskRunner", Math.min(listenableDeviceFutures.size(), MAX_CONCURRENT_DEVICE_LAUNCHES));
+    List<DeviceLaunchStatus> deviceStatuses = new ArrayList<>();
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < listenableDeviceFutures.size(); i++) {
+        ListenableFuture<IDevice> deviceFuture = listenableDeviceFutures.get(i);
+        DeviceLaunchStatus deviceStatus = new DeviceLaunchStatus(launchStatus, consolePrinter, "#" + (i + 1));
+        deviceStatuses.add(deviceStatus);
+        futures.add(executor.submit(() -> launchOnDevice(deviceFuture, deviceStatus, indicator, progress, consolePrinter, concurrentTasks)));
+      }
+
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          launchStatus.terminateLaunch("Interrupted while launching", true);
+          return;
+        }
+        catch (ExecutionException e) {
+          Logger.getInstance(LaunchTaskRunner.class).error(e.getCause());
+        }
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    if (launchStatus.isLaunchTerminated()) {
+      // Cancelled, or stopped by a device: the reason has already been printed
+      return;
+    }
+
+    List<String> failedDevices = new ArrayList<>();
+    for (DeviceLaunchStatus deviceStatus : deviceStatuses) {
+      if (deviceStatus.isDeviceLaunchTerminated()) {
+        failedDevices.add(deviceStatus.getDeviceName());
+      }
+    }
+    if (failedDevices.size() == deviceStatuses.size()) {
+      launchStatus.terminateLaunch("Launch failed on all devices", !isSwap());
+    }
+    else if (!failedDevices.isEmpty()) {
+      consolePrinter.stderr(String.format(Locale.US, "Launch failed on %d of %d devices: %s", failedDevices.size(), deviceStatuses.size(),
+                                          String.join(", ", failedDevices)));
+    }
+  }
+
+  private void launchOnDevice(@NotNull ListenableFuture<IDevice> deviceFuture,
+                              @NotNull DeviceLaunchStatus launchStatus,
+                              @NotNull ProgressIndicator indicator,
+                              @NotNull ConcurrentLaunchProgress progress,
+                              @NotNull ConsolePrinter consolePrinter,
+                              boolean concurrentTasks) {
+    // Each device records its own wait, on the thread that waits for it
+    synchronized (myStats) {
+      myStats.beginWaitForDevice();
+    }
+    IDevice device = waitForDevice(deviceFuture, indicator, launchStatus, false);
+    synchronized (myStats) {
+      myStats.endWaitForDevice(device);
+    }
+    if (device == null) {
+      return;
+    }
+    launchStatus.setDeviceName(device.getName());
+    ConsolePrinter devicePrinter = new DeviceConsolePrinter(consolePrinter, device.getName());
+
+    List<LaunchTask> launchTasks;
+    try {
+      if (concurrentTasks) {
+        launchTasks = myLaunchTasksProvider.getTasks(device, launchStatus, devicePrinter);
+      }
+      else {
+        // The provider did not declare that it can create tasks for several devices at once
+        synchronized (myLaunchTasksProvider) {
+          launchTasks = myLaunchTasksProvider.getTasks(device, launchStatus, devicePrinter);
+        }
+      }
+    }
+    catch (com.intellij.execution.ExecutionException | IllegalStateException e) {
+      launchStatus.terminateLaunch(e.getMessage(), false);
+      return;
+    }
+    progress.addTotalDuration(getTotalDuration(launchTasks, null));
+
+    // A task runner accumulates the tasks of one deployment, so the deployments on this device get their own runner
+    TaskRunner deployTaskRunner = null;
+    for (LaunchTask task : launchTasks) {
+      if (launchStatus.isLaunchTerminated()) {
+        return;
+      }
+
+      LaunchTaskDetail.Builder details;
+      synchronized (myStats) {
+        details = myStats.beginLaunchTask(task);
+      }
+      indicator.setText(device.getName() + ": " + task.getDescription());
+      LaunchResult result;
+      if (task instanceof AbstractDeployTask) {
+        if (deployTaskRunner == null) {
+          deployTaskRunner = DeploymentService.getInstance(myProject).createTaskRunner();
+        }
+        result = ((AbstractDeployTask)task).run(myLaunchInfo.executor, device, launchStatus, devicePrinter, deployTaskRunner);
+      }
+      else {
+        result = task.run(myLaunchInfo.executor, device, launchStatus, devicePrinter);
+      }
+      boolean success = result.getSuccess();
+      synchronized (myStats) {
+        myOnFinished.addAll(result.onFinishedCallbacks());
+        myStats.endLaunchTask(task, details, success);
+      }
+      if (!success) {
+        synchronized (myStats) {
+          // Report the first error only
+          if (myError == null) {
+            myErrorNotificationListener = result.getNotificationListener();
+            myError = result.getError();
+            myStats.setErrorId(result.getErrorId());
+          }
+        }
+        launchStatus.terminateLaunch(result.getConsoleError(), false);
+        if (result.getConsoleHyperlinkInfo() != null) {
+          myConsoleConsumer.accept(result.getConsoleHyperlinkText() + "\n", result.getConsoleHyperlinkInfo());
+        }
+        RunContentManager.getInstance(myProject).toFrontRunContent(myLaunchInfo.executor, myProcessHandler);
+        return;
+      }
+
+      progress.addElapsedDuration(task.getDuration());
+
+      if (indicator.isCanceled()) {
+        cancelLaunch(launchStatus);
+        return;
+      }
+    }
+
+    if (launchStatus.isLaunchTerminated()) {
+      return;
+    }
+    if (myProcessHandler instanceof AndroidProcessHandler) {
+      ((AndroidProcessHandler)myProcessHandler).addTargetDevice(device);
+    }
   }
 
   @Override
@@ -233,10 +419,15 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     }
   }
 
+  /**
+   * Waits for the device to come online. {@code destroyProcessOnError} tells whether an error with this device
+   * terminates the whole launch, which is not the case when launching on several devices concurrently.
+   */
   @Nullable
   private IDevice waitForDevice(@NotNull ListenableFuture<IDevice> deviceFuture,
-                                       @NotNull ProgressIndicator indicator,
-                                       @NotNull LaunchStatus launchStatus) {
+                                @NotNull ProgressIndicator indicator,
+                                @NotNull LaunchStatus launchStatus,
+                                boolean destroyProcessOnError) {
     while (true) {
       try {
         return deviceFuture.get(1, TimeUnit.SECONDS);
@@ -248,12 +439,12 @@ public class LaunchTaskRunner extends Task.Backgroundable {
         return null;
       }
       catch (ExecutionException e) {
-        launchStatus.terminateLaunch("Error while waiting for device: " + e.getCause().getMessage(), true);
+        launchStatus.terminateLaunch("Error while waiting for device: " + e.getCause().getMessage(), destroyProcessOnError);
         return null;
       }
 
       if (indicator.isCanceled()) {
-        launchStatus.terminateLaunch("User cancelled launch", !isSwap());
+        cancelLaunch(launchStatus);
         return null;
       }
 
@@ -263,6 +454,18 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     }
   }
 
+  /**
+   * Terminates the launch after the user cancelled it. When launching on several devices, this stops all of them.
+   */
+  private void cancelLaunch(@NotNull LaunchStatus launchStatus) {
+    if (launchStatus instanceof DeviceLaunchStatus) {
+      ((DeviceLaunchStatus)launchStatus).terminateAll("User cancelled launch", !isSwap());
+    }
+    else {
+      launchStatus.terminateLaunch("User cancelled launch", !isSwap());
+    }
+  }
+
   private static int getTotalDuration(@NotNull List<LaunchTask> launchTasks, @Nullable DebugConnectorTask debugSessionTask) {
     int total = 0;
 
@@ -277,6 +480,136 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     return total;
   }
 
+  /**
+   * Tracks the overall progress of a concurrent launch, whose total duration is only known once the launch tasks
+   * of every device have been created.
+   */
+  private static final class ConcurrentLaunchProgress {
+    @NotNull private final ProgressIndicator myIndicator;
+    private final int myDeviceCount;
+    private int myTotalDuration;
+    private int myElapsed;
+    private int myKnownDeviceCount;
+
+    ConcurrentLaunchProgress(@NotNull ProgressIndicator indicator, int deviceCount) {
+      myIndicator = indicator;
+      myDeviceCount = deviceCount;
+    }
+
+    synchronized void addTotalDuration(int duration) {
+      myTotalDuration += duration;
+      myKnownDeviceCount++;
+    }
+
+    synchronized void addElapsedDuration(int duration) {
+      myElapsed += duration;
+      // Assume the devices whose tasks are not known yet take as long as the average device
+      double estimatedTotal = (double)myTotalDuration * myDeviceCount / Math.max(1, myKnownDeviceCount);
+      myIndicator.setFraction(Math.min(1.0, myElapsed / Math.max(1.0, estimatedTotal)));
+    }
+  }
+
+  /**
+   * The {@link LaunchStatus} of a single device in a concurrent launch. Terminating it without destroying the process
+   * only stops the launch on this device. Destroying the process, which is shared by all the devices, terminates the
+   * launch on all devices, as does terminating the overall launch (e.g. with the stop button).
+   *
+   * <p>This is a {@link ProcessHandlerLaunchStatus} of the shared process handler, so that launch tasks which attach
+   * to the process (e.g. to clean up when it terminates) keep working.
+   */
+  private static final class DeviceLaunchStatus extends ProcessHandlerLaunchStatus {
+    @NotNull private final ProcessHandlerLaunchStatus myLaunchStatus;
+    @NotNull private final ConsolePrinter myConsolePrinter;
+    @NotNull private volatile String myDeviceName;
+    private volatile boolean myTerminated;
+
+    DeviceLaunchStatus(@NotNull ProcessHandlerLaunchStatus launchStatus, @NotNull ConsolePrinter consolePrinter, @NotNull String deviceName) {
+      super(launchStatus.getProcessHandler());
+      myLaunchStatus = launchStatus;
+      myConsolePrinter = consolePrinter;
+      myDeviceName = deviceName;
+    }
+
+    @NotNull
+    @Override
+    public ProcessHandler getProcessHandler() {
+      return myLaunchStatus.getProcessHandler();
+    }
+
+    @Override
+    public void setProcessHandler(@NotNull ProcessHandler handler) {
+      myLaunchStatus.setProcessHandler(handler);
+    }
+
+    @Override
+    public boolean isLaunchTerminated() {
+      return myTerminated || myLaunchStatus.isLaunchTerminated();
+    }
+
+    @Override
+    public void terminateLaunch(@Nullable String reason, boolean destroyProcess) {
+      if (destroyProcess) {
+        terminateAll("[" + myDeviceName + "] " + StringUtil.notNullize(reason, "Launch terminated"), true);
+        return;
+      }
+      if (!myTerminated) {
+        myTerminated = true;
+        myConsolePrinter.stderr("[" + myDeviceName + "] " + StringUtil.notNullize(reason, "Launch terminated"));
+      }
+    }
+
+    void terminateAll(@Nullable String reason, boolean destroyProcess) {
+      synchronized (myLaunchStatus) {
+        myTerminated = true;
+        // Only report the first device that stopped the whole launch
+        if (!myLaunchStatus.isLaunchTerminated()) {
+          myLaunchStatus.terminateLaunch(reason, destroyProcess);
+        }
+      }
+    }
+
+    boolean isDeviceLaunchTerminated() {
+      return myTerminated;
+    }
+
+    @NotNull
+    String getDeviceName() {
+      return myDeviceName;
+    }
+
+    void setDeviceName(@NotNull String deviceName) {
+      myDeviceName = deviceName;
+    }
+  }
+
+  /**
+   * Prefixes each line of output with the name of the device, since the output of concurrent launches is interleaved.
+   */
+  private static final class DeviceConsolePrinter implements ConsolePrinter {
+    @NotNull private final ConsolePrinter myConsolePrinter;
+    @NotNull private final String myPrefix;
+
+    DeviceConsolePrinter(@NotNull ConsolePrinter consolePrinter, @NotNull String deviceName) {
+      myConsolePrinter = consolePrinter;
+      myPrefix = "[" + deviceName + "] ";
+    }
+
+    @Override
+    public void stdout(@NotNull String message) {
+      myConsolePrinter.stdout(prefix(message));
+    }
+
+    @Override
+    public void stderr(@NotNull String message) {
+      myConsolePrinter.stderr(prefix(message));
+    }
+
+    @NotNull
+    private String prefix(@NotNull String message) {
+      return myPrefix + message.replace("\n", "\n" + myPrefix);
+    }
+  }
+
   private boolean isSwap() {
     return Boolean.TRUE.equals(myLaunchInfo.env.getCopyableUserData(ApplyChangesAction.KEY)) ||
            Boolean.TRUE.equals(myLaunchInfo.env.getCopyableUserData(CodeSwapAction.KEY));
@@ -38,4 +38,15 @@ public interface LaunchTasksProvider {
   boolean monitorRemoteProcess();
 
   default void fillStats(RunStats stats) {}
+
+  /**
+   * Called once before the tasks of several devices are created concurrently. Implementations can compute here
+   * the state that does not depend on the device, so that it is shared by all the devices.
+   *
+   * @return true if {@link #getTasks} can then be called for several devices at the same time, false if the calls
+   *         have to be serialized
+   */
+  default boolean prepareConcurrentLaunch() {
+    return false;
+  }
 }
@@ -26,11 +26,13 @@ import com.android.tools.idea.res.ResourceHelper;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.ExternalAnnotator;
 import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.markup.GutterIconRenderer;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -86,6 +88,8 @@ public abstract class AndroidResourceExternalAnnotatorBase
       return null;
     }
     ResourceResolver resolver = configuration.getResourceResolver();
+    // Icons to decode in the background, together with the offset where they are displayed
+    List<Pair<Integer, VirtualFile>> prefetchedIcons = GutterIconCache.isAsyncDecodingEnabled() ? new ArrayList<>() : null;
     for (FileAnnotationInfo.AnnotatableElement element : fileAnnotationsInfo.getElements()) {
       ProgressManager.checkCanceled();
       if (editor.isDisposed() || document.getModificationStamp() > timestamp) {
@@ -99,7 +103,8 @@ public abstract class AndroidResourceExternalAnnotatorBase
       GutterIconRenderer gutterIconRenderer;
       if (element.getResource() != null) {
         gutterIconRenderer =
-          getResourceGutterIconRender(element.getResource(), element.getPsiElement(), resolver, facet, configuration);
+          getResourceGutterIconRender(element.getResource(), element.getPsiElement(), resolver, facet, configuration, editor,
+                                      prefetchedIcons);
       }
       else {
         // Inline color
@@ -111,6 +116,9 @@ public abstract class AndroidResourceExternalAnnotatorBase
         rendererMap.put(element.getPsiElement(), gutterIconRenderer);
       }
     }
+    if (prefetchedIcons != null) {
+      GutterIconCache.getInstance().prefetch(editor, prefetchedIcons, resolver, facet);
+    }
     return rendererMap;
   }
 
@@ -119,22 +127,31 @@ public abstract class AndroidResourceExternalAnnotatorBase
                                                                 @NotNull PsiElement element,
                                                                 @NotNull ResourceResolver resolver,
                                                                 @NotNull AndroidFacet facet,
-                                                                @NotNull Configuration configuration) {
+                                                                @NotNull Configuration configuration,
+                                                                @NotNull Editor editor,
+                                                                @Nullable List<Pair<Integer, VirtualFile>> prefetchedIcons) {
     ResourceType type = reference.getResourceType();
     if (type == ResourceType.COLOR) {
       return getColorGutterIconRenderer(resolver, reference, facet, element);
     }
     else {
       assert type == ResourceType.DRAWABLE || type == ResourceType.MIPMAP;
-      return getDrawableGutterIconRenderer(resolver, reference, facet, configuration);
+      return getDrawableGutterIconRenderer(resolver, reference, element, facet, configuration, editor, prefetchedIcons);
     }
   }
 
+  /**
+   * Returns the {@link GutterIconRenderer} for a drawable reference. If {@code prefetchedIcons} is null, the icon is decoded in the
+   * calling thread, otherwise the icon is added to the list to be decoded later in the background.
+   */
   @Nullable
   private static GutterIconRenderer getDrawableGutterIconRenderer(@NotNull ResourceResolver resourceResolver,
                                                                   @NotNull ResourceReference reference,
+                                                                  @NotNull PsiElement element,
                                                                   @NotNull AndroidFacet facet,
-                                                                  @NotNull Configuration configuration) {
+                                                                  @NotNull Configuration configuration,
+                                                                  @NotNull Editor editor,
+                                                                  @Nullable List<Pair<Integer, VirtualFile>> prefetchedIcons) {
     ResourceValue drawable = resourceResolver.getResolvedResource(reference);
     if (drawable == null) {
       return null;
@@ -144,6 +161,11 @@ public abstract class AndroidResourceExternalAnnotatorBase
     if (bitmap == null) {
       return null;
     }
+    if (prefetchedIcons != null) {
+      prefetchedIcons.add(Pair.create(ReadAction.compute(element::getTextOffset), bitmap));
+      return new com.android.tools.idea.rendering.GutterIconRenderer(resourceResolver, facet, bitmap,
+                                                                     configuration, editor);
+    }
     // Updating the GutterIconCache in the background thread to include the icon.
     GutterIconCache.getInstance().getIcon(bitmap, resourceResolver, facet);
     return new com.android.tools.idea.rendering.GutterIconRenderer(resourceResolver, facet, bitmap,
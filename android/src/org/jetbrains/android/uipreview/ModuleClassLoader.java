@@ -49,6 +49,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.jetbrains.android.dom.manifest.AndroidManifestUtils;
@@ -515,11 +516,13 @@ public final class ModuleClassLoader extends RenderClassLoader {
           LOG.debug("  Discarding loader because the layout library has changed");
         }
         loader = null;
+        ourGeneration.incrementAndGet();
       } else if (!loader.isUpToDate()) {
         if (LOG.isDebugEnabled()) {
           LOG.debug("  Discarding loader because some files have changed");
         }
         loader = null;
+        ourGeneration.incrementAndGet();
       } else {
         List<URL> updatedJarDependencies = loader.getExternalJars();
         if (loader.myJarClassLoader != null && !updatedJarDependencies.equals(loader.myJarClassLoader.getUrls())) {
@@ -561,6 +564,7 @@ public final class ModuleClassLoader extends RenderClassLoader {
     synchronized (ourCache) {
       ourCache.clear();
     }
+    ourGeneration.incrementAndGet();
   }
 
   /** Remove the cached class loader for the module. */
@@ -568,6 +572,15 @@ public final class ModuleClassLoader extends RenderClassLoader {
     synchronized (ourCache) {
       ourCache.remove(module);
     }
+    ourGeneration.incrementAndGet();
+  }
+
+  /**
+   * Returns a counter that is incremented every time a cached class loader is discarded. Two renders done with the same generation
+   * are guaranteed to have loaded the same versions of the user classes.
+   */
+  public static long getGeneration() {
+    return ourGeneration.get();
   }
 
   public boolean isClassLoaded(@NotNull String className) {
@@ -576,4 +589,5 @@ public final class ModuleClassLoader extends RenderClassLoader {
 
   // TODO: move this into a proper persistent render service.
   private static final Map<Module, ModuleClassLoader> ourCache = ContainerUtil.createWeakMap();
+  private static final AtomicLong ourGeneration = new AtomicLong();
 }
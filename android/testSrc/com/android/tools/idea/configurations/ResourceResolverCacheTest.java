@@ -18,6 +18,7 @@ package com.android.tools.idea.configurations;
 import com.android.ide.common.resources.ResourceResolver;
 import com.android.sdklib.devices.Device;
 import com.android.sdklib.devices.Screen;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ResourceRepositoryManager;
 import com.google.common.collect.Iterables;
@@ -93,6 +94,35 @@ public class ResourceResolverCacheTest extends AndroidTestCase {
     assertSame(cache, configuration2.getConfigurationManager().getResolverCache());
   }
 
+  public void testParallelRenderPreparation() {
+    VirtualFile file1 = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
+    VirtualFile file2 = myFixture.copyFileToProject("render/layout2.xml", "res/layout/layout2.xml");
+    ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
+    Configuration configuration1 = configurationManager.getConfiguration(file1);
+    Configuration configuration2 = configurationManager.getConfiguration(file2);
+    ResourceResolverCache cache = configurationManager.getResolverCache();
+
+    StudioFlags.NELE_PARALLEL_RENDER_PREPARATION.override(true);
+    try {
+      ResourceResolver resolver1 = configuration1.getResourceResolver();
+      assertSame(resolver1, configuration2.getResourceResolver());
+      assertEquals(1, cache.myResolverMap.size());
+      assertEquals(1, cache.myAppResourceMap.size());
+      assertEquals(1, cache.myFrameworkResourceMap.size());
+
+      configuration1.setTheme("Theme.Light");
+      ResourceResolver resolver1b = configuration1.getResourceResolver();
+      assertNotSame(resolver1, resolver1b);
+      assertSame(resolver1b, configuration1.getResourceResolver());
+      // The configured resources are shared by the themes
+      assertEquals(2, cache.myResolverMap.size());
+      assertEquals(1, cache.myAppResourceMap.size());
+    }
+    finally {
+      StudioFlags.NELE_PARALLEL_RENDER_PREPARATION.clearOverride();
+    }
+  }
+
   public void testCustomConfiguration() {
     VirtualFile file1 = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
     ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.explorer.adbimpl;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.android.tools.idea.concurrent.FutureCallbackExecutor;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class AdbCommandBatcherTest {
+  private final List<List<String>> myBatches = new ArrayList<>();
+  private final List<SettableFuture<List<String>>> myBatchResults = new ArrayList<>();
+  private final List<String> mySingles = new ArrayList<>();
+  private final SettableFuture<String> mySlowSingle = SettableFuture.create();
+
+  /**
+   * Creates a batcher where single requests complete immediately, except "slow" which completes with {@link #mySlowSingle}
+   * and requests starting with "bad" which fail.
+   */
+  private AdbCommandBatcher<String, String> createBatcher(int maxBatchSize, int maxBatchLength) {
+    return new AdbCommandBatcher<>(FutureCallbackExecutor.wrap(MoreExecutors.directExecutor()),
+                                   requests -> {
+                                     myBatches.add(new ArrayList<>(requests));
+                                     SettableFuture<List<String>> result = SettableFuture.create();
+                                     myBatchResults.add(result);
+                                     return result;
+                                   },
+                                   request -> {
+                                     mySingles.add(request);
+                                     if (request.equals("slow")) {
+                                       return mySlowSingle;
+                                     }
+                                     return request.startsWith("bad")
+                                            ? Futures.<String>immediateFailedFuture(new IOException(request))
+                                            : Futures.immediateFuture(request.toUpperCase(Locale.US));
+                                   },
+                                   String::length,
+                                   maxBatchSize,
+                                   maxBatchLength);
+  }
+
+  private void completeLastBatch() {
+    List<String> batch = myBatches.get(myBatches.size() - 1);
+    myBatchResults.get(myBatchResults.size() - 1).set(
+      batch.stream().map(request -> request.toUpperCase(Locale.US)).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void requestsSubmittedDuringBatchAreCoalesced() throws Exception {
+    AdbCommandBatcher<String, String> batcher = createBatcher(32, 1000);
+
+    // The first request is executed on its own, the next ones are queued while it runs
+    ListenableFuture<String> slow = batcher.submit("slow");
+    List<ListenableFuture<String>> queued = new ArrayList<>();
+    queued.add(batcher.submit("c"));
+    queued.add(batcher.submit("d"));
+    queued.add(batcher.submit("e"));
+    assertThat(mySingles).containsExactly("slow");
+    assertThat(myBatches).isEmpty();
+
+    mySlowSingle.set("SLOW");
+    assertThat(slow.get()).isEqualTo("SLOW");
+    assertThat(myBatches).hasSize(1);
+    assertThat(myBatches.get(0)).containsExactly("c", "d", "e").inOrder();
+    assertThat(queued.get(0).isDone()).isFalse();
+
+    completeLastBatch();
+    assertThat(Futures.allAsList(queued).get()).containsExactly("C", "D", "E").inOrder();
+  }
+
+  @Test
+  public void batchesAreLimitedInSizeAndLength() {
+    AdbCommandBatcher<String, String> batcher = createBatcher(2, 5);
+    batcher.submit("slow");
+    batcher.submit("c");
+    batcher.submit("d");
+    batcher.submit("e");
+    batcher.submit("fff");
+    batcher.submit("ggg");
+    batcher.submit("hhhhhhh");
+
+    mySlowSingle.set("SLOW");
+    assertThat(myBatches.get(0)).containsExactly("c", "d").inOrder();
+    completeLastBatch();
+    assertThat(myBatches.get(1)).containsExactly("e", "fff").inOrder();
+    completeLastBatch();
+
+    // The remaining requests do not fit together, so each one is executed on its own
+    assertThat(myBatches).hasSize(2);
+    assertThat(mySingles).containsExactly("slow", "ggg", "hhhhhhh").inOrder();
+  }
+
+  @Test
+  public void failedBatchIsRetriedOneRequestAtATime() throws Exception {
+    AdbCommandBatcher<String, String> batcher = createBatcher(32, 1000);
+    batcher.submit("slow");
+    ListenableFuture<String> good = batcher.submit("good");
+    ListenableFuture<String> bad = batcher.submit("bad");
+
+    mySlowSingle.set("SLOW");
+    assertThat(myBatches.get(0)).containsExactly("good", "bad").inOrder();
+    myBatchResults.get(0).setException(new IOException("batch"));
+
+    assertThat(mySingles).containsExactly("slow", "good", "bad").inOrder();
+    assertThat(good.get()).isEqualTo("GOOD");
+    try {
+      bad.get();
+      fail("Expected an exception");
+    }
+    catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IOException.class);
+      assertThat(e.getCause().getMessage()).isEqualTo("bad");
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.android.tools.idea.explorer.adbimpl;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.tools.idea.explorer.adbimpl.AdbFileListingEntry.EntryKind;
+import com.android.tools.idea.flags.StudioFlags;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.hamcrest.core.IsInstanceOf;
 import org.jetbrains.annotations.NotNull;
@@ -27,11 +28,14 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.awt.*;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static com.android.tools.idea.explorer.adbimpl.TestDevices.COMMAND_ERROR_CHECK_SUFFIX;
 import static com.google.common.truth.Truth.assertThat;
@@ -354,6 +358,83 @@ public class AdbFileListingTest {
     assertDirectoryLink(fileListing, rootEntries, "vendor", true);
   }
 
+  @Test
+  public void test_RecursiveListingReceiver() {
+    // Prepare
+    Map<String, List<AdbFileListingEntry>> listings = new HashMap<>();
+    AdbFileListing.RecursiveListingReceiver receiver = new AdbFileListing.RecursiveListingReceiver("/sdcard/", false, listings::put);
+
+    // Act
+    receiver.processNewLines(new String[]{
+      "/sdcard/:",
+      "total 8",
+      "drwxrwx--x 2 root sdcard_rw 4096 2019-01-02 10:00 Alarms",
+      "-rw-rw---- 1 root sdcard_rw 1234 2019-01-02 10:00 foo.txt",
+      "",
+      "/sdcard//Alarms:",
+      "total 0",
+      ""
+    });
+    receiver.processNewLines(new String[]{
+      "/sdcard/Private:",
+      "ls: /sdcard/Private: Permission denied",
+      "",
+      "/sdcard/Old:",
+      ""
+    });
+    receiver.flush();
+
+    // Assert
+    assertThat(listings.keySet()).containsExactly("/sdcard", "/sdcard/Alarms");
+    assertThat(listings.get("/sdcard").stream().map(AdbFileListingEntry::getFullPath).collect(Collectors.toList()))
+      .containsExactly("/sdcard/Alarms", "/sdcard/foo.txt").inOrder();
+    assertThat(listings.get("/sdcard/Alarms")).isEmpty();
+  }
+
+  @Test
+  public void test_Nexus7Api23_PrefetchDescendants() throws Exception {
+    StudioFlags.DEVICE_EXPLORER_LISTING_CACHE.override(true);
+    try {
+      // Prepare
+      TestShellCommands commands = new TestShellCommands();
+      TestDevices.addNexus7Api23Commands(commands);
+      commands.add("ls -l -R /system/", "drwxr-xr-x root     root              2016-05-17 12:04 app\r\n" +
+                                        "-rw-r--r-- root     root         1234 2016-05-17 12:04 build.prop\r\n" +
+                                        "\r\n" +
+                                        "/system/app:\r\n" +
+                                        "-rw-r--r-- root     root           10 2016-05-17 12:04 Foo.apk\r\n");
+      commands.addError("ls -l /system/app/" + COMMAND_ERROR_CHECK_SUFFIX, new ShellCommandUnresponsiveException());
+      IDevice device = commands.createMockDevice();
+      Executor taskExecutor = PooledThreadExecutor.INSTANCE;
+      AdbFileListing fileListing = new AdbFileListing(device, new AdbDeviceCapabilities(device), taskExecutor);
+      AdbFileListingEntry system =
+        new AdbFileListingEntryBuilder().setPath("/system").setKind(AdbFileListingEntry.EntryKind.DIRECTORY).build();
+
+      // Act
+      waitForFuture(fileListing.prefetchDescendantsRunAs(system, null));
+      List<AdbFileListingEntry> systemEntries = waitForFuture(fileListing.getChildren(system));
+      AdbFileListingEntry app = systemEntries.stream().filter(x -> "app".equals(x.getName())).findFirst().orElse(null);
+      assertThat(app).isNotNull();
+      List<AdbFileListingEntry> appEntries = waitForFuture(fileListing.getChildren(app));
+
+      // Assert
+      assertThat(systemEntries.stream().map(AdbFileListingEntry::getName).collect(Collectors.toList()))
+        .containsExactly("app", "build.prop").inOrder();
+      assertThat(appEntries.stream().map(AdbFileListingEntry::getFullPath).collect(Collectors.toList()))
+        .containsExactly("/system/app/Foo.apk");
+
+      // Invalidated listings are listed again with "ls -l"
+      fileListing.invalidate("/system/app");
+      assertThat(waitForFuture(fileListing.getChildren(system))).isSameAs(systemEntries);
+      thrown.expect(ExecutionException.class);
+      thrown.expectCause(IsInstanceOf.instanceOf(ShellCommandUnresponsiveException.class));
+      waitForFuture(fileListing.getChildren(app));
+    }
+    finally {
+      StudioFlags.DEVICE_EXPLORER_LISTING_CACHE.clearOverride();
+    }
+  }
+
   private static void assertDirectoryLink(@NotNull AdbFileListing fileListing,
                                           @NotNull List<AdbFileListingEntry> entries,
                                           @NotNull String name,
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.gradle.dsl.model
 
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.gradle.dsl.TestFileName.PROJECT_BUILD_MODEL_APPLIED_FILES_SHARED
 import com.android.tools.idea.gradle.dsl.TestFileName.PROJECT_BUILD_MODEL_APPLIED_FILES_SHARED_APPLIED
 import com.android.tools.idea.gradle.dsl.TestFileName.PROJECT_BUILD_MODEL_APPLIED_FILES_SHARED_SUB
@@ -91,6 +92,39 @@ class ProjectBuildModelTest : GradleFileModelTestCase() {
     }
   }
 
+  @Test
+  fun testGetAllIncludedBuildModelsWithParallelPsiLoading() {
+    writeToNewProjectFile("b.gradle", PROJECT_BUILD_MODEL_APPLIED_FILES_SHARED_APPLIED)
+    writeToBuildFile(PROJECT_BUILD_MODEL_APPLIED_FILES_SHARED)
+    writeToSubModuleBuildFile(PROJECT_BUILD_MODEL_APPLIED_FILES_SHARED_SUB)
+    // The PSI is only loaded in parallel when there are several included modules.
+    writeToNewSubModule("lib1", PROJECT_BUILD_MODEL_SETTINGS_FILE_UPDATES_CORRECTLY_OTHER_SUB, "")
+    writeToNewSubModule("lib2", PROJECT_BUILD_MODEL_SETTINGS_FILE_UPDATES_CORRECTLY_OTHER_SUB, "")
+    writeToSettingsFile("$subModuleSettingsText\ninclude ':lib1', ':lib2'")
+
+    StudioFlags.GRADLE_DSL_PARALLEL_PSI_LOADING.override(true)
+    try {
+      val projectModel = ProjectBuildModel.get(myProject)
+      val allModels = projectModel.allIncludedBuildModels
+      assertSize(4, allModels)
+      assertEquals(myBuildFile, allModels[0].virtualFile)
+      assertEquals(mySubModuleBuildFile, allModels[1].virtualFile)
+      assertEquals("lib1", allModels[2].virtualFile.parent.name)
+      assertEquals("lib2", allModels[3].virtualFile.parent.name)
+
+      val parentProperty = allModels[0].ext().findProperty("property")
+      verifyPropertyModel(parentProperty.resolve(), STRING_TYPE, "hello", STRING, REGULAR, 1, "property")
+      val childProperty = allModels[1].ext().findProperty("childProperty")
+      verifyPropertyModel(childProperty.resolve(), STRING_TYPE, "hello", STRING, REGULAR, 1, "childProperty")
+      for (libModel in allModels.subList(2, 4)) {
+        verifyPropertyModel(libModel.ext().findProperty("otherModuleProp"), STRING_TYPE, "two", STRING, REGULAR, 0, "otherModuleProp")
+      }
+    }
+    finally {
+      StudioFlags.GRADLE_DSL_PARALLEL_PSI_LOADING.clearOverride()
+    }
+  }
+
   @Test
   fun testApplyNoRootBuildFile() {
     writeToSubModuleBuildFile(PROJECT_BUILD_MODEL_APPLY_NO_ROOT_BUILD_FILE)
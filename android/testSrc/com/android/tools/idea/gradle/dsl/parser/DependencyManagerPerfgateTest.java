@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.dsl.parser;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslElement;
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslSimpleExpression;
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleNameElement;
+import com.android.tools.perflogger.Benchmark;
+import com.android.tools.perflogger.Metric;
+import com.android.tools.perflogger.Metric.MetricSample;
+import com.intellij.psi.PsiElement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+/**
+ * Measures the time it takes the {@link DependencyManager} to process the addition of a property, in synthetic build trees of
+ * {@link #MODULE_COUNT} modules with an increasing number of unresolved {@code ext} property references per module. The time of an
+ * edit should only depend on the number of references to the added property, not on the total number of references.
+ */
+public class DependencyManagerPerfgateTest {
+  private static final int MODULE_COUNT = 500;
+  private static final int[] REFERENCES_PER_MODULE = {2, 20, 200};
+  private static final int NUMBER_OF_WARM_UP = 5;
+  private static final int NUMBER_OF_SAMPLES = 50;
+
+  private static final Benchmark EDIT_BENCHMARK = new Benchmark.Builder("Gradle DSL Dependency Manager Benchmark")
+    .setDescription("Time (in microseconds) to resolve the references affected by a new ext property, in a " + MODULE_COUNT +
+                    " module build.")
+    .build();
+
+  @Test
+  public void addProperty() {
+    for (int referencesPerModule : REFERENCES_PER_MODULE) {
+      List<MetricSample> samples = new ArrayList<>();
+      for (int i = 0; i < NUMBER_OF_WARM_UP + NUMBER_OF_SAMPLES; i++) {
+        long elapsedMicros = measureAddProperty(referencesPerModule);
+        if (i >= NUMBER_OF_WARM_UP) {
+          samples.add(new MetricSample(Instant.now().toEpochMilli(), elapsedMicros));
+        }
+      }
+      Metric metric = new Metric("add_property_" + MODULE_COUNT + "_modules_" + referencesPerModule + "_references");
+      metric.addSamples(EDIT_BENCHMARK, samples.toArray(new MetricSample[0]));
+      metric.commit();
+    }
+  }
+
+  /**
+   * Creates a build where every module references {@code referencesPerModule} undefined properties of the root project, one of them
+   * being the property added by the edit, and returns the time it takes to process the addition of that property.
+   */
+  private static long measureAddProperty(int referencesPerModule) {
+    DependencyManager dependencyManager = DependencyManager.create();
+    GradleDslElement newProperty = mock(GradleDslElement.class);
+    when(newProperty.getNameElement()).thenReturn(GradleNameElement.fake("newProperty"));
+
+    for (int module = 0; module < MODULE_COUNT; module++) {
+      GradleDslSimpleExpression origin = createOrigin("newProperty", newProperty);
+      dependencyManager.registerUnresolvedReference(createReference(origin, "rootProject.ext.newProperty"));
+      for (int reference = 1; reference < referencesPerModule; reference++) {
+        dependencyManager.registerUnresolvedReference(createReference(origin, "rootProject.ext.property" + reference));
+      }
+    }
+
+    long start = System.nanoTime();
+    dependencyManager.resolveWith(newProperty);
+    return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+  }
+
+  @NotNull
+  private static GradleDslSimpleExpression createOrigin(@NotNull String resolvableName, @NotNull GradleDslElement resolvedElement) {
+    GradleDslSimpleExpression origin = mock(GradleDslSimpleExpression.class);
+    when(origin.resolveReference(anyString(), eq(true)))
+      .thenAnswer(invocation -> ((String)invocation.getArgument(0)).endsWith("." + resolvableName) ? resolvedElement : null);
+    return origin;
+  }
+
+  @NotNull
+  private static GradleReferenceInjection createReference(@NotNull GradleDslSimpleExpression origin, @NotNull String referenceText) {
+    return new GradleReferenceInjection(origin, null, mock(PsiElement.class), referenceText);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.dsl.parser;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslElement;
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleDslSimpleExpression;
+import com.android.tools.idea.gradle.dsl.parser.elements.GradleNameElement;
+import com.android.tools.idea.gradle.dsl.parser.elements.GradlePropertiesDslElement;
+import com.google.common.collect.ImmutableList;
+import com.intellij.psi.PsiElement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DependencyManagerTest {
+  private DependencyManager myDependencyManager;
+  /** The elements returned by the origin elements of the references, by reference text. */
+  private Map<String, GradleDslElement> myResolvableElements;
+  /** The reference texts passed to {@link GradleDslSimpleExpression#resolveReference}, in order. */
+  private List<String> myResolveAttempts;
+  private GradleDslSimpleExpression myOrigin;
+
+  @Before
+  public void setUp() {
+    myDependencyManager = DependencyManager.create();
+    myResolvableElements = new HashMap<>();
+    myResolveAttempts = new ArrayList<>();
+    myOrigin = mock(GradleDslSimpleExpression.class);
+    when(myOrigin.resolveReference(anyString(), eq(true))).thenAnswer(invocation -> {
+      String referenceText = invocation.getArgument(0);
+      myResolveAttempts.add(referenceText);
+      return myResolvableElements.get(referenceText);
+    });
+  }
+
+  @NotNull
+  private GradleReferenceInjection registerReference(@NotNull String referenceText) {
+    GradleReferenceInjection injection = new GradleReferenceInjection(myOrigin, null, mock(PsiElement.class), referenceText);
+    myDependencyManager.registerUnresolvedReference(injection);
+    return injection;
+  }
+
+  @NotNull
+  private static GradleDslElement createElement(@NotNull String name) {
+    GradleDslElement element = mock(GradleDslElement.class);
+    when(element.getNameElement()).thenReturn(GradleNameElement.fake(name));
+    return element;
+  }
+
+  @Test
+  public void resolveWithOnlyResolvesReferencesContainingTheElementName() {
+    GradleReferenceInjection foo = registerReference("foo");
+    GradleReferenceInjection bar = registerReference("ext.bar");
+    GradleReferenceInjection indexedFoo = registerReference("rootProject.deps['foo']");
+
+    GradleDslElement element = createElement("foo");
+    myResolvableElements.put("foo", element);
+    myResolvableElements.put("rootProject.deps['foo']", element);
+    myDependencyManager.resolveWith(element);
+
+    assertThat(myResolveAttempts).containsExactly("foo", "rootProject.deps['foo']");
+    assertThat(foo.getToBeInjected()).isSameAs(element);
+    assertThat(indexedFoo.getToBeInjected()).isSameAs(element);
+    assertThat(bar.isResolved()).isFalse();
+    verify(element).registerDependent(foo);
+    verify(element).registerDependent(indexedFoo);
+    assertThat(myDependencyManager.getUnresolvedReferenceCount()).isEqualTo(1);
+
+    // Resolved references are not attempted again
+    myResolveAttempts.clear();
+    myDependencyManager.resolveWith(element);
+    assertThat(myResolveAttempts).isEmpty();
+  }
+
+  @Test
+  public void resolveWithIncludesNestedElements() {
+    GradleReferenceInjection version = registerReference("versions.kotlin");
+    registerReference("other");
+
+    GradleDslElement kotlin = createElement("kotlin");
+    GradlePropertiesDslElement ext = mock(GradlePropertiesDslElement.class);
+    when(ext.getNameElement()).thenReturn(GradleNameElement.fake("ext"));
+    when(ext.getCurrentElements()).thenReturn(ImmutableList.of(kotlin));
+    myResolvableElements.put("versions.kotlin", kotlin);
+    myDependencyManager.resolveWith(ext);
+
+    assertThat(myResolveAttempts).containsExactly("versions.kotlin");
+    assertThat(version.getToBeInjected()).isSameAs(kotlin);
+  }
+
+  @Test
+  public void unresolvedReferencesAreAttemptedAgain() {
+    GradleReferenceInjection foo = registerReference("foo");
+
+    GradleDslElement element = createElement("foo");
+    myDependencyManager.resolveWith(element);
+    assertThat(foo.isResolved()).isFalse();
+
+    myResolvableElements.put("foo", element);
+    myDependencyManager.resolveWith(element);
+    assertThat(myResolveAttempts).containsExactly("foo", "foo");
+    assertThat(foo.getToBeInjected()).isSameAs(element);
+  }
+
+  @Test
+  public void unregisteredReferencesAreNotResolved() {
+    GradleReferenceInjection foo = registerReference("foo");
+    myDependencyManager.unregisterUnresolvedReference(foo);
+
+    GradleDslElement element = createElement("foo");
+    myResolvableElements.put("foo", element);
+    myDependencyManager.resolveWith(element);
+    myDependencyManager.resolveAll();
+
+    assertThat(myResolveAttempts).isEmpty();
+    assertThat(myDependencyManager.getUnresolvedReferenceCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void resolveAll() {
+    GradleReferenceInjection foo = registerReference("foo");
+    GradleReferenceInjection bar = registerReference("bar");
+    GradleDslElement element = createElement("foo");
+    myResolvableElements.put("bar", element);
+
+    myDependencyManager.resolveAll();
+
+    assertThat(myResolveAttempts).containsExactly("foo", "bar").inOrder();
+    assertThat(foo.isResolved()).isFalse();
+    assertThat(bar.getToBeInjected()).isSameAs(element);
+    assertThat(myDependencyManager.getUnresolvedReferenceCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void resolveWithCostDoesNotDependOnUnrelatedReferences() {
+    for (int i = 0; i < 10_000; i++) {
+      registerReference("rootProject.ext.property" + i);
+    }
+    registerReference("newProperty");
+
+    myDependencyManager.resolveWith(createElement("newProperty"));
+
+    assertThat(myResolveAttempts).containsExactly("newProperty");
+  }
+}
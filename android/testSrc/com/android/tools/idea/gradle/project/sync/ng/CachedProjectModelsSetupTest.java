@@ -23,6 +23,7 @@ import com.android.tools.idea.gradle.project.model.NdkModuleModel;
 import com.android.tools.idea.gradle.project.sync.ModuleSetupContext;
 import com.android.tools.idea.gradle.project.sync.ng.caching.CachedModuleModels;
 import com.android.tools.idea.gradle.project.sync.ng.caching.CachedProjectModels;
+import com.android.tools.idea.gradle.project.sync.ng.caching.ModelNotFoundInCacheException;
 import com.android.tools.idea.gradle.project.sync.setup.module.AndroidModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.module.GradleModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.module.ModuleFinder;
@@ -124,6 +125,22 @@ public class CachedProjectModelsSetupTest extends JavaProjectTestCase {
     verify(myJavaModuleSetup).setUpModule(any(), eq(javaModel), eq(true));
   }
 
+  public void testSetUpModulesWithUndecodableModuleCache() {
+    Module appModule = createModule("app");
+    makeGradleModule(appModule);
+    when(myCachedProjectModels.findCacheForModule("app")).thenReturn(null);
+    when(myCachedProjectModels.isUndecodable("app")).thenReturn(true);
+
+    try {
+      myModuleSetup.setUpModules(myCachedProjectModels, new EmptyProgressIndicator());
+      fail("Expected ModelNotFoundInCacheException");
+    }
+    catch (ModelNotFoundInCacheException expected) {
+      // The caller syncs the project instead.
+    }
+    verify(myGradleModuleSetup, never()).setUpModule(any(), any(), any());
+  }
+
   private static void makeGradleModule(@NotNull Module module) {
     GradleFacet gradleFacet = createAndAddGradleFacet(module);
     gradleFacet.getConfiguration().GRADLE_PROJECT_PATH = ":" + module.getName();
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.ng.caching;
+
+import com.android.builder.model.level2.Library;
+import com.android.tools.perflogger.Benchmark;
+import com.android.tools.perflogger.Metric;
+import com.android.tools.perflogger.Metric.MetricSample;
+import com.intellij.testFramework.JavaProjectTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.android.tools.idea.gradle.project.sync.ng.caching.CachedProjectModelsTest.createLibrary;
+
+/**
+ * Measures the time it takes to load the Gradle models cache of a synthetic project of {@link #MODULE_COUNT} modules, in the legacy Java
+ * serialization format and in the binary format of {@link CachedProjectModelsFormat}, and the heap size of the loaded models. Like in
+ * the models created by sync, modules share their libraries.
+ */
+public class CachedProjectModelsPerfgateTest extends JavaProjectTestCase {
+  private static final int MODULE_COUNT = 500;
+  private static final int LIBRARY_COUNT = 1000;
+  private static final int LIBRARIES_PER_MODULE = 200;
+  private static final int NUMBER_OF_WARM_UP = 3;
+  private static final int NUMBER_OF_SAMPLES = 20;
+
+  private static final Benchmark LOAD_BENCHMARK = new Benchmark.Builder("Gradle Models Cache Load Benchmark")
+    .setDescription("Time (in milliseconds) to load the Gradle models cache of a " + MODULE_COUNT + " module project.")
+    .build();
+  private static final Benchmark HEAP_BENCHMARK = new Benchmark.Builder("Gradle Models Cache Heap Benchmark")
+    .setDescription("Heap size (in kilobytes) of the Gradle models of a " + MODULE_COUNT + " module project, loaded from the cache.")
+    .build();
+
+  public void testLoad() throws Exception {
+    CachedProjectModels cache = createSyntheticCache();
+
+    File legacyPath = createTempFile("gradle_models.ser", null);
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacyPath))) {
+      out.writeObject(cache);
+    }
+    File binaryPath = createTempFile("gradle_models.bin", null);
+    cache.saveInBinaryFormat(binaryPath);
+
+    CachedProjectModels.Loader loader = new CachedProjectModels.Loader();
+    List<String> moduleNames = getModuleNames();
+
+    measure("load_legacy_format", legacyPath, loader, loaded -> loaded.findCacheForModule(moduleNames.get(0)));
+    measure("load_binary_format_single_module", binaryPath, loader, loaded -> loaded.findCacheForModule(moduleNames.get(0)));
+    measure("load_binary_format_all_modules", binaryPath, loader, loaded -> loaded.decodeModules(moduleNames));
+
+    measureHeap("heap_legacy_format", legacyPath, loader, loaded -> loaded.findCacheForModule(moduleNames.get(0)));
+    measureHeap("heap_binary_format_all_modules", binaryPath, loader, loaded -> loaded.decodeModules(moduleNames));
+  }
+
+  private static void measure(@NotNull String metricName,
+                              @NotNull File path,
+                              @NotNull CachedProjectModels.Loader loader,
+                              @NotNull Consumer<CachedProjectModels> access) {
+    List<MetricSample> samples = new ArrayList<>();
+    for (int i = 0; i < NUMBER_OF_WARM_UP + NUMBER_OF_SAMPLES; i++) {
+      long start = System.nanoTime();
+      CachedProjectModels loaded = loader.loadFromDisk(path);
+      assertNotNull(loaded);
+      access.accept(loaded);
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      if (i >= NUMBER_OF_WARM_UP) {
+        samples.add(new MetricSample(Instant.now().toEpochMilli(), elapsedMillis));
+      }
+    }
+    Metric metric = new Metric(metricName + "_" + MODULE_COUNT + "_modules");
+    metric.addSamples(LOAD_BENCHMARK, samples.toArray(new MetricSample[0]));
+    metric.commit();
+  }
+
+  private static void measureHeap(@NotNull String metricName,
+                                  @NotNull File path,
+                                  @NotNull CachedProjectModels.Loader loader,
+                                  @NotNull Consumer<CachedProjectModels> access) {
+    List<MetricSample> samples = new ArrayList<>();
+    for (int i = 0; i < NUMBER_OF_SAMPLES; i++) {
+      long before = getUsedHeap();
+      CachedProjectModels loaded = loader.loadFromDisk(path);
+      assertNotNull(loaded);
+      access.accept(loaded);
+      long after = getUsedHeap();
+      samples.add(new MetricSample(Instant.now().toEpochMilli(), Math.max(0, after - before) / 1024));
+      // Keeps the models reachable until the heap was measured.
+      assertNotNull(loaded.findCacheForModule(getModuleNames().get(0)));
+    }
+    Metric metric = new Metric(metricName + "_" + MODULE_COUNT + "_modules");
+    metric.addSamples(HEAP_BENCHMARK, samples.toArray(new MetricSample[0]));
+    metric.commit();
+  }
+
+  private static long getUsedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  @NotNull
+  private static CachedProjectModels createSyntheticCache() {
+    List<Library> allLibraries = new ArrayList<>(LIBRARY_COUNT);
+    for (int i = 0; i < LIBRARY_COUNT; i++) {
+      allLibraries.add(createLibrary("com.example:library" + i + ":1.0." + i, "/gradle/caches/library" + i + ".jar"));
+    }
+
+    CachedProjectModels cache = new CachedProjectModels();
+    List<String> moduleNames = getModuleNames();
+    for (int module = 0; module < moduleNames.size(); module++) {
+      List<Library> libraries = new ArrayList<>(LIBRARIES_PER_MODULE);
+      for (int i = 0; i < LIBRARIES_PER_MODULE; i++) {
+        libraries.add(allLibraries.get((module * 7 + i) % LIBRARY_COUNT));
+      }
+      cache.addModule(moduleNames.get(module)).addModel(new ModuleModel(moduleNames.get(module), libraries));
+    }
+    return cache;
+  }
+
+  @NotNull
+  private static List<String> getModuleNames() {
+    List<String> moduleNames = new ArrayList<>(MODULE_COUNT);
+    for (int i = 0; i < MODULE_COUNT; i++) {
+      moduleNames.add("module" + i);
+    }
+    return moduleNames;
+  }
+
+  private static class ModuleModel implements Serializable {
+    @NotNull private final String myName;
+    @NotNull private final List<Library> myLibraries;
+
+    private ModuleModel(@NotNull String name, @NotNull List<Library> libraries) {
+      myName = name;
+      myLibraries = libraries;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ModuleModel)) {
+        return false;
+      }
+      ModuleModel model = (ModuleModel)o;
+      return myName.equals(model.myName) && myLibraries.equals(model.myLibraries);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myName, myLibraries);
+    }
+  }
+}
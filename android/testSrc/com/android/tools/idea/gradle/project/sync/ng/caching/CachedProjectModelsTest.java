@@ -15,6 +15,8 @@
  */
 package com.android.tools.idea.gradle.project.sync.ng.caching;
 
+import com.android.builder.model.level2.Library;
+import com.android.tools.idea.flags.StudioFlags;
 import com.intellij.openapi.project.Project;
 import com.intellij.testFramework.JavaProjectTestCase;
 import org.jetbrains.annotations.NotNull;
@@ -23,6 +25,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Future;
 
@@ -72,6 +83,153 @@ public class CachedProjectModelsTest extends JavaProjectTestCase {
     assertEquals(p2, deserializedP2);
   }
 
+  public void testSaveToDiskInBinaryFormat() throws Exception {
+    CachedModuleModels module1 = myCache.addModule(createModule("module1"));
+    Person p1 = new Person("Luke");
+    module1.addModel(p1);
+
+    CachedModuleModels module2 = myCache.addModule(createModule("module2"));
+    Person p2 = new Person("Leia");
+    module2.addModel(p2);
+
+    Project project = getProject();
+    StudioFlags.GRADLE_BINARY_MODELS_CACHE.override(true);
+    try {
+      Future<?> future = myCache.saveToDisk(project);
+      future.get(10, SECONDS);
+    }
+    finally {
+      StudioFlags.GRADLE_BINARY_MODELS_CACHE.clearOverride();
+    }
+
+    CachedProjectModels loaded = new CachedProjectModels.Loader().loadFromDisk(project);
+    assertNotNull(loaded);
+    // Modules are only decoded when requested.
+    assertEquals(2, loaded.getEncodedModuleCount());
+
+    Person loadedP1 = loaded.findCacheForModule("module1").findModel(Person.class);
+    assertEquals(p1, loadedP1);
+    assertEquals(1, loaded.getEncodedModuleCount());
+    assertNull(loaded.findCacheForModule("module3"));
+
+    assertEquals(myCache, loaded);
+    assertEquals(0, loaded.getEncodedModuleCount());
+  }
+
+  public void testLoadLegacyFormat() throws Exception {
+    myCache.addModule(createModule("module1")).addModel(new Person("Luke"));
+
+    Project project = getProject();
+    Future<?> future = myCache.saveToDisk(project);
+    future.get(10, SECONDS);
+
+    CachedProjectModels loaded = new CachedProjectModels.Loader().loadFromDisk(project);
+    assertEquals(myCache, loaded);
+  }
+
+  public void testUndecodedModulesAreSavedAgain() throws Exception {
+    myCache.addModule("module1").addModel(new Person("Luke"));
+    myCache.addModule("module2").addModel(new Person("Leia"));
+
+    File path = createTempFile("gradle_models.bin", null);
+    myCache.saveInBinaryFormat(path);
+
+    CachedProjectModels loaded = new CachedProjectModels.Loader().loadFromDisk(path);
+    assertNotNull(loaded);
+    loaded.findCacheForModule("module2").addModel(new Person("Han"));
+    loaded.saveInBinaryFormat(path);
+    assertEquals(1, loaded.getEncodedModuleCount());
+
+    CachedProjectModels reloaded = new CachedProjectModels.Loader().loadFromDisk(path);
+    assertNotNull(reloaded);
+    assertEquals(new Person("Luke"), reloaded.findCacheForModule("module1").findModel(Person.class));
+    assertEquals(new Person("Han"), reloaded.findCacheForModule("module2").findModel(Person.class));
+  }
+
+  public void testDecodeModules() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      myCache.addModule("module" + i).addModel(new Person("Person " + i));
+    }
+
+    File path = createTempFile("gradle_models.bin", null);
+    myCache.saveInBinaryFormat(path);
+
+    CachedProjectModels loaded = new CachedProjectModels.Loader().loadFromDisk(path);
+    assertNotNull(loaded);
+    loaded.decodeModules(Arrays.asList("module0", "module1", "module2", "unknown"));
+    assertEquals(7, loaded.getEncodedModuleCount());
+    assertEquals(myCache, loaded);
+  }
+
+  public void testUndecodableModule() throws Exception {
+    Map<String, Object> modulesByName = new LinkedHashMap<>();
+    modulesByName.put("module1", new CachedModuleModels("module1"));
+    // A section that cannot be deserialized, e.g. because a model class changed since it was written.
+    modulesByName.put("module2", new byte[]{1, 2, 3});
+    File path = createTempFile("gradle_models.bin", null);
+    CachedProjectModelsFormat.write(path, new ArrayList<>(), modulesByName, null);
+
+    CachedProjectModels loaded = new CachedProjectModels.Loader().loadFromDisk(path);
+    assertNotNull(loaded);
+    assertNotNull(loaded.findCacheForModule("module1"));
+    assertFalse(loaded.isUndecodable("module1"));
+    assertNull(loaded.findCacheForModule("module2"));
+    assertTrue(loaded.isUndecodable("module2"));
+
+    // The section is saved again, so that the module is not silently missing from the next load.
+    loaded.saveInBinaryFormat(path);
+    CachedProjectModels reloaded = new CachedProjectModels.Loader().loadFromDisk(path);
+    assertNotNull(reloaded);
+    assertNull(reloaded.findCacheForModule("module2"));
+    assertTrue(reloaded.isUndecodable("module2"));
+
+    // New models replace the section.
+    reloaded.addModule("module2");
+    assertFalse(reloaded.isUndecodable("module2"));
+    assertNotNull(reloaded.findCacheForModule("module2"));
+  }
+
+  public void testModulesShareLibraries() throws Exception {
+    Library guava = createLibrary("com.google.guava:guava:19.0", "/gradle/caches/guava-19.0.jar");
+    Library junit = createLibrary("junit:junit:4.12", "/gradle/caches/junit-4.12.jar");
+    myCache.addModule("module1").addModel(new ModuleLibraries(Arrays.asList(guava, junit)));
+    myCache.addModule("module2").addModel(new ModuleLibraries(Arrays.asList(guava)));
+
+    File path = createTempFile("gradle_models.bin", null);
+    myCache.saveInBinaryFormat(path);
+
+    CachedProjectModels loaded = new CachedProjectModels.Loader().loadFromDisk(path);
+    assertNotNull(loaded);
+    List<Library> libraries1 = loaded.findCacheForModule("module1").findModel(ModuleLibraries.class).myLibraries;
+    List<Library> libraries2 = loaded.findCacheForModule("module2").findModel(ModuleLibraries.class).myLibraries;
+    assertEquals(Arrays.asList(guava, junit), libraries1);
+    assertSame(libraries1.get(0), libraries2.get(0));
+
+    // Modules that were not decoded still refer to the same libraries once saved again.
+    CachedProjectModels partiallyDecoded = new CachedProjectModels.Loader().loadFromDisk(path);
+    assertNotNull(partiallyDecoded);
+    partiallyDecoded.addModule("module3").addModel(new ModuleLibraries(Arrays.asList(junit)));
+    partiallyDecoded.saveInBinaryFormat(path);
+
+    CachedProjectModels reloaded = new CachedProjectModels.Loader().loadFromDisk(path);
+    assertNotNull(reloaded);
+    assertEquals(Arrays.asList(guava, junit), reloaded.findCacheForModule("module1").findModel(ModuleLibraries.class).myLibraries);
+    assertEquals(Arrays.asList(junit), reloaded.findCacheForModule("module3").findModel(ModuleLibraries.class).myLibraries);
+    assertSame(reloaded.findCacheForModule("module1").findModel(ModuleLibraries.class).myLibraries.get(1),
+               reloaded.findCacheForModule("module3").findModel(ModuleLibraries.class).myLibraries.get(0));
+  }
+
+  public void testLoadTruncatedFile() throws Exception {
+    myCache.addModule("module1").addModel(new Person("Luke"));
+
+    File path = createTempFile("gradle_models.bin", null);
+    myCache.saveInBinaryFormat(path);
+    byte[] data = Files.readAllBytes(path.toPath());
+    Files.write(path.toPath(), Arrays.copyOf(data, data.length / 2));
+
+    assertNull(new CachedProjectModels.Loader().loadFromDisk(path));
+  }
+
   @NotNull
   private static CachedProjectModels deserialize(@NotNull File path) throws Exception {
     try (FileInputStream fis = new FileInputStream(path)) {
@@ -81,6 +239,54 @@ public class CachedProjectModelsTest extends JavaProjectTestCase {
     }
   }
 
+  /**
+   * Returns a serializable {@link Library} with the given address and artifact, which is equal to the other libraries with the same
+   * address and artifact.
+   */
+  @NotNull
+  static Library createLibrary(@NotNull String artifactAddress, @NotNull String artifactPath) {
+    return (Library)Proxy.newProxyInstance(Library.class.getClassLoader(), new Class<?>[]{Library.class},
+                                           new LibraryHandler(artifactAddress, new File(artifactPath)));
+  }
+
+  private static class LibraryHandler implements InvocationHandler, Serializable {
+    @NotNull private final String myArtifactAddress;
+    @NotNull private final File myArtifact;
+
+    private LibraryHandler(@NotNull String artifactAddress, @NotNull File artifact) {
+      myArtifactAddress = artifactAddress;
+      myArtifact = artifact;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "equals":
+          Object other = args[0] != null && Proxy.isProxyClass(args[0].getClass()) ? Proxy.getInvocationHandler(args[0]) : null;
+          return other instanceof LibraryHandler &&
+                 myArtifactAddress.equals(((LibraryHandler)other).myArtifactAddress) &&
+                 myArtifact.equals(((LibraryHandler)other).myArtifact);
+        case "hashCode":
+          return Objects.hash(myArtifactAddress, myArtifact);
+        case "toString":
+        case "getArtifactAddress":
+          return myArtifactAddress;
+        case "getArtifact":
+          return myArtifact;
+        default:
+          return method.getReturnType() == int.class ? 0 : null;
+      }
+    }
+  }
+
+  private static class ModuleLibraries implements Serializable {
+    @NotNull private final List<Library> myLibraries;
+
+    private ModuleLibraries(@NotNull List<Library> libraries) {
+      myLibraries = libraries;
+    }
+  }
+
   public static class Person implements Serializable {
     private String myName;
 
@@ -237,6 +237,30 @@ class PsIssueCollectionTest {
     assertThat(issueCollection.findIssues(testPath, comparator = null)).containsExactly(issueA1)
   }
 
+  @Test
+  fun replace() {
+    val issueA1 = PsGeneralIssue("a1", testChildPath, PROJECT_ANALYSIS, WARNING)
+    val issueA2 = PsGeneralIssue("a2", testChildPath, PROJECT_ANALYSIS, WARNING)
+    val issueA3 = PsGeneralIssue("a3", testChildPath, PROJECT_ANALYSIS, WARNING)
+    val issueB = PsGeneralIssue("b", testChildPath, LIBRARY_UPDATES_AVAILABLE, WARNING)
+    val issueC = PsGeneralIssue("c", testPath, PROJECT_ANALYSIS, WARNING)
+    issueCollection.add(issueA1)
+    issueCollection.add(issueA2)
+    issueCollection.add(issueB)
+    issueCollection.add(issueC)
+
+    issueCollection.replace(PROJECT_ANALYSIS, testParentPath, listOf(issueA2, issueA3))
+
+    assertThat(issueCollection.values.distinct()).containsExactly(issueA2, issueA3, issueB, issueC)
+    assertThat(issueCollection.findIssues(testParentPath, comparator = null)).containsExactly(issueA2, issueA3, issueB)
+    assertThat(issueCollection.findIssues(testChildPath, comparator = null)).containsExactly(issueA2, issueA3, issueB)
+    assertThat(issueCollection.findIssues(testPath, comparator = null)).containsExactly(issueC)
+
+    issueCollection.replace(PROJECT_ANALYSIS, testParentPath, listOf())
+    assertThat(issueCollection.values.distinct()).containsExactly(issueB, issueC)
+    assertThat(issueCollection.findIssues(testParentPath, comparator = null)).containsExactly(issueB)
+  }
+
   @Test
   fun isEmpty() {
     assertThat(issueCollection.values).isEmpty()
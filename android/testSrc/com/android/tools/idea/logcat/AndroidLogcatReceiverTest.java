@@ -17,10 +17,17 @@
 package com.android.tools.idea.logcat;
 
 import com.android.ddmlib.IDevice;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.tools.idea.flags.StudioFlags;
 import org.easymock.EasyMock;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static com.google.common.truth.Truth.assertThat;
 
 public class AndroidLogcatReceiverTest {
@@ -212,4 +219,60 @@ public class AndroidLogcatReceiverTest {
 
     assertThat(myLogcatListener.toString()).isEqualTo(expected);
   }
+
+  @Test
+  public void processNewLinesSendsLinesInOneBatch() {
+    StudioFlags.RUNDEBUG_LOGCAT_BATCHED_INGESTION.override(true);
+    try {
+      List<List<LogCatMessage>> batches = new ArrayList<>();
+      AndroidLogcatReceiver receiver = new AndroidLogcatReceiver(createMockDevice(), new AndroidLogcatService.LogcatListener() {
+        @Override
+        public void onLogLinesReceived(@NotNull List<LogCatMessage> lines) {
+          batches.add(lines);
+        }
+      });
+
+      receiver.processNewLines(new String[]{
+        "Output before the first header",
+        "[ 1516739696.789 99:99 V/UnknownClient     ]",
+        "Line 1",
+        "Line 2\r",
+        "[ 01-23 12:34:56.790 99:99 D/UnknownClient     ]",
+        "Line 3"
+      });
+
+      assertThat(batches).hasSize(1);
+      List<LogCatMessage> batch = batches.get(0);
+      assertThat(batch.stream().map(LogCatMessage::getMessage).collect(Collectors.toList()))
+        .containsExactly("Line 1", "Line 2", "Line 3").inOrder();
+      assertThat(batch.get(1).getHeader()).isSameAs(batch.get(0).getHeader());
+      assertThat(batch.get(2).getHeader().getTimestampInstant()).isNull();
+
+      assertThat(receiver.getLineCount()).isEqualTo(6);
+      assertThat(receiver.getDroppedLineCount()).isEqualTo(1);
+      assertThat(receiver.getBatchCount()).isEqualTo(1);
+    }
+    finally {
+      StudioFlags.RUNDEBUG_LOGCAT_BATCHED_INGESTION.clearOverride();
+    }
+  }
+
+  @Test
+  public void processNewLinesBatchIsFormatted() {
+    StudioFlags.RUNDEBUG_LOGCAT_BATCHED_INGESTION.override(true);
+    try {
+      myReceiver.processNewLines(new String[]{
+        "[ 1516739696.789 99:99 V/UnknownClient     ]",
+        "Line 1",
+        "Line 2"
+      });
+
+      String expected = "2018-01-23 12:34:56.789 99-99/? V/UnknownClient: Line 1\n" +
+                        "+ Line 2\n";
+      assertThat(myLogcatListener.toString()).isEqualTo(expected);
+    }
+    finally {
+      StudioFlags.RUNDEBUG_LOGCAT_BATCHED_INGESTION.clearOverride();
+    }
+  }
 }
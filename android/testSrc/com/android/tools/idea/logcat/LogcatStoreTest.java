@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.android.ddmlib.logcat.LogCatTimestamp;
+import com.google.common.base.Strings;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.junit.Test;
+
+public class LogcatStoreTest {
+  private static final LogCatHeader DEBUG_HEADER =
+    new LogCatHeader(LogLevel.DEBUG, 1493, 1595, "com.example.app", "ExampleTag", Instant.ofEpochSecond(1534635551, 439000000));
+  private static final LogCatHeader ERROR_HEADER =
+    new LogCatHeader(LogLevel.ERROR, 11698, 11698, "com.android.chattylogger", "Chatty", Instant.ofEpochSecond(1534635552, 5));
+
+  @Test
+  public void snapshotReturnsAllMessages() {
+    LogcatStore store = new LogcatStore(0);
+    List<LogCatMessage> messages = new ArrayList<>();
+    messages.add(new LogCatMessage(DEBUG_HEADER, "Line 1"));
+    messages.add(new LogCatMessage(DEBUG_HEADER, "Line 2 é中"));
+    messages.add(new LogCatMessage(ERROR_HEADER, ""));
+    messages.forEach(store::addMessage);
+
+    LogcatStore.Snapshot snapshot = store.snapshot();
+    assertThat(toStrings(snapshot)).isEqualTo(toStrings(messages));
+
+    List<LogCatMessage> read = StreamSupport.stream(snapshot.spliterator(), false).collect(Collectors.toList());
+    assertThat(read.get(1).getHeader()).isSameAs(read.get(0).getHeader());
+    assertThat(read.get(2).getHeader()).isNotSameAs(read.get(0).getHeader());
+  }
+
+  @Test
+  public void legacyTimestampsAreKept() {
+    LogcatStore store = new LogcatStore(0);
+    @SuppressWarnings("deprecation")
+    LogCatHeader header = new LogCatHeader(LogLevel.WARN, 1493, 1595, "com.example.app", "ExampleTag",
+                                           LogCatTimestamp.fromString("08-18 16:39:11.439"));
+    LogCatMessage message = new LogCatMessage(header, "Legacy");
+    store.addMessage(message);
+    store.addMessage(new LogCatMessage(DEBUG_HEADER, "Epoch"));
+
+    assertThat(toStrings(store.snapshot())).containsExactly(message.toString(), new LogCatMessage(DEBUG_HEADER, "Epoch").toString())
+      .inOrder();
+  }
+
+  @Test
+  public void snapshotIsNotModifiedByNewMessages() {
+    LogcatStore store = new LogcatStore(0);
+    store.addMessage(new LogCatMessage(DEBUG_HEADER, "Line 1"));
+    LogcatStore.Snapshot snapshot = store.snapshot();
+
+    store.addMessage(new LogCatMessage(DEBUG_HEADER, "Line 2"));
+    assertThat(toStrings(snapshot)).hasSize(1);
+    assertThat(toStrings(store.snapshot())).hasSize(2);
+  }
+
+  @Test
+  public void oldestSegmentsAreDroppedOverBudget() {
+    LogcatStore store = new LogcatStore(2 * LogcatStore.SEGMENT_SIZE);
+    String text = Strings.repeat("x", 1023);
+    int count = 10 * LogcatStore.SEGMENT_SIZE / text.length();
+    for (int i = 0; i < count; i++) {
+      store.addMessage(new LogCatMessage(new LogCatHeader(LogLevel.INFO, i, i, "app", "tag", Instant.ofEpochSecond(i)), text));
+    }
+
+    List<LogCatMessage> messages = StreamSupport.stream(store.snapshot().spliterator(), false).collect(Collectors.toList());
+    assertThat(messages.size() * text.length()).isAtMost(3 * LogcatStore.SEGMENT_SIZE);
+    assertThat(messages.size() * text.length()).isAtLeast(LogcatStore.SEGMENT_SIZE / 2);
+    assertThat(messages.get(messages.size() - 1).getHeader().getPid()).isEqualTo(count - 1);
+  }
+
+  @Test
+  public void internedStringsOfDroppedSegmentsAreReleased() {
+    LogcatStore store = new LogcatStore(2 * LogcatStore.SEGMENT_SIZE);
+    String text = Strings.repeat("x", 1023);
+    int count = 10 * LogcatStore.SEGMENT_SIZE / text.length();
+    for (int i = 0; i < count; i++) {
+      store.addMessage(new LogCatMessage(new LogCatHeader(LogLevel.INFO, i, i, "app", "tag" + i, Instant.ofEpochSecond(i)), text));
+    }
+
+    int messageCount = (int)StreamSupport.stream(store.snapshot().spliterator(), false).count();
+    // One tag per message kept, and the application name
+    assertThat(store.getInternedStringCount()).isAtMost(messageCount + 1);
+  }
+
+  @Test
+  public void multiLineMessagesAreNotSplitAcrossSegments() {
+    LogcatStore store = new LogcatStore(LogcatStore.SEGMENT_SIZE);
+    String text = Strings.repeat("x", 1000);
+    int count = 4 * LogcatStore.SEGMENT_SIZE / text.length();
+    for (int i = 0; i < count; i++) {
+      store.addMessage(new LogCatMessage(DEBUG_HEADER, text));
+    }
+
+    // All the lines share the header, so no segment could be started nor dropped
+    assertThat(toStrings(store.snapshot())).hasSize(count);
+  }
+
+  @Test
+  public void getMessagesKeepsWholeMultiLineMessages() {
+    LogcatStore store = new LogcatStore(0);
+    store.addMessage(new LogCatMessage(DEBUG_HEADER, "java.lang.NullPointerException"));
+    store.addMessage(new LogCatMessage(DEBUG_HEADER, "\tat com.example.Main"));
+    store.addMessage(new LogCatMessage(ERROR_HEADER, "Something else"));
+    store.addMessage(new LogCatMessage(DEBUG_HEADER, "Unrelated"));
+
+    AndroidLogcatFilter filter = new DefaultAndroidLogcatFilter.Builder("test").setMessagePattern(Pattern.compile("Main")).build();
+    assertThat(toStrings(store.snapshot().getMessages(filter, LogLevel.VERBOSE))).containsExactly(
+      new LogCatMessage(DEBUG_HEADER, "java.lang.NullPointerException").toString(),
+      new LogCatMessage(DEBUG_HEADER, "\tat com.example.Main").toString()).inOrder();
+  }
+
+  @Test
+  public void getMessagesFiltersByHeader() {
+    LogcatStore store = new LogcatStore(0);
+    for (int i = 0; i < 2 * LogcatStore.SEGMENT_SIZE / 10; i++) {
+      store.addMessage(new LogCatMessage(i % 2 == 0 ? DEBUG_HEADER : ERROR_HEADER, "Message " + i));
+    }
+    store.addMessage(new LogCatMessage(ERROR_HEADER, "Last"));
+
+    LogcatStore.Snapshot snapshot = store.snapshot();
+    List<LogCatMessage> errors = snapshot.getMessages(new MatchAllFilter("all"), LogLevel.ERROR);
+    assertThat(errors.stream().allMatch(message -> message.getHeader().getLogLevel() == LogLevel.ERROR)).isTrue();
+    assertThat(errors.get(errors.size() - 1).getMessage()).isEqualTo("Last");
+
+    List<LogCatMessage> debug = snapshot.getMessages(new SelectedProcessFilter(DEBUG_HEADER.getPid()), LogLevel.VERBOSE);
+    assertThat(debug.size() + errors.size()).isEqualTo(toStrings(snapshot).size());
+    assertThat(debug.stream().allMatch(message -> message.getHeader().getPid() == DEBUG_HEADER.getPid())).isTrue();
+  }
+
+  @Test
+  public void firstMessageOfSegmentHasItsHeader() {
+    LogcatStore store = new LogcatStore(0);
+    store.addMessage(new LogCatMessage(ERROR_HEADER, "First"));
+    store.addMessage(new LogCatMessage(DEBUG_HEADER, Strings.repeat("x", LogcatStore.SEGMENT_SIZE)));
+    store.addMessage(new LogCatMessage(ERROR_HEADER, "Second"));
+
+    List<LogCatMessage> messages = store.snapshot().getMessages(new MatchAllFilter("all"), LogLevel.ERROR);
+    assertThat(toStrings(messages)).containsExactly(
+      new LogCatMessage(ERROR_HEADER, "First").toString(),
+      new LogCatMessage(ERROR_HEADER, "Second").toString()).inOrder();
+  }
+
+  private static List<String> toStrings(Iterable<LogCatMessage> messages) {
+    List<String> strings = new ArrayList<>();
+    messages.forEach(message -> strings.add(message.toString()));
+    return strings;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import static org.jetbrains.org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.jetbrains.org.objectweb.asm.Opcodes.V1_6;
+
+import com.google.common.io.Files;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.org.objectweb.asm.ClassWriter;
+
+public class ClassConverterCacheTest extends TestCase {
+  private File myCacheDirectory;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCacheDirectory = Files.createTempDir();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myCacheDirectory);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  @NotNull
+  private static byte[] createClass(@NotNull String name) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(V1_6, ACC_PUBLIC, name, null, "java/lang/Object", null);
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  public void testRewrittenClassesAreReused() {
+    ClassConverterCache cache = new ClassConverterCache(1_000_000, 0, null);
+    byte[] classData = createClass("Test");
+
+    byte[] rewritten = cache.rewriteClass(classData);
+    assertTrue(Arrays.equals(ClassConverter.rewriteClass(classData), rewritten));
+    assertSame(rewritten, cache.rewriteClass(classData.clone()));
+    assertEquals(1, cache.getMisses());
+
+    // A different class is rewritten again
+    cache.rewriteClass(createClass("Test2"));
+    assertEquals(2, cache.getMisses());
+  }
+
+  public void testDiskCacheIsSharedBetweenInstances() {
+    byte[] classData = createClass("Test");
+    ClassConverterCache cache = new ClassConverterCache(1_000_000, 1_000_000, myCacheDirectory);
+    byte[] rewritten = cache.rewriteClass(classData);
+
+    ClassConverterCache otherCache = new ClassConverterCache(1_000_000, 1_000_000, myCacheDirectory);
+    assertTrue(Arrays.equals(rewritten, otherCache.rewriteClass(classData)));
+    assertEquals(0, otherCache.getMisses());
+    assertEquals(1, otherCache.getDiskHits());
+
+    // The disk is used when the entry is not in memory anymore
+    cache.clearMemoryCache();
+    assertTrue(Arrays.equals(rewritten, cache.rewriteClass(classData)));
+    assertEquals(1, cache.getDiskHits());
+  }
+
+  public void testDiskCacheIsNotSharedWithOtherConverters() {
+    byte[] classData = createClass("Test");
+    new ClassConverterCache(1_000_000, 1_000_000, myCacheDirectory, "converter1").rewriteClass(classData);
+
+    ClassConverterCache otherConverterCache = new ClassConverterCache(1_000_000, 1_000_000, myCacheDirectory, "converter2");
+    otherConverterCache.rewriteClass(classData);
+    assertEquals(0, otherConverterCache.getDiskHits());
+    assertEquals(1, otherConverterCache.getMisses());
+  }
+
+  public void testDiskCacheIsTrimmed() {
+    ClassConverterCache cache = new ClassConverterCache(1_000_000, 1_000_000, myCacheDirectory);
+    cache.rewriteClass(createClass("Test1"));
+    cache.rewriteClass(createClass("Test2"));
+
+    // Trim to a budget that only fits one of the classes
+    long classSize = ClassConverter.rewriteClass(createClass("Test1")).length;
+    new ClassConverterCache(1_000_000, classSize, myCacheDirectory).trimDiskCache();
+
+    File[] files = myCacheDirectory.listFiles();
+    assertNotNull(files);
+    assertEquals(1, files.length);
+  }
+}
@@ -22,6 +22,7 @@ import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.vfs.*;
 import org.jetbrains.android.AndroidTestCase;
 
+import javax.swing.Icon;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -99,4 +100,32 @@ public class GutterIconCacheTest extends AndroidTestCase {
     // Modifying the image should have invalidated the cache entry.
     assertThat(GutterIconCache.getInstance().isIconUpToDate(mySampleSvgFile)).isFalse();
   }
+
+  public void testCacheIsBounded() throws Exception {
+    Path otherPath = FileSystems.getDefault().getPath(myModule.getProject().getBasePath(),
+                                                      "app", "src", "main", "res", "drawable", "GutterIconCacheTest_other.xml");
+    VirtualFile otherFile =
+      TestFileUtils.writeFileAndRefreshVfs(otherPath, "<svg viewBox=\"0 0 50 50\"><rect width=\"50\" height=\"50\" fill=\"red\"/></svg>");
+    GutterIconCache cache = new GutterIconCache(1);
+
+    cache.getIcon(mySampleSvgFile, null, myFacet);
+    assertThat(cache.isIconUpToDate(mySampleSvgFile)).isTrue();
+
+    // Adding a second icon evicts the least recently used one
+    cache.getIcon(otherFile, null, myFacet);
+    assertThat(cache.isIconUpToDate(otherFile)).isTrue();
+    assertThat(cache.isIconUpToDate(mySampleSvgFile)).isFalse();
+  }
+
+  public void testGetIconOrPlaceholder() throws Exception {
+    GutterIconCache cache = new GutterIconCache();
+
+    // A miss returns the placeholder immediately
+    assertThat(cache.getIconOrPlaceholder(mySampleSvgFile, null, myFacet, null)).isSameAs(GutterIconCache.LOADING);
+
+    cache.getIcon(mySampleSvgFile, null, myFacet);
+    Icon icon = cache.getIconOrPlaceholder(mySampleSvgFile, null, myFacet, null);
+    assertThat(icon).isNotNull();
+    assertThat(icon).isNotSameAs(GutterIconCache.LOADING);
+  }
 }
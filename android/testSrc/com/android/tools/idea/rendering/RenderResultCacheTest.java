@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_TEXT;
+
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.configurations.ConfigurationManager;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.rendering.imagepool.ImagePoolFactory;
+import com.android.tools.idea.res.ResourceRepositoryManager;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import java.awt.image.BufferedImage;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.android.uipreview.ModuleClassLoader;
+import org.jetbrains.annotations.NotNull;
+
+public class RenderResultCacheTest extends AndroidTestCase {
+  private static final String LAYOUT = "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                       "    android:layout_width=\"match_parent\"\n" +
+                                       "    android:layout_height=\"match_parent\">\n" +
+                                       "  <TextView android:id=\"@+id/first\" android:text=\"First\" />\n" +
+                                       "</LinearLayout>";
+  private static final String CIRCLE = "M50 0A50 50 0 1 1 50 100A50 50 0 1 1 50 0Z";
+
+  private XmlFile myFile;
+  private Configuration myConfiguration;
+  private RenderResultCache myCache;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myFile = (XmlFile)myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+    myConfiguration = ConfigurationManager.getOrCreateInstance(myModule).getConfiguration(myFile.getVirtualFile());
+    myCache = new RenderResultCache(10_000_000, 0, null);
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    try {
+      Disposer.dispose(myCache);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  @NotNull
+  private RenderResultCache.CacheKey computeKey() {
+    RenderResultCache.CacheKey key = RenderResultCache.computeKey(myFacet, myFile, myConfiguration, true, 1f, CIRCLE);
+    assertNotNull(key);
+    return key;
+  }
+
+  @NotNull
+  private RenderResult createResult(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    return RenderResult.createFromCache(myFile, myModule, ImmutableList.of(), ImmutableList.of(),
+                                        ImagePoolFactory.getNonPooledPool().copyOf(image), ImmutableMap.of(), ImmutableMap.of());
+  }
+
+  public void testHitAndMiss() {
+    RenderResultCache.CacheKey key = computeKey();
+    assertNull(myCache.get(key, myFile, myModule));
+
+    myCache.put(key, createResult(20, 10));
+    RenderResult cached = myCache.get(computeKey(), myFile, myModule);
+    assertNotNull(cached);
+    assertEquals(20, cached.getRenderedImage().getWidth());
+    assertEquals(10, cached.getRenderedImage().getHeight());
+
+    // Each hit returns a new result that the caller can dispose
+    cached.dispose();
+    assertNotNull(myCache.get(key, myFile, myModule));
+  }
+
+  public void testFailedRendersAreNotCached() {
+    RenderResultCache.CacheKey key = computeKey();
+    myCache.put(key, RenderResult.createBlank(myFile));
+    assertNull(myCache.get(key, myFile, myModule));
+  }
+
+  public void testKeyChangesWithLayoutContent() {
+    RenderResultCache.CacheKey key = computeKey();
+    myCache.put(key, createResult(20, 10));
+
+    XmlTag textView = myFile.getRootTag().getSubTags()[0];
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> textView.setAttribute(ATTR_TEXT, ANDROID_URI, "Second"));
+    RenderResultCache.CacheKey modifiedKey = computeKey();
+    assertFalse(key.equals(modifiedKey));
+    assertNull(myCache.get(modifiedKey, myFile, myModule));
+
+    // Going back to the same content hits the cache again
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> textView.setAttribute(ATTR_TEXT, ANDROID_URI, "First"));
+    assertEquals(key, computeKey());
+    assertNotNull(myCache.get(computeKey(), myFile, myModule));
+  }
+
+  public void testKeyIsTheSameWithIncrementalTagSnapshots() {
+    RenderResultCache.CacheKey key = computeKey();
+    StudioFlags.NELE_INCREMENTAL_TAG_SNAPSHOT.override(true);
+    try {
+      assertEquals(key, computeKey());
+
+      XmlTag textView = myFile.getRootTag().getSubTags()[0];
+      WriteCommandAction.runWriteCommandAction(getProject(), () -> textView.setAttribute(ATTR_TEXT, ANDROID_URI, "Second"));
+      RenderResultCache.CacheKey incrementalKey = computeKey();
+      assertFalse(key.equals(incrementalKey));
+
+      StudioFlags.NELE_INCREMENTAL_TAG_SNAPSHOT.override(false);
+      assertEquals(incrementalKey, computeKey());
+    }
+    finally {
+      StudioFlags.NELE_INCREMENTAL_TAG_SNAPSHOT.clearOverride();
+    }
+  }
+
+  public void testKeyChangesWithConfiguration() {
+    RenderResultCache.CacheKey key = computeKey();
+    myCache.put(key, createResult(20, 10));
+
+    myConfiguration.setTheme("@android:style/Theme.Dialog");
+    assertNull(myCache.get(computeKey(), myFile, myModule));
+
+    // The render settings are part of the key too
+    assertFalse(computeKey().equals(RenderResultCache.computeKey(myFacet, myFile, myConfiguration, false, 1f, CIRCLE)));
+    assertFalse(computeKey().equals(RenderResultCache.computeKey(myFacet, myFile, myConfiguration, true, 0.5f, CIRCLE)));
+    // And so is the adaptive icon shape
+    assertFalse(computeKey().equals(RenderResultCache.computeKey(myFacet, myFile, myConfiguration, true, 1f, "M0 0H100V100H0V0Z")));
+    assertFalse(computeKey().equals(RenderResultCache.computeKey(myFacet, myFile, myConfiguration, true, 1f, null)));
+  }
+
+  public void testEntriesAreEvictedWhenClassLoadersAreDiscarded() {
+    RenderResultCache.CacheKey key = computeKey();
+    myCache.put(key, createResult(20, 10));
+    assertNotNull(myCache.get(key, myFile, myModule));
+
+    ModuleClassLoader.clearCache(myModule);
+    assertNull(myCache.get(key, myFile, myModule));
+    assertFalse(key.equals(computeKey()));
+    assertTrue(myCache.toString().contains("entries=0"));
+
+    // Results rendered with the discarded class loaders are not cached
+    myCache.put(key, createResult(20, 10));
+    assertTrue(myCache.toString().contains("entries=0"));
+    myCache.put(computeKey(), createResult(20, 10));
+    assertNotNull(myCache.get(computeKey(), myFile, myModule));
+  }
+
+  public void testKeyChangesWithResources() {
+    RenderResultCache.CacheKey key = computeKey();
+    myCache.put(key, createResult(20, 10));
+
+    long modificationCount = ResourceRepositoryManager.getAppResources(myFacet).getModificationCount();
+    myFixture.addFileToProject("res/layout/other.xml", LAYOUT);
+    assertTrue(ResourceRepositoryManager.getAppResources(myFacet).getModificationCount() > modificationCount);
+
+    assertNull(myCache.get(computeKey(), myFile, myModule));
+  }
+}
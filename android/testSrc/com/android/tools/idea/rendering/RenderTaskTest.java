@@ -32,6 +32,7 @@ import com.android.tools.adtui.imagediff.ImageDiffUtil;
 import com.android.tools.analytics.crash.CrashReport;
 import com.android.tools.analytics.crash.CrashReporter;
 import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.flags.StudioFlags;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -40,6 +41,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CompletableFuture;
@@ -193,6 +195,36 @@ public class RenderTaskTest extends AndroidTestCase {
     task.dispose().get(5, TimeUnit.SECONDS);
   }
 
+  public void testParallelPreparation() throws Exception {
+    StudioFlags.NELE_PARALLEL_RENDER_PREPARATION.override(true);
+    try {
+      VirtualFile file = myFixture.addFileToProject("res/layout/layout.xml", SIMPLE_LAYOUT).getVirtualFile();
+      RenderLogger logger = mock(RenderLogger.class);
+      String[] devices = {"Nexus 4", "Nexus 5", "Nexus 7", "Nexus 10"};
+
+      // Inflate all the configurations at once so that their sessions are prepared concurrently
+      List<RenderTask> tasks = new ArrayList<>();
+      List<CompletableFuture<RenderResult>> results = new ArrayList<>();
+      for (String device : devices) {
+        Configuration configuration = Configuration.copy(RenderTestUtil.getConfiguration(myModule, file, device));
+        RenderTask task = RenderTestUtil.createRenderTask(myFacet, file, configuration, logger);
+        tasks.add(task);
+        results.add(task.inflate());
+      }
+
+      for (int i = 0; i < devices.length; i++) {
+        checkSimpleLayoutResult(results.get(i));
+        checkSimpleLayoutResult(tasks.get(i).render());
+      }
+      for (RenderTask task : tasks) {
+        task.dispose().get(5, TimeUnit.SECONDS);
+      }
+    }
+    finally {
+      StudioFlags.NELE_PARALLEL_RENDER_PREPARATION.clearOverride();
+    }
+  }
+
   public void testAsyncCallAndDispose()
     throws IOException, ExecutionException, InterruptedException, BrokenBarrierException, TimeoutException {
     VirtualFile layoutFile = myFixture.addFileToProject("res/layout/foo.xml", "").getVirtualFile();
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.imagepool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import org.junit.After;
+import org.junit.Test;
+
+public class BudgetedImagePoolTest {
+  // Size in bytes of an image in the 500x500 bucket
+  private static final long BUCKET_500_BYTES = 500 * 500 * 4;
+
+  private BudgetedImagePool myPool;
+
+  @After
+  public void after() {
+    if (myPool != null) {
+      myPool.dispose();
+    }
+  }
+
+  @Test
+  public void testBucketKey() {
+    assertNotEquals(BudgetedImagePool.getBucketKey(500, 1000, BufferedImage.TYPE_INT_ARGB),
+                    BudgetedImagePool.getBucketKey(1000, 500, BufferedImage.TYPE_INT_ARGB));
+    assertNotEquals(BudgetedImagePool.getBucketKey(500, 500, BufferedImage.TYPE_INT_ARGB),
+                    BudgetedImagePool.getBucketKey(500, 500, BufferedImage.TYPE_INT_RGB));
+    assertEquals(BudgetedImagePool.getBucketKey(5000, 5000, BufferedImage.TYPE_INT_ARGB),
+                 BudgetedImagePool.getBucketKey(5000, 5000, BufferedImage.TYPE_INT_ARGB));
+  }
+
+  @Test
+  public void testImageReuse() {
+    myPool = new BudgetedImagePool(new int[]{50, 500, 1000}, 1000, 10 * BUCKET_500_BYTES);
+
+    ImagePoolImpl.ImageImpl image = myPool.create(100, 100, BufferedImage.TYPE_INT_ARGB, null);
+    BufferedImage buffer = image.myBuffer;
+    assertEquals(500, buffer.getWidth());
+    assertEquals(BUCKET_500_BYTES, myPool.getStats().totalBytesInUse());
+    image.dispose();
+    assertEquals(0, myPool.getStats().totalBytesInUse());
+    assertEquals(BUCKET_500_BYTES, myPool.getStats().totalBytesAllocated());
+
+    // Same bucket, the buffer is re-used
+    ImagePoolImpl.ImageImpl reused = myPool.create(200, 300, BufferedImage.TYPE_INT_ARGB, null);
+    assertSame(buffer, reused.myBuffer);
+    assertEquals(200, reused.getWidth());
+    assertEquals(300, reused.getHeight());
+
+    // Different type, a new buffer is allocated
+    ImagePoolImpl.ImageImpl other = myPool.create(200, 300, BufferedImage.TYPE_INT_RGB, null);
+    assertNotSame(buffer, other.myBuffer);
+
+    assertEquals(1, myPool.getStats().hits());
+    assertEquals(2, myPool.getStats().misses());
+  }
+
+  @Test
+  public void testSmallAndLargeImagesAreNotPooled() {
+    myPool = new BudgetedImagePool(new int[]{50, 500}, 1000, 10 * BUCKET_500_BYTES);
+
+    ImagePoolImpl.ImageImpl small = myPool.create(10, 10, BufferedImage.TYPE_INT_ARGB, null);
+    assertEquals(10, small.myBuffer.getWidth());
+    ImagePoolImpl.ImageImpl large = myPool.create(600, 600, BufferedImage.TYPE_INT_ARGB, null);
+    assertEquals(600, large.myBuffer.getWidth());
+
+    small.dispose();
+    large.dispose();
+    assertEquals(0, myPool.getStats().totalBytesAllocated());
+  }
+
+  @Test
+  public void testEvictionAcrossBuckets() {
+    // Budget for two images of the 500x500 bucket
+    myPool = new BudgetedImagePool(new int[]{50, 500, 1000}, 1000, 2 * BUCKET_500_BYTES);
+
+    ImagePoolImpl.ImageImpl argb = myPool.create(100, 100, BufferedImage.TYPE_INT_ARGB, null);
+    ImagePoolImpl.ImageImpl rgb = myPool.create(100, 100, BufferedImage.TYPE_INT_RGB, null);
+    BufferedImage rgbBuffer = rgb.myBuffer;
+    argb.dispose();
+    rgb.dispose();
+    assertEquals(2 * BUCKET_500_BYTES, myPool.getStats().totalBytesAllocated());
+
+    // Allocating in a third bucket evicts the least recently released image, from the ARGB bucket
+    ImagePoolImpl.ImageImpl other = myPool.create(100, 100, BufferedImage.TYPE_INT_ARGB_PRE, null);
+    assertEquals(BUCKET_500_BYTES, myPool.getStats().totalBytesEvicted());
+    assertEquals(2 * BUCKET_500_BYTES, myPool.getStats().totalBytesAllocated());
+
+    // The RGB image is still pooled
+    assertSame(rgbBuffer, myPool.create(100, 100, BufferedImage.TYPE_INT_RGB, null).myBuffer);
+    other.dispose();
+  }
+
+  @Test
+  public void testImagesInUseAreNotEvicted() {
+    myPool = new BudgetedImagePool(new int[]{50, 500, 1000}, 1000, BUCKET_500_BYTES);
+
+    ImagePoolImpl.ImageImpl first = myPool.create(100, 100, BufferedImage.TYPE_INT_ARGB, null);
+    ImagePoolImpl.ImageImpl second = myPool.create(100, 100, BufferedImage.TYPE_INT_ARGB, null);
+    assertEquals(2 * BUCKET_500_BYTES, myPool.getStats().totalBytesInUse());
+    assertEquals(0, myPool.getStats().totalBytesEvicted());
+
+    // Once released, the pool goes back within its budget
+    first.dispose();
+    second.dispose();
+    assertEquals(BUCKET_500_BYTES, myPool.getStats().totalBytesAllocated());
+    assertEquals(BUCKET_500_BYTES, myPool.getStats().totalBytesEvicted());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.parsers;
+
+import static com.android.SdkConstants.ANDROID_URI;
+import static com.android.SdkConstants.ATTR_TEXT;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+
+public class TagSnapshotCacheTest extends AndroidTestCase {
+  private static final String LAYOUT = "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                       "    android:layout_width=\"match_parent\"\n" +
+                                       "    android:layout_height=\"match_parent\">\n" +
+                                       "  <TextView android:id=\"@+id/first\" android:text=\"First\" />\n" +
+                                       "  <FrameLayout>\n" +
+                                       "    <TextView android:id=\"@+id/second\" android:text=\"Second\" />\n" +
+                                       "  </FrameLayout>\n" +
+                                       "</LinearLayout>";
+
+  private XmlFile myFile;
+  private TagSnapshotCache myCache;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myFile = (XmlFile)myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+    myCache = TagSnapshotCache.getInstance(getProject());
+  }
+
+  @NotNull
+  private TagSnapshot getSnapshot() {
+    return myCache.getSnapshot(myFile.getRootTag(), null);
+  }
+
+  public void testSnapshotIsReused() {
+    TagSnapshot first = getSnapshot();
+    TagSnapshot second = getSnapshot();
+    assertEquals(4, TagSnapshotCache.getSnapshottedTags(myFile));
+
+    // Callers receive independent copies
+    assertNotSame(first, second);
+    first.children.get(0).setAttribute(ATTR_TEXT, ANDROID_URI, "android", "Modified");
+    assertEquals("First", getSnapshot().children.get(0).getAttribute(ATTR_TEXT, ANDROID_URI));
+  }
+
+  public void testOnlyModifiedSubtreeIsUpdated() {
+    TagSnapshot snapshot = getSnapshot();
+    long signature = snapshot.children.get(0).getSignature();
+
+    XmlTag secondText = myFile.getRootTag().getSubTags()[1].getSubTags()[0];
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> secondText.setAttribute(ATTR_TEXT, ANDROID_URI, "Updated"));
+
+    snapshot = getSnapshot();
+    // Only the modified TextView is read again
+    assertEquals(5, TagSnapshotCache.getSnapshottedTags(myFile));
+    assertEquals("Updated", snapshot.children.get(1).children.get(0).getAttribute(ATTR_TEXT, ANDROID_URI));
+    assertEquals(signature, snapshot.children.get(0).getSignature());
+    assertSame(snapshot.children.get(1), snapshot.children.get(0).getNextSibling());
+  }
+
+  public void testAddedTag() {
+    getSnapshot();
+
+    XmlTag root = myFile.getRootTag();
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      root.addSubTag(root.createChildTag("Button", null, null, false), false);
+    });
+
+    TagSnapshot snapshot = getSnapshot();
+    assertEquals(3, snapshot.children.size());
+    assertEquals("Button", snapshot.children.get(2).tagName);
+  }
+}
@@ -15,8 +15,11 @@
  */
 package com.android.tools.idea.rendering.parsers;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.intellij.psi.xml.XmlTag;
 import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
 
 import java.util.Collections;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -90,4 +93,44 @@ public class TagSnapshotTest extends TestCase {
                  "}",
                  root.toString());
   }
-}
\ No newline at end of file
+
+  public void testTreeSignature() {
+    XmlTag layout = newBuilder("LinearLayout")
+      .setAttribute(ATTR_ORIENTATION, VALUE_VERTICAL)
+      .addChild(
+        newBuilder("ImageView")
+          .setAttribute(ATTR_LAYOUT_WIDTH, VALUE_WRAP_CONTENT)
+          .addChild(
+            newBuilder("aapt:attr")
+              .setNamespace(AAPT_URI)
+              .setAttribute(null, null, "name", "android:src")
+              .addChild(newBuilder("vector"))))
+      .build();
+    XmlTag modifiedLayout = newBuilder("LinearLayout")
+      .setAttribute(ATTR_ORIENTATION, VALUE_VERTICAL)
+      .addChild(
+        newBuilder("ImageView")
+          .setAttribute(ATTR_LAYOUT_WIDTH, VALUE_MATCH_PARENT)
+          .addChild(
+            newBuilder("aapt:attr")
+              .setNamespace(AAPT_URI)
+              .setAttribute(null, null, "name", "android:src")
+              .addChild(newBuilder("vector"))))
+      .build();
+
+    // The aapt:attr references are unique for every snapshot but the signature must be stable
+    assertEquals(treeSignature(TagSnapshot.createTagSnapshot(layout, null)),
+                 treeSignature(TagSnapshot.createTagSnapshot(layout, null)));
+    // The root signature is the same but a child changed
+    assertEquals(TagSnapshot.createTagSnapshot(layout, null).getSignature(),
+                 TagSnapshot.createTagSnapshot(modifiedLayout, null).getSignature());
+    assertFalse(treeSignature(TagSnapshot.createTagSnapshot(layout, null)) ==
+                treeSignature(TagSnapshot.createTagSnapshot(modifiedLayout, null)));
+  }
+
+  private static long treeSignature(@NotNull TagSnapshot snapshot) {
+    Hasher hasher = Hashing.goodFastHash(64).newHasher();
+    snapshot.putTreeSignature(hasher);
+    return hasher.hash().asLong();
+  }
+}
@@ -19,6 +19,8 @@ import com.android.ddmlib.AdbCommandRejectedException;
 import com.android.ddmlib.IDevice;
 import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
+import com.android.tools.idea.flags.StudioFlags;
+import com.google.common.hash.HashCode;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
 import junit.framework.TestCase;
@@ -61,15 +63,20 @@ public class InstalledApkCacheTest extends TestCase {
     EasyMock.expectLastCall().anyTimes();
 
     myDumpSysOutput = "Package [com.foo.bar]";
-    myService = new InstalledApkCache() {
+    myService = createService(null);
+
+    EasyMock.replay(myDevice1, myDevice2);
+  }
+
+  @NotNull
+  private InstalledApkCache createService(@Nullable ApkHashMemo hashMemo) {
+    return new InstalledApkCache(hashMemo) {
       @Override
       protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd, long timeout, @NotNull TimeUnit timeUnit)
         throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, InterruptedException {
         return myDumpSysOutput;
       }
     };
-
-    EasyMock.replay(myDevice1, myDevice2);
   }
 
   @Override
@@ -148,6 +155,39 @@ public class InstalledApkCacheTest extends TestCase {
     assertNull(getLastUpdateTime(myDevice1, "xyz"));
   }
 
+  public void testHashMemo() throws Exception {
+    StudioFlags.RUNDEBUG_APK_HASH_MEMO.override(true);
+    try {
+      File memoFile = new File(FileUtil.createTempDirectory("apk", "memo"), "apk-hashes.txt");
+      InstalledApkCache service = createService(new ApkHashMemo(memoFile));
+      FileUtil.writeToFile(myFile, "original");
+      service.setInstalled(myDevice1, myFile, myPkgName);
+      assertTrue(service.isInstalled(myDevice1, myFile, myPkgName, null));
+
+      // Modifying the APK invalidates the memoized hash
+      FileUtil.writeToFile(myFile, "modified contents");
+      assertFalse(service.isInstalled(myDevice1, myFile, myPkgName, null));
+      Disposer.dispose(service);
+    }
+    finally {
+      StudioFlags.RUNDEBUG_APK_HASH_MEMO.clearOverride();
+    }
+  }
+
+  public void testHashMemoIsPersisted() throws Exception {
+    File memoFile = new File(FileUtil.createTempDirectory("apk", "memo"), "apk-hashes.txt");
+    FileUtil.writeToFile(myFile, "original");
+    long lastModified = myFile.lastModified();
+    HashCode hash = new ApkHashMemo(memoFile).hash(myFile);
+    assertEquals(ApkHashMemo.hashContents(myFile.toPath()), hash);
+
+    // The memo doesn't read APKs whose size, modification time and file key did not change
+    FileUtil.writeToFile(myFile, "modified");
+    assertTrue(myFile.setLastModified(lastModified));
+    assertEquals(hash, new ApkHashMemo(memoFile).hash(myFile));
+    assertFalse(hash.equals(new ApkHashMemo(null).hash(myFile)));
+  }
+
   @Nullable
   private String getLastUpdateTime(IDevice device, String pkgName) {
     InstalledApkCache.InstallState state = myService.getInstallState(device, pkgName);
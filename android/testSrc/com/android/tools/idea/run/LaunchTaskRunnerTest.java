@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.intellij.execution.process.ProcessOutputTypes.STDERR;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.android.ddmlib.IDevice;
+import com.android.sdklib.AndroidVersion;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.run.tasks.DebugConnectorTask;
+import com.android.tools.idea.run.tasks.LaunchTask;
+import com.android.tools.idea.run.tasks.LaunchTasksProvider;
+import com.android.tools.idea.run.util.LaunchStatus;
+import com.android.tools.idea.run.util.ProcessHandlerLaunchStatus;
+import com.android.tools.idea.stats.RunStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.intellij.execution.executors.DefaultRunExecutor;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.runners.ProgramRunner;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressIndicator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tests for the concurrent multi-device launch of {@link LaunchTaskRunner}.
+ */
+public class LaunchTaskRunnerTest extends AndroidTestCase {
+  private ProcessHandler myProcessHandler;
+  private RunStats myStats;
+  private Map<String, List<String>> myTasksRunByDevice;
+  private List<LaunchStatus> myLaunchStatuses;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    StudioFlags.RUNDEBUG_CONCURRENT_DEVICE_LAUNCH.override(true);
+    myProcessHandler = mock(ProcessHandler.class);
+    myStats = mock(RunStats.class);
+    myTasksRunByDevice = new ConcurrentHashMap<>();
+    myLaunchStatuses = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      StudioFlags.RUNDEBUG_CONCURRENT_DEVICE_LAUNCH.clearOverride();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testLaunchOnAllDevices() {
+    List<IDevice> devices = createDevices(3);
+    LaunchTaskRunner runner = createRunner(futuresOf(devices), null);
+
+    runner.run(new EmptyProgressIndicator());
+
+    for (IDevice device : devices) {
+      assertThat(myTasksRunByDevice.get(device.getName())).containsExactly("first", "second").inOrder();
+      verify(myStats).endWaitForDevice(device);
+    }
+    // Each device records its own wait
+    verify(myStats, times(3)).beginWaitForDevice();
+    verify(myProcessHandler, never()).destroyProcess();
+    verify(myProcessHandler, never()).notifyTextAvailable(contains("Launch failed"), eq(STDERR));
+  }
+
+  public void testFailureOnOneDeviceDoesNotStopTheOthers() {
+    List<IDevice> devices = createDevices(3);
+    LaunchTaskRunner runner = createRunner(futuresOf(devices), "device-2");
+
+    runner.run(new EmptyProgressIndicator());
+
+    assertThat(myTasksRunByDevice.get("device-1")).containsExactly("first", "second").inOrder();
+    assertThat(myTasksRunByDevice.get("device-2")).containsExactly("first");
+    assertThat(myTasksRunByDevice.get("device-3")).containsExactly("first", "second").inOrder();
+    verify(myProcessHandler).notifyTextAvailable("Launch failed on 1 of 3 devices: device-2\n", STDERR);
+    verify(myProcessHandler, never()).destroyProcess();
+  }
+
+  public void testCancelWhileWaitingForDevicesStopsAllDevices() {
+    List<ListenableFuture<IDevice>> futures = ImmutableList.of(SettableFuture.create(), SettableFuture.create(), SettableFuture.create());
+    LaunchTaskRunner runner = createRunner(futures, null);
+    ProgressIndicator indicator = new EmptyProgressIndicator();
+    indicator.cancel();
+
+    runner.run(indicator);
+
+    assertThat(myTasksRunByDevice).isEmpty();
+    verify(myProcessHandler, times(1)).notifyTextAvailable("User cancelled launch\n", STDERR);
+    verify(myProcessHandler, times(1)).destroyProcess();
+    verify(myStats, times(3)).beginWaitForDevice();
+    verify(myStats, times(3)).endWaitForDevice(null);
+  }
+
+  public void testDeviceStatusKeepsProcessHandlerContract() {
+    List<IDevice> devices = createDevices(2);
+    LaunchTaskRunner runner = createRunner(futuresOf(devices), null);
+
+    runner.run(new EmptyProgressIndicator());
+
+    // Launch tasks (e.g. the profiler) rely on the status giving them the process handler of the launch
+    assertThat(myLaunchStatuses).hasSize(4);
+    for (LaunchStatus launchStatus : myLaunchStatuses) {
+      assertThat(launchStatus).isInstanceOf(ProcessHandlerLaunchStatus.class);
+      assertThat(((ProcessHandlerLaunchStatus)launchStatus).getProcessHandler()).isSameAs(myProcessHandler);
+    }
+  }
+
+  @NotNull
+  private static List<IDevice> createDevices(int count) {
+    List<IDevice> devices = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      IDevice device = mock(IDevice.class);
+      when(device.getName()).thenReturn("device-" + i);
+      when(device.getVersion()).thenReturn(new AndroidVersion(28));
+      devices.add(device);
+    }
+    return devices;
+  }
+
+  @NotNull
+  private static List<ListenableFuture<IDevice>> futuresOf(@NotNull List<IDevice> devices) {
+    List<ListenableFuture<IDevice>> futures = new ArrayList<>();
+    for (IDevice device : devices) {
+      futures.add(Futures.immediateFuture(device));
+    }
+    return futures;
+  }
+
+  @NotNull
+  private LaunchTaskRunner createRunner(@NotNull List<ListenableFuture<IDevice>> deviceFutures, @Nullable String failingDevice) {
+    List<AndroidDevice> devices = new ArrayList<>();
+    for (ListenableFuture<IDevice> future : deviceFutures) {
+      AndroidDevice device = mock(AndroidDevice.class);
+      when(device.getLaunchedDevice()).thenReturn(future);
+      devices.add(device);
+    }
+
+    LaunchTasksProvider provider = new LaunchTasksProvider() {
+      @NotNull
+      @Override
+      public List<LaunchTask> getTasks(@NotNull IDevice device, @NotNull LaunchStatus launchStatus, @NotNull ConsolePrinter consolePrinter) {
+        return ImmutableList.of(new RecordingTask("first", device.getName().equals(failingDevice)), new RecordingTask("second", false));
+      }
+
+      @Nullable
+      @Override
+      public DebugConnectorTask getConnectDebuggerTask(@NotNull LaunchStatus launchStatus, @Nullable AndroidVersion version) {
+        return null;
+      }
+
+      @Override
+      public boolean monitorRemoteProcess() {
+        return false;
+      }
+
+      @Override
+      public boolean prepareConcurrentLaunch() {
+        return true;
+      }
+    };
+
+    LaunchInfo launchInfo = new LaunchInfo(DefaultRunExecutor.getRunExecutorInstance(), mock(ProgramRunner.class),
+                                           mock(ExecutionEnvironment.class), mock(ConsoleProvider.class));
+    return new LaunchTaskRunner(getProject(), "app", null, launchInfo, myProcessHandler, new DeviceFutures(devices), provider, myStats,
+                                (text, hyperlink) -> {});
+  }
+
+  private final class RecordingTask implements LaunchTask {
+    @NotNull private final String myId;
+    private final boolean myFail;
+
+    RecordingTask(@NotNull String id, boolean fail) {
+      myId = id;
+      myFail = fail;
+    }
+
+    @NotNull
+    @Override
+    public String getDescription() {
+      return "Running " + myId;
+    }
+
+    @Override
+    public int getDuration() {
+      return 1;
+    }
+
+    @Override
+    public boolean perform(@NotNull IDevice device, @NotNull LaunchStatus launchStatus, @NotNull ConsolePrinter printer) {
+      myTasksRunByDevice.computeIfAbsent(device.getName(), name -> Collections.synchronizedList(new ArrayList<>())).add(myId);
+      myLaunchStatuses.add(launchStatus);
+      return !myFail;
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return myId.toUpperCase();
+    }
+  }
+}
@@ -22,11 +22,13 @@ import com.android.tools.idea.run.deployable.DeployableProvider;
 import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import com.intellij.openapi.util.AtomicNotNullLazyValue;
 import com.intellij.openapi.util.NotNullLazyValue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -54,13 +56,23 @@ public class DeploymentService {
     service = Executors.newFixedThreadPool(5);
     runner = new TaskRunner(service);
     Path path = Paths.get(PathManager.getSystemPath(), ".deploy.db");
-    dexDatabase  = NotNullLazyValue.createValue(() -> new SqlApkFileDatabase(new File(path.toString())));
+    // The database may be initialized concurrently by deployments running on several devices
+    dexDatabase  = AtomicNotNullLazyValue.createValue(() -> new SqlApkFileDatabase(new File(path.toString())));
   }
 
   public TaskRunner getTaskRunner() {
     return runner;
   }
 
+  /**
+   * Returns a new task runner, for deployments that run at the same time as other deployments and therefore cannot share
+   * {@link #getTaskRunner()}. The runner uses the application pool, so that concurrent deployments never wait for each other's threads.
+   */
+  @NotNull
+  public TaskRunner createTaskRunner() {
+    return new TaskRunner(AppExecutorUtil.getAppExecutorService());
+  }
+
   public ApkFileDatabase getDexDatabase() {
     return dexDatabase.getValue();
   }
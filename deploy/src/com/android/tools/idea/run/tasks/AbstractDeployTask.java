@@ -18,6 +18,8 @@ package com.android.tools.idea.run.tasks;
 
 import com.android.ddmlib.IDevice;
 import com.android.tools.deployer.*;
+import com.android.tools.deployer.tasks.TaskRunner;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.log.LogWrapper;
 import com.android.tools.idea.run.ConsolePrinter;
 import com.android.tools.idea.run.DeploymentService;
@@ -25,7 +27,9 @@ import com.android.tools.idea.run.IdeService;
 import com.android.tools.idea.run.ui.ApplyChangesAction;
 import com.android.tools.idea.run.ui.BaseAction;
 import com.android.tools.idea.run.util.LaunchStatus;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
 import com.google.wireless.android.sdk.stats.LaunchTaskDetail;
 import com.intellij.execution.Executor;
 import com.intellij.execution.executors.DefaultDebugExecutor;
@@ -44,6 +48,7 @@ import com.intellij.openapi.ui.playback.commands.ActionCommand;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.wm.ToolWindowId;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -51,14 +56,25 @@ import javax.swing.event.HyperlinkEvent;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public abstract class AbstractDeployTask implements LaunchTask {
 
   public static final int MIN_API_VERSION = 26;
+  /** Maximum number of packages deployed at the same time on a device, see {@link #deployConcurrently}. */
+  private static final int MAX_CONCURRENT_PACKAGES = 4;
   private static final NotificationGroup NOTIFICATION_GROUP = NotificationGroup.toolWindowGroup("UnifiedDeployTask", ToolWindowId.RUN);
 
   @NotNull private final Project myProject;
@@ -90,6 +106,18 @@ public abstract class AbstractDeployTask implements LaunchTask {
 
   @Override
   public LaunchResult run(@NotNull Executor executor, @NotNull IDevice device, @NotNull LaunchStatus launchStatus, @NotNull ConsolePrinter printer) {
+    return run(executor, device, launchStatus, printer, DeploymentService.getInstance(myProject).getTaskRunner());
+  }
+
+  /**
+   * Runs the deployment with the given task runner. A runner accumulates the tasks of one deployment, so deployments made at the
+   * same time on several devices each pass their own runner, see {@link DeploymentService#createTaskRunner()}.
+   */
+  public LaunchResult run(@NotNull Executor executor,
+                          @NotNull IDevice device,
+                          @NotNull LaunchStatus launchStatus,
+                          @NotNull ConsolePrinter printer,
+                          @NotNull TaskRunner taskRunner) {
     Stopwatch stopwatch = Stopwatch.createStarted();
     LogWrapper logger = new LogWrapper(LOG);
 
@@ -101,27 +129,34 @@ public abstract class AbstractDeployTask implements LaunchTask {
     long wallClockStartMs = System.currentTimeMillis();
 
     AdbClient adb = new AdbClient(device, logger);
-    Installer installer = new AdbInstaller(getLocalInstaller(), adb, metrics, logger);
     DeploymentService service = DeploymentService.getInstance(myProject);
     IdeService ideService = new IdeService(myProject);
-    Deployer deployer = new Deployer(adb, service.getDexDatabase(), service.getTaskRunner(),
-                                     installer, ideService, metrics, logger);
-    List<String> idsSkippedInstall = new ArrayList<>();
-    for (Map.Entry<String, List<File>> entry : myPackages.entrySet()) {
-      String applicationId = entry.getKey();
-      List<File> apkFiles = entry.getValue();
-      try {
-        Deployer.Result result = perform(device, deployer, applicationId, apkFiles);
-        addSubTaskDetails(metrics, vmClockStartNs, wallClockStartMs);
-        if (result.skippedInstall) {
-          idsSkippedInstall.add(applicationId);
-        }
+    List<String> idsSkippedInstall;
+    try {
+      if (myPackages.size() > 1 && StudioFlags.DEPLOY_CONCURRENT_PACKAGES.get()) {
+        // Each package gets its own installer, task runner and metrics. Only the adb client, which opens a new
+        // connection to the device for every command, is shared.
+        idsSkippedInstall = deployConcurrently(device, packageMetrics -> new Deployer(
+          adb, service.getDexDatabase(), service.createTaskRunner(), new AdbInstaller(getLocalInstaller(), adb, packageMetrics, logger),
+          ideService, packageMetrics, logger), vmClockStartNs, wallClockStartMs);
       }
-      catch (DeployerException e) {
-        logger.warning("%s failed: %s %s", getDescription(), e.getMessage(), e.getDetails());
-        return toLaunchResult(executor, e, printer);
+      else {
+        Installer installer = new AdbInstaller(getLocalInstaller(), adb, metrics, logger);
+        Deployer deployer = new Deployer(adb, service.getDexDatabase(), taskRunner, installer, ideService, metrics, logger);
+        idsSkippedInstall = deploySequentially(device, deployer, metrics, vmClockStartNs, wallClockStartMs);
       }
     }
+    catch (DeployerException e) {
+      logger.warning("%s failed: %s %s", getDescription(), e.getMessage(), e.getDetails());
+      return toLaunchResult(executor, e, printer);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LaunchResult result = new LaunchResult();
+      result.setSuccess(false);
+      result.setError(getFailureTitle() + "\nInterrupted while deploying.");
+      return result;
+    }
 
     stopwatch.stop();
     long duration = stopwatch.elapsed(TimeUnit.MILLISECONDS);
@@ -139,6 +174,100 @@ public abstract class AbstractDeployTask implements LaunchTask {
     return new LaunchResult();
   }
 
+  /**
+   * Deploys the packages one after the other, stopping at the first package that fails.
+   *
+   * @return the application ids of the packages that did not need to be installed
+   */
+  @NotNull
+  private List<String> deploySequentially(@NotNull IDevice device,
+                                          @NotNull Deployer deployer,
+                                          @NotNull Collection<DeployMetric> metrics,
+                                          long vmClockStartNs,
+                                          long wallClockStartMs) throws DeployerException {
+    List<String> idsSkippedInstall = new ArrayList<>();
+    for (Map.Entry<String, List<File>> entry : myPackages.entrySet()) {
+      String applicationId = entry.getKey();
+      Deployer.Result result = perform(device, deployer, applicationId, entry.getValue());
+      addSubTaskDetails(metrics, vmClockStartNs, wallClockStartMs);
+      if (result.skippedInstall) {
+        idsSkippedInstall.add(applicationId);
+      }
+    }
+    return idsSkippedInstall;
+  }
+
+  /**
+   * Deploys the packages in parallel. {@code deployerFactory} creates the {@link Deployer} of each package, which must not share
+   * its installer, task runner nor metrics with the other packages. The metrics of the packages are added to the sub task details
+   * in the order of the packages once they have been deployed.
+   * <p>
+   * As soon as a package fails, the deployments still running are cancelled and the error of that package is reported. Unlike
+   * the sequential path, packages that come after the failing one may already have been deployed by then.
+   *
+   * @return the application ids of the packages that did not need to be installed
+   */
+  @VisibleForTesting
+  @NotNull
+  List<String> deployConcurrently(@NotNull IDevice device,
+                                  @NotNull Function<Collection<DeployMetric>, Deployer> deployerFactory,
+                                  long vmClockStartNs,
+                                  long wallClockStartMs) throws DeployerException, InterruptedException {
+    Map<Future<Deployer.Result>, String> applicationIds = new HashMap<>();
+    Map<String, List<DeployMetric>> metricsByPackage = new LinkedHashMap<>();
+    Map<String, Deployer.Result> results = new HashMap<>();
+
+    ExecutorService executor =
+      AppExecutorUtil.createBoundedApplicationPoolExecutor("AbstractDeployTask", Math.min(myPackages.size(), MAX_CONCURRENT_PACKAGES));
+    CompletionService<Deployer.Result> completionService = new ExecutorCompletionService<>(executor);
+    try {
+      for (Map.Entry<String, List<File>> entry : myPackages.entrySet()) {
+        String applicationId = entry.getKey();
+        List<File> apkFiles = entry.getValue();
+        List<DeployMetric> metrics = Collections.synchronizedList(new ArrayList<>());
+        Deployer deployer = deployerFactory.apply(metrics);
+        metricsByPackage.put(applicationId, metrics);
+        applicationIds.put(completionService.submit(() -> perform(device, deployer, applicationId, apkFiles)), applicationId);
+      }
+
+      try {
+        for (int i = 0; i < myPackages.size(); i++) {
+          Future<Deployer.Result> future = completionService.take();
+          try {
+            results.put(applicationIds.get(future), future.get());
+          }
+          catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Throwables.throwIfInstanceOf(cause, DeployerException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new RuntimeException(cause);
+          }
+        }
+      }
+      finally {
+        // Only the packages that were deployed are reported, as in the sequential path
+        for (Map.Entry<String, List<DeployMetric>> entry : metricsByPackage.entrySet()) {
+          if (results.containsKey(entry.getKey())) {
+            addSubTaskDetails(entry.getValue(), vmClockStartNs, wallClockStartMs);
+          }
+        }
+      }
+
+      List<String> idsSkippedInstall = new ArrayList<>();
+      for (String applicationId : myPackages.keySet()) {
+        if (results.get(applicationId).skippedInstall) {
+          idsSkippedInstall.add(applicationId);
+        }
+      }
+      return idsSkippedInstall;
+    }
+    finally {
+      // Stops the deployments still running after a failure
+      applicationIds.keySet().forEach(future -> future.cancel(true));
+      executor.shutdown();
+    }
+  }
+
   abstract protected String getFailureTitle();
 
   abstract protected Deployer.Result perform(
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.tools.idea.run.tasks
+
+import com.android.ddmlib.IDevice
+import com.android.tools.deployer.DeployMetric
+import com.android.tools.deployer.Deployer
+import com.android.tools.deployer.DeployerException
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Computable
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mock
+import org.mockito.Mockito
+import org.mockito.MockitoAnnotations
+import java.io.File
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.function.Function
+
+class AbstractDeployTaskTest {
+  @Mock private lateinit var project: Project
+  @Mock private lateinit var device: IDevice
+  @Mock private lateinit var deployer: Deployer
+  private val deployerFactory = Function<Collection<DeployMetric>, Deployer> { deployer }
+
+  @Before
+  fun setup() {
+    MockitoAnnotations.initMocks(this)
+  }
+
+  @Test
+  fun testDeployConcurrently() {
+    val deployed = Collections.synchronizedList(mutableListOf<String>())
+    val task = FakeDeployTask(mapOf("a" to listOf(), "b" to listOf(), "c" to listOf())) { applicationId ->
+      deployed.add(applicationId)
+      val result = Deployer.Result()
+      result.skippedInstall = applicationId != "b"
+      result
+    }
+
+    val skipped = task.deployConcurrently(device, deployerFactory, System.nanoTime(), System.currentTimeMillis())
+
+    assertThat(deployed).containsExactly("a", "b", "c")
+    // The skipped packages are reported in the order of the packages, whatever the order they finished in
+    assertThat(skipped).containsExactly("a", "c").inOrder()
+  }
+
+  @Test
+  fun testFailureCancelsTheOtherPackages() {
+    val failure = Mockito.mock(DeployerException::class.java)
+    val started = CountDownLatch(1)
+    val interrupted = CountDownLatch(1)
+    val task = FakeDeployTask(mapOf("slow" to listOf(), "failing" to listOf())) { applicationId ->
+      if (applicationId == "failing") {
+        // Only fail once the other package is being deployed
+        started.await(10, TimeUnit.SECONDS)
+        throw failure
+      }
+      started.countDown()
+      try {
+        Thread.sleep(TimeUnit.SECONDS.toMillis(30))
+      }
+      catch (e: InterruptedException) {
+        interrupted.countDown()
+      }
+      Deployer.Result()
+    }
+
+    try {
+      task.deployConcurrently(device, deployerFactory, System.nanoTime(), System.currentTimeMillis())
+      fail("Expected the deployment to fail")
+    }
+    catch (e: DeployerException) {
+      assertThat(e).isSameAs(failure)
+    }
+    assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue()
+  }
+
+  private inner class FakeDeployTask(packages: Map<String, List<File>>, private val performer: (String) -> Deployer.Result)
+    : AbstractDeployTask(project, packages, false, Computable { "" }) {
+
+    override fun getFailureTitle() = "Failed"
+
+    override fun perform(device: IDevice, deployer: Deployer, applicationId: String, files: List<File>) = performer(applicationId)
+
+    override fun createSkippedApkInstallMessage(skippedApkList: List<String>, all: Boolean) = ""
+
+    override fun getDescription() = "Deploying"
+
+    override fun getId() = "FAKE_DEPLOY"
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.model;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The components affected by a synchronization of an {@link NlModel} with the XML, see
+ * {@link ModelListener#modelComponentsChanged(NlModel, ComponentChanges)}.
+ * <p>
+ * Components that are not part of any of these sets kept their instance, their position in the hierarchy and their attributes.
+ */
+public final class ComponentChanges {
+  @NotNull private final ImmutableSet<NlComponent> myAdded;
+  @NotNull private final ImmutableSet<NlComponent> myRemoved;
+  @NotNull private final ImmutableSet<NlComponent> myUpdated;
+  @NotNull private final ImmutableSet<NlComponent> myRestructured;
+
+  ComponentChanges(@NotNull Set<NlComponent> added,
+                   @NotNull Set<NlComponent> removed,
+                   @NotNull Set<NlComponent> updated,
+                   @NotNull Set<NlComponent> restructured) {
+    myAdded = ImmutableSet.copyOf(added);
+    myRemoved = ImmutableSet.copyOf(removed);
+    myUpdated = ImmutableSet.copyOf(updated);
+    myRestructured = ImmutableSet.copyOf(restructured);
+  }
+
+  /**
+   * Returns the components created for tags that were not in the model before.
+   */
+  @NotNull
+  public Set<NlComponent> getAdded() {
+    return myAdded;
+  }
+
+  /**
+   * Returns the components that are no longer in the model.
+   */
+  @NotNull
+  public Set<NlComponent> getRemoved() {
+    return myRemoved;
+  }
+
+  /**
+   * Returns the components that are still in the model but whose tag name or attributes changed.
+   */
+  @NotNull
+  public Set<NlComponent> getUpdated() {
+    return myUpdated;
+  }
+
+  /**
+   * Returns the components whose list of children changed.
+   */
+  @NotNull
+  public Set<NlComponent> getRestructured() {
+    return myRestructured;
+  }
+
+  /**
+   * Returns true if components were added, removed or moved.
+   */
+  public boolean isHierarchyChanged() {
+    return !myAdded.isEmpty() || !myRemoved.isEmpty() || !myRestructured.isEmpty();
+  }
+
+  public boolean isEmpty() {
+    return !isHierarchyChanged() && myUpdated.isEmpty();
+  }
+}
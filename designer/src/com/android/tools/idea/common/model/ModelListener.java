@@ -35,6 +35,12 @@ public interface ModelListener {
    */
   default void modelChanged(@NotNull NlModel model) {}
 
+  /**
+   * The component hierarchy was synchronized with the XML and the given components changed. Listeners that only depend on some
+   * components can use this to update selectively. This can be called from any thread.
+   */
+  default void modelComponentsChanged(@NotNull NlModel model, @NotNull ComponentChanges changes) {}
+
   /**
    * Something in the model has changed "live", but not committed.
    * Listeners may want to schedule a layout pass in reaction to that callback.
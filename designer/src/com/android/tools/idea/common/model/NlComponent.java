@@ -195,6 +195,7 @@ public class NlComponent implements NlAttributesHolder {
       }
     }
     component.setParent(this);
+    myModel.hierarchyChanged();
   }
 
   public void removeChild(@NotNull NlComponent component) {
@@ -209,10 +210,16 @@ public class NlComponent implements NlAttributesHolder {
       children.remove(component);
     }
     component.setParent(null);
+    myModel.hierarchyChanged();
   }
 
   public void setChildren(@Nullable List<NlComponent> components) {
     synchronized (children) {
+      if (components == null ? children.isEmpty() : children.equals(components)) {
+        // Keep the cached copy of the children when the model is synchronized without structural changes
+        return;
+      }
+      myModel.hierarchyChanged();
       cachedChildrenCopy = null;
       children.clear();
       if (components == null) {
@@ -106,6 +106,7 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
   private final long myId;
   private final Set<Object> myActivations = Collections.newSetFromMap(new WeakHashMap<>());
   private final ModelVersion myModelVersion = new ModelVersion();
+  private final AtomicLong myHierarchyVersion = new AtomicLong();
   private final DesignerEditorFileType myType;
   private long myConfigurationModificationCount;
   private final MergingUpdateQueue myUpdateQueue;
@@ -255,7 +256,24 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
   }
 
   public void syncWithPsi(@NotNull XmlTag newRoot, @NotNull List<TagSnapshotTreeNode> roots) {
-    new ModelUpdater(this).update(newRoot, roots);
+    ModelUpdater updater = new ModelUpdater(this);
+    updater.update(newRoot, roots);
+    ComponentChanges changes = updater.getChanges();
+    if (!changes.isEmpty()) {
+      myListeners.forEach(listener -> listener.modelComponentsChanged(this, changes));
+    }
+  }
+
+  /**
+   * Returns a counter incremented every time a component is added to, removed from or moved in the hierarchy. Listeners can compare it
+   * to skip work that only depends on the structure of the model.
+   */
+  public long getHierarchyModificationCount() {
+    return myHierarchyVersion.get();
+  }
+
+  void hierarchyChanged() {
+    myHierarchyVersion.incrementAndGet();
   }
 
   public void checkStructure() {
@@ -456,6 +474,14 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
      * Map from tags in the view render tree to the corresponding snapshots
      */
     private final Map<XmlTag, TagSnapshot> myTagToSnapshot = Maps.newHashMap();
+    /**
+     * Components of the model before the update and the signature of their snapshots
+     */
+    private final Map<NlComponent, Long> myPreviousSignatures = Maps.newIdentityHashMap();
+    private final Set<NlComponent> myAdded = Sets.newIdentityHashSet();
+    private final Set<NlComponent> myUpdated = Sets.newIdentityHashSet();
+    private final Set<NlComponent> myRestructured = Sets.newIdentityHashSet();
+    private final Set<NlComponent> myRemoved = Sets.newIdentityHashSet();
 
     public ModelUpdater(@NotNull NlModel model) {
       myModel = model;
@@ -480,6 +506,23 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
      */
     @VisibleForTesting
     public void update(@Nullable XmlTag newRoot, @NotNull List<TagSnapshotTreeNode> roots) {
+      NlComponent previousRoot = myModel.myRootComponent;
+      myModel.flattenComponents().forEach(component -> {
+        TagSnapshot snapshot = component.getSnapshot();
+        myPreviousSignatures.put(component, snapshot != null ? snapshot.getSignature() : null);
+      });
+      try {
+        doUpdate(newRoot, roots);
+      }
+      finally {
+        if (myModel.myRootComponent != previousRoot) {
+          myModel.hierarchyChanged();
+        }
+        findRemovedAndUpdated();
+      }
+    }
+
+    private void doUpdate(@Nullable XmlTag newRoot, @NotNull List<TagSnapshotTreeNode> roots) {
       if (newRoot == null) {
         myModel.myRootComponent = null;
         return;
@@ -529,6 +572,31 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
       }
     }
 
+    private void findRemovedAndUpdated() {
+      Set<NlComponent> current = Sets.newIdentityHashSet();
+      myModel.flattenComponents().forEach(current::add);
+      for (Map.Entry<NlComponent, Long> entry : myPreviousSignatures.entrySet()) {
+        NlComponent component = entry.getKey();
+        if (!current.contains(component)) {
+          myRemoved.add(component);
+          continue;
+        }
+        TagSnapshot snapshot = component.getSnapshot();
+        Long previousSignature = entry.getValue();
+        if (snapshot != null && (previousSignature == null || previousSignature != snapshot.getSignature())) {
+          myUpdated.add(component);
+        }
+      }
+    }
+
+    /**
+     * Returns the components affected by the last {@link #update} call.
+     */
+    @NotNull
+    ComponentChanges getChanges() {
+      return new ComponentChanges(myAdded, myRemoved, myUpdated, myRestructured);
+    }
+
     private void mapOldToNew(@NotNull XmlTag newRootTag) {
       ApplicationManager.getApplication().assertReadAccessAllowed();
 
@@ -703,7 +771,9 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
         // and no similar tag was found
         component = myModel.createComponent(tag);
         recordComponentMapping(tag, component);
+        myAdded.add(component);
       }
+      List<NlComponent> previousChildren = component.getChildren();
 
       XmlTag[] subTags = tag.getSubTags();
       if (subTags.length > 0) {
@@ -735,6 +805,9 @@ public class NlModel implements Disposable, ResourceChangeListener, Modification
       else {
         component.setChildren(null);
       }
+      if (!myAdded.contains(component) && !previousChildren.equals(component.getChildren())) {
+        myRestructured.add(component);
+      }
 
       return component;
     }
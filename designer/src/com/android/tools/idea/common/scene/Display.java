@@ -51,7 +51,12 @@ public class Display {
       scene.buildDisplayList(myDisplayList, mTime, sceneContext);
       myDisplayListVersion = scene.getDisplayListVersion();
       if (needsRebuild) {
-        scene.needsRebuildList();
+        if (scene.isRetainingDisplayList()) {
+          scene.needsRebuildRetainedList();
+        }
+        else {
+          scene.needsRebuildList();
+        }
       }
     }
     draw(sceneContext, g, myDisplayList);
@@ -59,7 +64,13 @@ public class Display {
     if (needsRebuild) {
       DesignSurface designSurface = sceneContext.getSurface();
       if (designSurface != null) {
-        designSurface.repaint();
+        if (scene.isRetainingDisplayList()) {
+          // The components still animating have invalidated their commands during the layout, only repaint them
+          scene.repaint();
+        }
+        else {
+          designSurface.repaint();
+        }
       }
     }
   }
@@ -42,6 +42,7 @@ import com.android.tools.idea.common.scene.target.Target;
 import com.android.tools.idea.common.surface.DesignSurface;
 import com.android.tools.idea.common.surface.SceneView;
 import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderSettings;
@@ -99,6 +100,8 @@ public class Scene implements SelectionListener, Disposable {
 
   @SwingCoordinate
   private static final int DRAG_THRESHOLD = JBUIScale.scale(10);
+  @SwingCoordinate
+  private static final int DIRTY_REGION_MARGIN = JBUIScale.scale(20);
 
   private final DesignSurface myDesignSurface;
   private final SceneManager mySceneManager;
@@ -111,6 +114,16 @@ public class Scene implements SelectionListener, Disposable {
   public static final int IMMEDIATE_LAYOUT = 1;
   public static final int ANIMATED_LAYOUT = 2;
   private long myDisplayListVersion = 1;
+  /**
+   * Incremented every time the draw commands retained by all the components need to be discarded
+   */
+  private long myDisplayListEpoch = 1;
+  private final boolean myIsRetainingDisplayList;
+  /**
+   * Area changed since the last repaint when the display list is retained, or null if nothing changed
+   */
+  @AndroidDpCoordinate @Nullable private Rectangle myDirtyRegion;
+  private boolean myNeedsFullRepaint;
   private Target myOverTarget;
   private Target mySnapTarget;
   private SceneComponent myCurrentComponent;
@@ -146,6 +159,7 @@ public class Scene implements SelectionListener, Disposable {
   public Scene(@NotNull SceneManager sceneManager, @NotNull DesignSurface surface, @NotNull RenderSettings renderSettings) {
     myDesignSurface = surface;
     mySceneManager = sceneManager;
+    myIsRetainingDisplayList = StudioFlags.NELE_RETAINED_DISPLAY_LIST.get();
 
     SelectionModel selectionModel = myDesignSurface.getSelectionModel();
     myHoverListener = new SceneHitListener(selectionModel);
@@ -372,6 +386,10 @@ public class Scene implements SelectionListener, Disposable {
     if (myRoot != null) {
       markSelection(myRoot, model);
     }
+    if (myIsRetainingDisplayList) {
+      // Decorators draw the unselected components differently when there is a selection
+      needsRebuildList();
+    }
   }
 
   /**
@@ -414,7 +432,24 @@ public class Scene implements SelectionListener, Disposable {
   }
 
   public void repaint() {
-    myDesignSurface.repaint();
+    Rectangle dirtyRegion = myDirtyRegion;
+    boolean needsFullRepaint = myNeedsFullRepaint;
+    myDirtyRegion = null;
+    myNeedsFullRepaint = false;
+    if (!myIsRetainingDisplayList || needsFullRepaint || dirtyRegion == null) {
+      myDesignSurface.repaint();
+      return;
+    }
+
+    for (SceneView sceneView : mySceneManager.getSceneViews()) {
+      @SwingCoordinate Rectangle swingRegion = new Rectangle(Coordinates.getSwingXDip(sceneView, dirtyRegion.x),
+                                                             Coordinates.getSwingYDip(sceneView, dirtyRegion.y),
+                                                             Coordinates.getSwingDimensionDip(sceneView, dirtyRegion.width),
+                                                             Coordinates.getSwingDimensionDip(sceneView, dirtyRegion.height));
+      // Anchors and resize handles are drawn outside of the bounds of the components
+      swingRegion.grow(DIRTY_REGION_MARGIN, DIRTY_REGION_MARGIN);
+      myDesignSurface.repaintRegion(swingRegion);
+    }
   }
 
   /**
@@ -425,12 +460,14 @@ public class Scene implements SelectionListener, Disposable {
    */
   public void buildDisplayList(@NotNull DisplayList displayList, long time, SceneContext sceneContext) {
     if (myRoot != null) {
-      // clear the objects and release
-      sceneContext.getScenePicker().foreachObject(o -> {
-        if (o instanceof SecondarySelector) {
-          ((SecondarySelector)o).release();
-        }
-      });
+      // clear the objects and release. Retained commands might still be using them so they are not released in that case.
+      if (!myIsRetainingDisplayList) {
+        sceneContext.getScenePicker().foreachObject(o -> {
+          if (o instanceof SecondarySelector) {
+            ((SecondarySelector)o).release();
+          }
+        });
+      }
 
       sceneContext.getScenePicker().reset();
       myRoot.buildDisplayList(time, displayList, sceneContext);
@@ -457,7 +494,13 @@ public class Scene implements SelectionListener, Disposable {
     if (myRoot != null) {
       needsToRebuildDisplayList = myRoot.layout(sceneContext, time);
       if (needsToRebuildDisplayList) {
-        needsRebuildList();
+        if (myIsRetainingDisplayList) {
+          // The components that changed have already invalidated their own commands
+          needsRebuildRetainedList();
+        }
+        else {
+          needsRebuildList();
+        }
       }
     }
     return needsToRebuildDisplayList;
@@ -503,28 +546,28 @@ public class Scene implements SelectionListener, Disposable {
   public void mouseHover(@NotNull SceneContext transform, @AndroidDpCoordinate int x, @AndroidDpCoordinate int y) {
     myLastMouseX = x;
     myLastMouseY = y;
+    long displayListVersion = myDisplayListVersion;
     if (myLastHoverConstraintComponent != null) { // clear hover constraint
       myLastHoverConstraintComponent.putClientProperty(ConstraintLayoutDecorator.CONSTRAINT_HOVER, null);
+      needsRebuildList(myLastHoverConstraintComponent);
       myLastHoverConstraintComponent = null;
-      needsRebuildList();
     }
     if (myRoot != null) {
       myHoverListener.find(transform, myRoot, x, y);
       mySnapListener.find(transform, myRoot, x, y);
     }
-    repaint();
     Target closestTarget = myHoverListener.getClosestTarget();
     String tooltip = null;
     if (myOverTarget != closestTarget) {
       if (myOverTarget != null) {
         myOverTarget.setMouseHovered(false);
+        needsRebuildList(myOverTarget);
         myOverTarget = null;
-        needsRebuildList();
       }
       if (closestTarget != null) {
         closestTarget.setMouseHovered(true);
         myOverTarget = closestTarget;
-        needsRebuildList();
+        needsRebuildList(closestTarget);
       }
     }
     if (closestTarget != null) {
@@ -533,13 +576,13 @@ public class Scene implements SelectionListener, Disposable {
       if (snapTarget != mySnapTarget) {
         if (mySnapTarget != null) {
           mySnapTarget.setMouseHovered(false);
+          needsRebuildList(mySnapTarget);
           mySnapTarget = null;
-          needsRebuildList();
         }
         if (snapTarget != null) {
           snapTarget.setMouseHovered(true);
           mySnapTarget = closestTarget;
-          needsRebuildList();
+          needsRebuildList(closestTarget);
         }
       }
     }
@@ -553,13 +596,14 @@ public class Scene implements SelectionListener, Disposable {
     if (myCurrentComponent != closestComponent) {
       if (myCurrentComponent != null) {
         myCurrentComponent.setDrawState(SceneComponent.DrawState.NORMAL);
+        needsRebuildList(myCurrentComponent);
         myCurrentComponent = null;
       }
       if (closestComponent != null) {
         closestComponent.setDrawState(SceneComponent.DrawState.HOVER);
         myCurrentComponent = closestComponent;
+        needsRebuildList(closestComponent);
       }
-      needsRebuildList();
     }
 
     if (closestComponent == null
@@ -572,12 +616,15 @@ public class Scene implements SelectionListener, Disposable {
         myLastHoverConstraintComponent = ss.getComponent();
         tooltip = getConstraintToolTip(ss);
         component.putClientProperty(ConstraintLayoutDecorator.CONSTRAINT_HOVER, ss.getConstraint());
-        needsRebuildList();
+        needsRebuildList(component);
       }
     }
 
     transform.setToolTip(tooltip);
     setCursor(transform, x, y);
+    if (!myIsRetainingDisplayList || displayListVersion != myDisplayListVersion) {
+      repaint();
+    }
   }
 
   @NotNull
@@ -1029,6 +1076,76 @@ public class Scene implements SelectionListener, Disposable {
   // requiring it to be done explicitly by the code that's modifying them.
   public void needsRebuildList() {
     myDisplayListVersion++;
+    myDisplayListEpoch++;
+    myNeedsFullRepaint = true;
+  }
+
+  /**
+   * Notifies that the display list needs to be built again, reusing the commands retained by the components that did not change.
+   */
+  void needsRebuildRetainedList() {
+    myDisplayListVersion++;
+  }
+
+  /**
+   * Notifies that the given component needs to be drawn again. When the display list is retained, only the commands of the component
+   * (and its ancestors) are built again and only the area it covers is repainted. Otherwise this is equivalent to
+   * {@link #needsRebuildList()}.
+   */
+  public void needsRebuildList(@NotNull SceneComponent component) {
+    if (!myIsRetainingDisplayList) {
+      needsRebuildList();
+      return;
+    }
+    myDisplayListVersion++;
+    component.invalidateDisplayList();
+    if (myNeedsFullRepaint) {
+      return;
+    }
+    Rectangle region = component.getDirtyRegion(System.currentTimeMillis());
+    if (region == null) {
+      myNeedsFullRepaint = true;
+    }
+    else if (myDirtyRegion == null) {
+      myDirtyRegion = region;
+    }
+    else {
+      myDirtyRegion.add(region);
+    }
+  }
+
+  private void needsRebuildList(@NotNull Target target) {
+    SceneComponent component = target.getComponent();
+    if (component != null) {
+      needsRebuildList(component);
+    }
+    else {
+      needsRebuildList();
+    }
+  }
+
+  private void needsRebuildList(@NotNull NlComponent component) {
+    SceneComponent sceneComponent = getSceneComponent(component);
+    if (sceneComponent != null) {
+      needsRebuildList(sceneComponent);
+    }
+    else {
+      needsRebuildList();
+    }
+  }
+
+  /**
+   * Returns the current epoch of the display list. The commands retained by the components for a previous epoch can not be used.
+   */
+  public long getDisplayListEpoch() {
+    return myDisplayListEpoch;
+  }
+
+  /**
+   * Returns whether the {@link SceneComponent}s keep their draw commands between display list builds.
+   */
+  public boolean isRetainingDisplayList() {
+    return myIsRetainingDisplayList;
   }
 
   //endregion
@@ -16,11 +16,13 @@
 package com.android.tools.idea.common.scene;
 
 import com.android.annotations.VisibleForTesting;
+import com.android.tools.adtui.common.SwingCoordinate;
 import com.android.tools.idea.common.model.AndroidDpCoordinate;
 import com.android.tools.idea.common.model.Coordinates;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.scene.decorator.SceneDecorator;
 import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.common.scene.draw.DrawCommand;
 import com.android.tools.idea.common.scene.target.*;
 import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.uibuilder.api.ViewGroupHandler;
@@ -39,6 +41,8 @@ import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -92,6 +96,16 @@ public class SceneComponent {
 
   @Nullable private Notch.Provider myNotchProvider = null;
 
+  /**
+   * Draw commands built for this component and its children for every {@link SceneContext}, when the {@link Scene} retains its display
+   * list. See {@link #invalidateDisplayList()}.
+   */
+  private final Map<SceneContext, RetainedCommands> myRetainedCommands = new WeakHashMap<>();
+  /**
+   * Bounds of the component when its retained commands were built, used to find the area that needs to be repainted when they change
+   */
+  @AndroidDpCoordinate @Nullable private Rectangle myRetainedBounds;
+
   @AndroidDpCoordinate
   public int getCenterX() {
     return myCurrentLeft + (myCurrentRight - myCurrentLeft) / 2;
@@ -296,7 +310,11 @@ public class SceneComponent {
   }
 
   public void setShowBaseline(boolean value) {
-    myShowBaseline = value;
+    if (myShowBaseline != value) {
+      myShowBaseline = value;
+      // The targets that can be hit depend on the baseline being shown
+      myScene.needsRebuildList(this);
+    }
   }
 
   /**
@@ -402,7 +420,7 @@ public class SceneComponent {
       NlComponentHelperKt.setX(myNlComponent, Coordinates.dpToPx(myScene.getDesignSurface(), dx));
       NlComponentHelperKt.setY(myNlComponent, Coordinates.dpToPx(myScene.getDesignSurface(), dy));
     }
-    myScene.needsRebuildList();
+    myScene.needsRebuildList(this);
   }
 
   /**
@@ -423,7 +441,7 @@ public class SceneComponent {
       NlComponentHelperKt.setY(myNlComponent, Coordinates.dpToPx(myScene.getDesignSurface(), dy));
     }
     else {
-      myScene.needsRebuildList();
+      myScene.needsRebuildList(this);
     }
   }
 
@@ -438,7 +456,7 @@ public class SceneComponent {
       NlComponentHelperKt.setW(myNlComponent, Coordinates.dpToPx(myScene.getDesignSurface(), width));
       NlComponentHelperKt.setH(myNlComponent, Coordinates.dpToPx(myScene.getDesignSurface(), height));
     }
-    myScene.needsRebuildList();
+    myScene.needsRebuildList(this);
   }
 
   /**
@@ -513,6 +531,9 @@ public class SceneComponent {
     }
     if (oldState != myDrawState) {
       DecoratorUtilities.setTimeChange(myNlComponent, DecoratorUtilities.VIEW, DecoratorUtilities.mapState(drawState));
+      if (myScene.isRetainingDisplayList()) {
+        myScene.needsRebuildList(this);
+      }
     }
   }
 
@@ -539,8 +560,10 @@ public class SceneComponent {
   }
 
   public void setDragging(boolean dragging) {
-    if (!getNlComponent().isRoot()) {
+    if (!getNlComponent().isRoot() && myDragging != dragging) {
       myDragging = dragging;
+      // The targets that can be hit depend on the dragging state
+      myScene.needsRebuildList(this);
     }
   }
 
@@ -679,6 +702,7 @@ public class SceneComponent {
     child.removeFromParent();
     child.setParent(this);
     myChildren.add(child);
+    invalidateDisplayList();
   }
 
   public void removeFromParent() {
@@ -691,6 +715,7 @@ public class SceneComponent {
   private void remove(@NotNull SceneComponent component) {
     if (myChildren.remove(component)) {
       component.myParent = null;
+      invalidateDisplayList();
     }
   }
 
@@ -700,30 +725,33 @@ public class SceneComponent {
   /////////////////////////////////////////////////////////////////////////////
 
   public boolean layout(@NotNull SceneContext sceneTransform, long time) {
-    boolean needsRebuildDisplayList = false;
     int left = myAnimatedDrawX.getValue(time);
     int top = myAnimatedDrawY.getValue(time);
     int right = left + myAnimatedDrawWidth.getValue(time);
     int bottom = top + myAnimatedDrawHeight.getValue(time);
 
-    needsRebuildDisplayList |= (myCurrentLeft != left);
-    needsRebuildDisplayList |= (myCurrentTop != top);
-    needsRebuildDisplayList |= (myCurrentRight != right);
-    needsRebuildDisplayList |= (myCurrentBottom != bottom);
+    boolean changed = (myCurrentLeft != left);
+    changed |= (myCurrentTop != top);
+    changed |= (myCurrentRight != right);
+    changed |= (myCurrentBottom != bottom);
 
     myCurrentLeft = left;
     myCurrentTop = top;
     myCurrentRight = right;
     myCurrentBottom = bottom;
 
-    needsRebuildDisplayList |= isAnimating();
+    changed |= isAnimating();
 
     ImmutableList<Target> targets = getTargets();
     int num = targets.size();
     for (int i = 0; i < num; i++) {
       Target target = targets.get(i);
-      needsRebuildDisplayList |= target.layout(sceneTransform, myCurrentLeft, myCurrentTop, myCurrentRight, myCurrentBottom);
+      changed |= target.layout(sceneTransform, myCurrentLeft, myCurrentTop, myCurrentRight, myCurrentBottom);
+    }
+    if (changed && myScene.isRetainingDisplayList()) {
+      myScene.needsRebuildList(this);
     }
+    boolean needsRebuildDisplayList = changed;
 
     int childCount = myChildren.size();
     for (int i = 0; i < childCount; i++) {
@@ -777,7 +805,92 @@ public class SceneComponent {
   }
 
   public void buildDisplayList(long time, @NotNull DisplayList list, SceneContext sceneContext) {
+    if (!myScene.isRetainingDisplayList()) {
+      myDecorator.buildList(list, time, sceneContext, this);
+      return;
+    }
+
+    RetainedCommands retained = myRetainedCommands.get(sceneContext);
+    if (retained != null && retained.isValid(myScene.getDisplayListEpoch(), sceneContext)) {
+      list.addAll(retained.myCommands);
+      return;
+    }
+
+    List<DrawCommand> commands = list.getCommands();
+    int start = commands.size();
     myDecorator.buildList(list, time, sceneContext, this);
+    myRetainedCommands.put(sceneContext, new RetainedCommands(new ArrayList<>(commands.subList(start, commands.size())),
+                                                              myScene.getDisplayListEpoch(), sceneContext));
+    myRetainedBounds = fillDrawRect(time, myRetainedBounds);
+  }
+
+  /**
+   * Discards the retained draw commands of this component so they are built again the next time the display list is built. The
+   * commands of the ancestors are also discarded since they include the ones of this component and their decorators might draw
+   * differently depending on the state of their children.
+   */
+  public void invalidateDisplayList() {
+    for (SceneComponent component = this; component != null; component = component.myParent) {
+      component.myRetainedCommands.clear();
+    }
+  }
+
+  /**
+   * Returns whether there are retained draw commands for this component that can be used with the given {@link SceneContext}.
+   */
+  @VisibleForTesting
+  public boolean hasRetainedDisplayList(@NotNull SceneContext sceneContext) {
+    RetainedCommands retained = myRetainedCommands.get(sceneContext);
+    return retained != null && retained.isValid(myScene.getDisplayListEpoch(), sceneContext);
+  }
+
+  /**
+   * Returns the area where the draw commands of this component have been or will be drawn, or null if it is not known. This includes
+   * the bounds of the component when its commands were last built, its current bounds and what the decorator of the parent draws
+   * for it.
+   */
+  @AndroidDpCoordinate
+  @Nullable
+  Rectangle getDirtyRegion(long time) {
+    Rectangle region = fillDrawRect(time, null);
+    if (myRetainedBounds != null) {
+      region.add(myRetainedBounds);
+    }
+    SceneComponent parent = myParent;
+    if (parent != null && !parent.getDecorator().addChildDirtyRegion(parent, this, time, region)) {
+      return null;
+    }
+    return region;
+  }
+
+  /**
+   * Draw commands built for a component with a given {@link SceneContext}, together with the state they depend on.
+   */
+  private static final class RetainedCommands {
+    @NotNull private final List<DrawCommand> myCommands;
+    private final long myEpoch;
+    private final double myScale;
+    @SwingCoordinate private final int myOriginX;
+    @SwingCoordinate private final int myOriginY;
+    private final boolean myShowOnlySelection;
+
+    private RetainedCommands(@NotNull List<DrawCommand> commands, long epoch, @NotNull SceneContext sceneContext) {
+      myCommands = commands;
+      myEpoch = epoch;
+      myScale = sceneContext.getScale();
+      myOriginX = sceneContext.getSwingXDip(0);
+      myOriginY = sceneContext.getSwingYDip(0);
+      myShowOnlySelection = sceneContext.showOnlySelection();
+    }
+
+    private boolean isValid(long epoch, @NotNull SceneContext sceneContext) {
+      // The commands are in Swing coordinates so they can not be used if the scene has been scaled or moved
+      return myEpoch == epoch &&
+             myScale == sceneContext.getScale() &&
+             myOriginX == sceneContext.getSwingXDip(0) &&
+             myOriginY == sceneContext.getSwingYDip(0) &&
+             myShowOnlySelection == sceneContext.showOnlySelection();
+    }
   }
 
   //endregion
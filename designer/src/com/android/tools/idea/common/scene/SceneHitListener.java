@@ -19,6 +19,7 @@ import com.android.tools.idea.common.model.AndroidDpCoordinate;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.model.SelectionModel;
 import com.android.tools.idea.common.scene.target.Target;
+import com.android.tools.idea.flags.StudioFlags;
 import java.util.function.Predicate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -37,8 +38,22 @@ class SceneHitListener {
   @NotNull final ArrayList<Target> myHitTargets = new ArrayList<>();
   private Predicate<Target> myTargertFilter = it -> true;
 
+  // State of the scene when the picker was last filled. While it does not change, the picker shapes are reused.
+  private final boolean myIsReusingPicker;
+  @Nullable private SceneComponent myPickerRoot;
+  @Nullable private SceneContext myPickerTransform;
+  private long myPickerDisplayListVersion;
+  private double myPickerScale;
+  private int myPickerOriginX;
+  private int myPickerOriginY;
+  @Nullable private Scene.FilterType myPickerFilterType;
+  @Nullable private Target myPickerInteractingTarget;
+  @Nullable private List<NlComponent> myPickerSelection;
+
   public SceneHitListener(@NotNull SelectionModel selectionModel) {
     mySelectionModel = selectionModel;
+    myIsReusingPicker = StudioFlags.NELE_SCENE_PICKER_INDEX.get();
+    myPicker.setUseIndex(myIsReusingPicker);
     myPicker.setSelectListener((a, b) -> over(a, b));
   }
 
@@ -54,11 +69,52 @@ class SceneHitListener {
     myHitTargets.clear();
     myClosestComponentDistance = Double.MAX_VALUE;
     myClosestTargetDistance = Double.MAX_VALUE;
-    myPicker.reset();
-    root.addHit(transform, myPicker);
+    if (!myIsReusingPicker || !isPickerUpToDate(transform, root)) {
+      myPicker.reset();
+      root.addHit(transform, myPicker);
+    }
     myPicker.find(transform.getSwingXDip(x), transform.getSwingYDip(y));
   }
 
+  /**
+   * Returns true if the picker already contains the shapes that {@link SceneComponent#addHit} would add for the given root.
+   * The shapes depend on the position of the components, tracked by the display list version, on the transform and on the
+   * interaction state used by the targets to decide whether they can be hit. Records the current state otherwise.
+   */
+  private boolean isPickerUpToDate(@NotNull SceneContext transform, @NotNull SceneComponent root) {
+    Scene scene = root.getScene();
+    long displayListVersion = scene.getDisplayListVersion();
+    double scale = transform.getScale();
+    int originX = transform.getSwingXDip(0);
+    int originY = transform.getSwingYDip(0);
+    Scene.FilterType filterType = scene.getFilterType();
+    Target interactingTarget = scene.getInteractingTarget();
+    List<NlComponent> selection = mySelectionModel.getSelection();
+
+    //noinspection FloatingPointEquality
+    if (root == myPickerRoot &&
+        transform == myPickerTransform &&
+        displayListVersion == myPickerDisplayListVersion &&
+        scale == myPickerScale &&
+        originX == myPickerOriginX &&
+        originY == myPickerOriginY &&
+        filterType == myPickerFilterType &&
+        interactingTarget == myPickerInteractingTarget &&
+        selection.equals(myPickerSelection)) {
+      return true;
+    }
+    myPickerRoot = root;
+    myPickerTransform = transform;
+    myPickerDisplayListVersion = displayListVersion;
+    myPickerScale = scale;
+    myPickerOriginX = originX;
+    myPickerOriginY = originY;
+    myPickerFilterType = filterType;
+    myPickerInteractingTarget = interactingTarget;
+    myPickerSelection = new ArrayList<>(selection);
+    return false;
+  }
+
   @SuppressWarnings("FloatingPointEquality")  // The values are directly assigned with no math, so this should be fine.
   public void over(Object over, double dist) {
     if (over instanceof Target) {
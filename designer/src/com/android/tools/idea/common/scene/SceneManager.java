@@ -88,6 +88,14 @@ abstract public class SceneManager implements Disposable {
     return mySceneView;
   }
 
+  /**
+   * Returns all the {@link SceneView}s displaying the {@link Scene} of this manager.
+   */
+  @NotNull
+  public ImmutableList<SceneView> getSceneViews() {
+    return ImmutableList.of(mySceneView);
+  }
+
   @NotNull
   public ImmutableList<Layer> getLayers() {
     return mySceneView.getLayers();
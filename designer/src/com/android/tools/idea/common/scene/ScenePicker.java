@@ -17,6 +17,7 @@ package com.android.tools.idea.common.scene;
 
 import java.util.Arrays;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * This class provides efficient detection of many objects
@@ -25,6 +26,11 @@ public class ScenePicker {
   private final static int MAX_DATA_SIZE = 10;
   private final static int INITAL_OBJECT_STORE = 30;
   private final static double EPSILON = 0.00001;
+  /** Minimum number of objects for {@link #find(int, int)} to use the spatial index */
+  private final static int INDEX_MIN_OBJECTS = 64;
+  /** Objects covering more cells than this are always tested instead of being added to every cell */
+  private final static int INDEX_MAX_CELLS_PER_OBJECT = 16;
+  private final static int INDEX_MIN_CELL_SIZE = 16;
   private double[] mObjectData = new double[100];
   private int mObjectDataUsed = 0;
   private int[] mObjectOffset = new int[INITAL_OBJECT_STORE];
@@ -34,6 +40,20 @@ public class ScenePicker {
   HitElementListener mHitElementListener;
 
   private int mObjectCount = 0;
+
+  // Uniform grid over the bounds of the objects, built lazily on the first find after the objects change.
+  // The objects of every cell are kept as ranges of mCellObjects (mCellStart[cell] to mCellStart[cell + 1]) in index order.
+  private boolean mUseIndex = false;
+  private boolean mIndexValid = false;
+  private int mGridX;
+  private int mGridY;
+  private int mCellSize;
+  private int mColumns;
+  private int mRows;
+  private int[] mCellStart = new int[0];
+  private int[] mCellObjects = new int[0];
+  private int[] mLargeObjects = new int[0];
+  private int mLargeCount = 0;
   private final static int OBJECT_LINE = 0;
   private final static int OBJECT_POINT = 1;
   private final static int OBJECT_CURVE = 2;
@@ -70,17 +90,159 @@ public class ScenePicker {
    * @param y location y
    */
   public void find(int x, int y) {
+    if (mUseIndex && mObjectCount >= INDEX_MIN_OBJECTS) {
+      findIndexed(x, y);
+      return;
+    }
+    for (int i = 0; i < mObjectCount; i++) {
+      test(i, x, y);
+    }
+  }
+
+  /**
+   * Enables the spatial index used by {@link #find(int, int)} when many objects have been added.
+   * The listener is notified of the same objects, in the same order, as without the index.
+   */
+  public void setUseIndex(boolean useIndex) {
+    mUseIndex = useIndex;
+  }
+
+  /**
+   * Returns the number of objects added since the last {@link #reset()}
+   */
+  public int getObjectCount() {
+    return mObjectCount;
+  }
+
+  private void test(int i, int x, int y) {
+    int p = i * 4;
+    int x1 = mRect[p++];
+    int y1 = mRect[p++];
+    int x2 = mRect[p++];
+    int y2 = mRect[p];
+    if (inRect(x, y, x1, y1, x2, y2)) {
+      SelectionEngine selector = myEngines[mTypes[i]];
+      if (selector.inRange(i, x, y)) {
+        mHitElementListener.over(mObjects[i], selector.distance());
+      }
+    }
+  }
+
+  /**
+   * Only tests the objects of the grid cell containing the given location and the large objects, merging both lists
+   * so the objects are still tested in the order they were added.
+   */
+  private void findIndexed(int x, int y) {
+    if (!mIndexValid) {
+      buildIndex();
+    }
+    int cellStart = 0;
+    int cellEnd = 0;
+    int column = Math.floorDiv(x - mGridX, mCellSize);
+    int row = Math.floorDiv(y - mGridY, mCellSize);
+    if (column >= 0 && column < mColumns && row >= 0 && row < mRows) {
+      int cell = row * mColumns + column;
+      cellStart = mCellStart[cell];
+      cellEnd = mCellStart[cell + 1];
+    }
+    int large = 0;
+    while (cellStart < cellEnd || large < mLargeCount) {
+      if (large == mLargeCount || (cellStart < cellEnd && mCellObjects[cellStart] < mLargeObjects[large])) {
+        test(mCellObjects[cellStart++], x, y);
+      }
+      else {
+        test(mLargeObjects[large++], x, y);
+      }
+    }
+  }
+
+  private void buildIndex() {
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
     for (int i = 0; i < mObjectCount; i++) {
       int p = i * 4;
-      int x1 = mRect[p++];
-      int y1 = mRect[p++];
-      int x2 = mRect[p++];
-      int y2 = mRect[p];
-      if (inRect(x, y, x1, y1, x2, y2)) {
-        SelectionEngine selector = myEngines[mTypes[i]];
-        if (selector.inRange(i, x, y)) {
-          mHitElementListener.over(mObjects[i], selector.distance());
-        }
+      minX = Math.min(minX, mRect[p]);
+      minY = Math.min(minY, mRect[p + 1]);
+      maxX = Math.max(maxX, mRect[p + 2]);
+      maxY = Math.max(maxY, mRect[p + 3]);
+    }
+    // Aim for about one object per cell if they were evenly distributed
+    long size = Math.max((long)maxX - minX, (long)maxY - minY) + 1;
+    int perSide = (int)Math.ceil(Math.sqrt(mObjectCount));
+    mCellSize = (int)Math.max(INDEX_MIN_CELL_SIZE, Math.min(Integer.MAX_VALUE / 2, (size + perSide - 1) / perSide));
+    mGridX = minX;
+    mGridY = minY;
+    mColumns = (int)(((long)maxX - minX) / mCellSize) + 1;
+    mRows = (int)(((long)maxY - minY) / mCellSize) + 1;
+    int cells = mColumns * mRows;
+    if (mCellStart.length < cells + 1) {
+      mCellStart = new int[cells + 1];
+    }
+    else {
+      Arrays.fill(mCellStart, 0, cells + 1, 0);
+    }
+    if (mLargeObjects.length < mObjectCount) {
+      mLargeObjects = new int[mObjectCount];
+    }
+
+    // First pass counts the objects of every cell, the second one fills them in index order
+    mLargeCount = 0;
+    int total = 0;
+    for (int i = 0; i < mObjectCount; i++) {
+      int p = i * 4;
+      if (isEmpty(i)) {
+        continue;
+      }
+      int columns = (mRect[p + 2] - mGridX) / mCellSize - (mRect[p] - mGridX) / mCellSize + 1;
+      int rows = (mRect[p + 3] - mGridY) / mCellSize - (mRect[p + 1] - mGridY) / mCellSize + 1;
+      if (columns * rows > INDEX_MAX_CELLS_PER_OBJECT) {
+        mLargeObjects[mLargeCount++] = i;
+        continue;
+      }
+      forEachCell(i, cell -> mCellStart[cell + 1]++);
+      total += columns * rows;
+    }
+    for (int cell = 0; cell < cells; cell++) {
+      mCellStart[cell + 1] += mCellStart[cell];
+    }
+    if (mCellObjects.length < total) {
+      mCellObjects = new int[total];
+    }
+    int[] next = Arrays.copyOf(mCellStart, cells);
+    int large = 0;
+    for (int i = 0; i < mObjectCount; i++) {
+      if (large < mLargeCount && mLargeObjects[large] == i) {
+        large++;
+        continue;
+      }
+      if (isEmpty(i)) {
+        continue;
+      }
+      int object = i;
+      forEachCell(i, cell -> mCellObjects[next[cell]++] = object);
+    }
+    mIndexValid = true;
+  }
+
+  /**
+   * Returns true if the bounds of the given object are empty, in which case it can never be hit
+   */
+  private boolean isEmpty(int object) {
+    int p = object * 4;
+    return mRect[p + 2] < mRect[p] || mRect[p + 3] < mRect[p + 1];
+  }
+
+  private void forEachCell(int object, IntConsumer consumer) {
+    int p = object * 4;
+    int column1 = (mRect[p] - mGridX) / mCellSize;
+    int row1 = (mRect[p + 1] - mGridY) / mCellSize;
+    int column2 = (mRect[p + 2] - mGridX) / mCellSize;
+    int row2 = (mRect[p + 3] - mGridY) / mCellSize;
+    for (int row = row1; row <= row2; row++) {
+      for (int column = column1; column <= column2; column++) {
+        consumer.accept(row * mColumns + column);
       }
     }
   }
@@ -124,6 +286,7 @@ public class ScenePicker {
   public void reset() {
     mObjectCount = 0;
     mObjectDataUsed = 0;
+    mIndexValid = false;
     Arrays.fill(mObjects, null);// delete references
   }
 
@@ -229,6 +392,7 @@ public class ScenePicker {
     protected int mDataOffset;
 
     protected void addRect(int x1, int y1, int x2, int y2) {
+      mIndexValid = false;
       int off = mObjectCount * 4;
       mRect[off++] = x1;
       mRect[off++] = y1;
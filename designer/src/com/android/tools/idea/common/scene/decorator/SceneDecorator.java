@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.common.scene.decorator;
 
+import com.android.tools.idea.common.model.AndroidDpCoordinate;
 import com.android.tools.idea.common.scene.SceneComponent;
 import com.android.tools.idea.common.scene.SceneContext;
 import com.android.tools.idea.common.scene.draw.DisplayList;
@@ -144,4 +145,19 @@ public class SceneDecorator {
                                   @NotNull SceneComponent component) {
     component.getTargets().forEach(target -> target.render(list, sceneContext));
   }
+
+  /**
+   * Adds to {@code region} the area where this decorator draws for the given child of {@code component}, besides the commands built
+   * by the child itself. Returns false if the area is not known.
+   *
+   * @param component the component this decorator draws
+   * @param child     a child of {@code component}
+   * @param region    the area, in Dp, to update
+   */
+  public boolean addChildDirtyRegion(@NotNull SceneComponent component,
+                                     @NotNull SceneComponent child,
+                                     long time,
+                                     @NotNull @AndroidDpCoordinate Rectangle region) {
+    return true;
+  }
 }
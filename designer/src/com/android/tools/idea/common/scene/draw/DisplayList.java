@@ -36,6 +36,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.function.Function;
 
 
@@ -346,6 +347,13 @@ public class DisplayList {
     myCommands.add(cmd);
   }
 
+  /**
+   * Adds commands built previously. Every clip pushed by the commands must also be popped by them.
+   */
+  public void addAll(@NotNull List<DrawCommand> commands) {
+    myCommands.addAll(commands);
+  }
+
   public void pushClip(@NotNull SceneContext context, @Nullable @AndroidDpCoordinate Rectangle r) {
     if (r == null) {
       myUnClipStack.add(new EmptyUNClip());
@@ -1104,11 +1104,17 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
 
       paintBackground(g2d, tlx, tly);
 
-      if (getCurrentSceneView() == null) {
+      SceneView sceneView = getCurrentSceneView();
+      if (sceneView == null) {
         return;
       }
 
       Rectangle bounds = myScrollPane.getViewport().getViewRect();
+      Rectangle paintBounds = g2d.getClipBounds();
+      if (sceneView.getScene().isRetainingDisplayList() && paintBounds != null) {
+        // Only paint the area being repainted, see Scene#repaint()
+        bounds = bounds.intersection(paintBounds);
+      }
       for (Layer layer : myLayers) {
         if (!layer.isHidden()) {
           g2d.setClip(bounds);
@@ -1372,6 +1378,15 @@ public abstract class DesignSurface extends EditorDesignSurface implements Dispo
     return myScrollPane;
   }
 
+  /**
+   * Repaints only the given area of the {@link SceneView}s.
+   *
+   * @param region the area to repaint, in the same coordinates used to paint the {@link Layer}s
+   */
+  public void repaintRegion(@SwingCoordinate @NotNull Rectangle region) {
+    myLayeredPane.repaint(region);
+  }
+
   /**
    * Sets the tooltip for the design surface
    */
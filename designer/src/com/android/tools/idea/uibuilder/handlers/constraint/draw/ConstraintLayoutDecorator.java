@@ -16,6 +16,7 @@
 package com.android.tools.idea.uibuilder.handlers.constraint.draw;
 
 import com.android.SdkConstants;
+import com.android.tools.idea.common.model.AndroidDpCoordinate;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.scene.Scene;
 import com.android.tools.idea.common.scene.SceneComponent;
@@ -32,6 +33,7 @@ import com.android.tools.idea.uibuilder.scene.decorator.DecoratorUtilities;
 import java.awt.Rectangle;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This defines the decorator
@@ -212,6 +214,74 @@ public class ConstraintLayoutDecorator extends SceneDecorator {
     }
   }
 
+  @Override
+  public boolean addChildDirtyRegion(@NotNull SceneComponent component,
+                                     @NotNull SceneComponent child,
+                                     long time,
+                                     @NotNull @AndroidDpCoordinate Rectangle region) {
+    // Guidelines and barriers, and the connections to them, are drawn across the whole layout
+    if (isGuidelineOrBarrier(child)) {
+      return false;
+    }
+    Rectangle rect = new Rectangle();
+    for (int i = 0; i < ourDirections.length; i++) {
+      if (!addConnectionRegion(component, child, child.myCache.get(ourDirections[i]), isLeftRight[i], time, region, rect)) {
+        return false;
+      }
+    }
+    if (!addConnectionRegion(component, child, child.myCache.get(BASELINE), false, time, region, rect)) {
+      return false;
+    }
+
+    // The connections of the siblings constrained to the child
+    for (SceneComponent sibling : component.getChildren()) {
+      if (sibling != child && sibling.myCache.containsValue(child)) {
+        sibling.fillDrawRect(time, rect);
+        region.add(rect);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds to {@code region} the area covered by a connection from {@code child} to {@code target}. Returns false if it is not known.
+   */
+  private static boolean addConnectionRegion(@NotNull SceneComponent component,
+                                             @NotNull SceneComponent child,
+                                             @Nullable Object target,
+                                             boolean horizontal,
+                                             long time,
+                                             @NotNull @AndroidDpCoordinate Rectangle region,
+                                             @NotNull @AndroidDpCoordinate Rectangle rect) {
+    if (!(target instanceof SceneComponent)) {
+      return true;
+    }
+    SceneComponent targetComponent = (SceneComponent)target;
+    if (isGuidelineOrBarrier(targetComponent)) {
+      return false;
+    }
+    targetComponent.fillDrawRect(time, rect);
+    if (targetComponent == component) {
+      // Connections to the parent only go from the child to the edge of the parent
+      if (horizontal) {
+        rect.y = child.getDrawY(time);
+        rect.height = child.getDrawHeight(time);
+      }
+      else {
+        rect.x = child.getDrawX(time);
+        rect.width = child.getDrawWidth(time);
+      }
+    }
+    region.add(rect);
+    return true;
+  }
+
+  private static boolean isGuidelineOrBarrier(@NotNull SceneComponent component) {
+    String className = NlComponentHelperKt.getComponentClassName(component.getNlComponent());
+    return SdkConstants.CONSTRAINT_LAYOUT_GUIDELINE.isEqualsIgnoreCase(className) ||
+           SdkConstants.CONSTRAINT_LAYOUT_BARRIER.isEqualsIgnoreCase(className);
+  }
+
   /**
    * This is used to extract the connection status from nlcomponents
    */
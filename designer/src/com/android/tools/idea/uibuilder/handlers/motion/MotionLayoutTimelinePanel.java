@@ -27,6 +27,7 @@ import com.android.tools.idea.common.model.NlModel;
 import com.android.tools.idea.common.model.SelectionModel;
 import com.android.tools.idea.common.scene.SceneComponent;
 import com.android.tools.idea.common.surface.DesignSurface;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.uibuilder.api.AccessoryPanelInterface;
 import com.android.tools.idea.uibuilder.api.AccessorySelectionListener;
 import com.android.tools.idea.uibuilder.api.ViewGroupHandler;
@@ -82,6 +83,9 @@ class MotionLayoutTimelinePanel implements AccessoryPanelInterface, GanttEventLi
   private NlComponentDelegate myNlComponentDelegate = new MotionLayoutComponentDelegate(this);
   private NlModel myModel;
   private MotionSceneModel myMotionSceneModel;
+  // The MotionLayout and the file myMotionSceneModel was parsed from
+  private NlComponent myMotionSceneComponent;
+  private VirtualFile myMotionSceneFile;
   private Object myLastSelectedAccessory = new Object();
 
   public State getCurrentState() {
@@ -316,9 +320,19 @@ class MotionLayoutTimelinePanel implements AccessoryPanelInterface, GanttEventLi
 
     XmlFile xmlFile = (XmlFile)AndroidPsiUtils.getPsiFileSafely(project, virtualFile);
 
+    if (StudioFlags.NELE_MOTION_SCENE_MODEL_CACHE.get() && myMotionSceneModel != null &&
+        component == myMotionSceneComponent && myMotionSceneFile.equals(virtualFile)) {
+      // Renders notify us of model changes, most of which do not touch the motion scene
+      if (myMotionSceneModel.update(component, xmlFile)) {
+        myPanel.setMotionScene(myMotionSceneModel);
+      }
+      return;
+    }
     MotionSceneModel motionSceneModel = MotionSceneModel.parse(component, project, virtualFile, xmlFile);
     myPanel.setMotionScene(motionSceneModel);
     myMotionSceneModel = motionSceneModel;
+    myMotionSceneComponent = component;
+    myMotionSceneFile = virtualFile;
 
   }
 
@@ -755,10 +755,23 @@ public class Gantt extends JPanel implements GanttCommands {
     int myHeightCycle = 0;
     int myHeightPosition = 0;
     MotionSceneModel.MotionSceneView mKeyFrames;
+    // For every frame position, a bit set of the kinds of key frames (1 position, 2 attributes, 4 cycles) at that position
+    final int[] myKeyFrameMarks = new int[101];
 
     public ViewElement(String name, MotionSceneModel.MotionSceneView keyFrames) {
       myName = name;
       mKeyFrames = keyFrames;
+      if (keyFrames != null) {
+        for (MotionSceneModel.KeyPos key : keyFrames.myKeyPositions) {
+          myKeyFrameMarks[key.framePosition] = 1;
+        }
+        for (MotionSceneModel.KeyAttributes key : keyFrames.myKeyAttributes) {
+          myKeyFrameMarks[key.framePosition] |= 2;
+        }
+        for (MotionSceneModel.KeyCycle key : keyFrames.myKeyCycles) {
+          myKeyFrameMarks[key.framePosition] |= 4;
+        }
+      }
     }
 
     @Override
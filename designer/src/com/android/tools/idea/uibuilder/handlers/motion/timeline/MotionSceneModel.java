@@ -93,7 +93,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.swing.Icon;
@@ -119,6 +121,10 @@ public class MotionSceneModel {
   private String myName;
   private String[] myTransitionNames = null;
   private List<NlComponent> myViews;
+  // State of the last update, used to only parse the tags that changed
+  private long myFileModificationStamp = -1;
+  private List<String> myViewIds;
+  private final Map<XmlTag, ParsedTag> myParsedTags = new IdentityHashMap<>();
 
   public String getName() {
     return myName;
@@ -1850,7 +1856,6 @@ public class MotionSceneModel {
     NlModel model = component.getModel();
     MotionSceneModel motionSceneModel = new MotionSceneModel();
     motionSceneModel.myName = virtualFile.getName();
-    ArrayList<ConstraintSet> constraintSet = new ArrayList<>();
     if (DEBUG) {
       System.out.println("====================================================================================");
       System.out.println(" parse ... VirtualFile " + virtualFile.getCanonicalPath());
@@ -1858,132 +1863,213 @@ public class MotionSceneModel {
     motionSceneModel.myNlModel = model;
     motionSceneModel.myVirtualFile = virtualFile;
     motionSceneModel.myProject = project;
-    motionSceneModel.myViews = component.getChildren();
+    motionSceneModel.update(component, file);
+    return motionSceneModel;
+  }
+
+  /**
+   * Updates this model after a change of the motion scene file or of the views of the MotionLayout.
+   * Only the ConstraintSet and Transition tags whose text changed since the last update are parsed again,
+   * the others keep their instances.
+   *
+   * @return true if anything changed
+   */
+  public boolean update(@NotNull NlComponent component, @NotNull XmlFile file) {
+    List<NlComponent> views = component.getChildren();
+    List<String> viewIds = views.stream().map(NlComponent::getId).collect(Collectors.toList());
+    if (myConstraintSets != null && file.getModificationStamp() == myFileModificationStamp && viewIds.equals(myViewIds)) {
+      return false;
+    }
+    boolean viewsChanged = !viewIds.equals(myViewIds);
+    myFileModificationStamp = file.getModificationStamp();
+    myViewIds = viewIds;
+    myViews = views;
+    myTransitionNames = null;
+    boolean changed = viewsChanged;
 
     // Process all the constraint sets
-    XmlTag[] tagKeyFrames = file.getRootTag().findSubTags(MotionSceneConstraintSet);
-    for (int i = 0; i < tagKeyFrames.length; i++) {
-      XmlTag frame = tagKeyFrames[i];
-      ConstraintSet set = new ConstraintSet(frame);
-      parse(set, frame.getAttributes());
-      constraintSet.add(set);
-      XmlTag[] subTags = frame.getSubTags();
-      for (int j = 0; j < subTags.length; j++) {
-        XmlTag subtag = subTags[j];
-        if (ConstraintSetConstraint.equals(subtag.getName())) {
-          ConstraintView view = new ConstraintView(subtag);
-          view.setId(subtag.getAttributeValue("android:id"));
-          parse(view, subtag.getAttributes());
-          set.myConstraintViews.put(view.mId, view);
-        }
+    ArrayList<ConstraintSet> constraintSet = new ArrayList<>();
+    XmlTag[] constraintSetTags = file.getRootTag().findSubTags(MotionSceneConstraintSet);
+    for (XmlTag tag : constraintSetTags) {
+      ConstraintSet set = (ConstraintSet)findParsed(tag);
+      if (set == null) {
+        set = parseConstraintSet(tag);
+        changed = true;
       }
+      constraintSet.add(set);
     }
-    motionSceneModel.myConstraintSets = constraintSet;
+    changed |= myConstraintSets == null || myConstraintSets.size() != constraintSet.size();
+    myConstraintSets = constraintSet;
 
     // process the Transition
-
+    int currentIndex = myTransition != null ? myTransition.indexOf(myCurrentTransition) : -1;
     XmlTag[] transitionTags = file.getRootTag().findSubTags(MotionSceneTransition);
-    if (transitionTags.length > 0) {
-      motionSceneModel.myTransition = new ArrayList<>();
-    }
-    for (XmlTag transitionTag : transitionTags) {
-      TransitionTag transition = new TransitionTag(motionSceneModel, transitionTag);
-
-      /**
-       * Populate transition with views
-       */
-      for (NlComponent view : motionSceneModel.myViews) {
-        String id = stripID(view.getId());
-        MotionSceneView motionView = transition.mViewsMap.get(id);
-        if (motionView == null) {
-          motionView = new MotionSceneView();
-        }
-        motionView.myModel = motionSceneModel;
-        motionView.mid = id;
-        transition.mViewsMap.put(motionView.mid, motionView);
+    ArrayList<TransitionTag> transitions = transitionTags.length > 0 ? new ArrayList<>() : null;
+    for (XmlTag tag : transitionTags) {
+      TransitionTag transition = viewsChanged ? null : (TransitionTag)findParsed(tag);
+      if (transition == null) {
+        transition = parseTransition(tag);
+        changed = true;
       }
+      transitions.add(transition);
+    }
+    changed |= (myTransition == null ? 0 : myTransition.size()) != transitionTags.length;
+    myTransition = transitions;
+    if (transitions == null) {
+      myCurrentTransition = null;
+    }
+    else {
+      myCurrentTransition = transitions.get(currentIndex >= 0 && currentIndex < transitions.size() ? currentIndex : transitions.size() - 1);
+    }
 
-      XmlTag tag = transitionTag;
-      parse(transition, tag.getAttributes());
-      motionSceneModel.myTransition.add(transition);
-      motionSceneModel.myCurrentTransition = transition;
-      {
-        XmlTag[] onSwipeTags = tag.findSubTags(MotionSceneOnSwipe);
-        if (onSwipeTags.length > 1) {
-          System.err.println("Should only have one tag");
-        }
-        for (XmlTag onSwipeTag1 : onSwipeTags) {
-          OnSwipeTag onSwipeTag = new OnSwipeTag(motionSceneModel, onSwipeTag1);
-          transition.myOnSwipeTag = onSwipeTag;
-          XmlTag swipeTag = onSwipeTag1;
-          parse(onSwipeTag, swipeTag.getAttributes());
-          transition.myOnSwipeTag = onSwipeTag;
-        }
+    // Remember the text of the tags just parsed for the next update
+    myParsedTags.clear();
+    for (int i = 0; i < constraintSetTags.length; i++) {
+      myParsedTags.put(constraintSetTags[i], new ParsedTag(constraintSetTags[i].getText(), constraintSet.get(i)));
+    }
+    for (int i = 0; i < transitionTags.length; i++) {
+      myParsedTags.put(transitionTags[i], new ParsedTag(transitionTags[i].getText(), transitions.get(i)));
+    }
+    return changed;
+  }
+
+  /**
+   * Returns the object parsed from this tag in the previous update if the tag did not change since then.
+   */
+  @Nullable
+  private Object findParsed(@NotNull XmlTag tag) {
+    ParsedTag parsed = myParsedTags.get(tag);
+    return parsed != null && parsed.myText.equals(tag.getText()) ? parsed.myValue : null;
+  }
+
+  @NotNull
+  private static ConstraintSet parseConstraintSet(@NotNull XmlTag frame) {
+    ConstraintSet set = new ConstraintSet(frame);
+    parse(set, frame.getAttributes());
+    XmlTag[] subTags = frame.getSubTags();
+    for (int j = 0; j < subTags.length; j++) {
+      XmlTag subtag = subTags[j];
+      if (ConstraintSetConstraint.equals(subtag.getName())) {
+        ConstraintView view = new ConstraintView(subtag);
+        view.setId(subtag.getAttributeValue("android:id"));
+        parse(view, subtag.getAttributes());
+        set.myConstraintViews.put(view.mId, view);
+      }
+    }
+    return set;
+  }
+
+  @NotNull
+  private TransitionTag parseTransition(@NotNull XmlTag transitionTag) {
+    MotionSceneModel motionSceneModel = this;
+    TransitionTag transition = new TransitionTag(motionSceneModel, transitionTag);
+
+    /**
+     * Populate transition with views
+     */
+    for (NlComponent view : motionSceneModel.myViews) {
+      String id = stripID(view.getId());
+      MotionSceneView motionView = transition.mViewsMap.get(id);
+      if (motionView == null) {
+        motionView = new MotionSceneView();
       }
+      motionView.myModel = motionSceneModel;
+      motionView.mid = id;
+      transition.mViewsMap.put(motionView.mid, motionView);
+    }
 
-      XmlTag[] tags = tag.findSubTags(MotionSceneOnClick);
-
-      for (XmlTag onClickTag : tags) {
-        OnClickTag onClick = new OnClickTag(motionSceneModel, onClickTag);
-        transition.myOnClickTags.add(onClick);
-
-        parse(onClick, onClickTag.getAttributes());
-      }
-
-      // process all the key frames
-      tagKeyFrames = tag.findSubTags(MotionSceneKeyFrameSet);
-
-      for (XmlTag tagKeyFrame : tagKeyFrames) {
-        XmlTag[] tagkey = tagKeyFrame.getSubTags();
-
-        for (XmlTag xmlTag : tagkey) {
-          XmlTag[] customTags = xmlTag.getSubTags();
-          String keyNodeName = xmlTag.getName();
-
-          KeyFrame frame = null;
-          switch (keyNodeName) {
-            case KeyPosition.TYPE:
-              frame = new KeyPosition(motionSceneModel, xmlTag);
-              break;
-            case KeyAttributes.TYPE:
-              frame = new KeyAttributes(motionSceneModel, xmlTag);
-              for (XmlTag ctag : customTags) {
-                CustomAttributes custom = new CustomAttributes((KeyAttributes)frame, ctag);
-                parse(custom, ctag.getAttributes());
-                ((KeyAttributes)frame).myCustomAttributes.add(custom);
-              }
-              break;
-            case KeyCycle.TYPE:
-              frame = new KeyCycle(motionSceneModel, xmlTag);
-              for (XmlTag ctag : customTags) {
-                CustomCycleAttributes custom = new CustomCycleAttributes((KeyCycle)frame);
-                parse(custom, ctag.getAttributes());
-                ((KeyCycle)frame).myCustomAttributes.add(custom);
-              }
-              break;
-            case KeyTimeCycle.TYPE:
-              frame = new KeyTimeCycle(motionSceneModel, xmlTag);
-              for (XmlTag ctag : customTags) {
-                CustomCycleAttributes custom = new CustomCycleAttributes((KeyTimeCycle)frame);
-                parse(custom, ctag.getAttributes());
-                ((KeyTimeCycle)frame).myCustomAttributes.add(custom);
-              }
-              break;
-
-            default:
-              System.err.println("Unknown name :" + keyNodeName);
-          }
-          if (frame != null) {
-            frame.parse(xmlTag.getAttributes());
-            motionSceneModel.addKeyFrame(frame);
-          }
-          transition.addKeyFrame(motionSceneModel, frame);
+    XmlTag tag = transitionTag;
+    parse(transition, tag.getAttributes());
+    TransitionTag previousTransition = motionSceneModel.myCurrentTransition;
+    motionSceneModel.myCurrentTransition = transition;
+    {
+      XmlTag[] onSwipeTags = tag.findSubTags(MotionSceneOnSwipe);
+      if (onSwipeTags.length > 1) {
+        System.err.println("Should only have one tag");
+      }
+      for (XmlTag onSwipeTag1 : onSwipeTags) {
+        OnSwipeTag onSwipeTag = new OnSwipeTag(motionSceneModel, onSwipeTag1);
+        transition.myOnSwipeTag = onSwipeTag;
+        XmlTag swipeTag = onSwipeTag1;
+        parse(onSwipeTag, swipeTag.getAttributes());
+        transition.myOnSwipeTag = onSwipeTag;
+      }
+    }
+
+    XmlTag[] tags = tag.findSubTags(MotionSceneOnClick);
+
+    for (XmlTag onClickTag : tags) {
+      OnClickTag onClick = new OnClickTag(motionSceneModel, onClickTag);
+      transition.myOnClickTags.add(onClick);
+
+      parse(onClick, onClickTag.getAttributes());
+    }
+
+    // process all the key frames
+    XmlTag[] tagKeyFrames = tag.findSubTags(MotionSceneKeyFrameSet);
+
+    for (XmlTag tagKeyFrame : tagKeyFrames) {
+      XmlTag[] tagkey = tagKeyFrame.getSubTags();
+
+      for (XmlTag xmlTag : tagkey) {
+        XmlTag[] customTags = xmlTag.getSubTags();
+        String keyNodeName = xmlTag.getName();
+
+        KeyFrame frame = null;
+        switch (keyNodeName) {
+          case KeyPosition.TYPE:
+            frame = new KeyPosition(motionSceneModel, xmlTag);
+            break;
+          case KeyAttributes.TYPE:
+            frame = new KeyAttributes(motionSceneModel, xmlTag);
+            for (XmlTag ctag : customTags) {
+              CustomAttributes custom = new CustomAttributes((KeyAttributes)frame, ctag);
+              parse(custom, ctag.getAttributes());
+              ((KeyAttributes)frame).myCustomAttributes.add(custom);
+            }
+            break;
+          case KeyCycle.TYPE:
+            frame = new KeyCycle(motionSceneModel, xmlTag);
+            for (XmlTag ctag : customTags) {
+              CustomCycleAttributes custom = new CustomCycleAttributes((KeyCycle)frame);
+              parse(custom, ctag.getAttributes());
+              ((KeyCycle)frame).myCustomAttributes.add(custom);
+            }
+            break;
+          case KeyTimeCycle.TYPE:
+            frame = new KeyTimeCycle(motionSceneModel, xmlTag);
+            for (XmlTag ctag : customTags) {
+              CustomCycleAttributes custom = new CustomCycleAttributes((KeyTimeCycle)frame);
+              parse(custom, ctag.getAttributes());
+              ((KeyTimeCycle)frame).myCustomAttributes.add(custom);
+            }
+            break;
+
+          default:
+            System.err.println("Unknown name :" + keyNodeName);
+        }
+        if (frame != null) {
+          frame.parse(xmlTag.getAttributes());
+          motionSceneModel.addKeyFrame(frame);
         }
+        transition.addKeyFrame(motionSceneModel, frame);
       }
     }
-    // process the OnSwipe
+    motionSceneModel.myCurrentTransition = previousTransition;
+    return transition;
+  }
 
-    return motionSceneModel;
+  /**
+   * The text of a ConstraintSet or Transition tag and the object parsed from it.
+   */
+  private static class ParsedTag {
+    final String myText;
+    final Object myValue;
+
+    ParsedTag(@NotNull String text, @NotNull Object value) {
+      myText = text;
+      myValue = value;
+    }
   }
 
   public static ArrayList<MotionSceneModel.KeyFrame> filterList(ArrayList<? extends MotionSceneModel.KeyFrame> keyList,
@@ -63,6 +63,7 @@ public class TimeLineRows extends JPanel implements Gantt.ChartElement {
   public static int ourDiamondSize = JBUIScale.scale(10);
   private boolean myInStateChange;
   private boolean myDisplayInstructions = true;
+  private int myPaintedCursorX = -1;
   static int ourBaseSelected = (Chart.ourMySelectedLineColor.getRGB() & 0xFFFFFF) | 0x77000000;
   static Color ourTransparent = new Color(ourBaseSelected & 0xFFFFFF, true);
   static Color ourLightColor = new Color(ourBaseSelected, true);
@@ -100,7 +101,11 @@ public class TimeLineRows extends JPanel implements Gantt.ChartElement {
       return;
     }
     if (reason == Reason.CURSOR_POSITION_CHANGED) {
-      repaint();
+      // The rows do not depend on the cursor, only repaint where the cursor was and where it is now
+      if (myPaintedCursorX >= 0) {
+        repaint(myPaintedCursorX, 0, 1, getHeight());
+      }
+      repaint(myChart.getCursorPosition(), 0, 1, getHeight());
       return;
     }
     if (reason == Reason.RESIZE || reason == Reason.ZOOM || reason == Reason.ADDVIEW) {
@@ -164,6 +169,7 @@ public class TimeLineRows extends JPanel implements Gantt.ChartElement {
       int x = myChart.getCursorPosition();
       g.setColor(myChart.getColorForPosition(myChart.getFramePosition()));
       g.fillRect(x, 0, 1, getHeight());
+      myPaintedCursorX = x;
     }
     if (myDisplayInstructions) {
       g.setColor(Chart.myGridColor);
@@ -920,16 +926,7 @@ public class TimeLineRows extends JPanel implements Gantt.ChartElement {
         myRowHasMarks |= !myViewElement.mKeyFrames.myKeyCycles.isEmpty();
         myRowHasMarks |= !myViewElement.mKeyFrames.myKeyPositions.isEmpty();
         if (myViewElement.myHeightPosition == 0 && myViewElement.myHeightCycle == 0 && myViewElement.myHeightAttribute == 0) {
-          int[] marked = new int[101];
-          for (MotionSceneModel.KeyPos key : myViewElement.mKeyFrames.myKeyPositions) {
-            marked[key.framePosition] = 1;
-          }
-          for (MotionSceneModel.KeyAttributes key : myViewElement.mKeyFrames.myKeyAttributes) {
-            marked[key.framePosition] |= 2;
-          }
-          for (MotionSceneModel.KeyCycle key : myViewElement.mKeyFrames.myKeyCycles) {
-            marked[key.framePosition] |= 4;
-          }
+          int[] marked = myViewElement.myKeyFrameMarks;
           pos = (myViewElement.myHeightView - ourDiamondSize) / 2 + 3;
           for (int i = 0; i < marked.length; i++) {
             int mark = marked[i];
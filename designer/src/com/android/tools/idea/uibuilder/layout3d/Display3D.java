@@ -41,6 +41,12 @@ public class Display3D extends JPanel {
   Matrix myInvMatrix;
   boolean isImageInvalid = true;
   static final boolean mPerspective = false;
+  /** While rotating, the image is rendered at a fraction of the resolution and scaled up */
+  static final int LOW_RESOLUTION_FACTOR = 2;
+  boolean myIsRotating = false;
+  BufferedImage myLowResolutionImage;
+  float[] myLowResolutionZBuffer = new float[1];
+  final TileRasterizer myRasterizer = new TileRasterizer();
 
   Vector<ActionListener> myViewChangeListener = new Vector<>();
 
@@ -100,6 +106,12 @@ public class Display3D extends JPanel {
       public void mouseReleased(MouseEvent e) {
         myViewMatrix.trackBallUP(e.getX(), e.getY());
         myInvMatrix = myViewMatrix.invers();
+        if (myIsRotating) {
+          // Render the final position at full resolution
+          myIsRotating = false;
+          isImageInvalid = true;
+          repaint();
+        }
         fireViewChanged();
        }
 
@@ -123,6 +135,7 @@ public class Display3D extends JPanel {
       public void mouseDragged(MouseEvent e) {
         myViewMatrix.trackBallMove(e.getX(), e.getY());
         myInvMatrix = myViewMatrix.invers();
+        myIsRotating = true;
         isImageInvalid = true;
         repaint();
       }
@@ -152,11 +165,11 @@ public class Display3D extends JPanel {
       Arrays.fill(rgbData, 0xFF000000);
 
       if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
+        myRasterizer.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
+                             mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
       }
       else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
+        myRasterizer.simple(myZBuffer, rgbData, w, h, myTransFormCache);
       }
 
       isImageInvalid = false;
@@ -201,6 +214,10 @@ public class Display3D extends JPanel {
       myViewMatrix.calcMatrix();
       myInvMatrix = myViewMatrix.invers();
     }
+    if (myIsRotating && isImageInvalid) {
+      paintLowResolution(g, w, h);
+      return;
+    }
     int[] rgbData = ((DataBufferInt)myImage.getRaster().getDataBuffer()).getData();
     if (isImageInvalid) {
       if (myTransFormCache == null) {
@@ -216,11 +233,11 @@ public class Display3D extends JPanel {
       Arrays.fill(rgbData, 0xFF000000);
 
       if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
+        myRasterizer.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
+                             mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
       }
       else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
+        myRasterizer.simple(myZBuffer, rgbData, w, h, myTransFormCache);
       }
 
       isImageInvalid = false;
@@ -228,4 +245,38 @@ public class Display3D extends JPanel {
     g.drawImage(myImage, 0, 0, getWidth(), getHeight(), null);
   }
 
+  /**
+   * Renders a quick preview while rotating, the full resolution image is rendered once the rotation ends.
+   */
+  private void paintLowResolution(Graphics g, int w, int h) {
+    int lw = Math.max(1, w / LOW_RESOLUTION_FACTOR);
+    int lh = Math.max(1, h / LOW_RESOLUTION_FACTOR);
+    if (myLowResolutionImage == null || myLowResolutionImage.getWidth() != lw || myLowResolutionImage.getHeight() != lh) {
+      myLowResolutionImage = ImageUtil.createImage(lw, lh, BufferedImage.TYPE_INT_RGB);
+      myLowResolutionZBuffer = new float[lw * lh];
+    }
+    if (myTransFormCache == null) {
+      myTransFormCache = new TriData(mTriData);
+    }
+    if (mPerspective) {
+      mTriData.transformP(myInvMatrix, myTransFormCache, w / 2f, h / 2f, 800);
+    } else {
+      mTriData.transform (myInvMatrix, myTransFormCache);
+    }
+    // Scaling all the axes keeps the depth order and the shading
+    float scale = 1f / LOW_RESOLUTION_FACTOR;
+    myTransFormCache.scale(new float[]{scale, scale, scale});
+
+    int[] rgbData = ((DataBufferInt)myLowResolutionImage.getRaster().getDataBuffer()).getData();
+    Arrays.fill(myLowResolutionZBuffer, Float.MAX_VALUE);
+    Arrays.fill(rgbData, 0xFF000000);
+    if (mTriData.myTexture != null) {
+      myRasterizer.toZBuff(myLowResolutionZBuffer, rgbData, lw, lh, myTransFormCache,
+                           mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
+    }
+    else {
+      myRasterizer.simple(myLowResolutionZBuffer, rgbData, lw, lh, myTransFormCache);
+    }
+    g.drawImage(myLowResolutionImage, 0, 0, getWidth(), getHeight(), null);
+  }
 }
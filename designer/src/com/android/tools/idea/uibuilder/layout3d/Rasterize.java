@@ -269,6 +269,30 @@ public class Rasterize {
                                               float tx3, float ty3,
                                               int[] texture, int tWidth, int tHeight, double[] matrix)
 
+  {
+    render_perspectiveAffineClipped(zbuff, rgb, 0, 0, w, h,
+                                    fx1, fy1, fz1,
+                                    fx2, fy2, fz2,
+                                    fx3, fy3, fz3,
+                                    tx1, ty1,
+                                    tx2, ty2,
+                                    tx3, ty3,
+                                    texture, tWidth, tHeight, matrix);
+  }
+
+  /**
+   * Same as {@link #render_perspectiveAffine} but only renders the pixels inside the given clip rectangle. The z-buffer and image
+   * only cover the clip rectangle, the pixel at (clipX, clipY) is stored at index 0.
+   */
+  static void render_perspectiveAffineClipped(float[] zbuff, int[] rgb, int clipX, int clipY, int clipW, int clipH,
+                                              float fx1, float fy1, float fz1,
+                                              float fx2, float fy2, float fz2,
+                                              float fx3, float fy3, float fz3,
+                                              float tx1, float ty1,
+                                              float tx2, float ty2,
+                                              float tx3, float ty3,
+                                              int[] texture, int tWidth, int tHeight, double[] matrix)
+
   {
     if (((fx1 - fx2) * (fy3 - fy2) - (fy1 - fy2) * (fx3 - fx2)) < 0) {
       float tmpx = fx1;
@@ -376,19 +400,19 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipY) {
+      miny = clipY;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipX) {
+      minx = clipX;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipX + clipW) {
+      maxx = clipX + clipW;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipY + clipH) {
+      maxy = clipY + clipH;
     }
-    int off = miny * w;
+    int off = (miny - clipY) * clipW - clipX;
 
     int C1 = DY12 * X1 - DX12 * Y1;
     int C2 = DY23 * X2 - DX23 * Y2;
@@ -440,7 +464,7 @@ public class Rasterize {
       CY1 += FDX12;
       CY2 += FDX23;
       CY3 += FDX31;
-      off += w;
+      off += clipW;
     }
   }
 
@@ -830,6 +854,24 @@ public class Rasterize {
                           float fx3, float fy3, float fz3,
                           int color)
 
+  {
+    flatClipped(zbuff, rgb, 0, 0, w, h,
+                fx1, fy1, fz1,
+                fx2, fy2, fz2,
+                fx3, fy3, fz3,
+                color);
+  }
+
+  /**
+   * Same as {@link #flat} but only renders the pixels inside the given clip rectangle. The z-buffer and image only cover the clip
+   * rectangle, the pixel at (clipX, clipY) is stored at index 0.
+   */
+  static void flatClipped(float[] zbuff, int[] rgb, int clipX, int clipY, int clipW, int clipH,
+                          float fx1, float fy1, float fz1,
+                          float fx2, float fy2, float fz2,
+                          float fx3, float fy3, float fz3,
+                          int color)
+
   {
     if (((fx1 - fx2) * (fy3 - fy2) - (fy1 - fy2) * (fx3 - fx2)) < 0) {
       float tmpx = fx1;
@@ -908,19 +950,19 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipY) {
+      miny = clipY;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipX) {
+      minx = clipX;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipX + clipW) {
+      maxx = clipX + clipW;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipY + clipH) {
+      maxy = clipY + clipH;
     }
-    int off = miny * w;
+    int off = (miny - clipY) * clipW - clipX;
 
     int C1 = DY12 * X1 - DX12 * Y1;
     int C2 = DY23 * X2 - DX23 * Y2;
@@ -962,7 +1004,7 @@ public class Rasterize {
       CY1 += FDX12;
       CY2 += FDX23;
       CY3 += FDX31;
-      off += w;
+      off += clipW;
     }
   }
 
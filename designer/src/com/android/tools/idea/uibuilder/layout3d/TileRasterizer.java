@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders a {@link TriData} like {@link Rasterize#toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])} and
+ * {@link Rasterize#simple(float[], int[], int, int, TriData)} but splits the image in tiles that are rendered in parallel.
+ * <p>
+ * The triangles are first binned into every tile their bounding box overlaps, keeping their order. Every tile is then rendered
+ * into its own z-buffer and image slice, initialized from and copied back to the full buffers, so the result is the same as the
+ * single threaded rendering.
+ */
+public class TileRasterizer {
+  static final int TILE_SIZE = 64;
+
+  private final ForkJoinPool myPool;
+  private final ThreadLocal<float[]> myTileZBuffer = ThreadLocal.withInitial(() -> new float[TILE_SIZE * TILE_SIZE]);
+  private final ThreadLocal<int[]> myTileRgb = ThreadLocal.withInitial(() -> new int[TILE_SIZE * TILE_SIZE]);
+
+  // Triangles of every tile, the triangles of tile t are myBins[t][0] to myBins[t][myBinSizes[t] - 1]
+  private int[][] myBins = new int[0][];
+  private int[] myBinSizes = new int[0];
+
+  public TileRasterizer() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public TileRasterizer(ForkJoinPool pool) {
+    myPool = pool;
+  }
+
+  /**
+   * Renders the triangles using the texture for the triangles of type 1 and flat shading for the others.
+   *
+   * @see Rasterize#toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])
+   */
+  public void toZBuff(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
+                      int tWidth, int tHeight, double[] matrix) {
+    render(zbuff, rgb, w, h, tri, texture, tWidth, tHeight, matrix);
+  }
+
+  /**
+   * Renders all the triangles with flat shading.
+   *
+   * @see Rasterize#simple(float[], int[], int, int, TriData)
+   */
+  public void simple(float[] zbuff, int[] rgb, int w, int h, TriData tri) {
+    render(zbuff, rgb, w, h, tri, null, 0, 0, null);
+  }
+
+  private void render(float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
+                      int tWidth, int tHeight, double[] matrix) {
+    int columns = (w + TILE_SIZE - 1) / TILE_SIZE;
+    int rows = (h + TILE_SIZE - 1) / TILE_SIZE;
+    if (columns == 0 || rows == 0) {
+      return;
+    }
+    bin(tri, columns, rows);
+    myPool.invoke(new TileAction(0, columns * rows, columns, zbuff, rgb, w, h, tri, texture, tWidth, tHeight, matrix));
+  }
+
+  /**
+   * Adds every triangle to the bins of the tiles overlapped by its bounding box.
+   */
+  private void bin(TriData tri, int columns, int rows) {
+    int tiles = columns * rows;
+    if (myBins.length < tiles) {
+      myBins = Arrays.copyOf(myBins, tiles);
+      myBinSizes = new int[tiles];
+    }
+    Arrays.fill(myBinSizes, 0);
+
+    float[] vert = tri.myVert;
+    int[] index = tri.myIndex;
+    for (int i = 0; i < index.length; i += 3) {
+      int p1 = index[i];
+      int p2 = index[i + 1];
+      int p3 = index[i + 2];
+      // Same bounds as the rasterizers, which only touch the pixels from floor(min) to ceil(max) - 1
+      float minX = Math.min(vert[p1], Math.min(vert[p2], vert[p3]));
+      float maxX = Math.max(vert[p1], Math.max(vert[p2], vert[p3]));
+      float minY = Math.min(vert[p1 + 1], Math.min(vert[p2 + 1], vert[p3 + 1]));
+      float maxY = Math.max(vert[p1 + 1], Math.max(vert[p2 + 1], vert[p3 + 1]));
+      if (Float.isNaN(minX) || Float.isNaN(minY) || Float.isNaN(maxX) || Float.isNaN(maxY)) {
+        continue;
+      }
+      int column1 = Math.max(0, (int)Math.floor(minX) / TILE_SIZE);
+      int column2 = Math.min(columns - 1, (int)Math.ceil(maxX) / TILE_SIZE);
+      int row1 = Math.max(0, (int)Math.floor(minY) / TILE_SIZE);
+      int row2 = Math.min(rows - 1, (int)Math.ceil(maxY) / TILE_SIZE);
+      for (int row = row1; row <= row2; row++) {
+        for (int column = column1; column <= column2; column++) {
+          add(row * columns + column, i);
+        }
+      }
+    }
+  }
+
+  private void add(int tile, int triangle) {
+    int[] bin = myBins[tile];
+    int size = myBinSizes[tile];
+    if (bin == null) {
+      bin = myBins[tile] = new int[16];
+    }
+    else if (size == bin.length) {
+      bin = myBins[tile] = Arrays.copyOf(bin, size * 2);
+    }
+    bin[size] = triangle;
+    myBinSizes[tile] = size + 1;
+  }
+
+  private void renderTile(int tile, int columns, float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
+                          int tWidth, int tHeight, double[] matrix) {
+    int size = myBinSizes[tile];
+    if (size == 0) {
+      return;
+    }
+    int clipX = (tile % columns) * TILE_SIZE;
+    int clipY = (tile / columns) * TILE_SIZE;
+    int clipW = Math.min(TILE_SIZE, w - clipX);
+    int clipH = Math.min(TILE_SIZE, h - clipY);
+    float[] tileZBuffer = myTileZBuffer.get();
+    int[] tileRgb = myTileRgb.get();
+    for (int y = 0; y < clipH; y++) {
+      System.arraycopy(zbuff, (clipY + y) * w + clipX, tileZBuffer, y * clipW, clipW);
+      System.arraycopy(rgb, (clipY + y) * w + clipX, tileRgb, y * clipW, clipW);
+    }
+
+    int[] bin = myBins[tile];
+    float[] vert = tri.myVert;
+    for (int n = 0; n < size; n++) {
+      int i = bin[n];
+      int p1 = tri.myIndex[i];
+      int p2 = tri.myIndex[i + 1];
+      int p3 = tri.myIndex[i + 2];
+      int type = (tri.mySurfaceType != null) ? tri.mySurfaceType[i / 3] : 0;
+      if (texture != null && type == 1) {
+        Rasterize.render_perspectiveAffineClipped(tileZBuffer, tileRgb, clipX, clipY, clipW, clipH,
+                                                  vert[p1], vert[p1 + 1], vert[p1 + 2],
+                                                  vert[p2], vert[p2 + 1], vert[p2 + 2],
+                                                  vert[p3], vert[p3 + 1], vert[p3 + 2],
+                                                  tri.myTexture_uv[p1], tri.myTexture_uv[p1 + 1],
+                                                  tri.myTexture_uv[p2], tri.myTexture_uv[p2 + 1],
+                                                  tri.myTexture_uv[p3], tri.myTexture_uv[p3 + 1],
+                                                  texture, tWidth, tHeight, matrix);
+      }
+      else {
+        Rasterize.flatClipped(tileZBuffer, tileRgb, clipX, clipY, clipW, clipH,
+                              vert[p1], vert[p1 + 1], vert[p1 + 2],
+                              vert[p2], vert[p2 + 1], vert[p2 + 2],
+                              vert[p3], vert[p3 + 1], vert[p3 + 2],
+                              (type == 0) ? Rasterize.BLUE : Rasterize.GRAY);
+      }
+    }
+
+    for (int y = 0; y < clipH; y++) {
+      System.arraycopy(tileZBuffer, y * clipW, zbuff, (clipY + y) * w + clipX, clipW);
+      System.arraycopy(tileRgb, y * clipW, rgb, (clipY + y) * w + clipX, clipW);
+    }
+  }
+
+  /**
+   * Renders a range of tiles, splitting it until it is small enough.
+   */
+  private class TileAction extends RecursiveAction {
+    private static final int TILES_PER_TASK = 4;
+    private final int myStart;
+    private final int myEnd;
+    private final int myColumns;
+    private final float[] myZBuffer;
+    private final int[] myRgb;
+    private final int myWidth;
+    private final int myHeight;
+    private final TriData myTri;
+    private final int[] myTexture;
+    private final int myTextureWidth;
+    private final int myTextureHeight;
+    private final double[] myMatrix;
+
+    TileAction(int start, int end, int columns, float[] zbuff, int[] rgb, int w, int h, TriData tri, int[] texture,
+               int tWidth, int tHeight, double[] matrix) {
+      myStart = start;
+      myEnd = end;
+      myColumns = columns;
+      myZBuffer = zbuff;
+      myRgb = rgb;
+      myWidth = w;
+      myHeight = h;
+      myTri = tri;
+      myTexture = texture;
+      myTextureWidth = tWidth;
+      myTextureHeight = tHeight;
+      myMatrix = matrix;
+    }
+
+    @Override
+    protected void compute() {
+      if (myEnd - myStart <= TILES_PER_TASK) {
+        for (int tile = myStart; tile < myEnd; tile++) {
+          renderTile(tile, myColumns, myZBuffer, myRgb, myWidth, myHeight, myTri, myTexture, myTextureWidth, myTextureHeight, myMatrix);
+        }
+        return;
+      }
+      int middle = (myStart + myEnd) >>> 1;
+      invokeAll(split(myStart, middle), split(middle, myEnd));
+    }
+
+    private TileAction split(int start, int end) {
+      return new TileAction(start, end, myColumns, myZBuffer, myRgb, myWidth, myHeight, myTri, myTexture, myTextureWidth,
+                            myTextureHeight, myMatrix);
+    }
+  }
+}
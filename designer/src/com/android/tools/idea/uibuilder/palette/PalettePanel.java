@@ -84,6 +84,7 @@ import java.awt.event.MouseListener;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
@@ -114,6 +115,7 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
   private final CategoryList myCategoryList;
   private final JScrollPane myCategoryScrollPane;
   private final ItemList myItemList;
+  private final PreviewProvider myPreviewProvider;
   private final AddToDesignAction myAddToDesignAction;
   private final FavoriteAction myFavoriteAction;
   private final ComponentHelpAction myAndroidDocAction;
@@ -137,7 +139,10 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
     myProject = project;
     myDependencyManager = dependencyManager;
     myDataModel = new DataModel(this, myDependencyManager);
-    myDependencyManager.addDependencyChangeListener(() -> repaint());
+    myDependencyManager.addDependencyChangeListener(() -> {
+      repaint();
+      prefetchPreviews();
+    });
     myCopyProvider = new CopyProviderImpl();
     Disposer.register(this, dependencyManager);
 
@@ -161,10 +166,10 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
     myCategoryList.addKeyListener(keyListener);
     myCategoryList.setBorder(JBUI.Borders.customLine(JBColor.border(), 0, 0, 0, 1));
 
-    PreviewProvider provider = new PreviewProvider(() -> myDesignSurface.get(), myDependencyManager);
-    Disposer.register(this, provider);
+    myPreviewProvider = new PreviewProvider(() -> myDesignSurface.get(), myDependencyManager);
+    Disposer.register(this, myPreviewProvider);
     myItemList.setModel(myDataModel.getItemListModel());
-    myItemList.setTransferHandler(new ItemTransferHandler(provider, myItemList::getSelectedValue));
+    myItemList.setTransferHandler(new ItemTransferHandler(myPreviewProvider, myItemList::getSelectedValue));
     if (!GraphicsEnvironment.isHeadless()) {
       myItemList.setDragEnabled(true);
     }
@@ -313,6 +318,19 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
     myDataModel.categorySelectionChanged(newSelection);
     myLastSelectedGroup = newSelection;
     myItemList.setSelectedIndex(0);
+    prefetchPreviews();
+  }
+
+  /**
+   * Renders the drag previews of the items currently shown in the background.
+   */
+  private void prefetchPreviews() {
+    ItemListModel model = myDataModel.getItemListModel();
+    List<Palette.Item> items = new ArrayList<>(model.getSize());
+    for (int index = 0; index < model.getSize(); index++) {
+      items.add(model.getElementAt(index));
+    }
+    myPreviewProvider.prefetch(items);
   }
 
   @NotNull
@@ -401,6 +419,7 @@ public class PalettePanel extends AdtSecondaryPanel implements Disposable, DataP
             setCategoryListVisible(false);
             myDataModel.categorySelectionChanged(DataModel.COMMON);
             myItemList.setSelectedIndex(0);
+            prefetchPreviews();
           }
         }, EdtExecutor.INSTANCE);
     }
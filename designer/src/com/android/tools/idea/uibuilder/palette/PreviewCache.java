@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.palette;
+
+import com.android.annotations.VisibleForTesting;
+import com.android.annotations.concurrency.GuardedBy;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.diagnostic.Logger;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of the images rendered by {@link PreviewProvider}.
+ * <p>
+ * The images are kept in memory for the most recently used keys, and written as PNG files to a directory shared
+ * between IDE sessions. The key includes everything the rendering depends on, see {@link #createKey}, so entries
+ * of an old theme or an old set of dependencies are simply not found again. They are evicted from memory on
+ * {@link #clearMemory()} and the oldest files are deleted when the directory grows too large.
+ * <p>
+ * {@link #get} reads the disk and must not be called on the UI thread, which should use {@link #getIfInMemory} instead.
+ */
+final class PreviewCache {
+  private static final int MAX_MEMORY_ENTRIES = 100;
+  @VisibleForTesting
+  static final int MAX_DISK_ENTRIES = 500;
+  /**
+   * Number of writes between two checks of the size of the directory, so that it is not listed on every write.
+   */
+  @VisibleForTesting
+  static final int PRUNE_INTERVAL = 50;
+  private static final String EXTENSION = ".png";
+
+  @Nullable private final File myDirectory;
+  private final Executor myDiskExecutor;
+  private final AtomicInteger myWriteCount = new AtomicInteger();
+
+  @GuardedBy("myImages")
+  private final Map<String, BufferedImage> myImages = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+      return size() > MAX_MEMORY_ENTRIES;
+    }
+  };
+
+  /**
+   * @param directory    the directory of the images kept between sessions or null to only keep them in memory
+   * @param diskExecutor the executor used to write the images to disk
+   */
+  PreviewCache(@Nullable File directory, @NotNull Executor diskExecutor) {
+    myDirectory = directory;
+    myDiskExecutor = diskExecutor;
+  }
+
+  /**
+   * Returns the key of the preview of an item.
+   *
+   * @param xml          the drag preview XML of the palette item
+   * @param theme        the theme used for rendering
+   * @param themeStamp   a hash of the content of the theme, which changes when the styles of the project are edited
+   * @param apiLevel     the API level of the rendering target
+   * @param density      the density in dpi of the rendering device
+   * @param shadowSize   the size in pixels of the shadow included in the image
+   * @param dependencies a description of the libraries of the module, see {@link PreviewProvider}
+   */
+  @NotNull
+  static String createKey(@NotNull String xml,
+                          @NotNull String theme,
+                          long themeStamp,
+                          int apiLevel,
+                          int density,
+                          int shadowSize,
+                          @NotNull String dependencies) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(xml, StandardCharsets.UTF_8);
+    hasher.putString(theme, StandardCharsets.UTF_8);
+    hasher.putLong(themeStamp);
+    hasher.putInt(apiLevel);
+    hasher.putInt(density);
+    hasher.putInt(shadowSize);
+    hasher.putString(dependencies, StandardCharsets.UTF_8);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns the image of the key if it is kept in memory, without reading the disk.
+   */
+  @Nullable
+  BufferedImage getIfInMemory(@NotNull String key) {
+    synchronized (myImages) {
+      return myImages.get(key);
+    }
+  }
+
+  /**
+   * Returns the image of the key, reading it from disk if it is not kept in memory.
+   */
+  @Nullable
+  BufferedImage get(@NotNull String key) {
+    BufferedImage cached = getIfInMemory(key);
+    if (cached != null) {
+      return cached;
+    }
+    File file = getFile(key);
+    if (file == null || !file.isFile()) {
+      return null;
+    }
+    BufferedImage image;
+    try {
+      image = ImageIO.read(file);
+    }
+    catch (IOException e) {
+      Logger.getInstance(PreviewCache.class).debug(e);
+      return null;
+    }
+    if (image == null) {
+      return null;
+    }
+    synchronized (myImages) {
+      myImages.put(key, image);
+    }
+    return image;
+  }
+
+  void put(@NotNull String key, @NotNull BufferedImage image) {
+    synchronized (myImages) {
+      myImages.put(key, image);
+    }
+    File file = getFile(key);
+    if (file != null) {
+      myDiskExecutor.execute(() -> write(file, image));
+    }
+  }
+
+  /**
+   * Drops the images kept in memory, the images on disk are left to be found again by key.
+   */
+  void clearMemory() {
+    synchronized (myImages) {
+      myImages.clear();
+    }
+  }
+
+  @Nullable
+  private File getFile(@NotNull String key) {
+    return myDirectory != null ? new File(myDirectory, key + EXTENSION) : null;
+  }
+
+  private void write(@NotNull File file, @NotNull BufferedImage image) {
+    assert myDirectory != null;
+    try {
+      Files.createDirectories(myDirectory.toPath());
+      // Write to a temporary file first so that other caches sharing the directory never read a partial image
+      File temporary = File.createTempFile("preview", ".tmp", myDirectory);
+      try {
+        ImageIO.write(image, "png", temporary);
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      finally {
+        Files.deleteIfExists(temporary.toPath());
+      }
+    }
+    catch (IOException e) {
+      Logger.getInstance(PreviewCache.class).debug(e);
+      return;
+    }
+    // The first write of the session also prunes, in case the directory grew in previous sessions
+    if (myWriteCount.getAndIncrement() % PRUNE_INTERVAL == 0) {
+      prune();
+    }
+  }
+
+  private void prune() {
+    assert myDirectory != null;
+    File[] files = myDirectory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+    if (files == null || files.length <= MAX_DISK_ENTRIES) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (int i = 0; i < files.length - MAX_DISK_ENTRIES; i++) {
+      //noinspection ResultOfMethodCallIgnored
+      files[i].delete();
+    }
+  }
+}
@@ -18,9 +18,14 @@ package com.android.tools.idea.uibuilder.palette;
 import static com.android.tools.idea.uibuilder.api.PaletteComponentHandler.NO_PREVIEW;
 
 import com.android.annotations.VisibleForTesting;
+import com.android.annotations.concurrency.GuardedBy;
+import com.android.ide.common.rendering.api.ResourceValue;
 import com.android.ide.common.rendering.api.SessionParams;
+import com.android.ide.common.rendering.api.StyleItemResourceValue;
 import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.ide.common.resources.ResourceResolver;
 import com.android.resources.ResourceFolderType;
+import com.android.sdklib.IAndroidTarget;
 import com.android.tools.adtui.common.SwingCoordinate;
 import com.android.tools.idea.common.api.InsertType;
 import com.android.tools.idea.common.model.AndroidCoordinate;
@@ -30,18 +35,28 @@ import com.android.tools.idea.common.model.NlModel;
 import com.android.tools.idea.common.surface.DesignSurface;
 import com.android.tools.idea.common.surface.SceneView;
 import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.editors.theme.ResolutionUtils;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderResult;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderTask;
 import com.android.tools.idea.rendering.imagepool.ImagePool;
+import com.android.tools.idea.res.ResourceRepositoryManager;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.Futures;
 import com.intellij.ide.highlighter.XmlFileType;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.OrderEnumerator;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiFileFactory;
@@ -51,6 +66,7 @@ import com.intellij.psi.xml.XmlTag;
 import com.intellij.ui.scale.ScaleContext;
 import com.intellij.util.IconUtil;
 import com.intellij.util.IncorrectOperationException;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.ImageUtil;
 import com.intellij.util.ui.StartupUiUtil;
 import com.intellij.util.ui.UIUtil;
@@ -58,10 +74,18 @@ import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.awt.image.RasterFormatException;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import javax.swing.Icon;
 import javax.swing.JComponent;
@@ -73,6 +97,10 @@ import org.jetbrains.annotations.Nullable;
  * Creates a preview image that is used when dragging an item from the palette.
  * If possible a image is generated from the actual Android view. Otherwise we
  * simply generate the image from the icon used in the palette.
+ * <p>
+ * When {@link StudioFlags#NELE_PALETTE_PREVIEW_CACHE} is enabled the rendered images are kept in a {@link PreviewCache},
+ * and {@link #prefetch(List)} renders the items of the selected category in the background so that dragging them
+ * does not have to wait for layoutlib.
  */
 public class PreviewProvider implements Disposable {
   @AndroidCoordinate
@@ -88,17 +116,52 @@ public class PreviewProvider implements Disposable {
                                               "    android:orientation=\"vertical\">\n" +
                                               "  %2$s\n" +
                                               "</LinearLayout>\n";
+  private static final String CACHE_DIRECTORY = "palette-previews";
 
   private final Supplier<DesignSurface> myDesignSurfaceSupplier;
   private final DependencyManager myDependencyManager;
+  private final ReentrantLock myRenderLock = new ReentrantLock();
+  @GuardedBy("myRenderLock")
   private RenderTask myRenderTask;
 
+  @Nullable private final PreviewCache myCache;
+  @Nullable private final ExecutorService myPrefetchExecutor;
+  private final AtomicInteger myPrefetchGeneration = new AtomicInteger();
+  @GuardedBy("this")
+  private Module myDependenciesModule;
+  @GuardedBy("this")
+  private String myDependencies;
+  @GuardedBy("this")
+  private Module myThemeStampModule;
+  @GuardedBy("this")
+  private String myThemeStampTheme;
+  @GuardedBy("this")
+  private long myThemeStampModificationCount;
+  @GuardedBy("this")
+  private long myThemeStamp;
+  private volatile boolean myDisposed;
+
   @VisibleForTesting
   public long myRenderTimeoutSeconds = 1L;
 
   public PreviewProvider(@NotNull Supplier<DesignSurface> supplier, @NotNull DependencyManager manager) {
+    this(supplier, manager, StudioFlags.NELE_PALETTE_PREVIEW_CACHE.get()
+                            ? new PreviewCache(new File(PathManager.getSystemPath(), CACHE_DIRECTORY), AppExecutorUtil.getAppExecutorService())
+                            : null);
+  }
+
+  @VisibleForTesting
+  PreviewProvider(@NotNull Supplier<DesignSurface> supplier, @NotNull DependencyManager manager, @Nullable PreviewCache cache) {
     myDesignSurfaceSupplier = supplier;
     myDependencyManager = manager;
+    myCache = cache;
+    if (cache != null) {
+      myPrefetchExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Palette Preview Prefetch", 1);
+      myDependencyManager.addDependencyChangeListener(this::dependenciesChanged);
+    }
+    else {
+      myPrefetchExecutor = null;
+    }
   }
 
   @NotNull
@@ -129,21 +192,106 @@ public class PreviewProvider implements Disposable {
     return new ImageAndDimension(bufferedImage, size);
   }
 
+  /**
+   * Renders the given items in the background, one at a time, so that their previews are in the cache when they are
+   * dragged. A new call cancels the items of the previous one that have not been rendered yet.
+   */
+  public void prefetch(@NotNull List<Palette.Item> items) {
+    if (myCache == null || myPrefetchExecutor == null || myDisposed) {
+      return;
+    }
+    int generation = myPrefetchGeneration.incrementAndGet();
+    List<Palette.Item> pending = new ArrayList<>(items);
+    myPrefetchExecutor.execute(() -> {
+      for (Palette.Item item : pending) {
+        if (myDisposed || generation != myPrefetchGeneration.get()) {
+          return;
+        }
+        if (!myDependencyManager.needsLibraryLoad(item)) {
+          prefetch(item);
+        }
+      }
+    });
+  }
+
+  private void prefetch(@NotNull Palette.Item item) {
+    assert myCache != null;
+    SceneView sceneView = getSceneView();
+    String xml = item.getDragPreviewXml();
+    if (sceneView == null || xml.equals(NO_PREVIEW)) {
+      return;
+    }
+    String key = getCacheKey(sceneView, xml);
+    if (key == null || myCache.get(key) != null) {
+      return;
+    }
+    // The component is created with a write action, only the rendering itself happens on this thread
+    Ref<String> previewXml = new Ref<>();
+    ApplicationManager.getApplication().invokeAndWait(() -> {
+      if (!myDisposed) {
+        previewXml.set(createPreviewXml(sceneView, xml));
+      }
+    }, ModalityState.defaultModalityState());
+    if (previewXml.isNull()) {
+      return;
+    }
+    BufferedImage image = renderPreviewXml(sceneView, previewXml.get(), true);
+    if (image != null) {
+      myCache.put(key, image);
+    }
+  }
+
   @Nullable
   @VisibleForTesting
   BufferedImage renderDragImage(@NotNull Palette.Item item) {
     SceneView sceneView = getSceneView();
     if (sceneView == null) {
-      disposeRenderTaskNoWait();
+      // The task is disposed later by the next render or by dispose() if a prefetch is using it
+      if (myRenderLock.tryLock()) {
+        try {
+          disposeRenderTaskNoWait();
+        }
+        finally {
+          myRenderLock.unlock();
+        }
+      }
       return null;
     }
 
-    XmlElementFactory elementFactory = XmlElementFactory.getInstance(sceneView.getModel().getProject());
     String xml = item.getDragPreviewXml();
     if (xml.equals(NO_PREVIEW)) {
       return null;
     }
 
+    // Only look in memory, the images on disk are read by the prefetch so that the UI thread never waits for the disk.
+    // If the item was not prefetched yet it is rendered right away.
+    String key = myCache != null ? getCacheKey(sceneView, xml) : null;
+    if (key != null) {
+      BufferedImage cached = myCache.getIfInMemory(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    String previewXml = createPreviewXml(sceneView, xml);
+    if (previewXml == null) {
+      return null;
+    }
+    // Never wait for a prefetch on the UI thread, the icon of the item is shown instead
+    BufferedImage image = renderPreviewXml(sceneView, previewXml, false);
+    if (key != null && image != null) {
+      myCache.put(key, image);
+    }
+    return image;
+  }
+
+  /**
+   * Creates the component of the item and returns the XML to render, with the parent required by some components.
+   * This must be called from the UI thread.
+   */
+  @Nullable
+  private static String createPreviewXml(@NotNull SceneView sceneView, @NotNull String xml) {
+    XmlElementFactory elementFactory = XmlElementFactory.getInstance(sceneView.getModel().getProject());
     XmlTag tag;
 
     try {
@@ -164,9 +312,32 @@ public class PreviewProvider implements Disposable {
     }
 
     // Some components require a parent to render correctly.
-    xml = String.format(LINEAR_LAYOUT, CONTAINER_ID, component.getTagDeprecated().getText());
+    return String.format(LINEAR_LAYOUT, CONTAINER_ID, component.getTagDeprecated().getText());
+  }
 
-    RenderResult result = renderImage(myRenderTimeoutSeconds, getRenderTask(model.getConfiguration()), xml);
+  /**
+   * Renders the given XML with the render task shared between the drag and the prefetch. If {@code waitForRenderTask} is false and the
+   * task is in use, returns null right away.
+   */
+  @Nullable
+  private BufferedImage renderPreviewXml(@NotNull SceneView sceneView, @NotNull String xml, boolean waitForRenderTask) {
+    NlModel model = sceneView.getSceneManager().getModel();
+    RenderResult result;
+    if (waitForRenderTask) {
+      myRenderLock.lock();
+    }
+    else if (!myRenderLock.tryLock()) {
+      return null;
+    }
+    try {
+      if (myDisposed) {
+        return null;
+      }
+      result = renderImage(myRenderTimeoutSeconds, getRenderTask(model.getConfiguration()), xml);
+    }
+    finally {
+      myRenderLock.unlock();
+    }
     if (result == null || !result.hasImage()) {
       return null;
     }
@@ -204,6 +375,85 @@ public class PreviewProvider implements Disposable {
     }
   }
 
+  /**
+   * Returns the key of the preview in {@link #myCache} or null if the preview can not be cached.
+   */
+  @Nullable
+  private String getCacheKey(@NotNull SceneView sceneView, @NotNull String xml) {
+    Configuration configuration = sceneView.getSceneManager().getModel().getConfiguration();
+    Module module = configuration.getModule();
+    IAndroidTarget target = configuration.getTarget();
+    AndroidFacet facet = module != null ? AndroidFacet.getInstance(module) : null;
+    if (facet == null || target == null) {
+      return null;
+    }
+    return PreviewCache.createKey(xml,
+                                  configuration.getTheme(),
+                                  getThemeStamp(configuration, facet),
+                                  target.getVersion().getFeatureLevel(),
+                                  configuration.getDensity().getDpiValue(),
+                                  Coordinates.getSwingDimension(sceneView, SHADOW_SIZE),
+                                  getDependencies(module));
+  }
+
+  /**
+   * Returns a description of the libraries used when rendering the previews of the module. It is part of the cache keys,
+   * so that previews rendered with other versions of the libraries are not used, even from a previous session.
+   */
+  @NotNull
+  private synchronized String getDependencies(@NotNull Module module) {
+    if (myDependencies == null || myDependenciesModule != module) {
+      String[] urls = ReadAction.compute(() -> OrderEnumerator.orderEntries(module).librariesOnly().recursively().classes().getUrls());
+      myDependencies = module.getName() + File.pathSeparator + String.join(File.pathSeparator, urls);
+      myDependenciesModule = module;
+    }
+    return myDependencies;
+  }
+
+  /**
+   * Returns a hash of the resolved attributes of the theme of the configuration. It is part of the cache keys, so that
+   * previews are rendered again when the styles or the values they refer to are edited, even between sessions.
+   * The hash is only computed again when the resources of the module change.
+   */
+  private synchronized long getThemeStamp(@NotNull Configuration configuration, @NotNull AndroidFacet facet) {
+    String theme = configuration.getTheme();
+    long modificationCount = ResourceRepositoryManager.getAppResources(facet).getModificationCount();
+    if (myThemeStampModule != facet.getModule() ||
+        !theme.equals(myThemeStampTheme) ||
+        myThemeStampModificationCount != modificationCount) {
+      myThemeStamp = ReadAction.compute(() -> computeThemeStamp(configuration.getResourceResolver(), theme));
+      myThemeStampModule = facet.getModule();
+      myThemeStampTheme = theme;
+      myThemeStampModificationCount = modificationCount;
+    }
+    return myThemeStamp;
+  }
+
+  private static long computeThemeStamp(@NotNull ResourceResolver resolver, @NotNull String theme) {
+    Map<String, String> values = new TreeMap<>();
+    for (StyleItemResourceValue item : ResolutionUtils.getThemeAttributes(resolver, theme)) {
+      ResourceValue resolved = resolver.resolveResValue(item);
+      values.put(ResolutionUtils.getQualifiedItemAttrName(item), resolved != null ? resolved.getValue() : null);
+    }
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    values.forEach((name, value) -> {
+      hasher.putString(name, StandardCharsets.UTF_8);
+      hasher.putString(String.valueOf(value), StandardCharsets.UTF_8);
+    });
+    return hasher.hash().asLong();
+  }
+
+  private void dependenciesChanged() {
+    synchronized (this) {
+      myDependencies = null;
+      myDependenciesModule = null;
+      myThemeStampModule = null;
+    }
+    if (myCache != null) {
+      myCache.clearMemory();
+    }
+  }
+
   @Nullable
   private static RenderResult renderImage(long renderTimeoutSeconds, @Nullable RenderTask renderTask, @NotNull String xml) {
     if (renderTask == null) {
@@ -242,6 +492,7 @@ public class PreviewProvider implements Disposable {
     return surface != null ? surface.getCurrentSceneView() : null;
   }
 
+  // Must be called with myRenderLock held.
   @Nullable
   private RenderTask getRenderTask(@NotNull Configuration configuration) {
     Module module = configuration.getModule();
@@ -268,13 +519,25 @@ public class PreviewProvider implements Disposable {
 
   @Override
   public void dispose() {
-    if (myRenderTask != null) {
-      // Wait until async dispose finishes
-      Futures.getUnchecked(myRenderTask.dispose());
-      myRenderTask = null;
+    myDisposed = true;
+    myPrefetchGeneration.incrementAndGet();
+    if (myPrefetchExecutor != null) {
+      myPrefetchExecutor.shutdownNow();
+    }
+    myRenderLock.lock();
+    try {
+      if (myRenderTask != null) {
+        // Wait until async dispose finishes
+        Futures.getUnchecked(myRenderTask.dispose());
+        myRenderTask = null;
+      }
+    }
+    finally {
+      myRenderLock.unlock();
     }
   }
 
+  // Must be called with myRenderLock held.
   private void disposeRenderTaskNoWait() {
     if (myRenderTask != null) {
       myRenderTask.dispose();
@@ -46,6 +46,7 @@ import com.android.tools.idea.configurations.Configuration;
 import com.android.tools.idea.configurations.ConfigurationListener;
 import com.android.tools.idea.rendering.Locale;
 import com.android.tools.idea.rendering.RenderResult;
+import com.android.tools.idea.rendering.RenderResultCache;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderSettings;
 import com.android.tools.idea.rendering.RenderTask;
@@ -134,6 +135,10 @@ public class LayoutlibSceneManager extends SceneManager {
   // Protects all accesses to the myRenderTask reference. RenderTask calls to render and layout do not need to be protected
   // since RenderTask is able to handle those safely.
   private final Object myRenderingTaskLock = new Object();
+  // True when the current result was served from the RenderResultCache, so myRenderTask might have been inflated with a different
+  // content or configuration. The task is kept and inflated again when it is next needed.
+  @GuardedBy("myRenderingTaskLock")
+  private boolean myRenderTaskStale;
   private ResourceNotificationManager.ResourceVersion myRenderedVersion;
   // Protects all read/write accesses to the myRenderResult reference
   private final ReentrantReadWriteLock myRenderResultLock = new ReentrantReadWriteLock();
@@ -368,6 +373,15 @@ public class LayoutlibSceneManager extends SceneManager {
     return mySecondarySceneView;
   }
 
+  @Override
+  @NotNull
+  public ImmutableList<SceneView> getSceneViews() {
+    if (mySecondarySceneView == null) {
+      return super.getSceneViews();
+    }
+    return ImmutableList.of(getSceneView(), mySecondarySceneView);
+  }
+
   @Override
   protected void updateFromComponent(SceneComponent sceneComponent) {
     super.updateFromComponent(sceneComponent);
@@ -637,6 +651,19 @@ public class LayoutlibSceneManager extends SceneManager {
    */
   @Override
   public void layout(boolean animate) {
+    boolean stale;
+    synchronized (myRenderingTaskLock) {
+      stale = myRenderTaskStale;
+    }
+    if (stale) {
+      try {
+        inflate(false).get();
+      }
+      catch (InterruptedException | ExecutionException e) {
+        Logger.getInstance(LayoutlibSceneManager.class).warn("Unable to inflate the layout before layout()", e);
+      }
+    }
+
     Future<RenderResult> futureResult;
     synchronized (myRenderingTaskLock) {
       if (myRenderTask == null) {
@@ -773,7 +800,7 @@ public class LayoutlibSceneManager extends SceneManager {
     LayoutPullParsers.saveFileIfNecessary(getModel().getFile());
 
     synchronized (myRenderingTaskLock) {
-      if (myRenderTask != null && !force) {
+      if (myRenderTask != null && !myRenderTaskStale && !force) {
         // No need to inflate
         return CompletableFuture.completedFuture(false);
       }
@@ -807,6 +834,7 @@ public class LayoutlibSceneManager extends SceneManager {
                   myRenderTask.dispose();
                 }
                 myRenderTask = newTask;
+                myRenderTaskStale = false;
               }
             }
           })
@@ -872,6 +900,20 @@ public class LayoutlibSceneManager extends SceneManager {
    * {@link ModelListener#modelDerivedDataChanged(NlModel)}.
    */
   protected CompletableFuture<Void> updateModel() {
+    RenderResult cachedResult = getCachedRenderResult(computeRenderResultCacheKey());
+    if (cachedResult != null) {
+      markRenderTaskStale();
+      updateHierarchy(cachedResult);
+      myRenderResultLock.writeLock().lock();
+      try {
+        updateCachedRenderResult(cachedResult);
+      }
+      finally {
+        myRenderResultLock.writeLock().unlock();
+      }
+      return CompletableFuture.runAsync(this::notifyListenersModelUpdateComplete, PooledThreadExecutor.INSTANCE);
+    }
+
     return inflate(true)
       .whenCompleteAsync((result, exception) -> notifyListenersModelUpdateComplete(), PooledThreadExecutor.INSTANCE)
       .thenApply(result -> null);
@@ -924,7 +966,24 @@ public class LayoutlibSceneManager extends SceneManager {
       getModel().resetLastChange();
 
       long renderStartTimeMs = System.currentTimeMillis();
-      return renderImpl()
+      RenderResultCache.CacheKey cacheKey = computeRenderResultCacheKey();
+      RenderResult cachedResult = getCachedRenderResult(cacheKey);
+      CompletableFuture<RenderResult> renderFuture;
+      if (cachedResult != null) {
+        markRenderTaskStale();
+        updateHierarchy(cachedResult);
+        renderFuture = CompletableFuture.completedFuture(cachedResult);
+      }
+      else {
+        renderFuture = renderImpl();
+        if (cacheKey != null) {
+          renderFuture = renderFuture.thenApply(result -> {
+            RenderResultCache.getInstance(getModel().getProject()).put(cacheKey, result);
+            return result;
+          });
+        }
+      }
+      return renderFuture
         .thenApply(result -> {
           if (result == null) {
             completeRender();
@@ -987,6 +1046,56 @@ public class LayoutlibSceneManager extends SceneManager {
     myIsCurrentlyRendering.set(false);
   }
 
+  /**
+   * Returns the {@link RenderResultCache.CacheKey} for the current content and configuration of the model or null if the render result
+   * cache is disabled.
+   */
+  @Nullable
+  private RenderResultCache.CacheKey computeRenderResultCacheKey() {
+    if (!RenderResultCache.isEnabled() || isRenderingAnimationFrame()) {
+      return null;
+    }
+    NlModel model = getModel();
+    if (model.getFacet().isDisposed()) {
+      return null;
+    }
+    return RenderResultCache.computeKey(model.getFacet(),
+                                        model.getFile(),
+                                        model.getConfiguration(),
+                                        myRenderSettings.getShowDecorations(),
+                                        myRenderSettings.getQuality(),
+                                        getDesignSurface().getAdaptiveIconShape().getPathDescription());
+  }
+
+  /**
+   * Animations render a different frame for the same content so they can not be served from the render result cache.
+   */
+  private boolean isRenderingAnimationFrame() {
+    return myElapsedFrameTimeMs != -1;
+  }
+
+  @Nullable
+  private RenderResult getCachedRenderResult(@Nullable RenderResultCache.CacheKey key) {
+    if (key == null) {
+      return null;
+    }
+    NlModel model = getModel();
+    return RenderResultCache.getInstance(model.getProject()).get(key, model.getFile(), model.getModule());
+  }
+
+  /**
+   * Called when a result is served from the {@link RenderResultCache}. The current render task might have been inflated with a different
+   * content or configuration than the cached result. It is kept, so that {@link #layout(boolean)} keeps working, but the next render that
+   * misses the cache, or the next layout, inflates the layout again instead of using the stale task.
+   */
+  private void markRenderTaskStale() {
+    synchronized (myRenderingTaskLock) {
+      if (myRenderTask != null) {
+        myRenderTaskStale = true;
+      }
+    }
+  }
+
   @NotNull
   private CompletableFuture<RenderResult> renderImpl() {
     return inflate(false)
@@ -29,6 +29,8 @@ import static com.android.tools.idea.uibuilder.handlers.constraint.ConstraintCom
  */
 public class ConstraintSet {
   private ArrayList<ConstrainedWidget> myWidgets;
+  // Widgets taken into account when validating and calculating the error, all of them unless only a group of widgets is evaluated
+  private ArrayList<ConstrainedWidget> myEvaluatedWidgets;
   private ScoutWidget myParentWidget;
   private double myProbability;
   private ArrayList<Chain> myChains;
@@ -54,6 +56,24 @@ public class ConstraintSet {
       myWidgets.add(widget);
       myProbability += widget.getCost();
     }
+    myEvaluatedWidgets = myWidgets;
+  }
+
+  /**
+   * Builds a constraint set that only validates and calculates the error of a group of widgets. The connections of the widgets
+   * in the group must only target other widgets of the group or the parent, so the result is the same as for the complete set.
+   *
+   * @param cWidgets   indices of the constrained widgets to be used for this set
+   * @param validConns list of all valid connected constrained widgets
+   * @param parent     parent scout widget
+   * @param group      indices of the widgets to evaluate
+   */
+  ConstraintSet(int[] cWidgets, ArrayList<ArrayList<ConstrainedWidget>> validConns, ScoutWidget parent, int[] group) {
+    this(cWidgets, validConns, parent);
+    myEvaluatedWidgets = new ArrayList<>(group.length);
+    for (int widget : group) {
+      myEvaluatedWidgets.add(myWidgets.get(widget));
+    }
   }
 
   /**
@@ -102,6 +122,7 @@ public class ConstraintSet {
                                    wid);
       myWidgets.add(temp);
     }
+    myEvaluatedWidgets = myWidgets;
   }
 
   /**
@@ -151,12 +172,12 @@ public class ConstraintSet {
    */
   boolean hasCycles() {
     boolean hasCycles = false;
-    ArrayList<ConstrainedWidget> remaining = new ArrayList<>(myWidgets);
+    ArrayList<ConstrainedWidget> remaining = new ArrayList<>(myEvaluatedWidgets);
     Stack<ConstrainedWidget> visited = new Stack<>();
     while (remaining.size() != 0 && !hasCycles) {
       hasCycles |= searchCycles(remaining, visited, remaining.get(0), Direction.ORIENTATION_VERTICAL);
     }
-    remaining.addAll(myWidgets);
+    remaining.addAll(myEvaluatedWidgets);
     visited.empty();
     while (remaining.size() != 0 && !hasCycles) {
       hasCycles |= searchCycles(remaining, visited, remaining.get(0), Direction.ORIENTATION_HORIZONTAL);
@@ -256,7 +277,7 @@ public class ConstraintSet {
    * @return
    */
   public boolean isValidCentered() {
-    for (ConstrainedWidget wid : myWidgets) {
+    for (ConstrainedWidget wid : myEvaluatedWidgets) {
       for (Direction anchor : Direction.getAllDirections()) {
         // If there's a backwards connection, there needs to be an
         // opposite backwards connection to the same widget
@@ -319,7 +340,7 @@ public class ConstraintSet {
       error[chain.orientation()] += chain.totalError();
     }
 
-    for (ConstrainedWidget wid : myWidgets) {
+    for (ConstrainedWidget wid : myEvaluatedWidgets) {
       // Simple margin connection (vertical)
       if (!(wid.getConnection(Direction.TOP).isConnected() && wid.getConnection(Direction.BOTTOM).isConnected())) {
         error[Direction.ORIENTATION_VERTICAL] += Math.abs(wid.getConnection(Direction.TOP).getMargin() +
@@ -348,7 +369,7 @@ public class ConstraintSet {
     }
 
     double connections = 0;
-    for (ConstrainedWidget widget : myWidgets) {
+    for (ConstrainedWidget widget : myEvaluatedWidgets) {
       connections += widget.numberOfConnections();
     }
 
@@ -366,7 +387,7 @@ public class ConstraintSet {
       return;
     }
     // Find start of chains
-    for (ConstrainedWidget wid : myWidgets) {
+    for (ConstrainedWidget wid : myEvaluatedWidgets) {
       if (!myChainConnnections.contains(wid.getConnection(Direction.LEFT)) &&
           myChainConnnections.contains(wid.getConnection(Direction.RIGHT))) {
         Chain hChainStart = new Chain(Direction.ORIENTATION_HORIZONTAL);
@@ -16,9 +16,16 @@
 
 package com.android.tools.idea.uibuilder.scout;
 
+import com.android.annotations.VisibleForTesting;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Generates the list of valid constraint sets for a given list of widgets and returns
@@ -26,12 +33,21 @@ import java.util.Collections;
  */
 
 public class ConstraintSetGenerator {
+  private static final long DEFAULT_TIME_BUDGET_MS = 2000;
+  /** Same weight of the number of connections as used by {@link ConstraintSet#calculateError()} */
+  private static final double CONNECTION_WEIGHT = 5;
 
   private int myNumberOfWidgets;
   private ScoutWidget[] myWidgetRecs;
   private ArrayList<WidgetPossibleConnections> myConnectionList;
   private ArrayList<ArrayList<ConstrainedWidget>> myValidWidgets;
-  private ArrayList<ConstraintSet> myConstraintSets;
+  // Memoised per widget scores: lower bound of the error of every candidate, candidates that can be part of a valid set sorted
+  // by error and the minimum lower bound of those candidates
+  private double[][] myLowerBounds;
+  private int[][] myCandidates;
+  private double[] myMinLowerBounds;
+  private long myTimeBudget = DEFAULT_TIME_BUDGET_MS;
+  private long myDeadline;
   public int myParentWidth = 1000;
   public int myParentHeight = 900;
 
@@ -41,93 +57,89 @@ public class ConstraintSetGenerator {
   }
 
   /**
-   * Class to generate all the combinations of length myWidgetNumber
-   * in a prioritized order
-   * For position i, the maximum value is myMaxPhases[i]
+   * Sets the maximum time spent searching for the best constraint set. Once it is exceeded, the best set found so far is returned,
+   * or null if no valid set has been found by then.
    */
-  private class CombinationGenerator {
-    private ArrayList<int[]> myGenerated;
-    private int[] myMaxPhases;
-    private int myPhase;
-    private int myWidgetNumber;
-    private int myCurrent;
-
-    public CombinationGenerator(int widgetNumber, int[] maxPhases) {
-      myPhase = 1;
-      myWidgetNumber = widgetNumber;
-      myCurrent = 0;
-      myMaxPhases = maxPhases;
-      generateFirstPhase();
-    }
-
-    private void generateFirstPhase() {
-      myGenerated = new ArrayList<>();
-      myGenerated.add(new int[myWidgetNumber]);
-      while (true) {
-        int[] tempComb = myGenerated.get(myGenerated.size() - 1).clone();
-        boolean carry = true;
-        int pos = 0;
-        while (carry) {
-          if (pos == myWidgetNumber) {
-            break;
-          }
-          if (tempComb[pos] == 1) {
-            tempComb[pos] = 0;
-            pos++;
-          }
-          else if (myMaxPhases[pos] != 1) {
-            tempComb[pos] = 1;
-            carry = false;
-          }
-        }
-        if (carry == true) {
-          break;
-        }
-        myGenerated.add(tempComb);
+  public void setTimeBudget(long millis) {
+    myTimeBudget = millis;
+  }
+
+  /**
+   * For every widget it generates the list of possible valid connection and
+   * then searches the valid constraint sets for the one with the smallest error.
+   *
+   * @return best constraint set or null if there is no valid constraint set or none was found within the time budget
+   */
+  @Nullable
+  public ConstraintSet findConstraintSet() {
+    generateValidWidgets();
+
+    myDeadline = System.currentTimeMillis() + myTimeBudget;
+    scoreConnectionCombinations();
+    int[] combination = new int[myNumberOfWidgets];
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      if (myCandidates[i].length == 0) {
+        return null;
       }
+      combination[i] = myCandidates[i][0];
     }
 
-    public int[] nextPhasedCombination() {
-      if (myCurrent > myGenerated.size() - 1) {
-        generateNewPhase();
+    // The groups do not share any connection so they can be searched independently
+    List<int[]> groups = findIndependentGroups();
+    List<int[]> bestCombinations = groups.parallelStream()
+      .map(group -> new GroupSearch(group).search())
+      .collect(Collectors.toList());
+    for (int g = 0; g < groups.size(); g++) {
+      int[] best = bestCombinations.get(g);
+      if (best == null) {
+        return null;
+      }
+      for (int widget : groups.get(g)) {
+        combination[widget] = best[widget];
       }
-      int[] comb = myGenerated.size() > 0 ? myGenerated.get(myCurrent) : null;
-      myCurrent++;
-      return comb;
     }
 
-    public void generateNewPhase() {
-      myPhase++;
-      ArrayList<int[]> newGen = new ArrayList<>(myGenerated);
-      ArrayList<int[]> aux = new ArrayList<>();
-      for (int i = 0; i < myWidgetNumber; i++) {
-        if (myMaxPhases[i] <= myPhase) {
-          continue;
-        }
-        for (int[] existing : newGen) {
-          int[] temp = existing.clone();
-          temp[i] = myPhase;
-          if (!aux.stream().anyMatch(
-            p -> Arrays.equals(p, temp))) {
-            aux.add(temp);
-          }
-        }
-        newGen.addAll(aux);
-        aux.clear();
-      }
-      newGen.subList(0, myGenerated.size()).clear();
-      myGenerated = newGen;
-      myCurrent = 0;
+    ConstraintSet set = new ConstraintSet(combination, myValidWidgets, myWidgetRecs[0]);
+    if (!set.validate()) {
+      return null;
     }
+    set.calculateError();
+    return set;
   }
 
   /**
-   * For every widget it generates the list of possible valid connection and
-   * then generates all valid constraint sets.
+   * Evaluates every combination of the valid connections of the widgets, without pruning, grouping nor time budget.
+   * This is only usable with a handful of widgets, as a reference for {@link #findConstraintSet()}.
    *
-   * @return best constraint set
+   * @return best constraint set or null if there is no valid constraint set
    */
-  public ConstraintSet findConstraintSet() {
+  @VisibleForTesting
+  @Nullable
+  ConstraintSet findConstraintSetExhaustively() {
+    generateValidWidgets();
+
+    ConstraintSet best = null;
+    int[] combination = new int[myNumberOfWidgets];
+    while (true) {
+      ConstraintSet set = new ConstraintSet(combination, myValidWidgets, myWidgetRecs[0]);
+      if (set.validate()) {
+        set.calculateError();
+        if (best == null || set.error() < best.error()) {
+          best = set;
+        }
+      }
+      int widget = 0;
+      while (widget < myNumberOfWidgets && ++combination[widget] == myValidWidgets.get(widget).size()) {
+        combination[widget] = 0;
+        widget++;
+      }
+      if (widget == myNumberOfWidgets) {
+        return best;
+      }
+    }
+  }
+
+  private void generateValidWidgets() {
     this.myConnectionList = new ArrayList<>();
     for (int i = 1; i < this.myWidgetRecs.length; i++) {
       WidgetPossibleConnections possibleConnections = new WidgetPossibleConnections(this.myWidgetRecs[i]);
@@ -144,13 +156,6 @@ public class ConstraintSetGenerator {
       Collections.sort(tempValid, (a, b) -> b.compareTo(a));
       myValidWidgets.add(tempValid);
     }
-
-    generateConstraintSets();
-    for (ConstraintSet set : myConstraintSets) {
-      set.calculateError();
-    }
-    Collections.sort(myConstraintSets, (a, b) -> b.compareTo(a));
-    return myConstraintSets.get(0);
   }
 
   /**
@@ -163,41 +168,180 @@ public class ConstraintSetGenerator {
   }
 
   /**
-   * Gets the valid bounded widget forms and generates all valid constrained sets
-   * that don't generate loops. Returns the one with the smallest margin sum.
+   * Computes once the part of the error of every constrained widget that does not depend on the rest of the set and keeps,
+   * for every widget, the candidates that can be part of a valid set sorted by that error.
+   * <p>
+   * The error of a constraint set is the sum of the margin, centering and connection errors of its widgets plus the error of its
+   * chains. Chains only replace centering errors, and all the terms are positive, so the error without the centering terms is a
+   * lower bound of what a widget adds to any set.
+   */
+  private void scoreConnectionCombinations() {
+    myLowerBounds = new double[myNumberOfWidgets][];
+    myCandidates = new int[myNumberOfWidgets][];
+    myMinLowerBounds = new double[myNumberOfWidgets];
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      ArrayList<ConstrainedWidget> valid = myValidWidgets.get(i);
+      double[] lowerBounds = new double[valid.size()];
+      double[] scores = new double[valid.size()];
+      List<Integer> candidates = new ArrayList<>();
+      for (int k = 0; k < valid.size(); k++) {
+        ConstrainedWidget widget = valid.get(k);
+        if (widget.getScoutWidget().isGuideline()) {
+          candidates.add(k);
+          continue;
+        }
+        if (!isValidCentered(widget)) {
+          continue;
+        }
+        for (int orientation = 0; orientation < 2; orientation++) {
+          Direction[] directions = Direction.getDirections(orientation);
+          Connection a = widget.getConnection(directions[0]);
+          Connection b = widget.getConnection(directions[1]);
+          if (a.isConnected() && b.isConnected()) {
+            scores[k] += widget.getCenterError(orientation);
+          }
+          else {
+            lowerBounds[k] += Math.abs(a.getMargin() + b.getMargin());
+          }
+        }
+        lowerBounds[k] += CONNECTION_WEIGHT * widget.numberOfConnections();
+        scores[k] += lowerBounds[k];
+        candidates.add(k);
+      }
+      candidates.sort(Comparator.comparingDouble((Integer k) -> scores[k]).thenComparingDouble(k -> lowerBounds[k]));
+      myLowerBounds[i] = lowerBounds;
+      myCandidates[i] = candidates.stream().mapToInt(Integer::intValue).toArray();
+      myMinLowerBounds[i] = Arrays.stream(myCandidates[i]).mapToDouble(k -> lowerBounds[k]).min().orElse(0);
+    }
+  }
+
+  /**
+   * Same check as {@link ConstraintSet#isValidCentered()}, which only depends on each widget.
    */
-  void generateConstraintSets() {
-    myConstraintSets = new ArrayList<>();
+  private static boolean isValidCentered(ConstrainedWidget widget) {
+    for (Direction anchor : Direction.getAllDirections()) {
+      if (widget.isBackwardsConnection(anchor)) {
+        if (!widget.isBackwardsConnection(anchor.getOpposite())) {
+          return false;
+        }
+        if (widget.getConnection(anchor).destWidget() != widget.getConnection(anchor.getOpposite()).destWidget()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
 
-    int[] minValid = new int[myNumberOfWidgets];
-    double totalCombinations = 1;
+  /**
+   * Splits the widgets in groups such that no candidate connection of a widget targets a widget of another group.
+   */
+  private List<int[]> findIndependentGroups() {
+    int[] groupOf = new int[myNumberOfWidgets];
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      groupOf[i] = i;
+    }
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      for (int k : myCandidates[i]) {
+        ConstrainedWidget widget = myValidWidgets.get(i).get(k);
+        if (widget.getScoutWidget().isGuideline()) {
+          continue;
+        }
+        for (Direction dir : Direction.getAllDirections()) {
+          int dest = widget.getConnection(dir).destWidget();
+          if (dest >= 0) {
+            groupOf[findGroup(groupOf, i)] = findGroup(groupOf, dest);
+          }
+        }
+      }
+    }
+    Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
     for (int i = 0; i < myNumberOfWidgets; i++) {
-      totalCombinations *= myValidWidgets.get(i).size();
-      minValid[i] = myValidWidgets.get(i).size();
+      groups.computeIfAbsent(findGroup(groupOf, i), key -> new ArrayList<>()).add(i);
+    }
+    return groups.values().stream()
+      .map(group -> group.stream().mapToInt(Integer::intValue).toArray())
+      .collect(Collectors.toList());
+  }
+
+  private static int findGroup(int[] groupOf, int widget) {
+    while (groupOf[widget] != widget) {
+      groupOf[widget] = groupOf[groupOf[widget]];
+      widget = groupOf[widget];
     }
+    return widget;
+  }
 
-    CombinationGenerator gen = new CombinationGenerator(myNumberOfWidgets, minValid);
+  /**
+   * Depth first branch and bound search of the best combination for a group of widgets. The candidates of every widget are
+   * tried from the smallest error, and a branch is abandoned as soon as its lower bound can not improve the best set found.
+   */
+  private class GroupSearch {
+    private final int[] myGroup;
+    private final double[] myRemainingLowerBound;
+    private final int[] myCombination;
+    private int[] myBest;
+    private double myBestError = Double.MAX_VALUE;
+
+    GroupSearch(int[] group) {
+      myGroup = group;
+      myRemainingLowerBound = new double[group.length + 1];
+      for (int i = group.length - 1; i >= 0; i--) {
+        myRemainingLowerBound[i] = myRemainingLowerBound[i + 1] + myMinLowerBounds[group[i]];
+      }
+      myCombination = new int[myNumberOfWidgets];
+      for (int i = 0; i < myNumberOfWidgets; i++) {
+        myCombination[i] = myCandidates[i][0];
+      }
+    }
 
-    long startTime = System.currentTimeMillis();
-    long totalTime = 0;
-    double explored = 0;
+    /**
+     * Returns the best combination found for the widgets of the group, or null if there is none or none was found within the time budget.
+     */
+    @Nullable
+    int[] search() {
+      // The combination of the best candidate of every widget bounds the search from the start, and is what is returned
+      // if the time budget runs out before anything better is found
+      evaluateCombination();
+      search(0, 0);
+      return myBest;
+    }
 
-    int[] combination = gen.nextPhasedCombination();
-    ArrayList<ConstraintSet> generated = new ArrayList<>();
-    while (combination != null) {
-      generated.add(new ConstraintSet(combination, myValidWidgets, myWidgetRecs[0]));
-      totalTime = System.currentTimeMillis() - startTime;
-      if (totalTime > 2000) {
-        break;
+    private void evaluateCombination() {
+      ConstraintSet set = new ConstraintSet(myCombination, myValidWidgets, myWidgetRecs[0], myGroup);
+      if (set.validate()) {
+        set.calculateError();
+        if (set.error() < myBestError) {
+          myBestError = set.error();
+          myBest = myCombination.clone();
+        }
       }
-      combination = gen.nextPhasedCombination();
     }
-    explored = generated.size() / totalCombinations;
-    System.out.println("Percentage of combinations explored: " + Double.toString(explored));
-    for (ConstraintSet tempSet : generated) {
-      if (tempSet.validate()) {
-        myConstraintSets.add(tempSet);
+
+    /**
+     * Returns false if the search needs to stop because the time budget has been exceeded, keeping the best set found so far.
+     * The budget is a hard limit: when no valid combination exists, nothing is pruned and the search space is exponential.
+     */
+    private boolean search(int depth, double lowerBound) {
+      if (System.currentTimeMillis() >= myDeadline) {
+        return false;
+      }
+      if (depth == myGroup.length) {
+        evaluateCombination();
+        return true;
+      }
+      int widget = myGroup[depth];
+      for (int k : myCandidates[widget]) {
+        double bound = lowerBound + myLowerBounds[widget][k];
+        if (bound + myRemainingLowerBound[depth + 1] >= myBestError) {
+          // Candidates are sorted by error, not by lower bound, so the next ones could still be better
+          continue;
+        }
+        myCombination[widget] = k;
+        if (!search(depth + 1, bound)) {
+          return false;
+        }
       }
+      return true;
     }
   }
 
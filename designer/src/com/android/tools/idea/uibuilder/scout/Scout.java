@@ -397,6 +397,9 @@ public class Scout {
     ScoutWidget[] scoutWidgets = ScoutWidget.create(widgets, false);
     ConstraintSetGenerator generator = new ConstraintSetGenerator(scoutWidgets);
     ConstraintSet set = generator.findConstraintSet();
+    if (set == null) {
+      return;
+    }
     set.applySet();
     System.out.println("Error in set (v2): " + Double.toString(set.error()));
     commit(list, "Infering constraints");
@@ -18,6 +18,7 @@ package com.android.tools.idea.uibuilder.scout;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * Inference Probability tables
@@ -110,39 +111,72 @@ public class ScoutProbabilities {
         // calculate probability for "centered" connections
         mBinaryProbability = new float[len][2][len * 2][len * 2];
         mBinaryBias = new float[len][2][len * 2][len * 2];
-        Direction[][] directions =
-                { { Direction.TOP, Direction.BOTTOM}, { Direction.LEFT, Direction.RIGHT} };
-        for (int i = 1; i < len; i++) {
-            for (int horizontal = 0; horizontal < 2; horizontal++) { // vert=0 or horizantal=1
-                Direction[] sides = directions[horizontal];
-                for (int candidate1 = 0; candidate1 < len * 2; candidate1++) {
-                    for (int candidate2 = 0; candidate2 < len * 2; candidate2++) {
-
-                        // candidates are 2 per widget (left/right or above/below)
-                        int widget1Number = candidate1 / 2;
-                        int widget2Number = candidate2 / 2;
-
-                        // pick the sides to connect
-                        Direction widget1Side = sides[candidate1 & 0x1];
-                        Direction widget2Side = sides[candidate2 & 0x1];
-
-                        estimateBinaryProbability(list[i], horizontal,
-                                list[widget1Number], widget1Side,
-                                list[widget2Number], widget2Side,
-                                list, result);
-                        mBinaryProbability[i][horizontal][candidate1][candidate2] =
-                                result[RESULT_PROBABILITY];
-                        mBinaryBias[i][horizontal][candidate1][candidate2] =
-                                result[RESULT_MARGIN];
-                    }
-                }
+
+        // The distances and the properties read from the components are computed once up front.
+        // The table rows then only depend on the widget geometry and are computed in parallel.
+        float[][] distances = new float[len][len];
+        for (int i = 0; i < len; i++) {
+            for (int j = 0; j < len; j++) {
+                distances[i][j] = ScoutWidget.distance(list[i], list[j]);
             }
         }
+        boolean[][] skipOrientation = new boolean[len][2];
+        for (int i = 1; i < len; i++) {
+            ScoutWidget from = list[i];
+            boolean guideline = from.isGuideline();
+            // if it already has a baseline do not connect to it
+            skipOrientation[i][Direction.ORIENTATION_VERTICAL] =
+                    guideline || (from.hasBaseline() && from.hasConnection(Direction.BASELINE));
+            skipOrientation[i][Direction.ORIENTATION_HORIZONTAL] = guideline;
+        }
+        IntStream.range(1, len).parallel().forEach(i -> computeBinaryRow(list, i, distances, skipOrientation[i]));
         if (DEBUG) {
             printTable(list);
         }
     }
 
+    /**
+     * Fills the "centered" connection tables of a single widget
+     *
+     * @param list            ordered list of widgets root must be list[0]
+     * @param i               the widget to compute
+     * @param distances       distance between every pair of widgets
+     * @param skipOrientation orientations that can not have centered connections for this widget
+     */
+    private void computeBinaryRow(ScoutWidget[] list, int i, float[][] distances, boolean[] skipOrientation) {
+        float[] result = new float[2]; // estimation function return 2 values probability & margin
+        Direction[][] directions =
+                { { Direction.TOP, Direction.BOTTOM}, { Direction.LEFT, Direction.RIGHT} };
+        for (int horizontal = 0; horizontal < 2; horizontal++) { // vert=0 or horizantal=1
+            if (skipOrientation[horizontal]) {
+                continue; // the tables are already filled with 0
+            }
+            Direction[] sides = directions[horizontal];
+            for (int candidate1 = 0; candidate1 < len * 2; candidate1++) {
+                for (int candidate2 = 0; candidate2 < len * 2; candidate2++) {
+
+                    // candidates are 2 per widget (left/right or above/below)
+                    int widget1Number = candidate1 / 2;
+                    int widget2Number = candidate2 / 2;
+
+                    // pick the sides to connect
+                    Direction widget1Side = sides[candidate1 & 0x1];
+                    Direction widget2Side = sides[candidate2 & 0x1];
+
+                    estimateBinaryProbability(list[i], horizontal,
+                            list[widget1Number], widget1Side,
+                            list[widget2Number], widget2Side,
+                            distances[i][widget1Number], distances[i][widget2Number],
+                            result);
+                    mBinaryProbability[i][horizontal][candidate1][candidate2] =
+                            result[RESULT_PROBABILITY];
+                    mBinaryBias[i][horizontal][candidate1][candidate2] =
+                            result[RESULT_MARGIN];
+                }
+            }
+        }
+    }
+
     /**
      * This applies a constraint set suggested by the Inference tables
      *
@@ -621,13 +655,15 @@ public class ScoutProbabilities {
      * @param toDir1      direction on that widget
      * @param to2         connect to on other side
      * @param toDir2      direction on that widget
+     * @param toDistance1 distance between the source widget and to1
+     * @param toDistance2 distance between the source widget and to2
      * @param result      populates results with probability and offset
      */
     private static void estimateBinaryProbability(
             ScoutWidget from, int orientation, // 0 = north/south 1 = east/west
             ScoutWidget to1, Direction toDir1,
             ScoutWidget to2, Direction toDir2,
-            ScoutWidget[] list,
+            float toDistance1, float toDistance2,
             float[] result) {
 
         result[RESULT_PROBABILITY] = 0;
@@ -635,15 +671,6 @@ public class ScoutProbabilities {
         if (from == to1 || from == to2) { // cannot center on yourself
             return;
         }
-        if (from.isGuideline()) {
-            return;
-        }
-        // if it already has a baseline do not connect to it
-        if ((orientation == Direction.ORIENTATION_VERTICAL) & from.hasBaseline()) {
-            if (from.hasConnection(Direction.BASELINE)) {
-                return;
-            }
-        }
         // distance normalizing scale factor
         float scale = 0.5f *
                 ((orientation == Direction.ORIENTATION_VERTICAL) ? from.getParent().getHeight() :
@@ -674,8 +701,8 @@ public class ScoutProbabilities {
             }
         }
 
-        float distance1 = ScoutWidget.distance(from, to1) / scale;
-        float distance2 = ScoutWidget.distance(from, to2) / scale;
+        float distance1 = toDistance1 / scale;
+        float distance2 = toDistance2 / scale;
         float diff = Math.abs(positionDiff1 - positionDiff2);
         float probability = ((diff < SLOPE_CENTER_CONNECTION) ? 1 : 0); // favor close distance
         probability = probability / (1+ distance1 + distance2);
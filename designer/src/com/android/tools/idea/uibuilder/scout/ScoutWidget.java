@@ -50,6 +50,7 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
   NlComponent mNlComponent;
   private boolean mKeepExistingConnections = true;
   private Rectangle mRectangle;
+  private boolean mIsGuideline; // computed once, it is read concurrently while inferring constraints
   HashMap<String, ScoutWidget> myChildMap = new HashMap<>();
   private static final String ATT_LL = SdkConstants.ATTR_LAYOUT_LEFT_TO_LEFT_OF;
   private static final String ATT_LR = SdkConstants.ATTR_LAYOUT_LEFT_TO_RIGHT_OF;
@@ -95,6 +96,7 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
     this.mWidth = ConstraintComponentUtilities.getDpWidth(component);
     this.mHeight = ConstraintComponentUtilities.getDpHeight(component);
     this.mBaseLine = ConstraintComponentUtilities.getDpBaseline(component) + mY;
+    this.mIsGuideline = ConstraintComponentUtilities.isLine(component);
     if (parent != null) {
       mRootDistance = distance(parent, this);
     }
@@ -154,7 +156,7 @@ public class ScoutWidget implements Comparable<ScoutWidget> {
    * @return
    */
   public boolean isGuideline() {
-    return ConstraintComponentUtilities.isLine(mNlComponent);
+    return mIsGuideline;
   }
 
   /**
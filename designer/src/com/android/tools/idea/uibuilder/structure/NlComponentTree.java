@@ -19,6 +19,7 @@ import com.android.tools.idea.common.model.*;
 import com.android.tools.idea.common.scene.Scene;
 import com.android.tools.idea.common.surface.DesignSurface;
 import com.android.tools.idea.common.surface.DesignSurfaceListener;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.uibuilder.actions.ComponentHelpAction;
 import com.android.tools.idea.uibuilder.api.ViewHandler;
 import com.android.tools.idea.uibuilder.graphics.NlConstants;
@@ -59,7 +60,9 @@ import java.awt.dnd.DropTarget;
 import java.awt.event.*;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.android.tools.idea.common.property.PropertiesManager.UPDATE_DELAY_MSECS;
@@ -72,6 +75,10 @@ public class NlComponentTree extends Tree implements DesignSurfaceListener, Mode
   private final NlTreeBadgeHandler myBadgeHandler;
 
   @Nullable private NlModel myModel;
+  // Hierarchy modification count of myModel when the tree model was last built
+  private long myHierarchyVersion = -1;
+  // Components of myModel whose attributes changed since their node was last measured
+  private final Set<NlComponent> myUpdatedComponents = new HashSet<>();
   private boolean mySkipWait;
   private int myInsertAfterRow = -1;
   private int myRelativeDepthToInsertionRow = 0;
@@ -198,6 +205,8 @@ public class NlComponentTree extends Tree implements DesignSurfaceListener, Mode
       myModel.removeListener(this);
     }
     myModel = model;
+    myHierarchyVersion = -1;
+    myUpdatedComponents.clear();
     myBadgeHandler.setNlModel(myModel);
     if (myModel != null) {
       myModel.addListener(this);
@@ -256,6 +265,8 @@ public class NlComponentTree extends Tree implements DesignSurfaceListener, Mode
           mySelectionIsUpdating.set(true);
 
           List<TreePath> expandedPaths = TreeUtil.collectExpandedPaths(NlComponentTree.this);
+          myHierarchyVersion = myModel.getHierarchyModificationCount();
+          myUpdatedComponents.clear();
           Object oldRoot = treeModel.getRoot();
           setModel(new NlComponentTreeModel(myModel));
           if (oldRoot == treeModel.getRoot()) {
@@ -454,7 +465,34 @@ public class NlComponentTree extends Tree implements DesignSurfaceListener, Mode
   // ---- Implemented ModelListener ----
   @Override
   public void modelDerivedDataChanged(@NotNull NlModel model) {
-    UIUtil.invokeLaterIfNeeded(this::updateHierarchy);
+    UIUtil.invokeLaterIfNeeded(() -> {
+      if (StudioFlags.NELE_INCREMENTAL_MODEL_SYNC.get() && model == myModel &&
+          model.getHierarchyModificationCount() == myHierarchyVersion) {
+        // The nodes are unchanged, only the labels of the updated components need to be measured again
+        List<TreePath> updatedPaths = new ArrayList<>();
+        for (NlComponent component : myUpdatedComponents) {
+          updatedPaths.add(newTreePath(component));
+        }
+        myUpdatedComponents.clear();
+        ((MyUI)ui).invalidateNodeSizes(updatedPaths);
+        repaint();
+        updateSelection();
+        return;
+      }
+      updateHierarchy();
+    });
+  }
+
+  @Override
+  public void modelComponentsChanged(@NotNull NlModel model, @NotNull ComponentChanges changes) {
+    if (!StudioFlags.NELE_INCREMENTAL_MODEL_SYNC.get()) {
+      return;
+    }
+    UIUtil.invokeLaterIfNeeded(() -> {
+      if (model == myModel && !changes.isHierarchyChanged()) {
+        myUpdatedComponents.addAll(changes.getUpdated());
+      }
+    });
   }
 
   @Override
@@ -641,5 +679,13 @@ public class NlComponentTree extends Tree implements DesignSurfaceListener, Mode
     public void invalidateNodeSize() {
       treeState.invalidateSizes();
     }
+
+    public void invalidateNodeSizes(@NotNull List<TreePath> paths) {
+      if (paths.isEmpty()) {
+        return;
+      }
+      paths.forEach(treeState::invalidatePathBounds);
+      updateSize();
+    }
   }
 }
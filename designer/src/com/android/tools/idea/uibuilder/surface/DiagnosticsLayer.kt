@@ -75,9 +75,18 @@ class DiagnosticsLayer(val surface: DesignSurface) : Layer() {
       | Allocated     ${(poolStats?.totalBytesAllocated() ?: -1) / MB}MB
       | In use        ${(poolStats?.totalBytesInUse() ?: -1)  / MB}MB
       | Free          ${((poolStats?.totalBytesAllocated() ?: -1) - (poolStats?.totalBytesInUse() ?: 0)) / MB}MB
+      | Budget        ${formatBudget(poolStats?.budgetBytes())}
+      | Evicted       ${formatMegabytes(poolStats?.totalBytesEvicted())}
+      | Hits/Misses   ${poolStats?.hits() ?: -1}/${poolStats?.misses() ?: -1}
     """.trimMargin()
   }
 
+  /** Returns [bytes] in MB, or "n/a" if the pool does not report it (null or -1). */
+  private fun formatMegabytes(bytes: Long?): String = if (bytes == null || bytes < 0) "n/a" else "${bytes / MB}MB"
+
+  /** Returns the budget of the pool in MB, "unbounded" if the pool has no budget (-1), or "n/a" if there are no stats. */
+  private fun formatBudget(budgetBytes: Long?): String = if (budgetBytes != null && budgetBytes < 0) "unbounded" else formatMegabytes(budgetBytes)
+
   override fun paint(graphics2D: Graphics2D) {
     val gc = graphics2D.create() as Graphics2D
     gc.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON)
@@ -135,7 +135,13 @@ public class ScreenViewLayer extends Layer {
     // Calculate the portion of the screen view that it's visible
     myScreenViewVisibleSize.setBounds(myScreenView.getX(), myScreenView.getY(),
                                       myScreenViewSize.width, myScreenViewSize.height);
-    Rectangle2D.intersect(myScreenViewVisibleSize, graphics2D.getClipBounds(), myScreenViewVisibleSize);
+    Rectangle visibleArea = graphics2D.getClipBounds();
+    if (myScreenView.getScene().isRetainingDisplayList()) {
+      // Repaints might only cover the area that changed in the scene. The cached image is kept for the whole viewport so it does not
+      // need to be scaled again for every partial repaint, only the clipped part of it is drawn.
+      visibleArea = myScreenView.getSurface().getScrollPane().getViewport().getViewRect();
+    }
+    Rectangle2D.intersect(myScreenViewVisibleSize, visibleArea, myScreenViewVisibleSize);
     if (myScreenViewVisibleSize.isEmpty()) {
       return;
     }
@@ -71,6 +71,7 @@ import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.ServiceContainerUtil;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -865,6 +866,54 @@ public class NlModelTest extends LayoutTestCase {
     }
   }
 
+  @SuppressWarnings("ConstantConditions")
+  public void testComponentChanges() {
+    ModelBuilder modelBuilder = createDefaultModelBuilder(false);
+    NlModel model = modelBuilder.build();
+    List<ComponentChanges> changes = new ArrayList<>();
+    model.addListener(new ModelListener() {
+      @Override
+      public void modelComponentsChanged(@NotNull NlModel model, @NotNull ComponentChanges componentChanges) {
+        changes.add(componentChanges);
+      }
+    });
+    NlComponent linearLayout = model.getComponents().get(0);
+    NlComponent textView = linearLayout.getChild(0);
+    NlComponent button = linearLayout.getChild(1);
+    long hierarchyVersion = model.getHierarchyModificationCount();
+
+    // Nothing changed
+    modelBuilder.updateModel(model);
+    assertThat(changes).isEmpty();
+    assertEquals(hierarchyVersion, model.getHierarchyModificationCount());
+
+    // Change an attribute
+    modelBuilder.findByPath(LINEAR_LAYOUT, BUTTON).withAttribute("style", "@style/Foo");
+    modelBuilder.updateModel(model);
+    assertThat(changes).hasSize(1);
+    assertThat(changes.get(0).getUpdated()).containsExactly(button);
+    assertThat(changes.get(0).isHierarchyChanged()).isFalse();
+    assertEquals(hierarchyVersion, model.getHierarchyModificationCount());
+    assertThat(linearLayout.getChildren()).containsExactly(textView, button).inOrder();
+
+    // Add a component
+    changes.clear();
+    modelBuilder.findByPath(LINEAR_LAYOUT).addChild(component(EDIT_TEXT)
+                                                      .withBounds(100, 100, 100, 100)
+                                                      .width("100dp")
+                                                      .height("100dp"), null);
+    modelBuilder.updateModel(model);
+    assertThat(changes).hasSize(1);
+    NlComponent editText = linearLayout.getChild(2);
+    assertThat(changes.get(0).getAdded()).containsExactly(editText);
+    assertThat(changes.get(0).getRestructured()).containsExactly(linearLayout);
+    assertThat(changes.get(0).getRemoved()).isEmpty();
+    assertThat(changes.get(0).isHierarchyChanged()).isTrue();
+    assertThat(model.getHierarchyModificationCount()).isGreaterThan(hierarchyVersion);
+    assertThat(linearLayout.getChild(0)).isSameAs(textView);
+    assertThat(linearLayout.getChild(1)).isSameAs(button);
+  }
+
   @NotNull
   private SyncNlModel createModel(XmlFile modelXml) {
     DesignSurface surface = createSurface(NlDesignSurface.class);
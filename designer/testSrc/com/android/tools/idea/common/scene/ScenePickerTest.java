@@ -19,6 +19,9 @@ import junit.framework.TestCase;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Test ScenePicker
@@ -378,4 +381,61 @@ public class ScenePickerTest extends TestCase {
       scenePicker.find((int)x, (int)y);
     }
   }
+
+  public void testIndexFindsSameObjects() {
+    ScenePicker linear = new ScenePicker();
+    ScenePicker indexed = new ScenePicker();
+    indexed.setUseIndex(true);
+    Random random = new Random(1);
+    for (ScenePicker picker : new ScenePicker[]{linear, indexed}) {
+      random.setSeed(1);
+      picker.reset();
+      // A large background object, as added by the root component, and many small ones
+      picker.addRect(-1, 0, 0, 0, 2000, 2000);
+      for (int i = 0; i < 500; i++) {
+        int x = random.nextInt(2000);
+        int y = random.nextInt(2000);
+        switch (i % 5) {
+          case 0:
+            picker.addRect(i, 5, x, y, x + random.nextInt(100), y + random.nextInt(100));
+            break;
+          case 1:
+            picker.addPoint(i, 8, x, y);
+            break;
+          case 2:
+            picker.addCircle(i, 4, x, y, random.nextInt(20));
+            break;
+          case 3:
+            picker.addLine(i, 5, x, y, x + random.nextInt(400) - 200, y + random.nextInt(400) - 200, 2);
+            break;
+          default:
+            picker.addCurveTo(i, 5, x, y, x + 20, y, x + 40, y + 40, x + 60, y + 40, 0);
+        }
+      }
+    }
+
+    List<String> linearHits = new ArrayList<>();
+    List<String> indexedHits = new ArrayList<>();
+    linear.setSelectListener((obj, dist) -> linearHits.add(obj + ":" + dist));
+    indexed.setSelectListener((obj, dist) -> indexedHits.add(obj + ":" + dist));
+    for (int i = 0; i < 2000; i++) {
+      int x = random.nextInt(2200) - 100;
+      int y = random.nextInt(2200) - 100;
+      linearHits.clear();
+      indexedHits.clear();
+      linear.find(x, y);
+      indexed.find(x, y);
+      assertEquals(linearHits, indexedHits);
+    }
+
+    // Adding objects after a find updates the index
+    linear.addPoint(1000, 10, 3000, 3000);
+    indexed.addPoint(1000, 10, 3000, 3000);
+    linearHits.clear();
+    indexedHits.clear();
+    linear.find(3001, 3001);
+    indexed.find(3001, 3001);
+    assertEquals(1, indexedHits.size());
+    assertEquals(linearHits, indexedHits);
+  }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.handlers.motion.timeline
+
+import com.android.SdkConstants
+import com.android.tools.idea.AndroidPsiUtils
+import com.android.tools.idea.common.model.NlComponent
+import com.android.tools.idea.uibuilder.LayoutTestCase
+import com.android.tools.idea.uibuilder.handlers.motion.AttrName
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.xml.XmlFile
+
+class MotionSceneModelTest : LayoutTestCase() {
+
+  fun testUpdateOnlyParsesChangedTags() {
+    val file = myFixture.copyFileToProject("motion/scene.xml", "res/xml/scene.xml")
+    val xmlFile = AndroidPsiUtils.getPsiFileSafely(project, file) as XmlFile
+    val motionLayout = createMotionLayout()
+    val scene = MotionSceneModel.parse(motionLayout, project, file, xmlFile)
+    val start = scene.startConstraintSet
+    val end = scene.endConstraintSet
+    val transition = scene.getTransitionTag(0)
+    assertThat(scene.getSceneView("widget").myKeyAttributes).isNotEmpty()
+
+    // Nothing changed
+    assertThat(scene.update(motionLayout, xmlFile)).isFalse()
+    assertThat(scene.getTransitionTag(0)).isSameAs(transition)
+
+    // Change the end ConstraintSet
+    WriteCommandAction.runWriteCommandAction(project) {
+      end.tag.element!!.findFirstSubTag("Constraint")!!.setAttribute(SdkConstants.ATTR_LAYOUT_WIDTH, SdkConstants.ANDROID_URI, "100dp")
+    }
+    assertThat(scene.update(motionLayout, xmlFile)).isTrue()
+    assertThat(scene.startConstraintSet).isSameAs(start)
+    assertThat(scene.endConstraintSet).isNotSameAs(end)
+    assertThat(scene.endConstraintSet.myConstraintViews["widget"]!!.getAttribute(AttrName.androidAttr("layout_width"))).isEqualTo("100dp")
+    assertThat(scene.getTransitionTag(0)).isSameAs(transition)
+
+    // Change the Transition
+    WriteCommandAction.runWriteCommandAction(project) {
+      transition.tag.element!!.setAttribute("duration", SdkConstants.AUTO_URI, "1000")
+    }
+    assertThat(scene.update(motionLayout, xmlFile)).isTrue()
+    assertThat(scene.startConstraintSet).isSameAs(start)
+    assertThat(scene.getTransitionTag(0)).isNotSameAs(transition)
+    assertThat(scene.getTransitionTag(0).duration).isEqualTo(1000)
+    assertThat(scene.getSceneView("widget").myKeyAttributes).isNotEmpty()
+  }
+
+  private fun createMotionLayout(): NlComponent {
+    val model = model(
+      "motion.xml",
+      component(SdkConstants.MOTION_LAYOUT.newName())
+        .withBounds(0, 0, 1000, 1500)
+        .id("@id/motion")
+        .matchParentWidth()
+        .matchParentHeight()
+        .children(
+          component(SdkConstants.TEXT_VIEW)
+            .withBounds(100, 100, 100, 100)
+            .id("@+id/widget")
+            .width("wrap_content")
+            .height("wrap_content")
+        )
+    ).build()
+    return model.components[0]
+  }
+}
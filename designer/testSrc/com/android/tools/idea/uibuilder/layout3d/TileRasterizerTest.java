@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import static com.android.tools.idea.uibuilder.layout3d.TileRasterizer.TILE_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks that {@link TileRasterizer} produces the same pixels and z-buffer as the single threaded {@link Rasterize}.
+ */
+public class TileRasterizerTest {
+  // Not a multiple of the tile size, so that the last row and column of tiles are partial
+  private static final int WIDTH = 3 * TILE_SIZE + 17;
+  private static final int HEIGHT = 2 * TILE_SIZE + 5;
+  private static final int TEXTURE_SIZE = 32;
+  private static final double[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+  private final ForkJoinPool myPool = new ForkJoinPool(4);
+
+  @After
+  public void tearDown() {
+    myPool.shutdownNow();
+  }
+
+  @Test
+  public void testSimpleIsIdenticalToSingleThreaded() {
+    TriData tri = createRandomTriangles(new Random(1), 300);
+    Buffers expected = new Buffers();
+    Rasterize.simple(expected.zbuff, expected.rgb, WIDTH, HEIGHT, tri);
+
+    Buffers actual = new Buffers();
+    new TileRasterizer(myPool).simple(actual.zbuff, actual.rgb, WIDTH, HEIGHT, tri);
+
+    actual.assertSameAs(expected);
+  }
+
+  @Test
+  public void testTexturedIsIdenticalToSingleThreaded() {
+    Random random = new Random(2);
+    TriData tri = createRandomTriangles(random, 300);
+    int[] texture = new int[TEXTURE_SIZE * TEXTURE_SIZE];
+    for (int i = 0; i < texture.length; i++) {
+      texture[i] = random.nextInt() | 0xFF000000;
+    }
+
+    Buffers expected = new Buffers();
+    Rasterize.toZBuff(expected.zbuff, expected.rgb, WIDTH, HEIGHT, tri, texture, TEXTURE_SIZE, TEXTURE_SIZE, IDENTITY);
+
+    Buffers actual = new Buffers();
+    new TileRasterizer(myPool).toZBuff(actual.zbuff, actual.rgb, WIDTH, HEIGHT, tri, texture, TEXTURE_SIZE, TEXTURE_SIZE, IDENTITY);
+
+    actual.assertSameAs(expected);
+  }
+
+  @Test
+  public void testTriangleEdgesOnTileSeams() {
+    // Triangles whose vertices and edges lie exactly on the tile boundaries, or one pixel away from them, in both windings
+    float[] seams = {TILE_SIZE - 1, TILE_SIZE, TILE_SIZE + 1, 2 * TILE_SIZE - 0.5f, 2 * TILE_SIZE, 2 * TILE_SIZE + 0.5f};
+    int count = seams.length * seams.length * 2;
+    TriData tri = new TriData();
+    tri.myVert = new float[count * 9];
+    tri.myIndex = new int[count * 3];
+    tri.mySurfaceType = new int[count];
+    int n = 0;
+    for (float x : seams) {
+      for (float y : seams) {
+        for (int winding = 0; winding < 2; winding++) {
+          float z = n;
+          float[] vertices = winding == 0
+                             ? new float[]{x, 0, z, x, HEIGHT, z, 0, y, z}
+                             : new float[]{x, 0, z, 0, y, z, x, HEIGHT, z};
+          System.arraycopy(vertices, 0, tri.myVert, n * 9, 9);
+          for (int k = 0; k < 3; k++) {
+            tri.myIndex[n * 3 + k] = n * 9 + k * 3;
+          }
+          tri.mySurfaceType[n] = n % 3 == 2 ? 2 : 0;
+          n++;
+        }
+      }
+    }
+
+    Buffers expected = new Buffers();
+    Rasterize.simple(expected.zbuff, expected.rgb, WIDTH, HEIGHT, tri);
+
+    Buffers actual = new Buffers();
+    new TileRasterizer(myPool).simple(actual.zbuff, actual.rgb, WIDTH, HEIGHT, tri);
+
+    actual.assertSameAs(expected);
+  }
+
+  @Test
+  public void testRasterizerCanBeReused() {
+    TileRasterizer rasterizer = new TileRasterizer(myPool);
+    Random random = new Random(3);
+    for (int i = 0; i < 3; i++) {
+      // Different triangle counts, so that the bins of a previous render are reused with a different size
+      TriData tri = createRandomTriangles(random, 50 + i * 200);
+      Buffers expected = new Buffers();
+      Rasterize.simple(expected.zbuff, expected.rgb, WIDTH, HEIGHT, tri);
+
+      Buffers actual = new Buffers();
+      rasterizer.simple(actual.zbuff, actual.rgb, WIDTH, HEIGHT, tri);
+
+      actual.assertSameAs(expected);
+    }
+  }
+
+  /**
+   * Creates overlapping triangles of all sizes, some of them crossing several tiles or going past the edges of the image.
+   */
+  private static TriData createRandomTriangles(Random random, int count) {
+    TriData tri = new TriData();
+    tri.myVert = new float[count * 9];
+    tri.myTexture_uv = new float[count * 9];
+    tri.myIndex = new int[count * 3];
+    tri.mySurfaceType = new int[count];
+    for (int n = 0; n < count; n++) {
+      float size = random.nextBoolean() ? TILE_SIZE / 4f : WIDTH;
+      float centerX = random.nextFloat() * WIDTH;
+      float centerY = random.nextFloat() * HEIGHT;
+      for (int k = 0; k < 3; k++) {
+        int vertex = n * 9 + k * 3;
+        tri.myVert[vertex] = centerX + (random.nextFloat() - 0.5f) * size;
+        tri.myVert[vertex + 1] = centerY + (random.nextFloat() - 0.5f) * size;
+        tri.myVert[vertex + 2] = random.nextFloat() * 100;
+        tri.myTexture_uv[vertex] = random.nextFloat() * TEXTURE_SIZE;
+        tri.myTexture_uv[vertex + 1] = random.nextFloat() * TEXTURE_SIZE;
+        tri.myIndex[n * 3 + k] = vertex;
+      }
+      tri.mySurfaceType[n] = random.nextInt(3);
+    }
+    return tri;
+  }
+
+  private static class Buffers {
+    final float[] zbuff = new float[WIDTH * HEIGHT];
+    final int[] rgb = new int[WIDTH * HEIGHT];
+
+    Buffers() {
+      // Same initial values as Display3D
+      Arrays.fill(zbuff, Float.MAX_VALUE);
+      Arrays.fill(rgb, 0xFF000000);
+    }
+
+    void assertSameAs(Buffers expected) {
+      assertArrayEquals(expected.rgb, rgb);
+      assertArrayEquals(expected.zbuff, zbuff, 0f);
+    }
+  }
+}
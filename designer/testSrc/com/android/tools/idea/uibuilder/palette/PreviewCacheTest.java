@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.palette;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PreviewCacheTest {
+  private static final String XML = "<TextView android:text=\"TextView\" />";
+  private static final String THEME = "@style/AppTheme";
+
+  @Rule
+  public TemporaryFolder myFolder = new TemporaryFolder();
+
+  @Test
+  public void keyDependsOnAllInputs() {
+    String key = PreviewCache.createKey(XML, THEME, 1L, 28, 420, 7, "app");
+    assertThat(PreviewCache.createKey(XML, THEME, 1L, 28, 420, 7, "app")).isEqualTo(key);
+    assertThat(PreviewCache.createKey("<Button />", THEME, 1L, 28, 420, 7, "app")).isNotEqualTo(key);
+    assertThat(PreviewCache.createKey(XML, "@style/Other", 1L, 28, 420, 7, "app")).isNotEqualTo(key);
+    assertThat(PreviewCache.createKey(XML, THEME, 2L, 28, 420, 7, "app")).isNotEqualTo(key);
+    assertThat(PreviewCache.createKey(XML, THEME, 1L, 29, 420, 7, "app")).isNotEqualTo(key);
+    assertThat(PreviewCache.createKey(XML, THEME, 1L, 28, 480, 7, "app")).isNotEqualTo(key);
+    assertThat(PreviewCache.createKey(XML, THEME, 1L, 28, 420, 8, "app")).isNotEqualTo(key);
+    assertThat(PreviewCache.createKey(XML, THEME, 1L, 28, 420, 7, "app:appcompat")).isNotEqualTo(key);
+  }
+
+  @Test
+  public void imageIsKeptInMemory() {
+    PreviewCache cache = new PreviewCache(null, MoreExecutors.directExecutor());
+    String key = PreviewCache.createKey(XML, THEME, 1L, 28, 420, 7, "app");
+    BufferedImage image = createImage(0xFF00FF00);
+
+    assertThat(cache.get(key)).isNull();
+    cache.put(key, image);
+    assertThat(cache.get(key)).isSameAs(image);
+
+    cache.clearMemory();
+    assertThat(cache.get(key)).isNull();
+  }
+
+  @Test
+  public void diskIsOnlyReadByGet() throws Exception {
+    File directory = myFolder.newFolder();
+    String key = PreviewCache.createKey(XML, THEME, 1L, 28, 420, 7, "app");
+    new PreviewCache(directory, MoreExecutors.directExecutor()).put(key, createImage(0xFF00FF00));
+
+    PreviewCache cache = new PreviewCache(directory, MoreExecutors.directExecutor());
+    assertThat(cache.getIfInMemory(key)).isNull();
+    BufferedImage image = cache.get(key);
+    assertThat(image).isNotNull();
+    assertThat(cache.getIfInMemory(key)).isSameAs(image);
+  }
+
+  @Test
+  public void imageIsReadBackFromDisk() throws Exception {
+    File directory = myFolder.newFolder();
+    String key = PreviewCache.createKey(XML, THEME, 1L, 28, 420, 7, "app");
+    new PreviewCache(directory, MoreExecutors.directExecutor()).put(key, createImage(0xFF00FF00));
+
+    PreviewCache cache = new PreviewCache(directory, MoreExecutors.directExecutor());
+    BufferedImage image = cache.get(key);
+    assertThat(image).isNotNull();
+    assertThat(image.getWidth()).isEqualTo(10);
+    assertThat(image.getHeight()).isEqualTo(5);
+    assertThat(image.getRGB(3, 3)).isEqualTo(0xFF00FF00);
+    assertThat(cache.get(PreviewCache.createKey(XML, "@style/Other", 1L, 28, 420, 7, "app"))).isNull();
+  }
+
+  @Test
+  public void oldFilesArePruned() throws Exception {
+    File directory = myFolder.newFolder();
+    PreviewCache cache = new PreviewCache(directory, MoreExecutors.directExecutor());
+    BufferedImage image = createImage(0xFF0000FF);
+    // The directory is pruned on the first write and then after every PRUNE_INTERVAL writes
+    int count = PreviewCache.MAX_DISK_ENTRIES + PreviewCache.PRUNE_INTERVAL + 1;
+    assertThat(PreviewCache.MAX_DISK_ENTRIES % PreviewCache.PRUNE_INTERVAL).isEqualTo(0);
+    for (int i = 0; i < count; i++) {
+      cache.put(PreviewCache.createKey(XML, THEME, 1L, i, 420, 7, "app"), image);
+    }
+    assertThat(countFiles(directory)).isEqualTo(PreviewCache.MAX_DISK_ENTRIES);
+
+    // The next writes do not list the directory until the next interval
+    cache.put(PreviewCache.createKey(XML, THEME, 1L, count, 420, 7, "app"), image);
+    assertThat(countFiles(directory)).isEqualTo(PreviewCache.MAX_DISK_ENTRIES + 1);
+  }
+
+  private static int countFiles(File directory) {
+    File[] files = directory.listFiles();
+    assertThat(files).isNotNull();
+    return files.length;
+  }
+
+  private static BufferedImage createImage(int color) {
+    BufferedImage image = new BufferedImage(10, 5, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        image.setRGB(x, y, color);
+      }
+    }
+    return image;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import static com.android.SdkConstants.CONSTRAINT_LAYOUT;
+import static com.android.SdkConstants.TEXT_VIEW;
+
+import com.android.tools.idea.common.fixtures.ModelBuilder;
+import com.android.tools.idea.common.scene.SceneComponent;
+import com.android.tools.idea.common.scene.SceneContext;
+import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.flags.StudioFlags;
+import org.jetbrains.annotations.NotNull;
+
+public class SceneRetainedDisplayListTest extends SceneTest {
+  @Override
+  protected void setUp() throws Exception {
+    StudioFlags.NELE_RETAINED_DISPLAY_LIST.override(true);
+    super.setUp();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      StudioFlags.NELE_RETAINED_DISPLAY_LIST.clearOverride();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  @Override
+  @NotNull
+  public ModelBuilder createModel() {
+    return model("constraint.xml",
+                 component(CONSTRAINT_LAYOUT.defaultName())
+                   .id("@id/root")
+                   .withBounds(0, 0, 2000, 2000)
+                   .width("1000dp")
+                   .height("1000dp")
+                   .children(
+                     component(TEXT_VIEW)
+                       .id("@id/first")
+                       .withBounds(100, 100, 200, 40)
+                       .width("100dp")
+                       .height("20dp"),
+                     component(TEXT_VIEW)
+                       .id("@id/second")
+                       .withBounds(100, 400, 200, 40)
+                       .width("100dp")
+                       .height("20dp")
+                   ));
+  }
+
+  @NotNull
+  private String buildDisplayList() {
+    DisplayList list = new DisplayList();
+    myScene.buildDisplayList(list, 0, SceneContext.get());
+    return list.serialize();
+  }
+
+  public void testRetainedListIsReused() {
+    String fullList = buildDisplayList();
+    SceneContext context = SceneContext.get();
+    assertTrue(myScene.getRoot().hasRetainedDisplayList(context));
+    assertTrue(myScene.getSceneComponent("first").hasRetainedDisplayList(context));
+    assertTrue(myScene.getSceneComponent("second").hasRetainedDisplayList(context));
+
+    assertEquals(fullList, buildDisplayList());
+  }
+
+  public void testOnlyChangedComponentsAreInvalidated() {
+    String fullList = buildDisplayList();
+    SceneContext context = SceneContext.get();
+    SceneComponent first = myScene.getSceneComponent("first");
+    SceneComponent second = myScene.getSceneComponent("second");
+
+    myScene.needsRebuildList(first);
+    assertFalse(first.hasRetainedDisplayList(context));
+    // The parent includes the commands of the changed component
+    assertFalse(myScene.getRoot().hasRetainedDisplayList(context));
+    assertTrue(second.hasRetainedDisplayList(context));
+
+    assertEquals(fullList, buildDisplayList());
+    assertTrue(first.hasRetainedDisplayList(context));
+  }
+
+  public void testMovedComponentIsRebuilt() {
+    String fullList = buildDisplayList();
+    SceneComponent first = myScene.getSceneComponent("first");
+
+    first.setPosition(first.getDrawX() + 10, first.getDrawY());
+    myScene.layout(0, SceneContext.get());
+    assertTrue(myScene.getSceneComponent("second").hasRetainedDisplayList(SceneContext.get()));
+    String movedList = buildDisplayList();
+    assertFalse(fullList.equals(movedList));
+
+    first.setPosition(first.getDrawX() - 10, first.getDrawY());
+    myScene.layout(0, SceneContext.get());
+    assertEquals(fullList, buildDisplayList());
+  }
+
+  public void testRebuildListInvalidatesAllComponents() {
+    buildDisplayList();
+    myScene.needsRebuildList();
+
+    SceneContext context = SceneContext.get();
+    assertFalse(myScene.getRoot().hasRetainedDisplayList(context));
+    assertFalse(myScene.getSceneComponent("first").hasRetainedDisplayList(context));
+    assertFalse(myScene.getSceneComponent("second").hasRetainedDisplayList(context));
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scout;
+
+import static com.android.SdkConstants.CONSTRAINT_LAYOUT;
+import static com.android.SdkConstants.CONSTRAINT_LAYOUT_GUIDELINE;
+import static com.android.SdkConstants.TEXT_VIEW;
+
+import com.android.tools.idea.common.SyncNlModel;
+import com.android.tools.idea.common.fixtures.ComponentDescriptor;
+import com.android.tools.idea.common.model.NlComponent;
+import com.android.tools.idea.uibuilder.LayoutTestCase;
+import com.intellij.openapi.util.Disposer;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Checks that the pruned and grouped search of {@link ConstraintSetGenerator} finds a set as good as the exhaustive search.
+ */
+public class ConstraintSetGeneratorTest extends LayoutTestCase {
+
+  public void testTwoWidgets() {
+    checkSameErrorAsExhaustiveSearch(
+      component(TEXT_VIEW)
+        .id("@+id/a")
+        .withBounds(100, 100, 200, 40)
+        .width("100dp")
+        .height("20dp"),
+      component(TEXT_VIEW)
+        .id("@+id/b")
+        .withBounds(500, 700, 300, 60)
+        .width("150dp")
+        .height("30dp"));
+  }
+
+  public void testTwoWidgetsAndGuideline() {
+    checkSameErrorAsExhaustiveSearch(
+      component(TEXT_VIEW)
+        .id("@+id/a")
+        .withBounds(300, 100, 200, 40)
+        .width("100dp")
+        .height("20dp"),
+      component(CONSTRAINT_LAYOUT_GUIDELINE.defaultName())
+        .id("@+id/guide")
+        .withBounds(200, 0, 1, 1000)
+        .withAttribute("android:orientation", "vertical")
+        .withAttribute("app:layout_constraintGuide_begin", "100dp")
+        .width("wrap_content")
+        .height("wrap_content"),
+      component(TEXT_VIEW)
+        .id("@+id/b")
+        .withBounds(250, 600, 300, 60)
+        .width("150dp")
+        .height("30dp"));
+  }
+
+  public void testTimeBudgetIsAHardLimit() {
+    SyncNlModel model = createModel(
+      component(TEXT_VIEW)
+        .id("@+id/a")
+        .withBounds(100, 100, 200, 40)
+        .width("100dp")
+        .height("20dp"),
+      component(TEXT_VIEW)
+        .id("@+id/b")
+        .withBounds(500, 700, 300, 60)
+        .width("150dp")
+        .height("30dp"));
+    try {
+      ConstraintSet exhaustive = new ConstraintSetGenerator(createWidgets(model)).findConstraintSetExhaustively();
+      ConstraintSetGenerator generator = new ConstraintSetGenerator(createWidgets(model));
+      generator.setTimeBudget(0);
+      ConstraintSet set = generator.findConstraintSet();
+
+      assertNotNull(exhaustive);
+      // Only the combination of the best candidate of every widget is evaluated, which may or may not be valid
+      if (set != null) {
+        assertTrue(set.error() >= exhaustive.error());
+      }
+    }
+    finally {
+      Disposer.dispose(model);
+    }
+  }
+
+  private void checkSameErrorAsExhaustiveSearch(@NotNull ComponentDescriptor... children) {
+    SyncNlModel model = createModel(children);
+    try {
+      ConstraintSet exhaustive = new ConstraintSetGenerator(createWidgets(model)).findConstraintSetExhaustively();
+      ConstraintSetGenerator generator = new ConstraintSetGenerator(createWidgets(model));
+      // No time limit, so that the result does not depend on the speed of the machine
+      generator.setTimeBudget(Long.MAX_VALUE / 2);
+      ConstraintSet set = generator.findConstraintSet();
+
+      assertNotNull(exhaustive);
+      assertNotNull(set);
+      // Several sets can have the same error, so only the errors are compared
+      assertEquals(exhaustive.error(), set.error(), 1e-9);
+    }
+    finally {
+      Disposer.dispose(model);
+    }
+  }
+
+  @NotNull
+  private SyncNlModel createModel(@NotNull ComponentDescriptor... children) {
+    return model("constraint.xml",
+                 component(CONSTRAINT_LAYOUT.defaultName())
+                   .id("@+id/root")
+                   .withBounds(0, 0, 1000, 1000)
+                   .width("500dp")
+                   .height("500dp")
+                   .children(children))
+      .build();
+  }
+
+  @NotNull
+  private static ScoutWidget[] createWidgets(@NotNull SyncNlModel model) {
+    NlComponent root = model.getComponents().get(0);
+    List<NlComponent> list = new ArrayList<>(root.getChildren());
+    list.add(0, root);
+    return ScoutWidget.create(list.toArray(new NlComponent[0]), false);
+  }
+}
@@ -20,6 +20,7 @@ import com.android.annotations.concurrency.GuardedBy
 import com.android.tools.adtui.ImageUtils
 import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.rendering.RenderResult
+import com.android.tools.idea.rendering.RenderResultCache
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
 import com.android.tools.idea.res.LocalResourceRepository
@@ -225,16 +226,27 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
   }
 
   private fun getImage(xmlFile: XmlFile, file: VirtualFile, configuration: Configuration): BufferedImage? {
-    val renderService = RenderService.getInstance(module.project)
-    val task = createTask(facet, xmlFile, configuration, renderService)
+    val cacheKey = if (RenderResultCache.isEnabled()) RenderResultCache.computeKey(facet, xmlFile, configuration, false, 1f, null) else null
+    val cachedResult = cacheKey?.let { RenderResultCache.getInstance(module.project).get(it, xmlFile, module) }
     var renderResult: CompletableFuture<RenderResult>? = null
-    if (task != null) {
-      renderResult = task.render()
+    if (cachedResult != null) {
+      renderResult = CompletableFuture.completedFuture(cachedResult)
+    }
+    else {
+      val renderService = RenderService.getInstance(module.project)
+      val task = createTask(facet, xmlFile, configuration, renderService)
+      if (task != null) {
+        renderResult = task.render()
+      }
     }
     var image: BufferedImage? = null
     if (renderResult != null) {
       // This should also be done in a listener if task.render() were actually async.
-      image = renderResult.get().renderedImage.copy
+      val result = renderResult.get()
+      if (cacheKey != null && cachedResult == null) {
+        RenderResultCache.getInstance(module.project).put(cacheKey, result)
+      }
+      image = result.renderedImage.copy
       myImages.put(file, configuration, SoftReference<BufferedImage>(image))
       myRenderVersions.put(file, configuration, myResourceRepository.modificationCount)
       myRenderModStamps.put(file, configuration, file.timeStamp)